@@ -287,7 +287,7 @@ public class HttpCacheEntry implements MessageHeaders, Serializable {
      * the "parent" entry to hold this index of the other variants.
      */
     public Map<String, String> getVariantMap() {
-        return Collections.unmodifiableMap(variantMap);
+        return variantMap != null ? Collections.unmodifiableMap(variantMap) : Collections.<String, String>emptyMap();
     }
 
     /**
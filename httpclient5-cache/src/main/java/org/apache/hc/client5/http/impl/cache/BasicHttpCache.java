@@ -26,6 +26,7 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
@@ -53,6 +54,7 @@ import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.util.ByteArrayBuffer;
 
 class BasicHttpCache implements HttpCache {
     private static final Set<String> safeRequestMethods = new HashSet<>(
@@ -102,7 +104,7 @@ class BasicHttpCache implements HttpCache {
     }
 
     public BasicHttpCache(final CacheConfig config) {
-        this(new HeapResourceFactory(), new BasicHttpCacheStorage(config), config);
+        this(new HeapResourceFactory(), new ConcurrentHttpCacheStorage(config), config);
     }
 
     public BasicHttpCache() {
@@ -319,6 +321,37 @@ class BasicHttpCache implements HttpCache {
         }
     }
 
+    @Override
+    public HttpCacheEntry createCacheEntry(
+            final HttpHost host,
+            final HttpRequest request,
+            final HttpResponse originResponse,
+            final ByteArrayBuffer content,
+            final Date requestSent,
+            final Date responseReceived) throws IOException {
+        final Resource resource;
+        if (content != null) {
+            resource = resourceFactory.generate(
+                    request.getRequestUri(),
+                    new ByteArrayInputStream(content.array(), 0, content.length()),
+                    null);
+        } else {
+            resource = null;
+        }
+        if (isIncompleteResponse(originResponse, resource)) {
+            resource.dispose();
+            return null;
+        }
+        final HttpCacheEntry entry = new HttpCacheEntry(
+                requestSent,
+                responseReceived,
+                originResponse.getCode(),
+                originResponse.getAllHeaders(),
+                resource);
+        storeInCache(host, request, entry);
+        return entry;
+    }
+
     SizeLimitedResponseReader getResponseReader(final HttpRequest request,
             final ClassicHttpResponse backEndResponse) {
         return new SizeLimitedResponseReader(
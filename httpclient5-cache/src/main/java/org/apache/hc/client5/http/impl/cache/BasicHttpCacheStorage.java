@@ -39,8 +39,12 @@ import org.apache.hc.core5.annotation.ThreadingBehavior;
  * {@link java.util.LinkedHashMap}. In other words, cache entries and
  * the cached response bodies are held in-memory. This cache does NOT
  * deallocate resources associated with the cache entries; it is intended
- * for use with {@link HeapResource} and similar. This is the default cache
- * storage backend used by {@link CachingHttpClients}.
+ * for use with {@link HeapResource} and similar.
+ * <p>
+ * All operations on this storage are serialized. {@link ConcurrentHttpCacheStorage},
+ * the default cache storage backend used by {@link CachingHttpClients}, should be
+ * preferred for concurrent use.
+ * </p>
  *
  * @since 4.1
  */
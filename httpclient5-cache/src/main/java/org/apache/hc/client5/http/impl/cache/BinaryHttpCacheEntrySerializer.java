@@ -0,0 +1,240 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializationException;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * {@link HttpCacheEntrySerializer} implementation that uses a compact versioned
+ * binary format instead of the native Java serialization. No classes are
+ * instantiated based on the content of the input stream.
+ * <p>
+ * The format consists of a magic number and a format version followed by
+ * the request and response dates, the status code, the response headers,
+ * the variant map and the content of the resource. Strings are encoded
+ * in UTF-8 prefixed with their length in bytes, collections and the resource
+ * content are prefixed with the number of elements or bytes respectively.
+ * </p>
+ * <p>
+ * Resources are always deserialized as {@link HeapResource}s. The stream
+ * is neither buffered nor closed by this serializer.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class BinaryHttpCacheEntrySerializer implements HttpCacheEntrySerializer {
+
+    public static final BinaryHttpCacheEntrySerializer INSTANCE = new BinaryHttpCacheEntrySerializer();
+
+    static final int MAGIC = 0x48434545;
+    static final int VERSION = 1;
+
+    private static final int NULL_LENGTH = -1;
+    private static final int BUFFER_SIZE = 4096;
+
+    @Override
+    public void writeTo(final HttpCacheEntry entry, final OutputStream os) throws IOException {
+        Args.notNull(entry, "Cache entry");
+        Args.notNull(os, "Output stream");
+        final DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(entry.getRequestDate().getTime());
+        out.writeLong(entry.getResponseDate().getTime());
+        out.writeInt(entry.getStatus());
+
+        final List<Header> headers = new ArrayList<>();
+        for (final Iterator<Header> it = entry.headerIterator(); it.hasNext(); ) {
+            headers.add(it.next());
+        }
+        out.writeInt(headers.size());
+        for (final Header header: headers) {
+            writeString(out, header.getName());
+            writeString(out, header.getValue());
+        }
+
+        final Map<String, String> variantMap = entry.getVariantMap();
+        out.writeInt(variantMap.size());
+        for (final Map.Entry<String, String> variant: variantMap.entrySet()) {
+            writeString(out, variant.getKey());
+            writeString(out, variant.getValue());
+        }
+
+        final Resource resource = entry.getResource();
+        if (resource == null) {
+            out.writeLong(NULL_LENGTH);
+        } else {
+            final long length = resource.length();
+            out.writeLong(length);
+            long total = 0;
+            try (final InputStream in = resource.getInputStream()) {
+                final byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    total += n;
+                    if (total > length) {
+                        break;
+                    }
+                    out.write(buffer, 0, n);
+                }
+            }
+            if (total != length) {
+                throw new HttpCacheEntrySerializationException("Resource length mismatch: expected "
+                        + length + " bytes, got " + total);
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public HttpCacheEntry readFrom(final InputStream is) throws IOException {
+        Args.notNull(is, "Input stream");
+        final DataInputStream in = new DataInputStream(is);
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new HttpCacheEntrySerializationException("Invalid cache entry format");
+            }
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new HttpCacheEntrySerializationException("Unsupported cache entry format version: " + version);
+            }
+            final Date requestDate = new Date(in.readLong());
+            final Date responseDate = new Date(in.readLong());
+            final int status = in.readInt();
+
+            final int headerCount = readCount(in);
+            final List<Header> headers = new ArrayList<>(Math.min(headerCount, 64));
+            for (int i = 0; i < headerCount; i++) {
+                final String name = readString(in);
+                if (name == null) {
+                    throw new HttpCacheEntrySerializationException("Invalid header name");
+                }
+                headers.add(new BasicHeader(name, readString(in)));
+            }
+
+            final int variantCount = readCount(in);
+            final Map<String, String> variantMap = new HashMap<>();
+            for (int i = 0; i < variantCount; i++) {
+                variantMap.put(readString(in), readString(in));
+            }
+
+            final long length = in.readLong();
+            final Resource resource;
+            if (length == NULL_LENGTH) {
+                resource = null;
+            } else if (length >= 0 && length <= Integer.MAX_VALUE - 8) {
+                resource = new HeapResource(readBytes(in, (int) length));
+            } else {
+                throw new HttpCacheEntrySerializationException("Invalid resource length: " + length);
+            }
+            return new HttpCacheEntry(requestDate, responseDate, status,
+                    headers.toArray(new Header[headers.size()]), resource, variantMap);
+        } catch (final EOFException ex) {
+            throw new HttpCacheEntrySerializationException("Unexpected end of cache entry", ex);
+        } catch (final IllegalArgumentException ex) {
+            throw new HttpCacheEntrySerializationException("Invalid cache entry: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        if (s == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new HttpCacheEntrySerializationException("Invalid string length: " + length);
+        }
+        return new String(readBytes(in, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the given number of bytes allocating memory as the data arrives
+     * rather than trusting the length read from the stream upfront.
+     */
+    private static byte[] readBytes(final DataInputStream in, final int length) throws IOException {
+        if (length <= BUFFER_SIZE) {
+            final byte[] b = new byte[length];
+            in.readFully(b);
+            return b;
+        }
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(BUFFER_SIZE);
+        final byte[] chunk = new byte[BUFFER_SIZE];
+        int remaining = length;
+        while (remaining > 0) {
+            final int n = in.read(chunk, 0, Math.min(remaining, chunk.length));
+            if (n == -1) {
+                throw new EOFException();
+            }
+            buffer.append(chunk, 0, n);
+            remaining -= n;
+        }
+        return buffer.toByteArray();
+    }
+
+    private static int readCount(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new HttpCacheEntrySerializationException("Invalid element count: " + count);
+        }
+        return count;
+    }
+
+}
@@ -46,7 +46,8 @@ import org.apache.hc.core5.util.Args;
  * <p><b>Cache size.</b> If the backend storage supports these limits, you
  * can specify the {@link CacheConfig#getMaxCacheEntries maximum number of
  * cache entries} as well as the {@link CacheConfig#getMaxObjectSize()}
- * maximum cacheable response body size}.</p>
+ * maximum cacheable response body size} and the {@link CacheConfig#getMaxCacheSize()
+ * maximum total size of cached response bodies}.</p>
  *
  * <p><b>Public/private caching.</b> By default, the caching module considers
  * itself to be a shared (public) cache, and will not, for example, cache
@@ -99,6 +100,13 @@ import org.apache.hc.core5.util.Args;
  * can be idle before being reclaimed}. You can also control the {@link
  * CacheConfig#getRevalidationQueueSize() size of the queue} used for
  * revalidations when there aren't enough workers to keep up with demand.</p>
+ *
+ * <p><b>Collapsed forwarding</b>. When {@link
+ * CacheConfig#isCollapsedForwardingEnabled() enabled}, concurrent requests
+ * for the same resource that cannot be served from the cache wait for a single
+ * in-flight request to the origin and are then served from the cache entry
+ * it stored, for {@link CacheConfig#getCollapsedForwardingTimeout() at most}
+ * the given time.</p>
  */
 public class CacheConfig implements Cloneable {
 
@@ -158,10 +166,20 @@ public class CacheConfig implements Cloneable {
      */
     public static final int DEFAULT_REVALIDATION_QUEUE_SIZE = 100;
 
+    /** Default setting for collapsed forwarding
+     */
+    public static final boolean DEFAULT_COLLAPSED_FORWARDING_ENABLED = false;
+
+    /** Default maximum time in milliseconds to wait for an in-flight request
+     * to the same resource when collapsed forwarding is enabled.
+     */
+    public static final int DEFAULT_COLLAPSED_FORWARDING_TIMEOUT_MILLIS = 10000;
+
     public static final CacheConfig DEFAULT = new Builder().build();
 
     private final long maxObjectSize;
     private final int maxCacheEntries;
+    private final long maxCacheSize;
     private final int maxUpdateRetries;
     private final boolean allow303Caching;
     private final boolean weakETagOnPutDeleteAllowed;
@@ -174,10 +192,13 @@ public class CacheConfig implements Cloneable {
     private final int asynchronousWorkerIdleLifetimeSecs;
     private final int revalidationQueueSize;
     private final boolean neverCacheHTTP10ResponsesWithQuery;
+    private final boolean collapsedForwardingEnabled;
+    private final int collapsedForwardingTimeout;
 
     CacheConfig(
             final long maxObjectSize,
             final int maxCacheEntries,
+            final long maxCacheSize,
             final int maxUpdateRetries,
             final boolean allow303Caching,
             final boolean weakETagOnPutDeleteAllowed,
@@ -189,10 +210,13 @@ public class CacheConfig implements Cloneable {
             final int asynchronousWorkersCore,
             final int asynchronousWorkerIdleLifetimeSecs,
             final int revalidationQueueSize,
-            final boolean neverCacheHTTP10ResponsesWithQuery) {
+            final boolean neverCacheHTTP10ResponsesWithQuery,
+            final boolean collapsedForwardingEnabled,
+            final int collapsedForwardingTimeout) {
         super();
         this.maxObjectSize = maxObjectSize;
         this.maxCacheEntries = maxCacheEntries;
+        this.maxCacheSize = maxCacheSize;
         this.maxUpdateRetries = maxUpdateRetries;
         this.allow303Caching = allow303Caching;
         this.weakETagOnPutDeleteAllowed = weakETagOnPutDeleteAllowed;
@@ -205,6 +229,8 @@ public class CacheConfig implements Cloneable {
         this.asynchronousWorkerIdleLifetimeSecs = asynchronousWorkerIdleLifetimeSecs;
         this.revalidationQueueSize = revalidationQueueSize;
         this.neverCacheHTTP10ResponsesWithQuery = neverCacheHTTP10ResponsesWithQuery;
+        this.collapsedForwardingEnabled = collapsedForwardingEnabled;
+        this.collapsedForwardingTimeout = collapsedForwardingTimeout;
     }
 
     /**
@@ -233,6 +259,25 @@ public class CacheConfig implements Cloneable {
         return maxCacheEntries;
     }
 
+    /**
+     * Returns the maximum total size of the response bodies the cache will
+     * retain. Unless set explicitly this is the {@link #getMaxObjectSize()
+     * maximum object size} times the {@link #getMaxCacheEntries() maximum
+     * number of cache entries}.
+     * @return size in bytes
+     *
+     * @since 5.0
+     */
+    public long getMaxCacheSize() {
+        if (maxCacheSize > 0) {
+            return maxCacheSize;
+        }
+        if (maxObjectSize <= 0 || maxCacheEntries <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return maxObjectSize > Long.MAX_VALUE / maxCacheEntries ? Long.MAX_VALUE : maxObjectSize * maxCacheEntries;
+    }
+
     /**
      * Returns the number of times to retry a cache processChallenge on failure
      */
@@ -322,6 +367,27 @@ public class CacheConfig implements Cloneable {
         return revalidationQueueSize;
     }
 
+    /**
+     * Returns whether concurrent requests for the same resource that cannot
+     * be served from the cache are collapsed into a single request to the
+     * origin server.
+     *
+     * @since 5.0
+     */
+    public boolean isCollapsedForwardingEnabled() {
+        return collapsedForwardingEnabled;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a request waits for an in-flight
+     * request to the same resource before contacting the origin server itself.
+     *
+     * @since 5.0
+     */
+    public int getCollapsedForwardingTimeout() {
+        return collapsedForwardingTimeout;
+    }
+
     @Override
     protected CacheConfig clone() throws CloneNotSupportedException {
         return (CacheConfig) super.clone();
@@ -336,6 +402,7 @@ public class CacheConfig implements Cloneable {
         return new Builder()
             .setMaxObjectSize(config.getMaxObjectSize())
             .setMaxCacheEntries(config.getMaxCacheEntries())
+            .setMaxCacheSize(config.maxCacheSize)
             .setMaxUpdateRetries(config.getMaxUpdateRetries())
             .setHeuristicCachingEnabled(config.isHeuristicCachingEnabled())
             .setHeuristicCoefficient(config.getHeuristicCoefficient())
@@ -345,7 +412,9 @@ public class CacheConfig implements Cloneable {
             .setAsynchronousWorkersCore(config.getAsynchronousWorkersCore())
             .setAsynchronousWorkerIdleLifetimeSecs(config.getAsynchronousWorkerIdleLifetimeSecs())
             .setRevalidationQueueSize(config.getRevalidationQueueSize())
-            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery());
+            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery())
+            .setCollapsedForwardingEnabled(config.isCollapsedForwardingEnabled())
+            .setCollapsedForwardingTimeout(config.getCollapsedForwardingTimeout());
     }
 
 
@@ -353,6 +422,7 @@ public class CacheConfig implements Cloneable {
 
         private long maxObjectSize;
         private int maxCacheEntries;
+        private long maxCacheSize;
         private int maxUpdateRetries;
         private boolean allow303Caching;
         private boolean weakETagOnPutDeleteAllowed;
@@ -365,6 +435,8 @@ public class CacheConfig implements Cloneable {
         private int asynchronousWorkerIdleLifetimeSecs;
         private int revalidationQueueSize;
         private boolean neverCacheHTTP10ResponsesWithQuery;
+        private boolean collapsedForwardingEnabled;
+        private int collapsedForwardingTimeout;
 
         Builder() {
             this.maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
@@ -380,6 +452,8 @@ public class CacheConfig implements Cloneable {
             this.asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
             this.asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
             this.revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+            this.collapsedForwardingEnabled = DEFAULT_COLLAPSED_FORWARDING_ENABLED;
+            this.collapsedForwardingTimeout = DEFAULT_COLLAPSED_FORWARDING_TIMEOUT_MILLIS;
         }
 
         /**
@@ -399,6 +473,19 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the maximum total size of the response bodies the cache will retain.
+         * A value of zero or less bounds it by the maximum object size times the
+         * maximum number of cache entries.
+         * @param maxCacheSize size in bytes
+         *
+         * @since 5.0
+         */
+        public Builder setMaxCacheSize(final long maxCacheSize) {
+            this.maxCacheSize = maxCacheSize;
+            return this;
+        }
+
         /**
          * Sets the number of times to retry a cache processChallenge on failure
          */
@@ -532,10 +619,37 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Enables or disables collapsed forwarding. If enabled, concurrent requests
+         * for the same resource that cannot be served from the cache wait for a single
+         * in-flight request to the origin server and are then served from the cache.
+         * @param collapsedForwardingEnabled should be {@code true} to
+         *   collapse concurrent requests, {@code false} to disable it.
+         *
+         * @since 5.0
+         */
+        public Builder setCollapsedForwardingEnabled(final boolean collapsedForwardingEnabled) {
+            this.collapsedForwardingEnabled = collapsedForwardingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a request waits for an in-flight request to the
+         * same resource before contacting the origin server itself.
+         * @param collapsedForwardingTimeout timeout in milliseconds
+         *
+         * @since 5.0
+         */
+        public Builder setCollapsedForwardingTimeout(final int collapsedForwardingTimeout) {
+            this.collapsedForwardingTimeout = collapsedForwardingTimeout;
+            return this;
+        }
+
         public CacheConfig build() {
             return new CacheConfig(
                     maxObjectSize,
                     maxCacheEntries,
+                    maxCacheSize,
                     maxUpdateRetries,
                     allow303Caching,
                     weakETagOnPutDeleteAllowed,
@@ -547,7 +661,9 @@ public class CacheConfig implements Cloneable {
                     asynchronousWorkersCore,
                     asynchronousWorkerIdleLifetimeSecs,
                     revalidationQueueSize,
-                    neverCacheHTTP10ResponsesWithQuery);
+                    neverCacheHTTP10ResponsesWithQuery,
+                    collapsedForwardingEnabled,
+                    collapsedForwardingTimeout);
         }
 
     }
@@ -557,6 +673,7 @@ public class CacheConfig implements Cloneable {
         final StringBuilder builder = new StringBuilder();
         builder.append("[maxObjectSize=").append(this.maxObjectSize)
                 .append(", maxCacheEntries=").append(this.maxCacheEntries)
+                .append(", maxCacheSize=").append(getMaxCacheSize())
                 .append(", maxUpdateRetries=").append(this.maxUpdateRetries)
                 .append(", 303CachingEnabled=").append(this.allow303Caching)
                 .append(", weakETagOnPutDeleteAllowed=").append(this.weakETagOnPutDeleteAllowed)
@@ -569,6 +686,8 @@ public class CacheConfig implements Cloneable {
                 .append(", asynchronousWorkerIdleLifetimeSecs=").append(this.asynchronousWorkerIdleLifetimeSecs)
                 .append(", revalidationQueueSize=").append(this.revalidationQueueSize)
                 .append(", neverCacheHTTP10ResponsesWithQuery=").append(this.neverCacheHTTP10ResponsesWithQuery)
+                .append(", collapsedForwardingEnabled=").append(this.collapsedForwardingEnabled)
+                .append(", collapsedForwardingTimeout=").append(this.collapsedForwardingTimeout)
                 .append("]");
         return builder.toString();
     }
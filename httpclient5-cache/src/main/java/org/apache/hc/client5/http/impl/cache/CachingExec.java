@@ -27,11 +27,16 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
@@ -105,6 +110,7 @@ public class CachingExec implements ClientExecChain {
     private final AtomicLong cacheHits = new AtomicLong();
     private final AtomicLong cacheMisses = new AtomicLong();
     private final AtomicLong cacheUpdates = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
 
     private final Map<ProtocolVersion, String> viaHeaders = new HashMap<>(4);
 
@@ -122,6 +128,9 @@ public class CachingExec implements ClientExecChain {
 
     private final AsynchronousValidator asynchRevalidator;
 
+    private final CacheKeyGenerator cacheKeyGenerator = new CacheKeyGenerator();
+    private final ConcurrentMap<String, CountDownLatch> inflightRequests = new ConcurrentHashMap<>();
+
     private final Log log = LogFactory.getLog(getClass());
 
     public CachingExec(
@@ -221,6 +230,18 @@ public class CachingExec implements ClientExecChain {
         return cacheUpdates.get();
     }
 
+    /**
+     * Reports the number of times that a request waited for an in-flight
+     * request to the same resource instead of contacting the origin server
+     * when collapsed forwarding is enabled.
+     * @return the number of coalesced requests
+     *
+     * @since 5.0
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
     public ClassicHttpResponse execute(final RoutedHttpRequest request) throws IOException, HttpException {
         return execute(request, HttpClientContext.create(), null);
     }
@@ -264,6 +285,18 @@ public class CachingExec implements ClientExecChain {
         }
 
         final HttpCacheEntry entry = satisfyFromCache(target, request);
+        if (cacheConfig.isCollapsedForwardingEnabled() && mayCallBackend(request)
+                && (entry == null || !suitabilityChecker.canCachedResponseBeUsed(target, request, entry, getCurrentDate()))) {
+            return handleCollapsedForwarding(request, context, execAware, entry);
+        }
+        return handleCacheEntry(request, context, execAware, entry);
+    }
+
+    private ClassicHttpResponse handleCacheEntry(
+            final RoutedHttpRequest request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry entry) throws IOException, HttpException {
         if (entry == null) {
             log.debug("Cache miss");
             return handleCacheMiss(request, context, execAware);
@@ -272,6 +305,36 @@ public class CachingExec implements ClientExecChain {
         }
     }
 
+    private ClassicHttpResponse handleCollapsedForwarding(
+            final RoutedHttpRequest request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry entry) throws IOException, HttpException {
+        final HttpHost target = request.getTargetHost();
+        final String key = cacheKeyGenerator.generateKey(target, request);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountDownLatch inflight = inflightRequests.putIfAbsent(key, latch);
+        if (inflight == null) {
+            try {
+                return handleCacheEntry(request, context, execAware, entry);
+            } finally {
+                inflightRequests.remove(key, latch);
+                latch.countDown();
+            }
+        }
+        log.debug("Waiting for in-flight request to the same resource");
+        coalescedRequests.getAndIncrement();
+        try {
+            if (!inflight.await(cacheConfig.getCollapsedForwardingTimeout(), TimeUnit.MILLISECONDS)) {
+                log.debug("Timed out waiting for in-flight request");
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for in-flight request");
+        }
+        return handleCacheEntry(request, context, execAware, satisfyFromCache(target, request));
+    }
+
     private ClassicHttpResponse handleCacheHit(
             final RoutedHttpRequest request,
             final HttpClientContext context,
@@ -0,0 +1,956 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.async.AsyncClientEndpoint;
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HeaderConstants;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.config.Configurable;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultThreadFactory;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.http.nio.AsyncPushConsumer;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.BasicRequestProducer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.reactor.ExceptionEvent;
+import org.apache.hc.core5.reactor.IOReactorStatus;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * {@link CloseableHttpAsyncClient} decorator that adds client-side caching
+ * of responses to another asynchronous client.
+ * <p>
+ * Fresh cache entries are served without contacting the origin server, stale
+ * entries are revalidated with conditional requests and cacheable responses
+ * are captured as they stream through to the response consumer and stored once
+ * complete. Cache storage operations are executed by the given {@link Executor}
+ * or by a dedicated thread pool owned by the client, so that storages performing
+ * blocking I/O do not hold up the I/O reactor. The storage operations caused by
+ * a response are executed one after another in the order they are issued.
+ * </p>
+ * <p>
+ * Only requests without an enclosed entity can be served from the cache.
+ * Variant negotiation and background revalidation as supported by
+ * {@link CachingExec} are not performed.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CachingHttpAsyncClient extends CloseableHttpAsyncClient {
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheUpdates = new AtomicLong();
+
+    private final CloseableHttpAsyncClient backend;
+    private final HttpCache responseCache;
+    private final CacheConfig cacheConfig;
+    private final Executor executor;
+    private final ExecutorService executorService;
+    private final CacheValidityPolicy validityPolicy;
+    private final CachedHttpResponseGenerator responseGenerator;
+    private final CacheableRequestPolicy cacheableRequestPolicy;
+    private final CachedResponseSuitabilityChecker suitabilityChecker;
+    private final ConditionalRequestBuilder conditionalRequestBuilder;
+    private final ResponseCachingPolicy responseCachingPolicy;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    CachingHttpAsyncClient(
+            final CloseableHttpAsyncClient backend,
+            final HttpCache cache,
+            final CacheConfig config,
+            final Executor executor) {
+        super();
+        Args.notNull(backend, "HTTP backend");
+        Args.notNull(cache, "HttpCache");
+        this.backend = backend;
+        this.responseCache = cache;
+        this.cacheConfig = config != null ? config : CacheConfig.DEFAULT;
+        if (executor != null) {
+            this.executor = executor;
+            this.executorService = null;
+        } else {
+            this.executorService = Executors.newFixedThreadPool(
+                    Math.max(1, this.cacheConfig.getAsynchronousWorkersMax()),
+                    new DefaultThreadFactory("httpclient-cache", true));
+            this.executor = this.executorService;
+        }
+        this.validityPolicy = new CacheValidityPolicy();
+        this.responseGenerator = new CachedHttpResponseGenerator(this.validityPolicy);
+        this.cacheableRequestPolicy = new CacheableRequestPolicy();
+        this.suitabilityChecker = new CachedResponseSuitabilityChecker(this.validityPolicy, this.cacheConfig);
+        this.conditionalRequestBuilder = new ConditionalRequestBuilder();
+        this.responseCachingPolicy = new ResponseCachingPolicy(
+                this.cacheConfig.getMaxObjectSize(), this.cacheConfig.isSharedCache(),
+                this.cacheConfig.isNeverCacheHTTP10ResponsesWithQuery(), this.cacheConfig.is303CachingEnabled());
+    }
+
+    /**
+     * Creates a caching client on top of the given backend client.
+     *
+     * @param backend the client used to execute requests that cannot be served from the cache.
+     * @param resourceFactory the factory used to store response bodies.
+     * @param storage the cache storage.
+     * @param config the cache configuration.
+     * @param executor the executor to run cache storage operations with or {@code null}
+     *   to run them with a thread pool sized by {@link CacheConfig#getAsynchronousWorkersMax()}
+     *   that is shut down when the client is closed.
+     */
+    public CachingHttpAsyncClient(
+            final CloseableHttpAsyncClient backend,
+            final org.apache.hc.client5.http.cache.ResourceFactory resourceFactory,
+            final org.apache.hc.client5.http.cache.HttpCacheStorage storage,
+            final CacheConfig config,
+            final Executor executor) {
+        this(backend, new BasicHttpCache(resourceFactory, storage, config), config, executor);
+    }
+
+    /**
+     * Reports the number of times that the cache successfully responded
+     * to a request without contacting the origin server.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Reports the number of times that the cache contacted the origin
+     * server because it had no appropriate response cached.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Reports the number of times that the cache was able to satisfy
+     * a response by revalidating an existing but stale cache entry.
+     */
+    public long getCacheUpdates() {
+        return cacheUpdates.get();
+    }
+
+    @Override
+    public void start() {
+        backend.start();
+    }
+
+    @Override
+    public IOReactorStatus getStatus() {
+        return backend.getStatus();
+    }
+
+    @Override
+    public List<ExceptionEvent> getAuditLog() {
+        return backend.getAuditLog();
+    }
+
+    @Override
+    public void awaitShutdown(final long deadline, final TimeUnit timeUnit) throws InterruptedException {
+        backend.awaitShutdown(deadline, timeUnit);
+    }
+
+    @Override
+    public void initiateShutdown() {
+        backend.initiateShutdown();
+    }
+
+    @Override
+    public void shutdown(final long graceTime, final TimeUnit timeUnit) {
+        backend.shutdown(graceTime, timeUnit);
+    }
+
+    @Override
+    public void close() throws IOException {
+        backend.close();
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public Future<AsyncClientEndpoint> lease(
+            final HttpHost host,
+            final HttpContext context,
+            final FutureCallback<AsyncClientEndpoint> callback) {
+        return backend.lease(host, context, callback);
+    }
+
+    @Override
+    public void register(final String hostname, final String uriPattern, final Supplier<AsyncPushConsumer> supplier) {
+        backend.register(hostname, uriPattern, supplier);
+    }
+
+    @Override
+    public <T> Future<T> execute(
+            final AsyncRequestProducer requestProducer,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final HttpContext context,
+            final FutureCallback<T> callback) {
+        Args.notNull(requestProducer, "Request producer");
+        Args.notNull(responseConsumer, "Response consumer");
+        final BasicFuture<T> future = new BasicFuture<>(callback);
+        final HttpClientContext clientContext = HttpClientContext.adapt(
+                context != null ? context : HttpClientContext.create());
+        setResponseStatus(clientContext, CacheResponseStatus.CACHE_MISS);
+
+        final HttpRequest request = requestProducer.produceRequest();
+        // The backend gets the request produced here rather than producing it again
+        final AsyncRequestProducer producer = new ProducedRequestProducer(request, requestProducer);
+        final HttpHost target = determineTarget(request);
+        if (target == null) {
+            callBackend(producer, responseConsumer, clientContext, future);
+            return future;
+        }
+        if (producer.getEntityDetails() != null || !cacheableRequestPolicy.isServableFromCache(request)) {
+            log.debug("Request is not servable from cache");
+            executeCacheOperation(future, new CacheOperation() {
+
+                @Override
+                public void execute() {
+                    flushEntriesInvalidatedByRequest(target, request);
+                    callBackend(producer, responseConsumer, clientContext, future);
+                }
+
+            });
+            return future;
+        }
+        executeCacheOperation(future, new CacheOperation() {
+
+            @Override
+            public void execute() throws IOException, HttpException {
+                handleCacheLookup(target, request, producer, responseConsumer, clientContext, future);
+            }
+
+        });
+        return future;
+    }
+
+    private static HttpHost determineTarget(final HttpRequest request) {
+        if (request.getAuthority() == null || request.getScheme() == null) {
+            return null;
+        }
+        return new HttpHost(request.getAuthority(), request.getScheme());
+    }
+
+    private <T> void handleCacheLookup(
+            final HttpHost target,
+            final HttpRequest request,
+            final AsyncRequestProducer requestProducer,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final HttpClientContext context,
+            final BasicFuture<T> future) throws IOException, HttpException {
+        HttpCacheEntry entry = null;
+        try {
+            entry = responseCache.getCacheEntry(target, request);
+        } catch (final IOException ex) {
+            log.warn("Unable to retrieve entries from cache", ex);
+        }
+        final Date now = new Date();
+        if (entry == null) {
+            recordCacheMiss(target, request);
+            if (!mayCallBackend(request)) {
+                requestProducer.releaseResources();
+                serveResponse(generateGatewayTimeout(context), responseConsumer, new ResultCallback<>(future));
+                return;
+            }
+            callBackendAndCache(target, request, requestProducer, responseConsumer, context, future);
+            return;
+        }
+        recordCacheHit(target, request);
+        if (suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
+            log.debug("Cache hit");
+            requestProducer.releaseResources();
+            final ClassicHttpResponse cachedResponse = generateCachedResponse(request, context, entry, now);
+            serveResponse(cachedResponse, responseConsumer, new ResultCallback<>(future));
+        } else if (!mayCallBackend(request)) {
+            log.debug("Cache entry not suitable but only-if-cached requested");
+            requestProducer.releaseResources();
+            serveResponse(generateGatewayTimeout(context), responseConsumer, new ResultCallback<>(future));
+        } else if (!(entry.getStatus() == HttpStatus.SC_NOT_MODIFIED
+                && !suitabilityChecker.isConditional(request))) {
+            log.debug("Revalidating cache entry");
+            requestProducer.releaseResources();
+            revalidateCacheEntry(target, request, entry, responseConsumer, context, future);
+        } else {
+            log.debug("Cache entry not usable; calling backend");
+            callBackendAndCache(target, request, requestProducer, responseConsumer, context, future);
+        }
+    }
+
+    private <T> void callBackend(
+            final AsyncRequestProducer requestProducer,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final HttpClientContext context,
+            final BasicFuture<T> future) {
+        log.trace("Calling the backend");
+        backend.execute(requestProducer, responseConsumer, context, new ResultCallback<>(future));
+    }
+
+    private <T> void callBackendAndCache(
+            final HttpHost target,
+            final HttpRequest request,
+            final AsyncRequestProducer requestProducer,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final HttpClientContext context,
+            final BasicFuture<T> future) {
+        callBackend(
+                requestProducer,
+                new CachingResponseConsumer<>(target, request, new Date(), responseConsumer),
+                context,
+                future);
+    }
+
+    private <T> void revalidateCacheEntry(
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpCacheEntry entry,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final HttpClientContext context,
+            final BasicFuture<T> future) {
+        final HttpRequest conditionalRequest = conditionalRequestBuilder.buildConditionalRequest(target, request, entry);
+        final Date requestDate = new Date();
+        backend.execute(
+                new BasicRequestProducer(conditionalRequest, null),
+                new RevalidatingResponseConsumer<>(target, request, entry, requestDate, responseConsumer, context),
+                context,
+                new FutureCallback<T>() {
+
+                    @Override
+                    public void completed(final T result) {
+                        future.completed(result);
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        if (ex instanceof IOException && !staleResponseNotAllowed(request, entry, new Date())) {
+                            log.debug("Revalidation failed; serving stale cache entry");
+                            final ClassicHttpResponse cachedResponse = responseGenerator.generateResponse(request, entry);
+                            setResponseStatus(context, CacheResponseStatus.CACHE_HIT);
+                            cachedResponse.addHeader(HeaderConstants.WARNING, "111 localhost \"Revalidation failed\"");
+                            serveResponse(cachedResponse, responseConsumer, new ResultCallback<>(future));
+                        } else {
+                            future.failed(ex);
+                        }
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        future.cancel();
+                    }
+
+                });
+    }
+
+    /**
+     * Feeds a response generated from the cache to the response consumer.
+     */
+    private <T> void serveResponse(
+            final ClassicHttpResponse response,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final FutureCallback<T> callback) {
+        try {
+            final HttpEntity entity = response.getEntity();
+            responseConsumer.consumeResponse(response, entity, callback);
+            if (entity != null) {
+                responseConsumer.updateCapacity(NOOP_CAPACITY_CHANNEL);
+                try (final InputStream instream = entity.getContent()) {
+                    final byte[] buffer = new byte[4096];
+                    int l;
+                    while ((l = instream.read(buffer)) != -1) {
+                        responseConsumer.consume(ByteBuffer.wrap(buffer, 0, l));
+                    }
+                }
+                responseConsumer.streamEnd(null);
+            }
+        } catch (final HttpException | IOException | RuntimeException ex) {
+            responseConsumer.failed(ex);
+            callback.failed(ex);
+        } finally {
+            responseConsumer.releaseResources();
+        }
+    }
+
+    private void executeCacheOperation(final BasicFuture<?> future, final CacheOperation operation) {
+        final Runnable runnable = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    operation.execute();
+                } catch (final Exception ex) {
+                    future.failed(ex);
+                }
+            }
+
+        };
+        executor.execute(runnable);
+    }
+
+    private void executeCacheOperation(final CacheOperation operation) {
+        final Runnable runnable = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    operation.execute();
+                } catch (final Exception ex) {
+                    log.warn("Unable to update cache", ex);
+                }
+            }
+
+        };
+        executor.execute(runnable);
+    }
+
+    private ClassicHttpResponse generateCachedResponse(
+            final HttpRequest request, final HttpContext context, final HttpCacheEntry entry, final Date now) {
+        final ClassicHttpResponse cachedResponse;
+        if (request.containsHeader(HeaderConstants.IF_NONE_MATCH)
+                || request.containsHeader(HeaderConstants.IF_MODIFIED_SINCE)) {
+            cachedResponse = responseGenerator.generateNotModifiedResponse(entry);
+        } else {
+            cachedResponse = responseGenerator.generateResponse(request, entry);
+        }
+        setResponseStatus(context, CacheResponseStatus.CACHE_HIT);
+        if (validityPolicy.getStalenessSecs(entry, now) > 0L) {
+            cachedResponse.addHeader(HeaderConstants.WARNING, "110 localhost \"Response is stale\"");
+        }
+        return cachedResponse;
+    }
+
+    private ClassicHttpResponse generateGatewayTimeout(final HttpContext context) {
+        setResponseStatus(context, CacheResponseStatus.CACHE_MODULE_RESPONSE);
+        return new BasicClassicHttpResponse(HttpStatus.SC_GATEWAY_TIMEOUT, "Gateway Timeout");
+    }
+
+    private boolean staleResponseNotAllowed(final HttpRequest request, final HttpCacheEntry entry, final Date now) {
+        return validityPolicy.mustRevalidate(entry)
+            || (cacheConfig.isSharedCache() && validityPolicy.proxyRevalidate(entry))
+            || explicitFreshnessRequest(request, entry, now);
+    }
+
+    private boolean explicitFreshnessRequest(final HttpRequest request, final HttpCacheEntry entry, final Date now) {
+        final Iterator<HeaderElement> it = MessageSupport.iterate(request, HeaderConstants.CACHE_CONTROL);
+        while (it.hasNext()) {
+            final HeaderElement elt = it.next();
+            if (HeaderConstants.CACHE_CONTROL_MAX_STALE.equals(elt.getName())) {
+                try {
+                    final int maxstale = Integer.parseInt(elt.getValue());
+                    final long age = validityPolicy.getCurrentAgeSecs(entry, now);
+                    final long lifetime = validityPolicy.getFreshnessLifetimeSecs(entry);
+                    if (age - lifetime > maxstale) {
+                        return true;
+                    }
+                } catch (final NumberFormatException nfe) {
+                    return true;
+                }
+            } else if (HeaderConstants.CACHE_CONTROL_MIN_FRESH.equals(elt.getName())
+                    || HeaderConstants.CACHE_CONTROL_MAX_AGE.equals(elt.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mayCallBackend(final HttpRequest request) {
+        final Iterator<HeaderElement> it = MessageSupport.iterate(request, HeaderConstants.CACHE_CONTROL);
+        while (it.hasNext()) {
+            final HeaderElement elt = it.next();
+            if ("only-if-cached".equals(elt.getName())) {
+                log.trace("Request marked only-if-cached");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recordCacheMiss(final HttpHost target, final HttpRequest request) {
+        cacheMisses.getAndIncrement();
+        if (log.isTraceEnabled()) {
+            log.trace("Cache miss [host: " + target + "; uri: " + request.getRequestUri() + "]");
+        }
+    }
+
+    private void recordCacheHit(final HttpHost target, final HttpRequest request) {
+        cacheHits.getAndIncrement();
+        if (log.isTraceEnabled()) {
+            log.trace("Cache hit [host: " + target + "; uri: " + request.getRequestUri() + "]");
+        }
+    }
+
+    private void recordCacheUpdate(final HttpContext context) {
+        cacheUpdates.getAndIncrement();
+        setResponseStatus(context, CacheResponseStatus.VALIDATED);
+    }
+
+    private void flushEntriesInvalidatedByRequest(final HttpHost target, final HttpRequest request) {
+        try {
+            responseCache.flushInvalidatedCacheEntriesFor(target, request);
+        } catch (final IOException ioe) {
+            log.warn("Unable to flush invalidated entries from cache", ioe);
+        }
+    }
+
+    private void setResponseStatus(final HttpContext context, final CacheResponseStatus value) {
+        if (context != null) {
+            context.setAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS, value);
+        }
+    }
+
+    private static final CapacityChannel NOOP_CAPACITY_CHANNEL = new CapacityChannel() {
+
+        @Override
+        public void update(final int increment) {
+        }
+
+    };
+
+    interface CacheOperation {
+
+        void execute() throws IOException, HttpException;
+
+    }
+
+    /**
+     * Executes cache operations one after another in the order
+     * they have been submitted.
+     */
+    private class CacheOperationSequence implements Runnable {
+
+        private final Queue<CacheOperation> operations = new ArrayDeque<>();
+        private boolean running;
+
+        void submit(final CacheOperation operation) {
+            synchronized (this) {
+                operations.add(operation);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                final CacheOperation operation;
+                synchronized (this) {
+                    operation = operations.poll();
+                    if (operation == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    operation.execute();
+                } catch (final Exception ex) {
+                    log.warn("Unable to update cache", ex);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Hands out a request that has already been produced by the given producer
+     * and passes everything else through to it.
+     */
+    private static class ProducedRequestProducer implements AsyncRequestProducer, Configurable {
+
+        private final HttpRequest request;
+        private final AsyncRequestProducer requestProducer;
+
+        ProducedRequestProducer(final HttpRequest request, final AsyncRequestProducer requestProducer) {
+            this.request = request;
+            this.requestProducer = requestProducer;
+        }
+
+        @Override
+        public RequestConfig getConfig() {
+            return requestProducer instanceof Configurable ? ((Configurable) requestProducer).getConfig() : null;
+        }
+
+        @Override
+        public HttpRequest produceRequest() {
+            return request;
+        }
+
+        @Override
+        public EntityDetails getEntityDetails() {
+            return requestProducer.getEntityDetails();
+        }
+
+        @Override
+        public int available() {
+            return requestProducer.available();
+        }
+
+        @Override
+        public void produce(final DataStreamChannel channel) throws IOException {
+            requestProducer.produce(channel);
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            requestProducer.failed(cause);
+        }
+
+        @Override
+        public void releaseResources() {
+            requestProducer.releaseResources();
+        }
+
+    }
+
+    private static class ResultCallback<T> implements FutureCallback<T> {
+
+        private final BasicFuture<T> future;
+
+        ResultCallback(final BasicFuture<T> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void completed(final T result) {
+            future.completed(result);
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            future.failed(ex);
+        }
+
+        @Override
+        public void cancelled() {
+            future.cancel();
+        }
+
+    }
+
+    /**
+     * Passes the response through to the given consumer while capturing
+     * the content of cacheable responses up to the maximum object size.
+     */
+    private class CachingResponseConsumer<T> implements AsyncResponseConsumer<T> {
+
+        private final HttpHost target;
+        private final HttpRequest request;
+        private final Date requestDate;
+        private final AsyncResponseConsumer<T> responseConsumer;
+        private final CacheOperationSequence cacheOperations;
+
+        private volatile HttpResponse response;
+        private volatile Date responseDate;
+        private volatile ByteArrayBuffer buffer;
+
+        CachingResponseConsumer(
+                final HttpHost target,
+                final HttpRequest request,
+                final Date requestDate,
+                final AsyncResponseConsumer<T> responseConsumer) {
+            this.target = target;
+            this.request = request;
+            this.requestDate = requestDate;
+            this.responseConsumer = responseConsumer;
+            this.cacheOperations = new CacheOperationSequence();
+        }
+
+        @Override
+        public void consumeResponse(
+                final HttpResponse response,
+                final EntityDetails entityDetails,
+                final FutureCallback<T> resultCallback) throws HttpException, IOException {
+            this.response = response;
+            this.responseDate = new Date();
+            final boolean cacheable = responseCachingPolicy.isResponseCacheable(request, response);
+            // Entries invalidated by the response must be flushed before it gets stored
+            cacheOperations.submit(new CacheOperation() {
+
+                @Override
+                public void execute() throws IOException {
+                    responseCache.flushInvalidatedCacheEntriesFor(target, request, response);
+                    if (!cacheable) {
+                        responseCache.flushCacheEntriesFor(target, request);
+                    }
+                }
+
+            });
+            if (cacheable) {
+                if (entityDetails == null) {
+                    storeResponse(null);
+                } else {
+                    final long contentLength = entityDetails.getContentLength();
+                    if (contentLength <= cacheConfig.getMaxObjectSize()) {
+                        this.buffer = new ByteArrayBuffer(contentLength > 0 ? (int) contentLength : 1024);
+                    }
+                }
+            }
+            responseConsumer.consumeResponse(response, entityDetails, resultCallback);
+        }
+
+        @Override
+        public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+            responseConsumer.updateCapacity(capacityChannel);
+        }
+
+        @Override
+        public int consume(final ByteBuffer src) throws IOException {
+            final ByteArrayBuffer currentBuffer = this.buffer;
+            if (currentBuffer != null) {
+                if (currentBuffer.length() + src.remaining() > cacheConfig.getMaxObjectSize()) {
+                    log.debug("Response content exceeds maximum object size; not caching");
+                    this.buffer = null;
+                } else {
+                    final ByteBuffer copy = src.duplicate();
+                    if (copy.hasArray()) {
+                        currentBuffer.append(copy.array(), copy.arrayOffset() + copy.position(), copy.remaining());
+                    } else {
+                        final byte[] b = new byte[copy.remaining()];
+                        copy.get(b);
+                        currentBuffer.append(b, 0, b.length);
+                    }
+                }
+            }
+            return responseConsumer.consume(src);
+        }
+
+        @Override
+        public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+            final ByteArrayBuffer currentBuffer = this.buffer;
+            if (currentBuffer != null) {
+                this.buffer = null;
+                storeResponse(currentBuffer);
+            }
+            responseConsumer.streamEnd(trailers);
+        }
+
+        private void storeResponse(final ByteArrayBuffer content) {
+            final HttpResponse originResponse = this.response;
+            final Date receivedDate = this.responseDate;
+            cacheOperations.submit(new CacheOperation() {
+
+                @Override
+                public void execute() throws IOException {
+                    responseCache.createCacheEntry(target, request, originResponse, content, requestDate, receivedDate);
+                }
+
+            });
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            this.buffer = null;
+            responseConsumer.failed(cause);
+        }
+
+        @Override
+        public void releaseResources() {
+            this.buffer = null;
+            responseConsumer.releaseResources();
+        }
+
+    }
+
+    /**
+     * Handles the response to a conditional request: the cache entry is updated
+     * and served on {@code 304 Not Modified}, the stale entry is served on server
+     * errors if permitted, all other responses are passed through and cached.
+     */
+    private class RevalidatingResponseConsumer<T> implements AsyncResponseConsumer<T> {
+
+        private final HttpHost target;
+        private final HttpRequest request;
+        private final HttpCacheEntry entry;
+        private final Date requestDate;
+        private final AsyncResponseConsumer<T> responseConsumer;
+        private final HttpContext context;
+        private final CachingResponseConsumer<T> cachingConsumer;
+
+        private volatile boolean discard;
+
+        RevalidatingResponseConsumer(
+                final HttpHost target,
+                final HttpRequest request,
+                final HttpCacheEntry entry,
+                final Date requestDate,
+                final AsyncResponseConsumer<T> responseConsumer,
+                final HttpContext context) {
+            this.target = target;
+            this.request = request;
+            this.entry = entry;
+            this.requestDate = requestDate;
+            this.responseConsumer = responseConsumer;
+            this.context = context;
+            this.cachingConsumer = new CachingResponseConsumer<>(target, request, requestDate, responseConsumer);
+        }
+
+        @Override
+        public void consumeResponse(
+                final HttpResponse response,
+                final EntityDetails entityDetails,
+                final FutureCallback<T> resultCallback) throws HttpException, IOException {
+            final Date responseDate = new Date();
+            final int statusCode = response.getCode();
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_OK) {
+                recordCacheUpdate(context);
+            }
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                this.discard = true;
+                executeCacheOperation(new CacheOperation() {
+
+                    @Override
+                    public void execute() throws IOException {
+                        final HttpCacheEntry updatedEntry = responseCache.updateCacheEntry(
+                                target, request, entry, response, requestDate, responseDate);
+                        final ClassicHttpResponse cachedResponse;
+                        if (suitabilityChecker.isConditional(request)
+                                && suitabilityChecker.allConditionalsMatch(request, updatedEntry, new Date())) {
+                            cachedResponse = responseGenerator.generateNotModifiedResponse(updatedEntry);
+                        } else {
+                            cachedResponse = responseGenerator.generateResponse(request, updatedEntry);
+                        }
+                        serveResponse(cachedResponse, responseConsumer, resultCallback);
+                    }
+
+                });
+                return;
+            }
+            if ((statusCode == HttpStatus.SC_INTERNAL_SERVER_ERROR
+                    || statusCode == HttpStatus.SC_BAD_GATEWAY
+                    || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+                    || statusCode == HttpStatus.SC_GATEWAY_TIMEOUT)
+                    && !staleResponseNotAllowed(request, entry, new Date())
+                    && validityPolicy.mayReturnStaleIfError(request, entry, responseDate)) {
+                this.discard = true;
+                final ClassicHttpResponse cachedResponse = responseGenerator.generateResponse(request, entry);
+                cachedResponse.addHeader(HeaderConstants.WARNING, "110 localhost \"Response is stale\"");
+                executeCacheOperation(new CacheOperation() {
+
+                    @Override
+                    public void execute() {
+                        serveResponse(cachedResponse, responseConsumer, resultCallback);
+                    }
+
+                });
+                return;
+            }
+            cachingConsumer.consumeResponse(response, entityDetails, resultCallback);
+        }
+
+        @Override
+        public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+            if (discard) {
+                capacityChannel.update(Integer.MAX_VALUE);
+            } else {
+                cachingConsumer.updateCapacity(capacityChannel);
+            }
+        }
+
+        @Override
+        public int consume(final ByteBuffer src) throws IOException {
+            if (discard) {
+                ((Buffer) src).position(src.limit());
+                return Integer.MAX_VALUE;
+            }
+            return cachingConsumer.consume(src);
+        }
+
+        @Override
+        public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+            if (!discard) {
+                cachingConsumer.streamEnd(trailers);
+            }
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            if (!discard) {
+                cachingConsumer.failed(cause);
+            }
+        }
+
+        @Override
+        public void releaseResources() {
+            if (!discard) {
+                cachingConsumer.releaseResources();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+
+/**
+ * Builder for {@link CloseableHttpAsyncClient} instances capable of
+ * client-side caching.
+ *
+ * @since 5.0
+ */
+public class CachingHttpAsyncClientBuilder extends HttpAsyncClientBuilder {
+
+    private ResourceFactory resourceFactory;
+    private HttpCacheStorage storage;
+    private File cacheDir;
+    private CacheConfig cacheConfig;
+    private HttpCacheInvalidator httpCacheInvalidator;
+    private ExecutorService cacheExecutor;
+    private boolean deleteCache;
+
+    public static CachingHttpAsyncClientBuilder create() {
+        return new CachingHttpAsyncClientBuilder();
+    }
+
+    protected CachingHttpAsyncClientBuilder() {
+        super();
+        this.deleteCache = true;
+    }
+
+    public final CachingHttpAsyncClientBuilder setResourceFactory(
+            final ResourceFactory resourceFactory) {
+        this.resourceFactory = resourceFactory;
+        return this;
+    }
+
+    public final CachingHttpAsyncClientBuilder setHttpCacheStorage(
+            final HttpCacheStorage storage) {
+        this.storage = storage;
+        return this;
+    }
+
+    public final CachingHttpAsyncClientBuilder setCacheDir(
+            final File cacheDir) {
+        this.cacheDir = cacheDir;
+        return this;
+    }
+
+    public final CachingHttpAsyncClientBuilder setCacheConfig(
+            final CacheConfig cacheConfig) {
+        this.cacheConfig = cacheConfig;
+        return this;
+    }
+
+    public final CachingHttpAsyncClientBuilder setHttpCacheInvalidator(
+            final HttpCacheInvalidator cacheInvalidator) {
+        this.httpCacheInvalidator = cacheInvalidator;
+        return this;
+    }
+
+    /**
+     * Assigns {@link ExecutorService} used to perform cache storage operations
+     * off the I/O reactor threads. If not set a dedicated thread pool sized
+     * by {@link CacheConfig#getAsynchronousWorkersMax()} is created and shut
+     * down together with the client.
+     * <p>
+     * Please note the executor service is not shut down when the client is
+     * closed if set explicitly.
+     * </p>
+     */
+    public final CachingHttpAsyncClientBuilder setCacheExecutor(
+            final ExecutorService cacheExecutor) {
+        this.cacheExecutor = cacheExecutor;
+        return this;
+    }
+
+    public CachingHttpAsyncClientBuilder setDeleteCache(final boolean deleteCache) {
+        this.deleteCache = deleteCache;
+        return this;
+    }
+
+    @Override
+    public CloseableHttpAsyncClient build() {
+        final CacheConfig config = this.cacheConfig != null ? this.cacheConfig : CacheConfig.DEFAULT;
+        // We copy the instance fields to avoid changing them, and rename to avoid accidental use of the wrong version
+        ResourceFactory resourceFactoryCopy = this.resourceFactory;
+        if (resourceFactoryCopy == null) {
+            if (this.cacheDir == null) {
+                resourceFactoryCopy = new HeapResourceFactory();
+            } else {
+                resourceFactoryCopy = new FileResourceFactory(cacheDir);
+            }
+        }
+        HttpCacheStorage storageCopy = this.storage;
+        if (storageCopy == null) {
+            if (this.cacheDir == null) {
+                storageCopy = new ConcurrentHttpCacheStorage(config);
+            } else {
+                final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(config);
+                if (this.deleteCache) {
+                    addCloseable(new Closeable() {
+
+                        @Override
+                        public void close() throws IOException {
+                            managedStorage.shutdown();
+                        }
+
+                    });
+                } else {
+                    addCloseable(managedStorage);
+                }
+                storageCopy = managedStorage;
+            }
+        }
+        final CacheKeyGenerator uriExtractor = new CacheKeyGenerator();
+
+        HttpCacheInvalidator cacheInvalidator = this.httpCacheInvalidator;
+        if (cacheInvalidator == null) {
+            cacheInvalidator = new CacheInvalidator(uriExtractor, storageCopy);
+        }
+
+        return new CachingHttpAsyncClient(
+                super.build(),
+                new BasicHttpCache(
+                        resourceFactoryCopy,
+                        storageCopy, config,
+                        uriExtractor,
+                        cacheInvalidator),
+                config,
+                cacheExecutor);
+    }
+
+}
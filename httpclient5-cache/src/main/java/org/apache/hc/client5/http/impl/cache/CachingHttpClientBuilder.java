@@ -117,7 +117,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
         HttpCacheStorage storageCopy = this.storage;
         if (storageCopy == null) {
             if (this.cacheDir == null) {
-                storageCopy = new BasicHttpCacheStorage(config);
+                storageCopy = new ConcurrentHttpCacheStorage(config);
             } else {
                 final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(config);
                 if (this.deleteCache) {
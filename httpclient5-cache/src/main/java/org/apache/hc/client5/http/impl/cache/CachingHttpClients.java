@@ -62,6 +62,22 @@ public class CachingHttpClients {
         return CachingHttpClientBuilder.create().build();
     }
 
+    /**
+     * Creates {@link CloseableHttpClient} instance that keeps response bodies
+     * outside of the Java heap.
+     *
+     * @param capacity maximum number of bytes of off-heap memory to use
+     *   for response bodies.
+     *
+     * @see SlabResourceFactory
+     * @since 5.0
+     */
+    public static CloseableHttpClient createOffHeapBound(final long capacity) {
+        return CachingHttpClientBuilder.create()
+                .setResourceFactory(new SlabResourceFactory(capacity))
+                .build();
+    }
+
     /**
      * Creates {@link CloseableHttpClient} instance that uses a file system
      * bound response cache.
@@ -0,0 +1,533 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * In-memory {@link HttpCacheStorage} implementation optimized for concurrent
+ * read access. Cache entries are held in a {@link ConcurrentHashMap}, so
+ * lookups do not require any locking. Accesses are recorded in lossy
+ * striped buffers and applied to the eviction policy in batches, while
+ * modifications are serialized by a single lock.
+ * <p>
+ * Entries are evicted in accordance with the W-TinyLFU policy: new entries
+ * are admitted to a small LRU window; entries leaving the window compete with
+ * the least recently used entry of the main segmented LRU area and are only
+ * retained if they have been accessed more often in the recent past, as
+ * estimated with a {@link FrequencySketch}. The storage is bounded both by
+ * the number of entries and by the total length of the cached response bodies.
+ * </p>
+ * <p>
+ * Like {@link BasicHttpCacheStorage} this storage does NOT deallocate resources
+ * associated with evicted entries. Wrap it with {@link ManagedHttpCacheStorage}
+ * when using {@link FileResource} and similar.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class ConcurrentHttpCacheStorage implements HttpCacheStorage {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEAD = 3;
+
+    private static final int READ_BUFFER_SIZE = 32;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private final ConcurrentMap<String, Node> map;
+    private final ReentrantLock evictionLock;
+    private final ReadBuffer[] readBuffers;
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque window;
+    private final AccessOrderDeque probation;
+    private final AccessOrderDeque protectedArea;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxWindow;
+    private final int maxProtected;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
+
+    // Guarded by evictionLock
+    private int entryCount;
+    private long totalBytes;
+    private int windowCount;
+    private int protectedCount;
+
+    /**
+     * @param maxEntries the maximum number of cache entries.
+     * @param maxBytes the maximum total length of cached response bodies.
+     */
+    public ConcurrentHttpCacheStorage(final int maxEntries, final long maxBytes) {
+        super();
+        Args.positive(maxEntries, "Max entries");
+        Args.positive(maxBytes, "Max bytes");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxWindow = Math.max(1, maxEntries / 100);
+        this.maxProtected = (int) ((maxEntries - this.maxWindow) * 0.8d);
+        this.map = new ConcurrentHashMap<>();
+        this.evictionLock = new ReentrantLock();
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 16) {
+            stripes <<= 1;
+        }
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.readBuffers[i] = new ReadBuffer();
+        }
+        this.sketch = new FrequencySketch(maxEntries);
+        this.window = new AccessOrderDeque();
+        this.probation = new AccessOrderDeque();
+        this.protectedArea = new AccessOrderDeque();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+    }
+
+    public ConcurrentHttpCacheStorage(final CacheConfig config) {
+        this(config.getMaxCacheEntries(), config.getMaxCacheSize());
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String url) throws IOException {
+        Args.notNull(url, "URL");
+        final Node node = this.map.get(url);
+        if (node == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+        this.hitCount.incrementAndGet();
+        final ReadBuffer buffer = this.readBuffers[(int) Thread.currentThread().getId() & (this.readBuffers.length - 1)];
+        if (buffer.offer(node) >= READ_BUFFER_DRAIN_THRESHOLD && this.evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    @Override
+    public void putEntry(final String url, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(url, "URL");
+        Args.notNull(entry, "Cache entry");
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            put(url, entry);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeEntry(final String url) throws IOException {
+        Args.notNull(url, "URL");
+        this.evictionLock.lock();
+        try {
+            final Node node = this.map.remove(url);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEntry(
+            final String url,
+            final HttpCacheUpdateCallback callback) throws IOException {
+        Args.notNull(url, "URL");
+        Args.notNull(callback, "Callback");
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            final Node node = this.map.get(url);
+            final HttpCacheEntry updated = callback.update(node != null ? node.value : null);
+            if (updated != null) {
+                put(url, updated);
+            } else if (node != null) {
+                this.map.remove(url, node);
+                unlink(node);
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        this.evictionLock.lock();
+        try {
+            drainReadBuffers();
+            for (final Node node: this.map.values()) {
+                unlink(node);
+            }
+            this.map.clear();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current number of cache entries.
+     */
+    public int size() {
+        return this.map.size();
+    }
+
+    /**
+     * Returns the current total length of the cached response bodies.
+     */
+    public long getTotalBytes() {
+        this.evictionLock.lock();
+        try {
+            return this.totalBytes;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Returns the ratio of lookups that found an entry or {@code 1.0}
+     * if no lookup has been made yet.
+     */
+    public double getHitRate() {
+        final long hits = this.hitCount.get();
+        final long total = hits + this.missCount.get();
+        return total > 0 ? (double) hits / total : 1.0d;
+    }
+
+    @Override
+    public String toString() {
+        return "[entries: " + this.map.size() + "; hits: " + this.hitCount + "; misses: " + this.missCount
+                + "; evictions: " + this.evictionCount + "]";
+    }
+
+    private static long weigh(final HttpCacheEntry entry) {
+        final Resource resource = entry.getResource();
+        return resource != null ? Math.max(0L, resource.length()) : 0L;
+    }
+
+    private void put(final String url, final HttpCacheEntry entry) {
+        final long weight = weigh(entry);
+        Node node = this.map.get(url);
+        if (weight > this.maxBytes) {
+            // Too large to be ever retained
+            if (node != null) {
+                this.map.remove(url, node);
+                unlink(node);
+            }
+            this.evictionCount.incrementAndGet();
+            return;
+        }
+        if (node != null) {
+            node.value = entry;
+            this.totalBytes += weight - node.weight;
+            node.weight = weight;
+            onAccess(node);
+        } else {
+            node = new Node(url, entry, weight);
+            this.map.put(url, node);
+            this.sketch.increment(url);
+            node.queue = WINDOW;
+            this.window.addLast(node);
+            this.windowCount++;
+            this.entryCount++;
+            this.totalBytes += weight;
+        }
+        evict();
+    }
+
+    private void drainReadBuffers() {
+        for (final ReadBuffer buffer: this.readBuffers) {
+            buffer.drain(this);
+        }
+    }
+
+    private void onAccess(final Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                this.sketch.increment(node.key);
+                this.window.moveToBack(node);
+                break;
+            case PROBATION:
+                this.sketch.increment(node.key);
+                this.probation.remove(node);
+                node.queue = PROTECTED;
+                this.protectedArea.addLast(node);
+                this.protectedCount++;
+                // Demote least recently used protected entries
+                while (this.protectedCount > this.maxProtected) {
+                    final Node demoted = this.protectedArea.pollFirst();
+                    this.protectedCount--;
+                    demoted.queue = PROBATION;
+                    this.probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                this.sketch.increment(node.key);
+                this.protectedArea.moveToBack(node);
+                break;
+            default:
+                // Entry has already been removed
+        }
+    }
+
+    private void unlink(final Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                this.window.remove(node);
+                this.windowCount--;
+                break;
+            case PROBATION:
+                this.probation.remove(node);
+                break;
+            case PROTECTED:
+                this.protectedArea.remove(node);
+                this.protectedCount--;
+                break;
+            default:
+                return;
+        }
+        node.queue = DEAD;
+        this.entryCount--;
+        this.totalBytes -= node.weight;
+    }
+
+    private void evict() {
+        // Entries leaving the window become candidates for the main area
+        int candidates = 0;
+        while (this.windowCount > this.maxWindow) {
+            final Node node = this.window.pollFirst();
+            this.windowCount--;
+            node.queue = PROBATION;
+            this.probation.addLast(node);
+            candidates++;
+        }
+        while (this.entryCount > this.maxEntries || this.totalBytes > this.maxBytes) {
+            final Node victim;
+            if (candidates > 0 && this.probation.size() > 1) {
+                // Admit the candidate only if it is estimated to be used
+                // more often than the least recently used entry
+                final Node candidate = this.probation.peekLast();
+                final Node lru = this.probation.peekFirst();
+                if (this.sketch.frequency(candidate.key) > this.sketch.frequency(lru.key)) {
+                    victim = lru;
+                } else {
+                    victim = candidate;
+                    candidates--;
+                }
+            } else if (!this.probation.isEmpty()) {
+                victim = this.probation.peekFirst();
+            } else if (!this.protectedArea.isEmpty()) {
+                victim = this.protectedArea.peekFirst();
+            } else {
+                victim = this.window.peekFirst();
+            }
+            if (victim == null) {
+                break;
+            }
+            this.map.remove(victim.key, victim);
+            unlink(victim);
+            this.evictionCount.incrementAndGet();
+        }
+    }
+
+    static final class Node {
+
+        final String key;
+        volatile HttpCacheEntry value;
+
+        // Guarded by evictionLock
+        long weight;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(final String key, final HttpCacheEntry value, final long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+    /**
+     * Doubly linked list of nodes ordered from the least to the most recently used.
+     */
+    static final class AccessOrderDeque {
+
+        private Node first;
+        private Node last;
+        private int size;
+
+        int size() {
+            return this.size;
+        }
+
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        Node peekFirst() {
+            return this.first;
+        }
+
+        Node peekLast() {
+            return this.last;
+        }
+
+        void addLast(final Node node) {
+            node.prev = this.last;
+            node.next = null;
+            if (this.last != null) {
+                this.last.next = node;
+            } else {
+                this.first = node;
+            }
+            this.last = node;
+            this.size++;
+        }
+
+        void remove(final Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                this.first = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                this.last = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            this.size--;
+        }
+
+        Node pollFirst() {
+            final Node node = this.first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void moveToBack(final Node node) {
+            if (node != this.last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+    }
+
+    /**
+     * Bounded buffer of recent reads. Reads are dropped when the buffer is full
+     * as the eviction policy does not require every access to be recorded.
+     */
+    static final class ReadBuffer {
+
+        private final AtomicReferenceArray<Node> buffer;
+        private final AtomicLong writeCounter;
+        private volatile long readCounter;
+
+        ReadBuffer() {
+            this.buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+            this.writeCounter = new AtomicLong();
+        }
+
+        /**
+         * Records the read and returns the number of pending reads.
+         */
+        long offer(final Node node) {
+            final long head = this.readCounter;
+            final long tail = this.writeCounter.get();
+            final long pending = tail - head;
+            if (pending < READ_BUFFER_SIZE && this.writeCounter.compareAndSet(tail, tail + 1)) {
+                this.buffer.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), node);
+                return pending + 1;
+            }
+            return pending;
+        }
+
+        void drain(final ConcurrentHttpCacheStorage storage) {
+            long head = this.readCounter;
+            final long tail = this.writeCounter.get();
+            while (head < tail) {
+                final int index = (int) (head & (READ_BUFFER_SIZE - 1));
+                final Node node = this.buffer.get(index);
+                if (node == null) {
+                    // Not yet published
+                    break;
+                }
+                this.buffer.lazySet(index, null);
+                storage.onAccess(node);
+                head++;
+            }
+            this.readCounter = head;
+        }
+
+    }
+
+}
@@ -36,7 +36,10 @@ import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.ProtocolException;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
 import org.apache.hc.core5.http.message.MessageSupport;
 
 /**
@@ -60,6 +63,31 @@ class ConditionalRequestBuilder {
             throws ProtocolException {
         final RoutedHttpRequest newRequest = RoutedHttpRequest.adapt(request.getOriginal(), request.getRoute());
         newRequest.setHeaders(request.getAllHeaders());
+        addConditionalHeaders(newRequest, cacheEntry);
+        return newRequest;
+    }
+
+    /**
+     * Builds a conditional request to revalidate the given cache entry with the origin
+     * for requests that are not executed through the classic execution chain.
+     *
+     * @param target the target host
+     * @param request the original request from the caller
+     * @param cacheEntry the entry that needs to be re-validated
+     * @return the new request
+     *
+     * @since 5.0
+     */
+    public HttpRequest buildConditionalRequest(
+            final HttpHost target, final HttpRequest request, final HttpCacheEntry cacheEntry) {
+        final BasicHttpRequest newRequest = new BasicHttpRequest(request.getMethod(), target, request.getPath());
+        newRequest.setVersion(request.getVersion());
+        newRequest.setHeaders(request.getAllHeaders());
+        addConditionalHeaders(newRequest, cacheEntry);
+        return newRequest;
+    }
+
+    private void addConditionalHeaders(final HttpRequest newRequest, final HttpCacheEntry cacheEntry) {
         final Header eTag = cacheEntry.getFirstHeader(HeaderConstants.ETAG);
         if (eTag != null) {
             newRequest.setHeader(HeaderConstants.IF_NONE_MATCH, eTag.getValue());
@@ -81,8 +109,6 @@ class ConditionalRequestBuilder {
         if (mustRevalidate) {
             newRequest.addHeader(HeaderConstants.CACHE_CONTROL, HeaderConstants.CACHE_CONTROL_MAX_AGE + "=0");
         }
-        return newRequest;
-
     }
 
     /**
@@ -35,6 +35,7 @@ import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.util.ByteArrayBuffer;
 
 /**
  * @since 4.1
@@ -104,6 +105,25 @@ interface HttpCache {
                                                Date requestSent, Date responseReceived)
         throws IOException;
 
+    /**
+     * Store a {@link HttpResponse} whose content has already been received
+     * in the cache if possible.
+     * @param host
+     * @param request
+     * @param originResponse
+     * @param content the response content or {@code null} if the response
+     *   does not enclose any
+     * @param requestSent
+     * @param responseReceived
+     * @return the stored {@link HttpCacheEntry} or {@code null} if the content
+     *   is incomplete
+     * @throws IOException
+     */
+    HttpCacheEntry createCacheEntry(
+            HttpHost host, HttpRequest request, HttpResponse originResponse, ByteArrayBuffer content,
+            Date requestSent, Date responseReceived)
+        throws IOException;
+
     /**
      * Update a {@link HttpCacheEntry} using a 304 {@link HttpResponse}.
      * @param target
@@ -29,13 +29,15 @@ package org.apache.hc.client5.http.impl.cache;
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
@@ -51,12 +53,14 @@ import org.apache.hc.core5.util.Args;
  * are no longer in use. The cache, however, does not automatically deallocates associated
  * resources by invoking {@link Resource#dispose()} method. The consumer MUST periodically
  * call {@link #cleanResources()} method to trigger resource deallocation. The cache can be
- * permanently shut down using {@link #shutdown()} method. All resources associated with
- * the entries used by the cache will be deallocated.
+ * permanently shut down using {@link #shutdown()} method. All entries with resources
+ * are then removed from the underlying storage and the resources used by the cache
+ * will be deallocated.
  * </p>
  * <p>
  * This {@link HttpCacheStorage} implementation is intended for use with {@link FileResource}
- * and similar.
+ * and similar. Cache entries themselves are kept by an in-memory storage such as
+ * {@link ConcurrentHttpCacheStorage}, which is used by default.
  * </p>
  * <p>
  * Compatibility note. Prior to version 4.4 this storage implementation used to dispose of
@@ -74,30 +78,44 @@ import org.apache.hc.core5.util.Args;
 @Contract(threading = ThreadingBehavior.SAFE)
 public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
 
-    private final CacheMap entries;
+    private final HttpCacheStorage storage;
     private final ReferenceQueue<HttpCacheEntry> morque;
     private final Set<ResourceReference> resources;
     private final AtomicBoolean active;
 
-    public ManagedHttpCacheStorage(final CacheConfig config) {
+    /**
+     * Creates a managed storage on top of the given in-memory storage.
+     *
+     * @param storage the storage to keep cache entries in. It is expected to hold
+     *   entries in memory and to drop references to evicted entries. Entries with
+     *   resources get removed from the storage on {@link #shutdown()}.
+     *
+     * @since 5.0
+     */
+    public ManagedHttpCacheStorage(final HttpCacheStorage storage) {
         super();
-        this.entries = new CacheMap(config.getMaxCacheEntries());
+        Args.notNull(storage, "Cache storage");
+        this.storage = storage;
         this.morque = new ReferenceQueue<>();
-        this.resources = new HashSet<>();
+        this.resources = Collections.newSetFromMap(new ConcurrentHashMap<ResourceReference, Boolean>());
         this.active = new AtomicBoolean(true);
     }
 
+    public ManagedHttpCacheStorage(final CacheConfig config) {
+        this(new ConcurrentHttpCacheStorage(config));
+    }
+
     private void ensureValidState() throws IllegalStateException {
         if (!this.active.get()) {
             throw new IllegalStateException("Cache has been shut down");
         }
     }
 
-    private void keepResourceReference(final HttpCacheEntry entry) {
+    private void keepResourceReference(final String url, final HttpCacheEntry entry) {
         final Resource resource = entry.getResource();
         if (resource != null) {
             // Must deallocate the resource when the entry is no longer in used
-            final ResourceReference ref = new ResourceReference(entry, this.morque);
+            final ResourceReference ref = new ResourceReference(url, entry, this.morque);
             this.resources.add(ref);
         }
     }
@@ -107,71 +125,74 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
         Args.notNull(url, "URL");
         Args.notNull(entry, "Cache entry");
         ensureValidState();
-        synchronized (this) {
-            this.entries.put(url, entry);
-            keepResourceReference(entry);
-        }
+        keepResourceReference(url, entry);
+        this.storage.putEntry(url, entry);
     }
 
     @Override
     public HttpCacheEntry getEntry(final String url) throws IOException {
         Args.notNull(url, "URL");
         ensureValidState();
-        synchronized (this) {
-            return this.entries.get(url);
-        }
+        return this.storage.getEntry(url);
     }
 
     @Override
     public void removeEntry(final String url) throws IOException {
         Args.notNull(url, "URL");
         ensureValidState();
-        synchronized (this) {
-            // Cannot deallocate the associated resources immediately as the
-            // cache entry may still be in use
-            this.entries.remove(url);
-        }
+        // Cannot deallocate the associated resources immediately as the
+        // cache entry may still be in use
+        this.storage.removeEntry(url);
     }
 
     @Override
     public void updateEntry(
             final String url,
-            final HttpCacheUpdateCallback callback) throws IOException {
+            final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
         Args.notNull(url, "URL");
         Args.notNull(callback, "Callback");
         ensureValidState();
-        synchronized (this) {
-            final HttpCacheEntry existing = this.entries.get(url);
-            final HttpCacheEntry updated = callback.update(existing);
-            this.entries.put(url, updated);
-            if (existing != updated) {
-                keepResourceReference(updated);
+        this.storage.updateEntry(url, new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                final HttpCacheEntry updated = callback.update(existing);
+                if (updated != null && existing != updated) {
+                    keepResourceReference(url, updated);
+                }
+                return updated;
             }
-        }
+
+        });
     }
 
     public void cleanResources() {
         if (this.active.get()) {
             ResourceReference ref;
             while ((ref = (ResourceReference) this.morque.poll()) != null) {
-                synchronized (this) {
-                    this.resources.remove(ref);
-                }
+                this.resources.remove(ref);
                 ref.getResource().dispose();
             }
         }
     }
 
+    /**
+     * Shuts down the cache, removes all entries with resources from the underlying
+     * storage and deallocates the resources, so that the storage does not retain
+     * entries whose resources have been disposed of.
+     */
     public void shutdown() {
         if (this.active.compareAndSet(true, false)) {
-            synchronized (this) {
-                this.entries.clear();
-                for (final ResourceReference ref: this.resources) {
-                    ref.getResource().dispose();
-                }
-                this.resources.clear();
-                while (this.morque.poll() != null) {
+            for (final ResourceReference ref: this.resources) {
+                try {
+                    this.storage.removeEntry(ref.getKey());
+                } catch (final IOException ignore) {
+                    // The resource gets disposed of regardless
                 }
+                ref.getResource().dispose();
+            }
+            this.resources.clear();
+            while (this.morque.poll() != null) {
             }
         }
     }
@@ -179,12 +200,10 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
     @Override
     public void close() {
         if (this.active.compareAndSet(true, false)) {
-            synchronized (this) {
-                ResourceReference ref;
-                while ((ref = (ResourceReference) this.morque.poll()) != null) {
-                    this.resources.remove(ref);
-                    ref.getResource().dispose();
-                }
+            ResourceReference ref;
+            while ((ref = (ResourceReference) this.morque.poll()) != null) {
+                this.resources.remove(ref);
+                ref.getResource().dispose();
             }
         }
     }
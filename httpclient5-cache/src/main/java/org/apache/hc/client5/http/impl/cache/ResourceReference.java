@@ -38,14 +38,20 @@ import org.apache.hc.core5.util.Args;
 @Contract(threading = ThreadingBehavior.IMMUTABLE)
 class ResourceReference extends PhantomReference<HttpCacheEntry> {
 
+    private final String key;
     private final Resource resource;
 
-    public ResourceReference(final HttpCacheEntry entry, final ReferenceQueue<HttpCacheEntry> q) {
+    public ResourceReference(final String key, final HttpCacheEntry entry, final ReferenceQueue<HttpCacheEntry> q) {
         super(entry, q);
         Args.notNull(entry.getResource(), "Resource");
+        this.key = key;
         this.resource = entry.getResource();
     }
 
+    public String getKey() {
+        return this.key;
+    }
+
     public Resource getResource() {
         return this.resource;
     }
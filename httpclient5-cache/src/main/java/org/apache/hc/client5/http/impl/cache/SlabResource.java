@@ -0,0 +1,201 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Cache resource backed by blocks of off-heap or memory mapped memory
+ * managed by a {@link SlabResourceFactory}.
+ * <p>
+ * The content is serialized as a {@link HeapResource}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class SlabResource implements Resource {
+
+    private static final long serialVersionUID = 6420516624476359547L;
+
+    private final transient SlabResourceFactory factory;
+    private final transient SlabResourceFactory.Segment segment;
+    private final transient AtomicInteger pins;
+    private final transient AtomicBoolean disposed;
+    private transient volatile SlabResourceFactory.SegmentReference reference;
+
+    SlabResource(final SlabResourceFactory factory, final SlabResourceFactory.Segment segment) {
+        super();
+        this.factory = factory;
+        this.segment = segment;
+        this.pins = new AtomicInteger(1);
+        this.disposed = new AtomicBoolean(false);
+    }
+
+    void setReference(final SlabResourceFactory.SegmentReference reference) {
+        this.reference = reference;
+    }
+
+    SlabResourceFactory getFactory() {
+        return this.factory;
+    }
+
+    SlabResourceFactory.Segment getSegment() {
+        return this.segment;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!SlabResourceFactory.retain(this.pins)) {
+            throw new IOException("Resource has been disposed of");
+        }
+        return new SlabInputStream();
+    }
+
+    @Override
+    public long length() {
+        return this.segment.length;
+    }
+
+    @Override
+    public void dispose() {
+        if (this.disposed.compareAndSet(false, true)) {
+            unpin();
+        }
+    }
+
+    private void unpin() {
+        // The content is shared with open input streams
+        if (this.pins.decrementAndGet() == 0) {
+            this.factory.release(this.reference);
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream((int) this.segment.length);
+        try {
+            IOUtils.copyAndClose(getInputStream(), outstream);
+        } catch (final IOException ex) {
+            throw new InvalidObjectException(ex.getMessage());
+        }
+        return new HeapResource(outstream.toByteArray());
+    }
+
+    private class SlabInputStream extends InputStream {
+
+        private int blockIndex;
+        private long remaining;
+        private ByteBuffer current;
+        private boolean closed;
+
+        SlabInputStream() {
+            this.remaining = segment.length;
+        }
+
+        private ByteBuffer current() throws IOException {
+            if (this.closed) {
+                throw new IOException("Stream closed");
+            }
+            if (this.current == null || !this.current.hasRemaining()) {
+                if (this.remaining == 0) {
+                    return null;
+                }
+                final int len = (int) Math.min(factory.getBlockSize(), this.remaining);
+                this.current = factory.view(segment.blocks[this.blockIndex++], len);
+                this.remaining -= len;
+            }
+            return this.current;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final ByteBuffer buffer = current();
+            return buffer != null ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                final ByteBuffer buffer = current();
+                if (buffer == null) {
+                    break;
+                }
+                final int k = (int) Math.min(n - skipped, buffer.remaining());
+                ((Buffer) buffer).position(buffer.position() + k);
+                skipped += k;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (this.closed) {
+                return 0;
+            }
+            final long n = this.remaining + (this.current != null ? this.current.remaining() : 0);
+            return (int) Math.min(n, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                this.current = null;
+                unpin();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,500 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Generates {@link Resource} instances whose body is stored outside of the Java heap,
+ * either in direct byte buffers or in a memory mapped file.
+ * <p>
+ * Memory is reserved lazily in slabs of a fixed size up to the configured capacity.
+ * Each slab is divided into blocks of equal size and each response body occupies
+ * as many blocks as needed to hold its content. Blocks are returned to the allocator
+ * once the resource has been disposed of and all its input streams have been closed,
+ * or once the resource has been garbage collected. No explicit resource management
+ * is therefore required when this factory is used with a cache storage that simply
+ * drops evicted entries such as {@link ConcurrentHttpCacheStorage}.
+ * </p>
+ * <p>
+ * Resource input streams read directly from the slab memory without intermediate
+ * copies. Should the capacity be exhausted response bodies are kept on the heap
+ * as {@link HeapResource}s instead.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class SlabResourceFactory implements ResourceFactory, Closeable {
+
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024;
+
+    private final int slabSize;
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final AtomicReferenceArray<ByteBuffer> slabs;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final ReentrantLock lock;
+    private final int[] freeBlocks;
+    private final ReferenceQueue<SlabResource> queue;
+    private final Set<SegmentReference> references;
+    private final AtomicLong heapFallbacks;
+
+    private int freeCount;
+    private int slabCount;
+    private boolean closed;
+
+    private SlabResourceFactory(
+            final File file,
+            final RandomAccessFile raf,
+            final long capacity,
+            final int slabSize,
+            final int blockSize) {
+        super();
+        Args.positive(capacity, "Capacity");
+        Args.positive(slabSize, "Slab size");
+        Args.positive(blockSize, "Block size");
+        Args.check(slabSize % blockSize == 0, "Slab size must be a multiple of block size");
+        final long maxSlabs = (capacity + slabSize - 1) / slabSize;
+        Args.check(maxSlabs * (slabSize / blockSize) <= Integer.MAX_VALUE, "Capacity too large for block size");
+        this.file = file;
+        this.raf = raf;
+        this.slabSize = slabSize;
+        this.blockSize = blockSize;
+        this.blocksPerSlab = slabSize / blockSize;
+        this.slabs = new AtomicReferenceArray<>((int) maxSlabs);
+        this.lock = new ReentrantLock();
+        this.freeBlocks = new int[(int) maxSlabs * this.blocksPerSlab];
+        this.queue = new ReferenceQueue<>();
+        this.references = Collections.newSetFromMap(new ConcurrentHashMap<SegmentReference, Boolean>());
+        this.heapFallbacks = new AtomicLong();
+    }
+
+    /**
+     * Creates a factory that keeps response bodies in direct byte buffers.
+     *
+     * @param capacity the maximum number of bytes to reserve.
+     * @param slabSize the number of bytes reserved at once.
+     * @param blockSize the allocation unit. Must divide the slab size.
+     */
+    public SlabResourceFactory(final long capacity, final int slabSize, final int blockSize) {
+        this(null, null, capacity, slabSize, blockSize);
+    }
+
+    /**
+     * Creates a factory that keeps response bodies in direct byte buffers
+     * using default slab and block sizes.
+     *
+     * @param capacity the maximum number of bytes to reserve.
+     */
+    public SlabResourceFactory(final long capacity) {
+        this(capacity, defaultSlabSize(capacity), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a factory that keeps response bodies in the given file mapped into memory.
+     * The file is truncated upon creation and deleted when the factory is closed.
+     *
+     * @param file the backing file.
+     * @param capacity the maximum number of bytes to map.
+     * @param slabSize the number of bytes mapped at once.
+     * @param blockSize the allocation unit. Must divide the slab size.
+     */
+    public SlabResourceFactory(
+            final File file,
+            final long capacity,
+            final int slabSize,
+            final int blockSize) throws IOException {
+        this(file, open(file), capacity, slabSize, blockSize);
+    }
+
+    /**
+     * Creates a factory that keeps response bodies in the given file mapped into memory
+     * using default slab and block sizes.
+     *
+     * @param file the backing file.
+     * @param capacity the maximum number of bytes to map.
+     */
+    public SlabResourceFactory(final File file, final long capacity) throws IOException {
+        this(file, capacity, defaultSlabSize(capacity), DEFAULT_BLOCK_SIZE);
+    }
+
+    private static RandomAccessFile open(final File file) throws IOException {
+        Args.notNull(file, "File");
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        return raf;
+    }
+
+    private static int defaultSlabSize(final long capacity) {
+        final long blocks = Math.max(1, (capacity + DEFAULT_BLOCK_SIZE - 1) / DEFAULT_BLOCK_SIZE);
+        return (int) Math.min(DEFAULT_SLAB_SIZE, blocks * DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Returns the maximum number of bytes this factory may reserve.
+     */
+    public long getCapacity() {
+        return (long) this.slabs.length() * this.slabSize;
+    }
+
+    /**
+     * Returns the number of bytes currently reserved in slabs.
+     */
+    public long getReservedBytes() {
+        this.lock.lock();
+        try {
+            return (long) this.slabCount * this.slabSize;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently allocated to resources.
+     * Allocation happens in units of blocks.
+     */
+    public long getUsedBytes() {
+        this.lock.lock();
+        try {
+            return ((long) this.slabCount * this.blocksPerSlab - this.freeCount) * this.blockSize;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of response bodies that had to be kept on the heap
+     * due to the capacity being exhausted.
+     */
+    public long getHeapFallbackCount() {
+        return this.heapFallbacks.get();
+    }
+
+    /**
+     * Returns blocks of resources that have been garbage collected to the allocator.
+     */
+    public void reclaim() {
+        SegmentReference ref;
+        while ((ref = (SegmentReference) this.queue.poll()) != null) {
+            release(ref);
+        }
+    }
+
+    private int allocateBlock() {
+        this.lock.lock();
+        try {
+            if (this.freeCount == 0 && !addSlab()) {
+                return -1;
+            }
+            return this.freeBlocks[--this.freeCount];
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean addSlab() {
+        if (this.closed || this.slabCount == this.slabs.length()) {
+            return false;
+        }
+        final ByteBuffer slab;
+        try {
+            if (this.raf != null) {
+                slab = this.raf.getChannel().map(
+                        FileChannel.MapMode.READ_WRITE, (long) this.slabCount * this.slabSize, this.slabSize);
+            } else {
+                slab = ByteBuffer.allocateDirect(this.slabSize);
+            }
+        } catch (final IOException | OutOfMemoryError ex) {
+            return false;
+        }
+        final int first = this.slabCount * this.blocksPerSlab;
+        this.slabs.set(this.slabCount, slab);
+        this.slabCount++;
+        for (int i = this.blocksPerSlab - 1; i >= 0; i--) {
+            this.freeBlocks[this.freeCount++] = first + i;
+        }
+        return true;
+    }
+
+    private void free(final int[] blocks, final int count) {
+        this.lock.lock();
+        try {
+            for (int i = count - 1; i >= 0; i--) {
+                this.freeBlocks[this.freeCount++] = blocks[i];
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    ByteBuffer view(final int block, final int len) {
+        final ByteBuffer buffer = this.slabs.get(block / this.blocksPerSlab).duplicate();
+        final int pos = (block % this.blocksPerSlab) * this.blockSize;
+        // Buffer methods avoid covariant overrides missing in older JREs
+        ((Buffer) buffer).position(pos);
+        ((Buffer) buffer).limit(pos + len);
+        return buffer;
+    }
+
+    int getBlockSize() {
+        return this.blockSize;
+    }
+
+    private SlabResource createResource(final Segment segment) {
+        final SlabResource resource = new SlabResource(this, segment);
+        final SegmentReference ref = new SegmentReference(resource, segment, this.queue);
+        this.references.add(ref);
+        resource.setReference(ref);
+        return resource;
+    }
+
+    void release(final SegmentReference ref) {
+        if (ref.released.compareAndSet(false, true)) {
+            this.references.remove(ref);
+            release(ref.segment);
+        }
+    }
+
+    private void release(final Segment segment) {
+        if (segment.refCount.decrementAndGet() == 0) {
+            free(segment.blocks, segment.blocks.length);
+        }
+    }
+
+    @Override
+    public Resource generate(
+            final String requestId,
+            final InputStream instream,
+            final InputLimit limit) throws IOException {
+        reclaim();
+        final SegmentOutputStream outstream = new SegmentOutputStream();
+        try {
+            final byte[] buf = new byte[2048];
+            long total = 0;
+            int l;
+            while ((l = instream.read(buf)) != -1) {
+                outstream.write(buf, 0, l);
+                total += l;
+                if (limit != null && total > limit.getValue()) {
+                    limit.reached();
+                    break;
+                }
+            }
+        } catch (final IOException | RuntimeException ex) {
+            outstream.abort();
+            throw ex;
+        }
+        return outstream.toResource();
+    }
+
+    @Override
+    public Resource copy(
+            final String requestId,
+            final Resource resource) throws IOException {
+        if (resource instanceof SlabResource) {
+            final SlabResource slabResource = (SlabResource) resource;
+            if (slabResource.getFactory() == this && slabResource.getSegment().retain()) {
+                // Share the immutable content
+                return createResource(slabResource.getSegment());
+            }
+        }
+        try (final InputStream instream = resource.getInputStream()) {
+            return generate(requestId, instream, null);
+        }
+    }
+
+    /**
+     * Stops reserving further memory. Resources allocated previously remain readable.
+     * The backing file, if any, is closed and deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            if (this.raf != null) {
+                this.raf.close();
+                if (!this.file.delete()) {
+                    this.file.deleteOnExit();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    static boolean retain(final AtomicInteger refCount) {
+        for (;;) {
+            final int count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    static final class Segment {
+
+        final int[] blocks;
+        final long length;
+        final AtomicInteger refCount;
+
+        Segment(final int[] blocks, final long length) {
+            this.blocks = blocks;
+            this.length = length;
+            this.refCount = new AtomicInteger(1);
+        }
+
+        boolean retain() {
+            return SlabResourceFactory.retain(this.refCount);
+        }
+
+    }
+
+    static final class SegmentReference extends PhantomReference<SlabResource> {
+
+        final Segment segment;
+        final AtomicBoolean released;
+
+        SegmentReference(final SlabResource resource, final Segment segment, final ReferenceQueue<SlabResource> queue) {
+            super(resource, queue);
+            this.segment = segment;
+            this.released = new AtomicBoolean(false);
+        }
+
+    }
+
+    private class SegmentOutputStream extends OutputStream {
+
+        private int[] blocks = new int[8];
+        private int blockCount;
+        private ByteBuffer current;
+        private long length;
+        private ByteArrayOutputStream overflow;
+
+        @Override
+        public void write(final int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            if (this.overflow != null) {
+                this.overflow.write(b, off, len);
+                this.length += len;
+                return;
+            }
+            int pos = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (this.current == null || !this.current.hasRemaining()) {
+                    final int block = allocateBlock();
+                    if (block == -1) {
+                        switchToHeap();
+                        this.overflow.write(b, pos, remaining);
+                        this.length += remaining;
+                        return;
+                    }
+                    if (this.blockCount == this.blocks.length) {
+                        this.blocks = Arrays.copyOf(this.blocks, this.blocks.length * 2);
+                    }
+                    this.blocks[this.blockCount++] = block;
+                    this.current = view(block, blockSize);
+                }
+                final int n = Math.min(remaining, this.current.remaining());
+                this.current.put(b, pos, n);
+                pos += n;
+                remaining -= n;
+                this.length += n;
+            }
+        }
+
+        private void switchToHeap() {
+            heapFallbacks.incrementAndGet();
+            this.overflow = new ByteArrayOutputStream((int) Math.min(this.length * 2 + 1024, Integer.MAX_VALUE - 8));
+            final byte[] tmp = new byte[blockSize];
+            long remaining = this.length;
+            for (int i = 0; i < this.blockCount; i++) {
+                final int n = (int) Math.min(blockSize, remaining);
+                view(this.blocks[i], n).get(tmp, 0, n);
+                this.overflow.write(tmp, 0, n);
+                remaining -= n;
+            }
+            abort();
+        }
+
+        void abort() {
+            free(this.blocks, this.blockCount);
+            this.blockCount = 0;
+            this.current = null;
+        }
+
+        Resource toResource() {
+            if (this.overflow != null) {
+                return new HeapResource(this.overflow.toByteArray());
+            }
+            return createResource(new Segment(Arrays.copyOf(this.blocks, this.blockCount), this.length));
+        }
+
+    }
+
+}
@@ -27,19 +27,44 @@
 package org.apache.hc.client5.http.impl.cache.memcached;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
 
 /**
  * Default implementation of {@link MemcachedCacheEntryFactory}.
+ * <p>
+ * By default cache entries are serialized with {@link MemcachedCacheEntryImpl}
+ * using Java serialization. If an {@link HttpCacheEntrySerializer} is given
+ * {@link SerializingMemcachedCacheEntry} is used instead.
+ * </p>
  */
 public class MemcachedCacheEntryFactoryImpl implements MemcachedCacheEntryFactory {
 
+    private final HttpCacheEntrySerializer serializer;
+
+    /**
+     * @since 5.0
+     */
+    public MemcachedCacheEntryFactoryImpl(final HttpCacheEntrySerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    public MemcachedCacheEntryFactoryImpl() {
+        this(null);
+    }
+
     @Override
     public MemcachedCacheEntry getMemcachedCacheEntry(final String key, final HttpCacheEntry entry) {
+        if (serializer != null) {
+            return new SerializingMemcachedCacheEntry(serializer, key, entry);
+        }
         return new MemcachedCacheEntryImpl(key, entry);
     }
 
     @Override
     public MemcachedCacheEntry getUnsetCacheEntry() {
+        if (serializer != null) {
+            return new SerializingMemcachedCacheEntry(serializer);
+        }
         return new MemcachedCacheEntryImpl(null, null);
     }
 }
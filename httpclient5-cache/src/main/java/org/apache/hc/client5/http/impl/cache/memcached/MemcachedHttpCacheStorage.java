@@ -32,6 +32,7 @@ import java.net.InetSocketAddress;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
@@ -121,6 +122,22 @@ public class MemcachedHttpCacheStorage implements HttpCacheStorage {
                 new SHA256KeyHashingScheme());
     }
 
+    /**
+     * Create a storage backend using the given <i>memcached</i> client and
+     * applying the given cache configuration and cache entry serializer,
+     * for instance {@link org.apache.hc.client5.http.impl.cache.BinaryHttpCacheEntrySerializer}.
+     * @param client how to talk to <i>memcached</i>
+     * @param config apply HTTP cache-related options
+     * @param serializer how to serialize cache entries
+     *
+     * @since 5.0
+     */
+    public MemcachedHttpCacheStorage(final MemcachedClientIF client, final CacheConfig config,
+            final HttpCacheEntrySerializer serializer) {
+        this(client, config, new MemcachedCacheEntryFactoryImpl(serializer),
+                new SHA256KeyHashingScheme());
+    }
+
     /**
      * Create a storage backend using the given <i>memcached</i> client and
      * applying the given cache configuration, serialization, and hashing
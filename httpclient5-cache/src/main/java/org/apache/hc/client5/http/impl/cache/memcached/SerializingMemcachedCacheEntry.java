@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache.memcached;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link MemcachedCacheEntry} implementation that writes the storage key
+ * as a length prefixed UTF-8 string followed by the {@link HttpCacheEntry}
+ * serialized with the given {@link HttpCacheEntrySerializer}.
+ *
+ * @since 5.0
+ */
+public class SerializingMemcachedCacheEntry implements MemcachedCacheEntry {
+
+    private final HttpCacheEntrySerializer serializer;
+    private String key;
+    private HttpCacheEntry httpCacheEntry;
+
+    public SerializingMemcachedCacheEntry(
+            final HttpCacheEntrySerializer serializer,
+            final String key,
+            final HttpCacheEntry httpCacheEntry) {
+        Args.notNull(serializer, "Cache entry serializer");
+        this.serializer = serializer;
+        this.key = key;
+        this.httpCacheEntry = httpCacheEntry;
+    }
+
+    public SerializingMemcachedCacheEntry(final HttpCacheEntrySerializer serializer) {
+        this(serializer, null, null);
+    }
+
+    @Override
+    public synchronized byte[] toByteArray() {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            final DataOutputStream out = new DataOutputStream(bos);
+            final byte[] b = this.key.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+            out.flush();
+            this.serializer.writeTo(this.httpCacheEntry, bos);
+        } catch (final IOException ioe) {
+            throw new MemcachedSerializationException(ioe);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public synchronized String getStorageKey() {
+        return this.key;
+    }
+
+    @Override
+    public synchronized HttpCacheEntry getHttpCacheEntry() {
+        return this.httpCacheEntry;
+    }
+
+    @Override
+    public synchronized void set(final byte[] bytes) {
+        final ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+        final String s;
+        final HttpCacheEntry entry;
+        try {
+            final DataInputStream in = new DataInputStream(bis);
+            final int length = in.readInt();
+            if (length < 0 || length > bis.available()) {
+                throw new IOException("Invalid storage key length: " + length);
+            }
+            final byte[] b = new byte[length];
+            in.readFully(b);
+            s = new String(b, StandardCharsets.UTF_8);
+            entry = this.serializer.readFrom(bis);
+        } catch (final IOException ioe) {
+            throw new MemcachedSerializationException(ioe);
+        }
+        this.key = s;
+        this.httpCacheEntry = entry;
+    }
+
+}
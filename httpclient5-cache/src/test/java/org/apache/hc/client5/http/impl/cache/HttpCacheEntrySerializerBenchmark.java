@@ -0,0 +1,112 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link DefaultHttpCacheEntrySerializer} and
+ * {@link BinaryHttpCacheEntrySerializer} in terms of throughput and
+ * serialized size. Run with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main HttpCacheEntrySerializerBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpCacheEntrySerializerBenchmark {
+
+    @Param({"default", "binary"})
+    public String format;
+
+    @Param({"128", "16384"})
+    public int contentLength;
+
+    private HttpCacheEntrySerializer serializer;
+    private HttpCacheEntry entry;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        serializer = "binary".equals(format)
+                ? BinaryHttpCacheEntrySerializer.INSTANCE : new DefaultHttpCacheEntrySerializer();
+        final Header[] headers = new Header[] {
+                new BasicHeader("Date", "Tue, 04 Oct 2016 10:00:00 GMT"),
+                new BasicHeader("Server", "httpd"),
+                new BasicHeader("Cache-Control", "public, max-age=3600"),
+                new BasicHeader("Content-Type", "application/json"),
+                new BasicHeader("Content-Length", Integer.toString(contentLength)),
+                new BasicHeader("ETag", "\"0123456789abcdef\""),
+                new BasicHeader("Vary", "Accept-Encoding")
+        };
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://localhost/resource");
+        entry = new HttpCacheEntry(new Date(), new Date(), HttpStatus.SC_OK, headers,
+                new HeapResource(new byte[contentLength]), variantMap);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.writeTo(entry, out);
+        serialized = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(serialized.length);
+        serializer.writeTo(entry, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public HttpCacheEntry deserialize() throws IOException {
+        return serializer.readFrom(new ByteArrayInputStream(serialized));
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializationException;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBinaryHttpCacheEntrySerializer {
+
+    private BinaryHttpCacheEntrySerializer impl;
+
+    @Before
+    public void setUp() {
+        impl = BinaryHttpCacheEntrySerializer.INSTANCE;
+    }
+
+    private static HttpCacheEntry makeCacheEntry(final Resource resource, final Map<String, String> variantMap) {
+        final Header[] headers = new Header[] {
+                new BasicHeader("Date", "Tue, 04 Oct 2016 10:00:00 GMT"),
+                new BasicHeader("Cache-Control", "max-age=3600"),
+                new BasicHeader("X-Unicode", "été"),
+                new BasicHeader("X-Empty", "")
+        };
+        return new HttpCacheEntry(new Date(1000L), new Date(2000L), HttpStatus.SC_OK,
+                headers, resource, variantMap);
+    }
+
+    private HttpCacheEntry roundTrip(final HttpCacheEntry entry) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.writeTo(entry, out);
+        return impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static byte[] toByteArray(final Resource resource) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final InputStream in = resource.getInputStream()) {
+            final byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertEntriesEqual(final HttpCacheEntry expected, final HttpCacheEntry actual) throws Exception {
+        Assert.assertEquals(expected.getRequestDate(), actual.getRequestDate());
+        Assert.assertEquals(expected.getResponseDate(), actual.getResponseDate());
+        Assert.assertEquals(expected.getStatus(), actual.getStatus());
+        Assert.assertEquals(expected.getRequestMethod(), actual.getRequestMethod());
+        final Header[] h1 = expected.getAllHeaders();
+        final Header[] h2 = actual.getAllHeaders();
+        Assert.assertEquals(h1.length, h2.length);
+        for (int i = 0; i < h1.length; i++) {
+            Assert.assertEquals(h1[i].getName(), h2[i].getName());
+            Assert.assertEquals(h1[i].getValue(), h2[i].getValue());
+        }
+        Assert.assertEquals(expected.getVariantMap(), actual.getVariantMap());
+        if (expected.getResource() == null) {
+            Assert.assertNull(actual.getResource());
+        } else {
+            Assert.assertArrayEquals(toByteArray(expected.getResource()), toByteArray(actual.getResource()));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final HttpCacheEntry entry = makeCacheEntry(
+                new HeapResource("Hello, world".getBytes(StandardCharsets.US_ASCII)), null);
+        assertEntriesEqual(entry, roundTrip(entry));
+    }
+
+    @Test
+    public void testRoundTripLargeResource() throws Exception {
+        final byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        final HttpCacheEntry entry = makeCacheEntry(new HeapResource(content), null);
+        assertEntriesEqual(entry, roundTrip(entry));
+    }
+
+    @Test
+    public void testRoundTripNullResource() throws Exception {
+        final HttpCacheEntry entry = makeCacheEntry(null, null);
+        assertEntriesEqual(entry, roundTrip(entry));
+    }
+
+    @Test
+    public void testRoundTripVariantMap() throws Exception {
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://localhost/");
+        variantMap.put("{Accept-Encoding=deflate}", "{Accept-Encoding=deflate}http://localhost/");
+        final HttpCacheEntry entry = makeCacheEntry(
+                new HeapResource(new byte[] {1, 2, 3}), variantMap);
+        assertEntriesEqual(entry, roundTrip(entry));
+    }
+
+    @Test
+    public void testRequestMethodPreserved() throws Exception {
+        final HttpCacheEntry entry = new HttpCacheEntry(new Date(), new Date(), HttpStatus.SC_OK,
+                new Header[] {
+                        new BasicHeader("Cache-Control", "max-age=60"),
+                        new BasicHeader("Hc-Request-Method", "HEAD") },
+                null);
+        Assert.assertEquals("HEAD", roundTrip(entry).getRequestMethod());
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testInvalidMagic() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DefaultHttpCacheEntrySerializer().writeTo(makeCacheEntry(null, null), out);
+        impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testUnsupportedVersion() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.writeTo(makeCacheEntry(null, null), out);
+        final byte[] b = out.toByteArray();
+        b[4] = (byte) (BinaryHttpCacheEntrySerializer.VERSION + 1);
+        impl.readFrom(new ByteArrayInputStream(b));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testTruncatedInput() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.writeTo(makeCacheEntry(new HeapResource(new byte[10000]), null), out);
+        final byte[] b = out.toByteArray();
+        impl.readFrom(new ByteArrayInputStream(Arrays.copyOf(b, b.length - 100)));
+    }
+
+}
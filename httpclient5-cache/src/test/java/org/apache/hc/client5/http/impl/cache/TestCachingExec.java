@@ -40,9 +40,18 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
@@ -54,6 +63,7 @@ import org.apache.hc.client5.http.impl.sync.RoutedHttpRequest;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HeaderElements;
+import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
@@ -410,6 +420,100 @@ public class TestCachingExec extends TestCachingExecChain {
         expect(mockCache.getVariantCacheEntriesWithEtags(host, request)).andReturn(result);
     }
 
+    private static class BlockingBackend implements ClientExecChain {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public ClassicHttpResponse execute(
+                final RoutedHttpRequest request,
+                final HttpClientContext clientContext,
+                final HttpExecutionAware execAware) throws IOException, HttpException {
+            executions.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+            final ClassicHttpResponse response = HttpTestUtils.make200Response();
+            response.setHeader("Cache-Control", "max-age=3600");
+            return response;
+        }
+
+    }
+
+    private List<Future<ClassicHttpResponse>> executeConcurrently(
+            final ExecutorService executor, final CachingExec exec, final int n) {
+        final List<Future<ClassicHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            futures.add(executor.submit(new Callable<ClassicHttpResponse>() {
+
+                @Override
+                public ClassicHttpResponse call() throws Exception {
+                    final RoutedHttpRequest req = RoutedHttpRequest.adapt(
+                            new BasicClassicHttpRequest("GET", "/stuff"), route);
+                    return exec.execute(req, HttpClientContext.create(), null);
+                }
+
+            }));
+        }
+        return futures;
+    }
+
+    @Test
+    public void testCollapsedForwardingCoalescesConcurrentCacheMisses() throws Exception {
+        final BlockingBackend backend = new BlockingBackend();
+        final CacheConfig collapsingConfig = CacheConfig.custom()
+                .setCollapsedForwardingEnabled(true)
+                .build();
+        final CachingExec exec = new CachingExec(backend, new BasicHttpCache(), collapsingConfig);
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<ClassicHttpResponse>> futures = executeConcurrently(executor, exec, 5);
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (exec.getCoalescedRequests() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            backend.release.countDown();
+            for (final Future<ClassicHttpResponse> future: futures) {
+                Assert.assertEquals(HttpStatus.SC_OK, future.get().getCode());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, backend.executions.get());
+        Assert.assertEquals(4, exec.getCoalescedRequests());
+        Assert.assertEquals(1, exec.getCacheMisses());
+        Assert.assertEquals(4, exec.getCacheHits());
+    }
+
+    @Test
+    public void testCollapsedForwardingFallsBackToBackendAfterTimeout() throws Exception {
+        final BlockingBackend backend = new BlockingBackend();
+        final CacheConfig collapsingConfig = CacheConfig.custom()
+                .setCollapsedForwardingEnabled(true)
+                .setCollapsedForwardingTimeout(50)
+                .build();
+        final CachingExec exec = new CachingExec(backend, new BasicHttpCache(), collapsingConfig);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<ClassicHttpResponse>> futures = executeConcurrently(executor, exec, 2);
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (backend.executions.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            backend.release.countDown();
+            for (final Future<ClassicHttpResponse> future: futures) {
+                Assert.assertEquals(HttpStatus.SC_OK, future.get().getCode());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(2, backend.executions.get());
+        Assert.assertEquals(1, exec.getCoalescedRequests());
+    }
+
     private void cacheInvalidatorWasCalled()  throws IOException {
         mockCache.flushInvalidatedCacheEntriesFor(
                 (HttpHost)anyObject(),
@@ -0,0 +1,415 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.async.AsyncClientEndpoint;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncPushConsumer;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.reactor.ExceptionEvent;
+import org.apache.hc.core5.reactor.IOReactorStatus;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCachingHttpAsyncClient {
+
+    private HttpHost host;
+    private StubAsyncClient backend;
+    private CachingHttpAsyncClient client;
+
+    @Before
+    public void setUp() {
+        host = new HttpHost("foo.example.com", 80);
+        backend = new StubAsyncClient();
+        client = new CachingHttpAsyncClient(
+                backend, new HeapResourceFactory(), new BasicHttpCacheStorage(CacheConfig.DEFAULT),
+                CacheConfig.DEFAULT, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+    }
+
+    private SimpleHttpResponse execute(final String method, final HttpCacheContext context) throws Exception {
+        final Future<SimpleHttpResponse> future = client.execute(
+                new SimpleRequestProducer(new SimpleHttpRequest(method, host, "/", null, null)),
+                new SimpleResponseConsumer(),
+                context,
+                null);
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static CannedResponse make200Response(final String cacheControl, final String body) {
+        final BasicHttpResponse response = new BasicHttpResponse(HttpStatus.SC_OK, "OK");
+        response.setHeader("Date", DateUtils.formatDate(new Date()));
+        response.setHeader("Cache-Control", cacheControl);
+        response.setHeader("ETag", "\"etag\"");
+        response.setHeader("Content-Type", ContentType.TEXT_PLAIN.toString());
+        return new CannedResponse(response, body);
+    }
+
+    @Test
+    public void testCacheMissIsStoredAndServedOnSubsequentRequest() throws Exception {
+        backend.responses.add(make200Response("max-age=3600", "hello"));
+
+        final HttpCacheContext context1 = HttpCacheContext.create();
+        final SimpleHttpResponse response1 = execute("GET", context1);
+        Assert.assertEquals(HttpStatus.SC_OK, response1.getCode());
+        Assert.assertEquals("hello", response1.getBody());
+        Assert.assertEquals(CacheResponseStatus.CACHE_MISS, context1.getCacheResponseStatus());
+
+        final HttpCacheContext context2 = HttpCacheContext.create();
+        final SimpleHttpResponse response2 = execute("GET", context2);
+        Assert.assertEquals(HttpStatus.SC_OK, response2.getCode());
+        Assert.assertEquals("hello", response2.getBody());
+        Assert.assertEquals(CacheResponseStatus.CACHE_HIT, context2.getCacheResponseStatus());
+
+        Assert.assertEquals(1, backend.requests.size());
+        Assert.assertEquals(1, client.getCacheMisses());
+        Assert.assertEquals(1, client.getCacheHits());
+    }
+
+    @Test
+    public void testCacheOperationsOffCallingThread() throws Exception {
+        final AtomicReference<Thread> storageThread = new AtomicReference<>();
+        final CountDownLatch stored = new CountDownLatch(1);
+        client.close();
+        client = new CachingHttpAsyncClient(
+                backend, new HeapResourceFactory(), new SimpleHttpCacheStorage() {
+
+                    @Override
+                    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+                        storageThread.set(Thread.currentThread());
+                        super.putEntry(key, entry);
+                        stored.countDown();
+                    }
+
+                }, CacheConfig.DEFAULT, null);
+        backend.responses.add(make200Response("max-age=3600", "hello"));
+
+        Assert.assertEquals("hello", execute("GET", HttpCacheContext.create()).getBody());
+        Assert.assertTrue(stored.await(5, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), storageThread.get());
+        Assert.assertTrue(storageThread.get().getName().startsWith("httpclient-cache"));
+    }
+
+    @Test
+    public void testResponseInvalidationPrecedesStorage() throws Exception {
+        final List<String> operations = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch stored = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        client.close();
+        client = new CachingHttpAsyncClient(backend, new BasicHttpCache() {
+
+            @Override
+            public void flushInvalidatedCacheEntriesFor(
+                    final HttpHost host, final HttpRequest request, final HttpResponse response) {
+                try {
+                    Thread.sleep(100);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                operations.add("flush");
+            }
+
+            @Override
+            public HttpCacheEntry createCacheEntry(
+                    final HttpHost host,
+                    final HttpRequest request,
+                    final HttpResponse originResponse,
+                    final ByteArrayBuffer content,
+                    final Date requestSent,
+                    final Date responseReceived) throws IOException {
+                operations.add("store");
+                stored.countDown();
+                return super.createCacheEntry(host, request, originResponse, content, requestSent, responseReceived);
+            }
+
+        }, CacheConfig.DEFAULT, executor);
+        try {
+            backend.responses.add(make200Response("max-age=3600", "hello"));
+
+            Assert.assertEquals("hello", execute("GET", HttpCacheContext.create()).getBody());
+            Assert.assertTrue(stored.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList("flush", "store"), operations);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRequestProducedOnce() throws Exception {
+        final AtomicInteger produced = new AtomicInteger();
+        final HttpRequest request = new SimpleHttpRequest("GET", host, "/", null, null);
+        final AsyncRequestProducer requestProducer = new AsyncRequestProducer() {
+
+            @Override
+            public HttpRequest produceRequest() {
+                produced.incrementAndGet();
+                return request;
+            }
+
+            @Override
+            public EntityDetails getEntityDetails() {
+                return null;
+            }
+
+            @Override
+            public int available() {
+                return 0;
+            }
+
+            @Override
+            public void produce(final DataStreamChannel channel) {
+            }
+
+            @Override
+            public void failed(final Exception cause) {
+            }
+
+            @Override
+            public void releaseResources() {
+            }
+
+        };
+        backend.responses.add(make200Response("max-age=3600", "hello"));
+
+        final Future<SimpleHttpResponse> future = client.execute(
+                requestProducer, new SimpleResponseConsumer(), HttpCacheContext.create(), null);
+        Assert.assertEquals("hello", future.get(5, TimeUnit.SECONDS).getBody());
+        Assert.assertEquals(1, produced.get());
+        Assert.assertEquals(1, backend.requests.size());
+    }
+
+    @Test
+    public void testStaleEntryIsRevalidated() throws Exception {
+        backend.responses.add(make200Response("max-age=0", "hello"));
+        final BasicHttpResponse notModified = new BasicHttpResponse(HttpStatus.SC_NOT_MODIFIED, "Not Modified");
+        notModified.setHeader("Date", DateUtils.formatDate(new Date()));
+        notModified.setHeader("ETag", "\"etag\"");
+        backend.responses.add(new CannedResponse(notModified, null));
+
+        execute("GET", HttpCacheContext.create());
+        final HttpCacheContext context = HttpCacheContext.create();
+        final SimpleHttpResponse response = execute("GET", context);
+
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals("hello", response.getBody());
+        Assert.assertEquals(CacheResponseStatus.VALIDATED, context.getCacheResponseStatus());
+        Assert.assertEquals(2, backend.requests.size());
+        Assert.assertEquals("\"etag\"", backend.requests.get(1).getFirstHeader("If-None-Match").getValue());
+        Assert.assertEquals(1, client.getCacheUpdates());
+    }
+
+    @Test
+    public void testUncacheableResponseIsNotStored() throws Exception {
+        backend.responses.add(make200Response("no-store", "hello"));
+        backend.responses.add(make200Response("no-store", "world"));
+
+        Assert.assertEquals("hello", execute("GET", HttpCacheContext.create()).getBody());
+        Assert.assertEquals("world", execute("GET", HttpCacheContext.create()).getBody());
+        Assert.assertEquals(2, backend.requests.size());
+    }
+
+    @Test
+    public void testOnlyIfCachedMissReturnsGatewayTimeout() throws Exception {
+        final SimpleHttpRequest request = new SimpleHttpRequest("GET", host, "/", null, null);
+        request.setHeader("Cache-Control", "only-if-cached");
+        final HttpCacheContext context = HttpCacheContext.create();
+        final SimpleHttpResponse response = client.execute(
+                new SimpleRequestProducer(request), new SimpleResponseConsumer(), context, null).get();
+
+        Assert.assertEquals(HttpStatus.SC_GATEWAY_TIMEOUT, response.getCode());
+        Assert.assertEquals(CacheResponseStatus.CACHE_MODULE_RESPONSE, context.getCacheResponseStatus());
+        Assert.assertTrue(backend.requests.isEmpty());
+    }
+
+    @Test
+    public void testNonCacheableMethodIsPassedThrough() throws Exception {
+        backend.responses.add(make200Response("max-age=3600", "hello"));
+        backend.responses.add(make200Response("max-age=3600", "world"));
+
+        Assert.assertEquals("hello", execute("GET", HttpCacheContext.create()).getBody());
+        Assert.assertEquals("world", execute("POST", HttpCacheContext.create()).getBody());
+        Assert.assertEquals(2, backend.requests.size());
+    }
+
+    static class CannedResponse {
+
+        final BasicHttpResponse response;
+        final String body;
+
+        CannedResponse(final BasicHttpResponse response, final String body) {
+            this.response = response;
+            this.body = body;
+        }
+
+    }
+
+    static class StubAsyncClient extends CloseableHttpAsyncClient {
+
+        final Queue<CannedResponse> responses = new LinkedList<>();
+        final List<HttpRequest> requests = new ArrayList<>();
+
+        @Override
+        public <T> Future<T> execute(
+                final AsyncRequestProducer requestProducer,
+                final AsyncResponseConsumer<T> responseConsumer,
+                final HttpContext context,
+                final FutureCallback<T> callback) {
+            final BasicFuture<T> future = new BasicFuture<>(callback);
+            final FutureCallback<T> resultCallback = new FutureCallback<T>() {
+
+                @Override
+                public void completed(final T result) {
+                    future.completed(result);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    future.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel();
+                }
+
+            };
+            try {
+                requests.add(requestProducer.produceRequest());
+                final CannedResponse canned = responses.remove();
+                final StringEntity entity = canned.body != null ?
+                        new StringEntity(canned.body, ContentType.TEXT_PLAIN) : null;
+                responseConsumer.consumeResponse(canned.response, entity, resultCallback);
+                if (entity != null) {
+                    responseConsumer.updateCapacity(new CapacityChannel() {
+
+                        @Override
+                        public void update(final int increment) {
+                        }
+
+                    });
+                    responseConsumer.consume(ByteBuffer.wrap(canned.body.getBytes("US-ASCII")));
+                    responseConsumer.streamEnd(null);
+                }
+            } catch (final Exception ex) {
+                responseConsumer.failed(ex);
+                future.failed(ex);
+            } finally {
+                responseConsumer.releaseResources();
+            }
+            return future;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public IOReactorStatus getStatus() {
+            return IOReactorStatus.ACTIVE;
+        }
+
+        @Override
+        public List<ExceptionEvent> getAuditLog() {
+            return null;
+        }
+
+        @Override
+        public void awaitShutdown(final long deadline, final TimeUnit timeUnit) throws InterruptedException {
+        }
+
+        @Override
+        public void initiateShutdown() {
+        }
+
+        @Override
+        public void shutdown(final long graceTime, final TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public Future<AsyncClientEndpoint> lease(
+                final HttpHost host, final HttpContext context, final FutureCallback<AsyncClientEndpoint> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void register(final String hostname, final String uriPattern, final Supplier<AsyncPushConsumer> supplier) {
+        }
+
+    }
+
+}
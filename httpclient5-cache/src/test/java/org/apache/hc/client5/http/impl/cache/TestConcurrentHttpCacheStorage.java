@@ -0,0 +1,204 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConcurrentHttpCacheStorage {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(10, Long.MAX_VALUE);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        Assert.assertNull(storage.getEntry("foo"));
+        storage.putEntry("foo", entry);
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        storage.removeEntry("foo");
+        Assert.assertNull(storage.getEntry("foo"));
+        Assert.assertEquals(0, storage.size());
+        Assert.assertEquals(0, storage.getTotalBytes());
+        Assert.assertEquals(1, storage.getHitCount());
+        Assert.assertEquals(2, storage.getMissCount());
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(10, Long.MAX_VALUE);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry1);
+        storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                Assert.assertSame(entry1, existing);
+                return entry2;
+            }
+
+        });
+        Assert.assertSame(entry2, storage.getEntry("foo"));
+        storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                return null;
+            }
+
+        });
+        Assert.assertNull(storage.getEntry("foo"));
+        Assert.assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(100, Long.MAX_VALUE);
+        for (int i = 0; i < 200; i++) {
+            storage.putEntry("entry-" + i, HttpTestUtils.makeCacheEntry());
+        }
+        Assert.assertEquals(100, storage.size());
+        Assert.assertEquals(100, storage.getEvictionCount());
+    }
+
+    @Test
+    public void testMaxBytes() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(100, 1000);
+        for (int i = 0; i < 20; i++) {
+            storage.putEntry("entry-" + i, HttpTestUtils.makeCacheEntry(new byte[100]));
+        }
+        Assert.assertEquals(10, storage.size());
+        Assert.assertEquals(1000, storage.getTotalBytes());
+
+        storage.putEntry("huge", HttpTestUtils.makeCacheEntry(new byte[1001]));
+        Assert.assertNull(storage.getEntry("huge"));
+        Assert.assertEquals(10, storage.size());
+    }
+
+    @Test
+    public void testMaxCacheSizeFromConfig() throws Exception {
+        final CacheConfig config = CacheConfig.custom()
+                .setMaxCacheEntries(100)
+                .setMaxCacheSize(1000)
+                .build();
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config);
+        for (int i = 0; i < 20; i++) {
+            storage.putEntry("entry-" + i, HttpTestUtils.makeCacheEntry(new byte[100]));
+        }
+        Assert.assertEquals(10, storage.size());
+        Assert.assertEquals(1000, storage.getTotalBytes());
+    }
+
+    @Test
+    public void testDefaultMaxCacheSize() throws Exception {
+        final CacheConfig config = CacheConfig.custom()
+                .setMaxObjectSize(100)
+                .setMaxCacheEntries(10)
+                .build();
+        Assert.assertEquals(1000, config.getMaxCacheSize());
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config);
+        for (int i = 0; i < 10; i++) {
+            storage.putEntry("entry-" + i, HttpTestUtils.makeCacheEntry(new byte[200]));
+        }
+        Assert.assertEquals(5, storage.size());
+        Assert.assertEquals(1000, storage.getTotalBytes());
+        Assert.assertEquals(5, storage.getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentlyUsedEntryRetained() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(10, Long.MAX_VALUE);
+        final HttpCacheEntry hot = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("hot", hot);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertSame(hot, storage.getEntry("hot"));
+        }
+        for (int i = 0; i < 100; i++) {
+            storage.putEntry("entry-" + i, HttpTestUtils.makeCacheEntry());
+        }
+        Assert.assertSame(hot, storage.getEntry("hot"));
+        Assert.assertEquals(10, storage.size());
+    }
+
+    @Test
+    public void testHitRate() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(10, Long.MAX_VALUE);
+        Assert.assertEquals(1.0d, storage.getHitRate(), 0.0d);
+        storage.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        storage.getEntry("foo");
+        storage.getEntry("foo");
+        storage.getEntry("foo");
+        storage.getEntry("bar");
+        Assert.assertEquals(0.75d, storage.getHitRate(), 0.0d);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(50, Long.MAX_VALUE);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            final Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                final long seed = i;
+                futures[i] = executorService.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        final Random random = new Random(seed);
+                        for (int n = 0; n < 5000; n++) {
+                            final String key = "entry-" + random.nextInt(200);
+                            if (storage.getEntry(key) == null) {
+                                storage.putEntry(key, HttpTestUtils.makeCacheEntry(new byte[10]));
+                            } else if (random.nextInt(10) == 0) {
+                                storage.removeEntry(key);
+                            }
+                        }
+                        return null;
+                    }
+
+                });
+            }
+            for (final Future<?> future: futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertTrue(storage.size() <= 50);
+        Assert.assertEquals(storage.size() * 10L, storage.getTotalBytes());
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestManagedHttpCacheStorage {
+
+    private static HttpCacheEntry makeCacheEntry(final Resource resource) {
+        final Date now = new Date();
+        return new HttpCacheEntry(now, now, HttpStatus.SC_OK, HttpTestUtils.getStockHeaders(now), resource);
+    }
+
+    @Test
+    public void testShutdownRemovesEntriesFromStorage() throws Exception {
+        final SimpleHttpCacheStorage storage = new SimpleHttpCacheStorage();
+        final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(storage);
+        final Resource resource1 = Mockito.mock(Resource.class);
+        final Resource resource2 = Mockito.mock(Resource.class);
+        managedStorage.putEntry("foo", makeCacheEntry(resource1));
+        managedStorage.putEntry("bar", makeCacheEntry(resource2));
+        Assert.assertEquals(2, storage.map.size());
+
+        managedStorage.shutdown();
+
+        Assert.assertTrue(storage.map.isEmpty());
+        Mockito.verify(resource1).dispose();
+        Mockito.verify(resource2).dispose();
+    }
+
+    @Test
+    public void testShutdownClearsDefaultStorage() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(CacheConfig.DEFAULT);
+        final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(storage);
+        managedStorage.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        Assert.assertEquals(1, storage.size());
+
+        managedStorage.shutdown();
+
+        Assert.assertEquals(0, storage.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoAccessAfterShutdown() throws Exception {
+        final ManagedHttpCacheStorage managedStorage = new ManagedHttpCacheStorage(new SimpleHttpCacheStorage());
+        managedStorage.shutdown();
+        managedStorage.getEntry("foo");
+    }
+
+}
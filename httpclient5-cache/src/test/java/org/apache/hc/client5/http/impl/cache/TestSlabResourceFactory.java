@@ -0,0 +1,187 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSlabResourceFactory {
+
+    private SlabResourceFactory factory;
+
+    @Before
+    public void setUp() {
+        factory = new SlabResourceFactory(64 * 1024, 16 * 1024, 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        factory.close();
+    }
+
+    private static byte[] content(final int len) {
+        final byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) (i * 31);
+        }
+        return b;
+    }
+
+    private static byte[] read(final Resource resource) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    private Resource generate(final byte[] b) throws IOException {
+        return factory.generate("id", new ByteArrayInputStream(b), null);
+    }
+
+    @Test
+    public void testGenerateAndRead() throws Exception {
+        final byte[] b = content(5000);
+        final Resource resource = generate(b);
+        Assert.assertTrue(resource instanceof SlabResource);
+        Assert.assertEquals(5000, resource.length());
+        Assert.assertArrayEquals(b, read(resource));
+        Assert.assertArrayEquals(b, read(resource));
+        Assert.assertEquals(5 * 1024, factory.getUsedBytes());
+        Assert.assertEquals(16 * 1024, factory.getReservedBytes());
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        final Resource resource = generate(new byte[0]);
+        Assert.assertEquals(0, resource.length());
+        Assert.assertEquals(-1, resource.getInputStream().read());
+    }
+
+    @Test
+    public void testDisposeFreesBlocks() throws Exception {
+        final Resource resource = generate(content(3000));
+        Assert.assertEquals(3 * 1024, factory.getUsedBytes());
+        resource.dispose();
+        Assert.assertEquals(0, factory.getUsedBytes());
+        try {
+            resource.getInputStream();
+            Assert.fail("IOException expected");
+        } catch (final IOException expected) {
+        }
+        resource.dispose();
+        Assert.assertEquals(0, factory.getUsedBytes());
+    }
+
+    @Test
+    public void testOpenStreamDefersReclamation() throws Exception {
+        final byte[] b = content(2048);
+        final Resource resource = generate(b);
+        final InputStream instream = resource.getInputStream();
+        resource.dispose();
+        Assert.assertEquals(2 * 1024, factory.getUsedBytes());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(instream, out);
+        Assert.assertArrayEquals(b, out.toByteArray());
+        Assert.assertEquals(0, factory.getUsedBytes());
+    }
+
+    @Test
+    public void testFallbackToHeapWhenExhausted() throws Exception {
+        final Resource r1 = generate(content(60 * 1024));
+        Assert.assertTrue(r1 instanceof SlabResource);
+        final byte[] b = content(10 * 1024);
+        final Resource r2 = generate(b);
+        Assert.assertTrue(r2 instanceof HeapResource);
+        Assert.assertArrayEquals(b, read(r2));
+        Assert.assertEquals(1, factory.getHeapFallbackCount());
+        Assert.assertEquals(60 * 1024, factory.getUsedBytes());
+        r1.dispose();
+        Assert.assertTrue(generate(b) instanceof SlabResource);
+    }
+
+    @Test
+    public void testInputLimit() throws Exception {
+        final InputLimit limit = new InputLimit(1000);
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(content(10000)), limit);
+        Assert.assertTrue(limit.isReached());
+        Assert.assertTrue(resource.length() < 10000);
+    }
+
+    @Test
+    public void testCopySharesContent() throws Exception {
+        final byte[] b = content(4000);
+        final Resource r1 = generate(b);
+        final Resource r2 = factory.copy("id", r1);
+        Assert.assertEquals(4 * 1024, factory.getUsedBytes());
+        r1.dispose();
+        Assert.assertArrayEquals(b, read(r2));
+        r2.dispose();
+        Assert.assertEquals(0, factory.getUsedBytes());
+    }
+
+    @Test
+    public void testSerializedAsHeapResource() throws Exception {
+        final byte[] b = content(1500);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(generate(b));
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Resource resource = (Resource) in.readObject();
+            Assert.assertTrue(resource instanceof HeapResource);
+            Assert.assertArrayEquals(b, read(resource));
+        }
+    }
+
+    @Test
+    public void testMemoryMappedFile() throws Exception {
+        final File file = File.createTempFile("slab", ".cache");
+        final SlabResourceFactory mapped = new SlabResourceFactory(file, 32 * 1024, 8 * 1024, 512);
+        try {
+            final byte[] b = content(20000);
+            final Resource resource = mapped.generate("id", new ByteArrayInputStream(b), null);
+            Assert.assertTrue(resource instanceof SlabResource);
+            Assert.assertArrayEquals(b, read(resource));
+            Assert.assertEquals(24 * 1024, mapped.getReservedBytes());
+        } finally {
+            mapped.close();
+        }
+        Assert.assertFalse(file.exists());
+    }
+
+}
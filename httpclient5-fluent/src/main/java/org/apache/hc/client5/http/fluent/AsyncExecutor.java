@@ -0,0 +1,298 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.fluent;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.async.methods.SimpleBinResponseConsumer;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.auth.AuthCache;
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.Credentials;
+import org.apache.hc.client5.http.auth.CredentialsStore;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.auth.BasicAuthCache;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.sync.BasicCredentialsProvider;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.protocol.HttpResponseException;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+
+/**
+ * A non-blocking executor for {@link AsyncRequest}s backed by
+ * a {@link CloseableHttpAsyncClient}.
+ * <p>
+ * Requests are executed by the I/O reactor of the client without tying up
+ * a thread per request in flight. Responses are delivered to the given
+ * {@link FutureCallback} or can be obtained from the returned {@link Future}.
+ * </p>
+ * <p>
+ * A {@link PoolingAsyncClientConnectionManager} with maximum 100 connections per route and
+ * a total maximum of 200 connections is used internally by the default client.
+ * Clients with a custom (or shared) connection manager, HTTP/2 clients included,
+ * can be passed to {@link #newInstance(CloseableHttpAsyncClient)}.
+ * </p>
+ *
+ * @since 5.0
+ */
+public class AsyncExecutor {
+
+    final static PoolingAsyncClientConnectionManager CONNMGR;
+    final static CloseableHttpAsyncClient CLIENT;
+
+    static {
+        CONNMGR = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(100)
+                .setMaxConnTotal(200)
+                .setValidateAfterInactivity(1000)
+                .build();
+        CLIENT = HttpAsyncClientBuilder.create()
+                .setConnectionManager(CONNMGR)
+                .build();
+        CLIENT.start();
+    }
+
+    public static AsyncExecutor newInstance() {
+        return new AsyncExecutor(CLIENT, null);
+    }
+
+    /**
+     * Creates an executor backed by the given client, which gets started
+     * if it has not been started yet.
+     */
+    public static AsyncExecutor newInstance(final CloseableHttpAsyncClient httpclient) {
+        return newInstance(httpclient, null);
+    }
+
+    /**
+     * Creates an executor backed by the given client, which gets started
+     * if it has not been started yet.
+     *
+     * @param defaultConfig request configuration per request settings are
+     *                      applied on top of. If {@code null} the configuration
+     *                      of the client is used unless requests have settings
+     *                      of their own.
+     */
+    public static AsyncExecutor newInstance(
+            final CloseableHttpAsyncClient httpclient, final RequestConfig defaultConfig) {
+        if (httpclient == null) {
+            return new AsyncExecutor(CLIENT, defaultConfig);
+        }
+        httpclient.start();
+        return new AsyncExecutor(httpclient, defaultConfig);
+    }
+
+    private final CloseableHttpAsyncClient httpclient;
+    private final RequestConfig defaultConfig;
+    private final AuthCache authCache;
+    private volatile CredentialsStore credentialsStore;
+    private volatile CookieStore cookieStore;
+
+    AsyncExecutor(final CloseableHttpAsyncClient httpclient, final RequestConfig defaultConfig) {
+        super();
+        this.httpclient = httpclient;
+        this.defaultConfig = defaultConfig;
+        this.authCache = new BasicAuthCache();
+    }
+
+    public AsyncExecutor use(final CredentialsStore credentialsStore) {
+        this.credentialsStore = credentialsStore;
+        return this;
+    }
+
+    public AsyncExecutor auth(final AuthScope authScope, final Credentials creds) {
+        if (this.credentialsStore == null) {
+            this.credentialsStore = new BasicCredentialsProvider();
+        }
+        this.credentialsStore.setCredentials(authScope, creds);
+        return this;
+    }
+
+    public AsyncExecutor auth(final HttpHost host, final Credentials creds) {
+        final AuthScope authScope = host != null ?
+                new AuthScope(host.getHostName(), host.getPort()) : AuthScope.ANY;
+        return auth(authScope, creds);
+    }
+
+    public AsyncExecutor auth(final String username, final char[] password) {
+        return auth(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+    }
+
+    public AsyncExecutor clearAuth() {
+        if (this.credentialsStore != null) {
+            this.credentialsStore.clear();
+        }
+        return this;
+    }
+
+    public AsyncExecutor use(final CookieStore cookieStore) {
+        this.cookieStore = cookieStore;
+        return this;
+    }
+
+    public AsyncExecutor clearCookies() {
+        if (this.cookieStore != null) {
+            this.cookieStore.clear();
+        }
+        return this;
+    }
+
+    private HttpClientContext createContext() {
+        final HttpClientContext localContext = HttpClientContext.create();
+        if (this.credentialsStore != null) {
+            localContext.setAttribute(HttpClientContext.CREDS_PROVIDER, this.credentialsStore);
+        }
+        if (this.authCache != null) {
+            localContext.setAttribute(HttpClientContext.AUTH_CACHE, this.authCache);
+        }
+        if (this.cookieStore != null) {
+            localContext.setAttribute(HttpClientContext.COOKIE_STORE, this.cookieStore);
+        }
+        return localContext;
+    }
+
+    /**
+     * Executes the request, streaming the response through the given consumer.
+     */
+    public <T> Future<T> execute(
+            final AsyncRequest request,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final FutureCallback<T> callback) {
+        return this.httpclient.execute(
+                request.createProducer(this.defaultConfig), responseConsumer, createContext(), callback);
+    }
+
+    /**
+     * Executes the request and buffers the response message in memory.
+     * Unlike {@link #execute(AsyncRequest, FutureCallback)} this method
+     * does not treat non-2xx responses as failures.
+     */
+    public Future<SimpleHttpResponse> executeSimple(
+            final AsyncRequest request,
+            final FutureCallback<SimpleHttpResponse> callback) {
+        return execute(request, new SimpleBinResponseConsumer(), callback);
+    }
+
+    /**
+     * Executes the request and returns the response content. Responses
+     * with a status code of 300 or above are reported as
+     * {@link HttpResponseException}.
+     */
+    public Future<Content> execute(final AsyncRequest request, final FutureCallback<Content> callback) {
+        final ContentFuture future = new ContentFuture(callback);
+        future.exchange = executeSimple(request, new ContentCallback(future));
+        return future;
+    }
+
+    public Future<Content> execute(final AsyncRequest request) {
+        return execute(request, (FutureCallback<Content>) null);
+    }
+
+    static Content toContent(final SimpleHttpResponse response) throws HttpResponseException {
+        final int status = response.getCode();
+        if (status >= HttpStatus.SC_REDIRECTION) {
+            throw new HttpResponseException(status, response.getReasonPhrase());
+        }
+        final byte[] body = response.getBodyBytes();
+        if (body == null) {
+            return Content.NO_CONTENT;
+        }
+        final ContentType contentType = response.getContentType();
+        return new Content(body, contentType != null ? contentType : ContentType.DEFAULT_TEXT);
+    }
+
+    static class ContentFuture extends BasicFuture<Content> {
+
+        volatile Future<SimpleHttpResponse> exchange;
+
+        ContentFuture(final FutureCallback<Content> callback) {
+            super(callback);
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            final Future<SimpleHttpResponse> local = exchange;
+            if (cancelled && local != null) {
+                local.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+    }
+
+    static class ContentCallback implements FutureCallback<SimpleHttpResponse> {
+
+        private final BasicFuture<Content> future;
+
+        ContentCallback(final BasicFuture<Content> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void completed(final SimpleHttpResponse response) {
+            final Content content;
+            try {
+                content = toContent(response);
+            } catch (final HttpResponseException ex) {
+                future.failed(ex);
+                return;
+            }
+            future.completed(content);
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            future.failed(ex);
+        }
+
+        @Override
+        public void cancelled() {
+            future.cancel();
+        }
+
+    }
+
+    /**
+     * Closes all idle persistent connections used by the internal pool.
+     */
+    public static void closeIdleConnections() {
+        CONNMGR.closeIdle(0, TimeUnit.MICROSECONDS);
+    }
+
+}
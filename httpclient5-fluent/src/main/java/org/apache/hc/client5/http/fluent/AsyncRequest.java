@@ -0,0 +1,357 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.fluent;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.hc.client5.http.async.methods.DefaultAsyncRequestProducer;
+import org.apache.hc.client5.http.async.methods.FileChannelEntityProducer;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.sync.methods.HttpDelete;
+import org.apache.hc.client5.http.sync.methods.HttpGet;
+import org.apache.hc.client5.http.sync.methods.HttpHead;
+import org.apache.hc.client5.http.sync.methods.HttpOptions;
+import org.apache.hc.client5.http.sync.methods.HttpPatch;
+import org.apache.hc.client5.http.sync.methods.HttpPost;
+import org.apache.hc.client5.http.sync.methods.HttpPut;
+import org.apache.hc.client5.http.sync.methods.HttpTrace;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.net.URLEncodedUtils;
+
+/**
+ * Non-blocking counterpart of {@link Request} executed by an {@link AsyncExecutor}.
+ * <p>
+ * Request bodies are produced by {@link AsyncEntityProducer}s, which are
+ * expected to be repeatable if the request is to be executed more than once.
+ * </p>
+ *
+ * @since 5.0
+ */
+public class AsyncRequest {
+
+    private final BasicHttpRequest request;
+    private AsyncEntityProducer entityProducer;
+    private Boolean useExpectContinue;
+    private Integer socketTmeout;
+    private Integer connectTimeout;
+    private HttpHost proxy;
+
+    public static AsyncRequest create(final String methodName, final String uri) {
+        return new AsyncRequest(methodName, URI.create(uri));
+    }
+
+    public static AsyncRequest create(final String methodName, final URI uri) {
+        return new AsyncRequest(methodName, uri);
+    }
+
+    public static AsyncRequest Get(final URI uri) {
+        return new AsyncRequest(HttpGet.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Get(final String uri) {
+        return new AsyncRequest(HttpGet.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Head(final URI uri) {
+        return new AsyncRequest(HttpHead.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Head(final String uri) {
+        return new AsyncRequest(HttpHead.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Post(final URI uri) {
+        return new AsyncRequest(HttpPost.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Post(final String uri) {
+        return new AsyncRequest(HttpPost.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Patch(final URI uri) {
+        return new AsyncRequest(HttpPatch.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Patch(final String uri) {
+        return new AsyncRequest(HttpPatch.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Put(final URI uri) {
+        return new AsyncRequest(HttpPut.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Put(final String uri) {
+        return new AsyncRequest(HttpPut.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Trace(final URI uri) {
+        return new AsyncRequest(HttpTrace.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Trace(final String uri) {
+        return new AsyncRequest(HttpTrace.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Delete(final URI uri) {
+        return new AsyncRequest(HttpDelete.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Delete(final String uri) {
+        return new AsyncRequest(HttpDelete.METHOD_NAME, URI.create(uri));
+    }
+
+    public static AsyncRequest Options(final URI uri) {
+        return new AsyncRequest(HttpOptions.METHOD_NAME, uri);
+    }
+
+    public static AsyncRequest Options(final String uri) {
+        return new AsyncRequest(HttpOptions.METHOD_NAME, URI.create(uri));
+    }
+
+    AsyncRequest(final String methodName, final URI uri) {
+        super();
+        this.request = new BasicHttpRequest(methodName, uri);
+    }
+
+    AsyncRequestProducer createProducer(final RequestConfig defaultConfig) {
+        final RequestConfig config;
+        if (this.useExpectContinue != null || this.socketTmeout != null
+                || this.connectTimeout != null || this.proxy != null) {
+            final RequestConfig.Builder builder = defaultConfig != null ?
+                    RequestConfig.copy(defaultConfig) : RequestConfig.custom();
+            if (this.useExpectContinue != null) {
+                builder.setExpectContinueEnabled(this.useExpectContinue);
+            }
+            if (this.socketTmeout != null) {
+                builder.setSocketTimeout(this.socketTmeout);
+            }
+            if (this.connectTimeout != null) {
+                builder.setConnectTimeout(this.connectTimeout);
+            }
+            if (this.proxy != null) {
+                builder.setProxy(this.proxy);
+            }
+            config = builder.build();
+        } else {
+            config = defaultConfig;
+        }
+        return new DefaultAsyncRequestProducer(this.request, this.entityProducer, config);
+    }
+
+    /**
+     * Executes the request with the default {@link AsyncExecutor}.
+     */
+    public Future<Content> execute(final FutureCallback<Content> callback) {
+        return AsyncExecutor.newInstance().execute(this, callback);
+    }
+
+    public Future<Content> execute() {
+        return execute(null);
+    }
+
+    //// HTTP header operations
+
+    public AsyncRequest addHeader(final Header header) {
+        this.request.addHeader(header);
+        return this;
+    }
+
+    public AsyncRequest setHeader(final Header header) {
+        this.request.setHeader(header);
+        return this;
+    }
+
+    public AsyncRequest addHeader(final String name, final String value) {
+        this.request.addHeader(name, value);
+        return this;
+    }
+
+    public AsyncRequest setHeader(final String name, final String value) {
+        this.request.setHeader(name, value);
+        return this;
+    }
+
+    public AsyncRequest removeHeader(final Header header) {
+        this.request.removeHeader(header);
+        return this;
+    }
+
+    public AsyncRequest removeHeaders(final String name) {
+        this.request.removeHeaders(name);
+        return this;
+    }
+
+    public AsyncRequest setHeaders(final Header... headers) {
+        this.request.setHeaders(headers);
+        return this;
+    }
+
+    public AsyncRequest setCacheControl(final String cacheControl) {
+        this.request.setHeader(HttpHeader.CACHE_CONTROL, cacheControl);
+        return this;
+    }
+
+    public AsyncRequest setDate(final Date date) {
+        this.request.setHeader(HttpHeader.DATE, DateUtils.formatDate(date));
+        return this;
+    }
+
+    public AsyncRequest setIfModifiedSince(final Date date) {
+        this.request.setHeader(HttpHeader.IF_MODIFIED_SINCE, DateUtils.formatDate(date));
+        return this;
+    }
+
+    public AsyncRequest setIfUnmodifiedSince(final Date date) {
+        this.request.setHeader(HttpHeader.IF_UNMODIFIED_SINCE, DateUtils.formatDate(date));
+        return this;
+    }
+
+    //// HTTP protocol parameter operations
+
+    public AsyncRequest version(final HttpVersion version) {
+        this.request.setVersion(version);
+        return this;
+    }
+
+    public AsyncRequest useExpectContinue() {
+        this.useExpectContinue = Boolean.TRUE;
+        return this;
+    }
+
+    public AsyncRequest userAgent(final String agent) {
+        this.request.setHeader(HttpHeaders.USER_AGENT, agent);
+        return this;
+    }
+
+    //// HTTP connection parameter operations
+
+    public AsyncRequest socketTimeout(final int timeout) {
+        this.socketTmeout = timeout;
+        return this;
+    }
+
+    public AsyncRequest connectTimeout(final int timeout) {
+        this.connectTimeout = timeout;
+        return this;
+    }
+
+    //// HTTP connection route operations
+
+    public AsyncRequest viaProxy(final HttpHost proxy) {
+        this.proxy = proxy;
+        return this;
+    }
+
+    public AsyncRequest viaProxy(final String proxy) {
+        try {
+            this.proxy = HttpHost.create(proxy);
+        } catch (final URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid host");
+        }
+        return this;
+    }
+
+    //// HTTP entity operations
+
+    public AsyncRequest body(final AsyncEntityProducer entityProducer) {
+        this.entityProducer = entityProducer;
+        return this;
+    }
+
+    public AsyncRequest bodyForm(final Iterable <? extends NameValuePair> formParams, final Charset charset) {
+        final List<NameValuePair> paramList = new ArrayList<>();
+        for (final NameValuePair param : formParams) {
+            paramList.add(param);
+        }
+        final ContentType contentType = ContentType.create(URLEncodedUtils.CONTENT_TYPE, charset);
+        final String s = URLEncodedUtils.format(paramList, charset);
+        return bodyString(s, contentType);
+    }
+
+    public AsyncRequest bodyForm(final Iterable <? extends NameValuePair> formParams) {
+        return bodyForm(formParams, StandardCharsets.ISO_8859_1);
+    }
+
+    public AsyncRequest bodyForm(final NameValuePair... formParams) {
+        return bodyForm(Arrays.asList(formParams), StandardCharsets.ISO_8859_1);
+    }
+
+    public AsyncRequest bodyString(final String s, final ContentType contentType) {
+        final Charset charset = contentType != null ? contentType.getCharset() : null;
+        final byte[] raw = charset != null ? s.getBytes(charset) : s.getBytes();
+        return body(new BasicAsyncEntityProducer(raw, contentType));
+    }
+
+    /**
+     * Streams the file content through a {@link java.nio.channels.FileChannel}.
+     */
+    public AsyncRequest bodyFile(final File file, final ContentType contentType) {
+        return body(new FileChannelEntityProducer(file, contentType));
+    }
+
+    public AsyncRequest bodyByteArray(final byte[] b) {
+        return body(new BasicAsyncEntityProducer(b));
+    }
+
+    public AsyncRequest bodyByteArray(final byte[] b, final ContentType contentType) {
+        return body(new BasicAsyncEntityProducer(b, contentType));
+    }
+
+    public AsyncRequest bodyByteArray(final byte[] b, final int off, final int len) {
+        return body(new BasicAsyncEntityProducer(Arrays.copyOfRange(b, off, off + len)));
+    }
+
+    public AsyncRequest bodyByteArray(final byte[] b, final int off, final int len, final ContentType contentType) {
+        return body(new BasicAsyncEntityProducer(Arrays.copyOfRange(b, off, off + len), contentType));
+    }
+
+    @Override
+    public String toString() {
+        return this.request.toString();
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.fluent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.localserver.LocalServerTestBase;
+import org.apache.hc.client5.http.protocol.HttpResponseException;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.HttpRequestHandler;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAsyncFluent extends LocalServerTestBase {
+
+    @Before @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.serverBootstrap.registerHandler("/", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                response.setEntity(new StringEntity("All is well", ContentType.TEXT_PLAIN));
+            }
+
+        });
+        this.serverBootstrap.registerHandler("/echo", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                HttpEntity responseEntity = null;
+                final HttpEntity requestEntity = request.getEntity();
+                if (requestEntity != null) {
+                    final ContentType contentType = EntityUtils.getContentTypeOrDefault(requestEntity);
+                    if (ContentType.TEXT_PLAIN.getMimeType().equals(contentType.getMimeType())) {
+                        responseEntity = new StringEntity(
+                                EntityUtils.toString(requestEntity), ContentType.TEXT_PLAIN);
+                    }
+                }
+                if (responseEntity == null) {
+                    responseEntity = new StringEntity("echo", ContentType.TEXT_PLAIN);
+                }
+                response.setEntity(responseEntity);
+            }
+
+        });
+    }
+
+    @After @Override
+    public void shutDown() throws Exception {
+        AsyncExecutor.closeIdleConnections();
+        super.shutDown();
+    }
+
+    @Test
+    public void testGetRequest() throws Exception {
+        final HttpHost target = start();
+        final String baseURL = "http://localhost:" + target.getPort();
+        final Content content = AsyncRequest.Get(baseURL + "/").execute().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("All is well", content.asString());
+        Assert.assertEquals(ContentType.TEXT_PLAIN.getMimeType(), content.getType().getMimeType());
+    }
+
+    @Test
+    public void testGetRequestFailure() throws Exception {
+        final HttpHost target = start();
+        final String baseURL = "http://localhost:" + target.getPort();
+        final Future<Content> future = AsyncRequest.Get(baseURL + "/boom").execute();
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof HttpResponseException);
+            Assert.assertTrue(((HttpResponseException) ex.getCause()).getStatusCode() >= 400);
+        }
+    }
+
+    @Test
+    public void testExecuteSimple() throws Exception {
+        final HttpHost target = start();
+        final String baseURL = "http://localhost:" + target.getPort();
+        final SimpleHttpResponse response = AsyncExecutor.newInstance()
+                .executeSimple(AsyncRequest.Get(baseURL + "/boom"), null)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(response.getCode() >= 400);
+    }
+
+    @Test
+    public void testPostRequest() throws Exception {
+        final HttpHost target = start();
+        final String baseURL = "http://localhost:" + target.getPort();
+        final String message1 = AsyncRequest.Post(baseURL + "/echo")
+                .bodyString("what is up?", ContentType.TEXT_PLAIN)
+                .execute().get(10, TimeUnit.SECONDS).asString();
+        Assert.assertEquals("what is up?", message1);
+        final String message2 = AsyncRequest.Post(baseURL + "/echo")
+                .bodyByteArray(new byte[]{1, 2, 3}, ContentType.APPLICATION_OCTET_STREAM)
+                .execute().get(10, TimeUnit.SECONDS).asString();
+        Assert.assertEquals("echo", message2);
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final HttpHost target = start();
+        final String baseURL = "http://localhost:" + target.getPort();
+        final AsyncExecutor executor = AsyncExecutor.newInstance();
+        final int n = 50;
+        final CountDownLatch latch = new CountDownLatch(n);
+        final AtomicInteger successes = new AtomicInteger(0);
+        final List<Future<Content>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            futures.add(executor.execute(AsyncRequest.Get(baseURL + "/"), new FutureCallback<Content>() {
+
+                @Override
+                public void completed(final Content result) {
+                    if ("All is well".equals(result.asString())) {
+                        successes.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void cancelled() {
+                    latch.countDown();
+                }
+
+            }));
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(n, successes.get());
+        for (final Future<Content> future : futures) {
+            Assert.assertTrue(future.isDone());
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http;
+
+/**
+ * Phases of a request execution whose latency is reported to
+ * a {@link RequestPhaseListener}.
+ *
+ * @since 5.0
+ */
+public enum RequestPhase {
+
+    /**
+     * Waiting for a connection to be leased from the connection pool.
+     */
+    LEASE,
+
+    /**
+     * Resolving the host name of the target or proxy.
+     */
+    DNS_RESOLVE,
+
+    /**
+     * Establishing the connection to the target or proxy. With the classic
+     * client this includes the TLS handshake of connections to secure targets,
+     * which is also reported as {@link #TLS_HANDSHAKE} on its own.
+     */
+    CONNECT,
+
+    /**
+     * Performing the TLS handshake and verifying the peer.
+     */
+    TLS_HANDSHAKE,
+
+    /**
+     * Writing the request entity. Not reported for requests without an entity.
+     */
+    REQUEST_WRITE,
+
+    /**
+     * Waiting for the response head after the request has been written.
+     */
+    TIME_TO_FIRST_BYTE,
+
+    /**
+     * Receiving the response body, from the response head to the end of the body.
+     * Not reported for responses without a body or bodies that are not read to the end.
+     */
+    RESPONSE_BODY
+
+}
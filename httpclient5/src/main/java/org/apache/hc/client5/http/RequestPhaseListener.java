@@ -0,0 +1,52 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receiver of the latencies of the individual phases of request executions.
+ * <p>
+ * Implementations are invoked by I/O dispatch and request executing threads
+ * and must therefore be thread-safe and must not block.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface RequestPhaseListener {
+
+    /**
+     * Reports the successful completion of a request execution phase.
+     *
+     * @param route the route of the request.
+     * @param phase the completed phase.
+     * @param duration the duration of the phase.
+     * @param timeUnit the time unit of the duration.
+     */
+    void phaseCompleted(HttpRoute route, RequestPhase phase, long duration, TimeUnit timeUnit);
+
+}
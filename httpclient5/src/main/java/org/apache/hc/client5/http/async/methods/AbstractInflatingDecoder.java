@@ -0,0 +1,146 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Base class for {@link Inflater} backed decoders. Coded content is staged in
+ * an internal buffer, as {@link Inflater} retains a reference to its input
+ * until that input has been fully consumed.
+ */
+abstract class AbstractInflatingDecoder implements AsyncContentDecoder {
+
+    private final byte[] inbuf;
+    private byte[] outbuf;
+    private int inPos;
+    private int inLimit;
+
+    AbstractInflatingDecoder(final int bufferSize) {
+        super();
+        this.inbuf = new byte[bufferSize > 0 ? bufferSize : 4096];
+    }
+
+    /**
+     * Returns the next byte of coded content or {@code -1} if no more
+     * input is available.
+     */
+    int read(final ByteBuffer src) {
+        if (inPos == inLimit && !fill(src)) {
+            return -1;
+        }
+        return inbuf[inPos++] & 0xff;
+    }
+
+    /**
+     * Discards all staged and available coded content.
+     */
+    void discard(final ByteBuffer src) {
+        inPos = inLimit;
+        ((Buffer) src).position(src.limit());
+    }
+
+    private boolean fill(final ByteBuffer src) {
+        if (!src.hasRemaining()) {
+            return false;
+        }
+        final int n = Math.min(src.remaining(), inbuf.length);
+        src.get(inbuf, 0, n);
+        inPos = 0;
+        inLimit = n;
+        return true;
+    }
+
+    /**
+     * Inflates content into {@code dst} until either {@code dst} is full, more
+     * input is required but not available or the end of the deflate stream has
+     * been reached. Input remaining after the end of the deflate stream is kept
+     * staged.
+     *
+     * @return the number of bytes written to {@code dst}.
+     */
+    int inflate(final Inflater inflater, final ByteBuffer src, final ByteBuffer dst) throws ZipException {
+        int total = 0;
+        while (dst.hasRemaining() && !inflater.finished()) {
+            if (inflater.needsInput()) {
+                if (inPos == inLimit && !fill(src)) {
+                    break;
+                }
+                inflater.setInput(inbuf, inPos, inLimit - inPos);
+                inPos = inLimit;
+            }
+            final byte[] b;
+            final int off;
+            final int len;
+            if (dst.hasArray()) {
+                b = dst.array();
+                off = dst.arrayOffset() + dst.position();
+                len = dst.remaining();
+            } else {
+                if (outbuf == null) {
+                    outbuf = new byte[inbuf.length];
+                }
+                b = outbuf;
+                off = 0;
+                len = Math.min(outbuf.length, dst.remaining());
+            }
+            final int n;
+            try {
+                n = inflater.inflate(b, off, len);
+            } catch (final DataFormatException ex) {
+                final String message = ex.getMessage();
+                throw new ZipException(message != null ? message : "Invalid deflate data format");
+            }
+            if (n > 0) {
+                inflated(b, off, n);
+                if (b == outbuf) {
+                    dst.put(b, off, n);
+                } else {
+                    ((Buffer) dst).position(dst.position() + n);
+                }
+                total += n;
+            } else if (inflater.needsDictionary()) {
+                throw new ZipException("Deflate dictionary not supported");
+            }
+        }
+        if (inflater.finished()) {
+            inPos = inLimit - inflater.getRemaining();
+        }
+        return total;
+    }
+
+    /**
+     * Invoked for every chunk of inflated content.
+     */
+    void inflated(final byte[] b, final int off, final int len) {
+    }
+
+}
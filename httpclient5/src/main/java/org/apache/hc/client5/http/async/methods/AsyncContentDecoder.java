@@ -0,0 +1,67 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder of content transferred with a {@code Content-Encoding}
+ * such as {@code gzip} or {@code deflate}.
+ * <p>
+ * Unlike {@link org.apache.hc.client5.http.entity.InputStreamFactory} based
+ * decoders instances of this interface never block: they decode whatever
+ * chunk of coded content is available and retain their state in between
+ * calls.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface AsyncContentDecoder {
+
+    /**
+     * Decodes content from {@code src} into {@code dst}. Implementations
+     * are expected to return only once {@code dst} has no space remaining
+     * or all of {@code src} has been consumed and no more content can be
+     * produced without additional input.
+     *
+     * @param src coded content.
+     * @param dst buffer to write decoded content to.
+     */
+    void decode(ByteBuffer src, ByteBuffer dst) throws IOException;
+
+    /**
+     * Returns {@code true} if the end of the coded content has been reached.
+     */
+    boolean isCompleted();
+
+    /**
+     * Releases resources, such as native memory, held by the decoder.
+     */
+    void releaseResources();
+
+}
@@ -0,0 +1,239 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link AsyncDataConsumer} decorator that decodes content with the given
+ * {@link AsyncContentDecoder} as it arrives and passes decoded content on to
+ * another data consumer in chunks no larger than the buffer size.
+ * <p>
+ * The capacity signalled by the decorated consumer limits the amount of
+ * decoded content passed on to it. Once that capacity has been used up
+ * decoding stops and the remaining coded and decoded content is held back
+ * until the decorated consumer signals more capacity. No capacity is signalled
+ * upstream for as long as content is held back, so a single chunk of highly
+ * compressed content cannot flood the decorated consumer. Until the decorated
+ * consumer has signalled its capacity for the first time no more than one
+ * buffer of decoded content is passed on to it.
+ * </p>
+ *
+ * @since 5.0
+ */
+public class DecompressingAsyncDataConsumer implements AsyncDataConsumer {
+
+    private final AsyncDataConsumer dataConsumer;
+    private final AsyncContentDecoder decoder;
+    private final ByteBuffer buffer;
+    private final CapacityChannel decodedCapacityChannel;
+
+    private ByteBuffer coded;
+    private int capacity;
+    private boolean held;
+    private boolean endOfStream;
+    private List<? extends Header> trailers;
+    private CapacityChannel capacityChannel;
+
+    public DecompressingAsyncDataConsumer(
+            final AsyncDataConsumer dataConsumer,
+            final AsyncContentDecoder decoder,
+            final int bufferSize) {
+        this.dataConsumer = Args.notNull(dataConsumer, "Data consumer");
+        this.decoder = Args.notNull(decoder, "Content decoder");
+        this.buffer = ByteBuffer.allocate(bufferSize > 0 ? bufferSize : 8192);
+        this.coded = ByteBuffer.allocate(0);
+        this.capacity = this.buffer.capacity();
+        this.decodedCapacityChannel = new CapacityChannel() {
+
+            @Override
+            public void update(final int increment) throws IOException {
+                capacityIncremented(increment);
+            }
+
+        };
+    }
+
+    public DecompressingAsyncDataConsumer(final AsyncDataConsumer dataConsumer, final AsyncContentDecoder decoder) {
+        this(dataConsumer, decoder, 8192);
+    }
+
+    @Override
+    public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+        synchronized (this) {
+            this.capacityChannel = capacityChannel;
+            if (!held && capacity > 0) {
+                capacityChannel.update(capacity);
+                return;
+            }
+        }
+        dataConsumer.updateCapacity(decodedCapacityChannel);
+    }
+
+    @Override
+    public synchronized int consume(final ByteBuffer src) throws IOException {
+        if (coded.hasRemaining()) {
+            hold(src);
+            held = !drain(coded);
+        } else {
+            held = !drain(src);
+            hold(src);
+        }
+        return held ? 0 : capacity;
+    }
+
+    /**
+     * Retains coded content the caller expects to be consumed in full.
+     */
+    private void hold(final ByteBuffer src) {
+        if (!src.hasRemaining()) {
+            return;
+        }
+        if (coded.capacity() - coded.limit() < src.remaining()) {
+            if (coded.capacity() - coded.remaining() >= src.remaining()) {
+                coded.compact();
+                ((Buffer) coded).flip();
+            } else {
+                    final ByteBuffer expanded = ByteBuffer.allocate(coded.remaining() + src.remaining());
+                expanded.put(coded);
+                ((Buffer) expanded).flip();
+                coded = expanded;
+            }
+        }
+        final int position = coded.position();
+        ((Buffer) coded).position(coded.limit());
+        ((Buffer) coded).limit(coded.limit() + src.remaining());
+        coded.put(src);
+        ((Buffer) coded).position(position);
+    }
+
+    /**
+     * Decodes content from {@code src} and passes it on to the data consumer
+     * for as long as it signals capacity.
+     *
+     * @return {@code true} if all content has been passed on, {@code false}
+     * if some is being held back for lack of capacity.
+     */
+    private boolean drain(final ByteBuffer src) throws IOException {
+        for (;;) {
+            if (buffer.hasRemaining()) {
+                decoder.decode(src, buffer);
+            }
+            final int pending = buffer.position();
+            if (pending == 0) {
+                return true;
+            }
+            if (capacity <= 0) {
+                return false;
+            }
+            flush();
+            if (buffer.position() == pending) {
+                // Retain decoded content until the data consumer is ready to accept it
+                capacity = 0;
+                return false;
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        ((Buffer) buffer).flip();
+        final int limit = buffer.limit();
+        if (limit > capacity) {
+            ((Buffer) buffer).limit(capacity);
+        }
+        capacity = dataConsumer.consume(buffer);
+        ((Buffer) buffer).limit(limit);
+        buffer.compact();
+    }
+
+    private void capacityIncremented(final int increment) throws IOException {
+        final boolean holding;
+        final CapacityChannel channel;
+        final int available;
+        synchronized (this) {
+            capacity = (int) Math.min(Integer.MAX_VALUE, (long) Math.max(capacity, 0) + increment);
+            if (held) {
+                held = !drain(coded);
+            }
+            if (!held && endOfStream) {
+                endOfStream = false;
+                try {
+                    complete(trailers);
+                } catch (final HttpException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+                return;
+            }
+            holding = held;
+            channel = capacityChannel;
+            available = capacity;
+        }
+        if (holding) {
+            dataConsumer.updateCapacity(decodedCapacityChannel);
+        } else if (channel != null && available > 0) {
+            // Held back content has been passed on, ask for more
+            channel.update(available);
+        }
+    }
+
+    @Override
+    public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+        synchronized (this) {
+            if (held) {
+                // Complete once the held back content has been passed on
+                this.endOfStream = true;
+                this.trailers = trailers;
+                return;
+            }
+        }
+        complete(trailers);
+    }
+
+    private void complete(final List<? extends Header> trailers) throws HttpException, IOException {
+        if (!decoder.isCompleted()) {
+            throw new EOFException("Unexpected end of coded content");
+        }
+        dataConsumer.streamEnd(trailers);
+    }
+
+    @Override
+    public void releaseResources() {
+        decoder.releaseResources();
+        dataConsumer.releaseResources();
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.config.Lookup;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.message.BasicHeaderValueParser;
+import org.apache.hc.core5.http.message.ParserCursor;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link AsyncResponseConsumer} decorator that transparently decodes response
+ * content transferred with a {@code Content-Encoding} for which a decoder is
+ * registered. Content is decoded incrementally as it arrives without ever being
+ * buffered in full, so arbitrarily large coded responses can be streamed.
+ * <p>
+ * The {@code Content-Length}, {@code Content-Encoding} and {@code Content-MD5}
+ * headers of decoded responses are removed, as they no longer apply to the
+ * content passed on to the decorated consumer.
+ * </p>
+ *
+ * @since 5.0
+ */
+public class DecompressingAsyncResponseConsumer<T> implements AsyncResponseConsumer<T> {
+
+    /**
+     * Creates decoder registry for the {@code gzip}, {@code x-gzip} and
+     * {@code deflate} content codings.
+     */
+    public static Lookup<AsyncContentDecoderFactory> createDefaultDecoderRegistry() {
+        return RegistryBuilder.<AsyncContentDecoderFactory>create()
+                .register("gzip", GzipAsyncContentDecoder.FACTORY)
+                .register("x-gzip", GzipAsyncContentDecoder.FACTORY)
+                .register("deflate", DeflateAsyncContentDecoder.FACTORY)
+                .build();
+    }
+
+    private final AsyncResponseConsumer<T> responseConsumer;
+    private final Lookup<AsyncContentDecoderFactory> decoderRegistry;
+    private final boolean ignoreUnknown;
+
+    private volatile AsyncDataConsumer dataConsumer;
+
+    public DecompressingAsyncResponseConsumer(
+            final AsyncResponseConsumer<T> responseConsumer,
+            final Lookup<AsyncContentDecoderFactory> decoderRegistry,
+            final boolean ignoreUnknown) {
+        this.responseConsumer = Args.notNull(responseConsumer, "Response consumer");
+        this.decoderRegistry = decoderRegistry != null ? decoderRegistry : createDefaultDecoderRegistry();
+        this.ignoreUnknown = ignoreUnknown;
+    }
+
+    public DecompressingAsyncResponseConsumer(final AsyncResponseConsumer<T> responseConsumer) {
+        this(responseConsumer, null, true);
+    }
+
+    @Override
+    public void consumeResponse(
+            final HttpResponse response,
+            final EntityDetails entityDetails,
+            final FutureCallback<T> resultCallback) throws HttpException, IOException {
+        AsyncDataConsumer consumer = responseConsumer;
+        EntityDetails details = entityDetails;
+        if (entityDetails != null && entityDetails.getContentLength() != 0) {
+            final String contentEncoding = entityDetails.getContentEncoding();
+            if (contentEncoding != null) {
+                final ParserCursor cursor = new ParserCursor(0, contentEncoding.length());
+                final HeaderElement[] codecs = BasicHeaderValueParser.INSTANCE.parseElements(contentEncoding, cursor);
+                final AsyncContentDecoderFactory[] factories = new AsyncContentDecoderFactory[codecs.length];
+                boolean supported = true;
+                for (int i = 0; i < codecs.length; i++) {
+                    final String codecname = codecs[i].getName().toLowerCase(Locale.ROOT);
+                    if (!"identity".equals(codecname)) {
+                        factories[i] = decoderRegistry.lookup(codecname);
+                        if (factories[i] == null) {
+                            if (!ignoreUnknown) {
+                                throw new HttpException("Unsupported Content-Encoding: " + codecs[i].getName());
+                            }
+                            supported = false;
+                        }
+                    }
+                }
+                if (supported) {
+                    // Codings are listed in the order they were applied
+                    for (final AsyncContentDecoderFactory factory: factories) {
+                        if (factory != null) {
+                            consumer = new DecompressingAsyncDataConsumer(consumer, factory.create());
+                        }
+                    }
+                    response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+                    response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+                    response.removeHeaders(HttpHeaders.CONTENT_MD5);
+                    details = new DecodedEntityDetails(entityDetails);
+                }
+            }
+        }
+        this.dataConsumer = consumer;
+        responseConsumer.consumeResponse(response, details, resultCallback);
+    }
+
+    private AsyncDataConsumer getDataConsumer() {
+        final AsyncDataConsumer consumer = this.dataConsumer;
+        return consumer != null ? consumer : responseConsumer;
+    }
+
+    @Override
+    public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+        getDataConsumer().updateCapacity(capacityChannel);
+    }
+
+    @Override
+    public int consume(final ByteBuffer src) throws IOException {
+        return getDataConsumer().consume(src);
+    }
+
+    @Override
+    public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+        getDataConsumer().streamEnd(trailers);
+    }
+
+    @Override
+    public void failed(final Exception cause) {
+        responseConsumer.failed(cause);
+    }
+
+    @Override
+    public void releaseResources() {
+        getDataConsumer().releaseResources();
+    }
+
+    static class DecodedEntityDetails implements EntityDetails {
+
+        private final EntityDetails entityDetails;
+
+        DecodedEntityDetails(final EntityDetails entityDetails) {
+            this.entityDetails = entityDetails;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public String getContentType() {
+            return entityDetails.getContentType();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return entityDetails.isChunked();
+        }
+
+        @Override
+        public Set<String> getTrailerNames() {
+            return entityDetails.getTrailerNames();
+        }
+
+    }
+
+}
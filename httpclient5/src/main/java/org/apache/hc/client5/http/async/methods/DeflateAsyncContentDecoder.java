@@ -0,0 +1,112 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Inflater;
+
+import org.apache.hc.client5.http.entity.ZlibPool;
+
+/**
+ * {@link AsyncContentDecoder} for the {@code deflate} content coding. Both
+ * zlib wrapped (as mandated by RFC 7230) and raw deflate streams (as sent by
+ * some non-compliant servers) are supported; the format is detected from the
+ * first two bytes of the content as done by
+ * {@link org.apache.hc.client5.http.entity.DeflateInputStream}.
+ *
+ * @since 5.0
+ */
+public class DeflateAsyncContentDecoder extends AbstractInflatingDecoder {
+
+    public static final AsyncContentDecoderFactory FACTORY = new AsyncContentDecoderFactory() {
+
+        @Override
+        public AsyncContentDecoder create() {
+            return new DeflateAsyncContentDecoder();
+        }
+
+    };
+
+    private final byte[] header;
+    private int headerLen;
+    private Inflater inflater;
+    private boolean nowrap;
+    private boolean completed;
+
+    public DeflateAsyncContentDecoder(final int bufferSize) {
+        super(bufferSize);
+        this.header = new byte[2];
+    }
+
+    public DeflateAsyncContentDecoder() {
+        this(4096);
+    }
+
+    @Override
+    public void decode(final ByteBuffer src, final ByteBuffer dst) throws IOException {
+        if (completed) {
+            discard(src);
+            return;
+        }
+        if (inflater == null) {
+            while (headerLen < header.length) {
+                final int b = read(src);
+                if (b == -1) {
+                    return;
+                }
+                header[headerLen++] = (byte) b;
+            }
+            final int b1 = header[0] & 0xff;
+            final int b2 = header[1] & 0xff;
+            final int compressionMethod = b1 & 0xF;
+            final int compressionInfo = b1 >> 4 & 0xF;
+            nowrap = !(compressionMethod == 8 && compressionInfo <= 7 && ((b1 << 8) | b2) % 31 == 0);
+            inflater = ZlibPool.DEFAULT.leaseInflater(nowrap);
+            inflater.setInput(header, 0, header.length);
+        }
+        inflate(inflater, src, dst);
+        if (inflater.finished()) {
+            completed = true;
+            discard(src);
+        }
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Override
+    public void releaseResources() {
+        if (inflater != null) {
+            ZlibPool.DEFAULT.releaseInflater(inflater, nowrap);
+            inflater = null;
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link AsyncEntityProducer} that streams a file or a region of a file
+ * by reading it through a {@link FileChannel} into a direct buffer that is
+ * handed over to the data channel as is.
+ * <p>
+ * The producer can be re-used: once its resources have been released
+ * it starts over from the beginning of the file region.
+ * </p>
+ *
+ * @since 5.0
+ */
+public final class FileChannelEntityProducer implements AsyncEntityProducer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final ContentType contentType;
+    private final ByteBuffer buffer;
+    private final AtomicReference<Exception> exception;
+
+    private FileChannel channel;
+    private long position;
+    private boolean endOfStream;
+
+    public FileChannelEntityProducer(
+            final File file,
+            final long offset,
+            final long length,
+            final ContentType contentType,
+            final int bufferSize) {
+        this.file = Args.notNull(file, "File");
+        this.offset = Args.notNegative(offset, "Offset");
+        this.length = Args.notNegative(length, "Length");
+        this.contentType = contentType;
+        this.buffer = ByteBuffer.allocateDirect(Args.positive(bufferSize, "Buffer size"));
+        ((Buffer) this.buffer).limit(0);
+        this.position = offset;
+        this.exception = new AtomicReference<>(null);
+    }
+
+    public FileChannelEntityProducer(
+            final File file,
+            final long offset,
+            final long length,
+            final ContentType contentType) {
+        this(file, offset, length, contentType, DEFAULT_BUFFER_SIZE);
+    }
+
+    public FileChannelEntityProducer(final File file, final ContentType contentType) {
+        this(file, 0, Args.notNull(file, "File").length(), contentType, DEFAULT_BUFFER_SIZE);
+    }
+
+    public FileChannelEntityProducer(final File file) {
+        this(file, null);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType != null ? contentType.toString() : null;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return null;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return false;
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return null;
+    }
+
+    @Override
+    public int available() {
+        synchronized (buffer) {
+            final long remaining = offset + length - position + buffer.remaining();
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void produce(final DataStreamChannel dataChannel) throws IOException {
+        synchronized (buffer) {
+            if (endOfStream) {
+                return;
+            }
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            for (;;) {
+                if (!buffer.hasRemaining()) {
+                    final long remaining = offset + length - position;
+                    if (remaining <= 0) {
+                        closeChannel();
+                        endOfStream = true;
+                        dataChannel.endStream();
+                        return;
+                    }
+                    ((Buffer) buffer).clear();
+                    if (remaining < buffer.capacity()) {
+                        ((Buffer) buffer).limit((int) remaining);
+                    }
+                    final int bytesRead = channel.read(buffer, position);
+                    if (bytesRead < 0) {
+                        throw new EOFException("Unexpected end of file " + file
+                                + " at position " + position);
+                    }
+                    position += bytesRead;
+                    ((Buffer) buffer).flip();
+                }
+                dataChannel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void failed(final Exception cause) {
+        if (exception.compareAndSet(null, cause)) {
+            releaseResources();
+        }
+    }
+
+    public Exception getException() {
+        return exception.get();
+    }
+
+    private void closeChannel() throws IOException {
+        final FileChannel local = channel;
+        channel = null;
+        if (local != null) {
+            local.close();
+        }
+    }
+
+    @Override
+    public void releaseResources() {
+        synchronized (buffer) {
+            try {
+                closeChannel();
+            } catch (final IOException ignore) {
+            }
+            position = offset;
+            endOfStream = false;
+            ((Buffer) buffer).limit(0);
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.ProtocolException;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Response consumer that writes the response body of a successful response
+ * directly to a file through a {@link FileChannel}. Incoming buffers,
+ * including direct ones, are passed to the channel without intermediate copies.
+ * <p>
+ * If resume is enabled, {@link #applyRange(HttpRequest)} can be used prior to
+ * executing (or re-executing) a request to ask for the remainder of a partially
+ * downloaded file. A {@code 206 (Partial Content)} response whose content range
+ * starts at the current file length is appended to the file, any other
+ * {@code 2xx} response replaces the file content. Response bodies of unsuccessful
+ * responses are discarded and the file is left untouched. Partial content is
+ * retained in case of failure in order to enable resume.
+ * </p>
+ *
+ * @since 5.0
+ */
+public final class FileResponseConsumer extends AbstractBinResponseConsumer<HttpResponse> {
+
+    private final File file;
+    private final boolean resume;
+
+    private volatile long resumeOffset;
+    private volatile HttpResponse response;
+    private volatile FileChannel channel;
+    private volatile long bytesWritten;
+
+    public FileResponseConsumer(final File file, final boolean resume) {
+        super();
+        this.file = Args.notNull(file, "File");
+        this.resume = resume;
+    }
+
+    public FileResponseConsumer(final File file) {
+        this(file, false);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of body bytes written to the file by the last response.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Adds a {@code Range} header to the request asking for the content
+     * following the data already present in the file, if resume is enabled
+     * and the file is not empty, or removes it otherwise.
+     * <p>
+     * Callers may want to add an {@code If-Range} header with the entity tag
+     * of the original response in order to make sure the content has not
+     * changed in the meantime.
+     * </p>
+     *
+     * @return the offset the content is expected to be resumed from.
+     */
+    public long applyRange(final HttpRequest request) {
+        Args.notNull(request, "Request");
+        final long offset = resume && file.isFile() ? file.length() : 0;
+        if (offset > 0) {
+            request.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+        } else {
+            request.removeHeaders(HttpHeaders.RANGE);
+        }
+        resumeOffset = offset;
+        return offset;
+    }
+
+    @Override
+    protected void start(
+            final HttpResponse response,
+            final ContentType contentType) throws HttpException, IOException {
+        closeChannel();
+        this.response = response;
+        this.bytesWritten = 0;
+        final int status = response.getCode();
+        if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+            final long start = parseContentRangeStart(response);
+            if (start != resumeOffset) {
+                throw new ProtocolException("Unexpected content range start " + start
+                        + "; expected " + resumeOffset);
+            }
+            final FileChannel fileChannel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            fileChannel.truncate(start);
+            fileChannel.position(start);
+            channel = fileChannel;
+        } else if (status >= HttpStatus.SC_SUCCESS && status < HttpStatus.SC_REDIRECTION) {
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    private static long parseContentRangeStart(final HttpResponse response) throws ProtocolException {
+        final Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (header == null) {
+            throw new ProtocolException("Partial content response without Content-Range header");
+        }
+        final String value = header.getValue().trim();
+        final int dash = value.indexOf('-');
+        if (!value.regionMatches(true, 0, "bytes ", 0, 6) || dash < 0) {
+            throw new ProtocolException("Invalid Content-Range header: " + value);
+        }
+        try {
+            return Long.parseLong(value.substring(6, dash).trim());
+        } catch (final NumberFormatException ex) {
+            throw new ProtocolException("Invalid Content-Range header: " + value);
+        }
+    }
+
+    @Override
+    protected int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(final ByteBuffer src, final boolean endOfStream) throws IOException {
+        final FileChannel fileChannel = channel;
+        if (fileChannel != null) {
+            long total = bytesWritten;
+            while (src.hasRemaining()) {
+                total += fileChannel.write(src);
+            }
+            bytesWritten = total;
+            if (endOfStream) {
+                closeChannel();
+            }
+        } else {
+            ((Buffer) src).position(src.limit());
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult() {
+        closeChannelQuietly();
+        return response;
+    }
+
+    @Override
+    public void failed(final Exception cause) {
+        closeChannelQuietly();
+    }
+
+    private void closeChannel() throws IOException {
+        final FileChannel fileChannel = channel;
+        channel = null;
+        if (fileChannel != null) {
+            fileChannel.close();
+        }
+    }
+
+    private void closeChannelQuietly() {
+        try {
+            closeChannel();
+        } catch (final IOException ignore) {
+        }
+    }
+
+    @Override
+    public void releaseResources() {
+        closeChannelQuietly();
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.apache.hc.client5.http.entity.ZlibPool;
+
+/**
+ * {@link AsyncContentDecoder} for the {@code gzip} content coding as defined
+ * by RFC 1952. Header and trailer are parsed incrementally; the CRC and size
+ * recorded in the trailer of every member are verified. Concatenated members
+ * are decoded as a single stream and trailing garbage following a complete
+ * member is ignored, same as with {@link java.util.zip.GZIPInputStream}.
+ *
+ * @since 5.0
+ */
+public class GzipAsyncContentDecoder extends AbstractInflatingDecoder {
+
+    public static final AsyncContentDecoderFactory FACTORY = new AsyncContentDecoderFactory() {
+
+        @Override
+        public AsyncContentDecoder create() {
+            return new GzipAsyncContentDecoder();
+        }
+
+    };
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    enum State { HEADER, EXTRA_LEN, EXTRA, NAME, COMMENT, HEADER_CRC, DATA, TRAILER, COMPLETED }
+
+    private final Inflater inflater;
+    private final CRC32 crc;
+    private final byte[] scratch;
+
+    private State state;
+    private int flags;
+    private int count;
+    private int remaining;
+    private int members;
+    private boolean released;
+
+    public GzipAsyncContentDecoder(final int bufferSize) {
+        super(bufferSize);
+        this.inflater = ZlibPool.DEFAULT.leaseInflater(true);
+        this.crc = new CRC32();
+        this.scratch = new byte[10];
+        this.state = State.HEADER;
+    }
+
+    public GzipAsyncContentDecoder() {
+        this(4096);
+    }
+
+    @Override
+    public void decode(final ByteBuffer src, final ByteBuffer dst) throws IOException {
+        for (;;) {
+            switch (state) {
+                case HEADER:
+                    if (!readScratch(src, 10)) {
+                        return;
+                    }
+                    if (readUShort(0) != GZIP_MAGIC) {
+                        if (members > 0) {
+                            // Trailing garbage after a complete member is ignored
+                            discard(src);
+                            state = State.COMPLETED;
+                            return;
+                        }
+                        throw new ZipException("Not in GZIP format");
+                    }
+                    if ((scratch[2] & 0xff) != 8) {
+                        throw new ZipException("Unsupported compression method");
+                    }
+                    flags = scratch[3] & 0xff;
+                    crc.reset();
+                    crc.update(scratch, 0, 10);
+                    state = State.EXTRA_LEN;
+                    break;
+                case EXTRA_LEN:
+                    if ((flags & FEXTRA) == FEXTRA) {
+                        if (!readScratch(src, 2)) {
+                            return;
+                        }
+                        crc.update(scratch, 0, 2);
+                        remaining = readUShort(0);
+                    } else {
+                        remaining = 0;
+                    }
+                    state = State.EXTRA;
+                    break;
+                case EXTRA:
+                    while (remaining > 0) {
+                        final int b = read(src);
+                        if (b == -1) {
+                            return;
+                        }
+                        crc.update(b);
+                        remaining--;
+                    }
+                    state = State.NAME;
+                    break;
+                case NAME:
+                    if ((flags & FNAME) == FNAME && !skipZeroTerminated(src)) {
+                        return;
+                    }
+                    state = State.COMMENT;
+                    break;
+                case COMMENT:
+                    if ((flags & FCOMMENT) == FCOMMENT && !skipZeroTerminated(src)) {
+                        return;
+                    }
+                    state = State.HEADER_CRC;
+                    break;
+                case HEADER_CRC:
+                    if ((flags & FHCRC) == FHCRC) {
+                        if (!readScratch(src, 2)) {
+                            return;
+                        }
+                        if (readUShort(0) != ((int) crc.getValue() & 0xffff)) {
+                            throw new ZipException("Corrupt GZIP header");
+                        }
+                    }
+                    crc.reset();
+                    inflater.reset();
+                    state = State.DATA;
+                    break;
+                case DATA:
+                    inflate(inflater, src, dst);
+                    if (!inflater.finished()) {
+                        return;
+                    }
+                    state = State.TRAILER;
+                    break;
+                case TRAILER:
+                    if (!readScratch(src, 8)) {
+                        return;
+                    }
+                    if (readUInt(0) != crc.getValue()
+                            || readUInt(4) != (inflater.getBytesWritten() & 0xffffffffL)) {
+                        throw new ZipException("Corrupt GZIP trailer");
+                    }
+                    members++;
+                    state = State.COMPLETED;
+                    break;
+                case COMPLETED:
+                    final int b = read(src);
+                    if (b == -1) {
+                        return;
+                    }
+                    // Another member follows
+                    scratch[0] = (byte) b;
+                    count = 1;
+                    state = State.HEADER;
+                    break;
+            }
+        }
+    }
+
+    private boolean readScratch(final ByteBuffer src, final int len) {
+        while (count < len) {
+            final int b = read(src);
+            if (b == -1) {
+                return false;
+            }
+            scratch[count++] = (byte) b;
+        }
+        count = 0;
+        return true;
+    }
+
+    private boolean skipZeroTerminated(final ByteBuffer src) {
+        for (;;) {
+            final int b = read(src);
+            if (b == -1) {
+                return false;
+            }
+            crc.update(b);
+            if (b == 0) {
+                return true;
+            }
+        }
+    }
+
+    private int readUShort(final int off) {
+        return (scratch[off] & 0xff) | ((scratch[off + 1] & 0xff) << 8);
+    }
+
+    private long readUInt(final int off) {
+        return ((long) readUShort(off + 2) << 16) | readUShort(off);
+    }
+
+    @Override
+    void inflated(final byte[] b, final int off, final int len) {
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public boolean isCompleted() {
+        // Incomplete header of another member at the end of the content is ignored
+        // as trailing garbage, same as with GZIPInputStream
+        return state == State.COMPLETED || (members > 0 && state.compareTo(State.DATA) < 0);
+    }
+
+    @Override
+    public void releaseResources() {
+        if (!released) {
+            released = true;
+            ZlibPool.DEFAULT.releaseInflater(inflater, true);
+        }
+    }
+
+}
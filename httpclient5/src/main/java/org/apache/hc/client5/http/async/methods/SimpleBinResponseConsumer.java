@@ -0,0 +1,147 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import org.apache.hc.core5.http.ContentTooLongException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * Response consumer that accumulates the response body as binary content
+ * into a {@link SimpleHttpResponse}.
+ * <p>
+ * The body buffer is pre-sized from the {@code Content-Length} header when
+ * present and handed over to the resulting {@link SimpleBody} without copying.
+ * Bodies exceeding the configured maximum are rejected with
+ * {@link ContentTooLongException}.
+ * </p>
+ *
+ * @since 5.0
+ */
+public final class SimpleBinResponseConsumer extends AbstractBinResponseConsumer<SimpleHttpResponse> {
+
+    private static final int DEFAULT_INITIAL_SIZE = 4096;
+
+    private final int maxBodySize;
+
+    private volatile HttpResponse response;
+    private volatile ContentType contentType;
+    private volatile ByteArrayBuffer buffer;
+
+    /**
+     * @param maxBodySize maximum number of body bytes to accept.
+     */
+    public SimpleBinResponseConsumer(final int maxBodySize) {
+        super();
+        this.maxBodySize = Args.positive(maxBodySize, "Max body size");
+    }
+
+    public SimpleBinResponseConsumer() {
+        this(Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected void start(
+            final HttpResponse response,
+            final ContentType contentType) throws HttpException, IOException {
+        this.response = response;
+        this.contentType = contentType;
+        this.buffer = null;
+        final long contentLength = getContentLength(response);
+        if (contentLength > maxBodySize) {
+            throw new ContentTooLongException("Content length " + contentLength
+                    + " exceeds maximum body size " + maxBodySize);
+        }
+        if (contentLength >= 0) {
+            this.buffer = new ByteArrayBuffer((int) Math.max(contentLength, 1));
+        }
+    }
+
+    private static long getContentLength(final HttpResponse response) {
+        final Header header = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        if (header == null) {
+            return -1;
+        }
+        try {
+            final long len = Long.parseLong(header.getValue().trim());
+            return len >= 0 ? len : -1;
+        } catch (final NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    @Override
+    protected int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(final ByteBuffer src, final boolean endOfStream) throws IOException {
+        if (buffer == null) {
+            buffer = new ByteArrayBuffer(Math.min(DEFAULT_INITIAL_SIZE, maxBodySize));
+        }
+        final int len = src.remaining();
+        if (len == 0) {
+            return;
+        }
+        if ((long) buffer.length() + len > maxBodySize) {
+            throw new ContentTooLongException("Response body exceeds maximum body size " + maxBodySize);
+        }
+        if (src.hasArray()) {
+            buffer.append(src.array(), src.arrayOffset() + src.position(), len);
+            ((Buffer) src).position(src.limit());
+        } else {
+            final int off = buffer.length();
+            buffer.ensureCapacity(len);
+            buffer.setLength(off + len);
+            src.get(buffer.array(), off, len);
+        }
+    }
+
+    @Override
+    protected SimpleHttpResponse buildResult() {
+        final SimpleBody body = buffer != null
+                ? SimpleBody.create(buffer.array(), 0, buffer.length(), contentType)
+                : null;
+        return new SimpleHttpResponse(response, body);
+    }
+
+    @Override
+    public void releaseResources() {
+        buffer = null;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Message body of {@link SimpleHttpRequest}s and {@link SimpleHttpResponse}s
+ * held either as text or as binary content.
+ * <p>
+ * Binary content is retained as given without copying. A text view of binary
+ * content and a binary view of text content are created lazily on first access
+ * using the charset of the content type or {@code US-ASCII} if not specified.
+ * </p>
+ *
+ * @since 5.0
+ */
+public final class SimpleBody {
+
+    private final String bodyAsText;
+    private final ByteBuffer bodyAsBuffer;
+    private final ContentType contentType;
+
+    private volatile String text;
+    private volatile byte[] bytes;
+
+    SimpleBody(final String bodyAsText, final ByteBuffer bodyAsBuffer, final ContentType contentType) {
+        this.bodyAsText = bodyAsText;
+        this.bodyAsBuffer = bodyAsBuffer;
+        this.contentType = contentType;
+    }
+
+    public static SimpleBody create(final String body, final ContentType contentType) {
+        Args.notNull(body, "Body");
+        return new SimpleBody(body, null, contentType);
+    }
+
+    public static SimpleBody create(final byte[] body, final ContentType contentType) {
+        Args.notNull(body, "Body");
+        return new SimpleBody(null, ByteBuffer.wrap(body), contentType);
+    }
+
+    public static SimpleBody create(final byte[] body, final int off, final int len, final ContentType contentType) {
+        Args.notNull(body, "Body");
+        return new SimpleBody(null, ByteBuffer.wrap(body, off, len).slice(), contentType);
+    }
+
+    /**
+     * Creates body backed by the remaining content of the given buffer.
+     * The buffer content is not copied and must not be modified afterwards.
+     */
+    public static SimpleBody create(final ByteBuffer body, final ContentType contentType) {
+        Args.notNull(body, "Body");
+        return new SimpleBody(null, body.slice(), contentType);
+    }
+
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    public boolean isText() {
+        return bodyAsText != null;
+    }
+
+    public boolean isBytes() {
+        return bodyAsBuffer != null;
+    }
+
+    private Charset getCharset() {
+        final Charset charset = contentType != null ? contentType.getCharset() : null;
+        return charset != null ? charset : StandardCharsets.US_ASCII;
+    }
+
+    /**
+     * Returns the body as text, decoding binary content if necessary.
+     */
+    public String getBodyText() {
+        if (bodyAsText != null) {
+            return bodyAsText;
+        }
+        String result = text;
+        if (result == null) {
+            result = getCharset().decode(bodyAsBuffer.duplicate()).toString();
+            text = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the body as a byte array. Binary content given as a whole array
+     * is returned as is; the returned array must not be modified.
+     */
+    public byte[] getBodyBytes() {
+        byte[] result = bytes;
+        if (result == null) {
+            if (bodyAsText != null) {
+                result = bodyAsText.getBytes(getCharset());
+            } else if (bodyAsBuffer.hasArray() && bodyAsBuffer.arrayOffset() == 0
+                    && bodyAsBuffer.remaining() == bodyAsBuffer.array().length) {
+                result = bodyAsBuffer.array();
+            } else {
+                result = new byte[bodyAsBuffer.remaining()];
+                bodyAsBuffer.duplicate().get(result);
+            }
+            bytes = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a read-only view of the body content.
+     */
+    public ByteBuffer getBodyBuffer() {
+        if (bodyAsBuffer != null) {
+            return bodyAsBuffer.asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(getBodyBytes()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the length of the body content in bytes.
+     */
+    public int length() {
+        return bodyAsBuffer != null ? bodyAsBuffer.remaining() : getBodyBytes().length;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("content type: ").append(contentType);
+        if (bodyAsText != null) {
+            buf.append("; text: ").append(bodyAsText.length()).append(" chars");
+        } else {
+            buf.append("; bytes: ").append(bodyAsBuffer.remaining());
+        }
+        return buf.toString();
+    }
+
+}
@@ -24,10 +24,10 @@
  * <http://www.apache.org/>.
  *
  */
-
 package org.apache.hc.client5.http.async.methods;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpHost;
@@ -37,15 +37,24 @@ import org.apache.hc.core5.http.message.HttpRequestWrapper;
 
 public final class SimpleHttpRequest extends HttpRequestWrapper {
 
-    private final String body;
+    private final SimpleBody body;
     private final ContentType contentType;
 
     public SimpleHttpRequest(final HttpRequest head, final String body, final ContentType contentType) {
         super(head);
-        this.body = body;
+        this.body = body != null ? SimpleBody.create(body, contentType) : null;
         this.contentType = contentType;
     }
 
+    /**
+     * @since 5.0
+     */
+    public SimpleHttpRequest(final HttpRequest head, final SimpleBody body) {
+        super(head);
+        this.body = body;
+        this.contentType = body != null ? body.getContentType() : null;
+    }
+
     public SimpleHttpRequest(
             final String method,
             final HttpHost host,
@@ -53,17 +62,66 @@ public final class SimpleHttpRequest extends HttpRequestWrapper {
             final String body,
             final ContentType contentType) {
         super(new BasicHttpRequest(method, host, path));
-        this.body = body;
+        this.body = body != null ? SimpleBody.create(body, contentType) : null;
         this.contentType = contentType;
     }
 
+    /**
+     * @since 5.0
+     */
+    public SimpleHttpRequest(
+            final String method,
+            final HttpHost host,
+            final String path,
+            final SimpleBody body) {
+        super(new BasicHttpRequest(method, host, path));
+        this.body = body;
+        this.contentType = body != null ? body.getContentType() : null;
+    }
+
     public SimpleHttpRequest(final String method, final URI requestUri, final String body, final ContentType contentType) {
         super(new BasicHttpRequest(method, requestUri));
-        this.body = body;
+        this.body = body != null ? SimpleBody.create(body, contentType) : null;
         this.contentType = contentType;
     }
 
+    /**
+     * @since 5.0
+     */
+    public SimpleHttpRequest(final String method, final URI requestUri, final SimpleBody body) {
+        super(new BasicHttpRequest(method, requestUri));
+        this.body = body;
+        this.contentType = body != null ? body.getContentType() : null;
+    }
+
+    /**
+     * Returns the body as text, decoding binary content with the charset
+     * of the content type if necessary.
+     */
     public String getBody() {
+        return body != null ? body.getBodyText() : null;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public byte[] getBodyBytes() {
+        return body != null ? body.getBodyBytes() : null;
+    }
+
+    /**
+     * Returns a read-only view of the body content without copying it.
+     *
+     * @since 5.0
+     */
+    public ByteBuffer getBodyBuffer() {
+        return body != null ? body.getBodyBuffer() : null;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public SimpleBody getSimpleBody() {
         return body;
     }
 
@@ -72,4 +130,3 @@ public final class SimpleHttpRequest extends HttpRequestWrapper {
     }
 
 }
-
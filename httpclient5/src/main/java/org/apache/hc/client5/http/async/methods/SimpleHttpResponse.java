@@ -24,9 +24,10 @@
  * <http://www.apache.org/>.
  *
  */
-
 package org.apache.hc.client5.http.async.methods;
 
+import java.nio.ByteBuffer;
+
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.message.BasicHttpResponse;
@@ -34,7 +35,7 @@ import org.apache.hc.core5.http.message.HttpResponseWrapper;
 
 public final class SimpleHttpResponse extends HttpResponseWrapper {
 
-    private final String body;
+    private final SimpleBody body;
     private final ContentType contentType;
 
     public SimpleHttpResponse(
@@ -42,27 +43,72 @@ public final class SimpleHttpResponse extends HttpResponseWrapper {
             final String body,
             final ContentType contentType) {
         super(head);
-        this.body = body;
+        this.body = body != null ? SimpleBody.create(body, contentType) : null;
         this.contentType = contentType;
     }
 
+    /**
+     * @since 5.0
+     */
+    public SimpleHttpResponse(final HttpResponse head, final SimpleBody body) {
+        super(head);
+        this.body = body;
+        this.contentType = body != null ? body.getContentType() : null;
+    }
+
     public SimpleHttpResponse(
             final int code,
             final String reasonPhrase,
             final String body,
             final ContentType contentType) {
         super(new BasicHttpResponse(code, reasonPhrase));
-        this.body = body;
+        this.body = body != null ? SimpleBody.create(body, contentType) : null;
         this.contentType = contentType;
     }
 
     public SimpleHttpResponse(final int code, final String body, final ContentType contentType) {
         super(new BasicHttpResponse(code));
-        this.body = body;
+        this.body = body != null ? SimpleBody.create(body, contentType) : null;
         this.contentType = contentType;
     }
 
+    /**
+     * @since 5.0
+     */
+    public SimpleHttpResponse(final int code, final SimpleBody body) {
+        super(new BasicHttpResponse(code));
+        this.body = body;
+        this.contentType = body != null ? body.getContentType() : null;
+    }
+
+    /**
+     * Returns the body as text, decoding binary content with the charset
+     * of the content type if necessary.
+     */
     public String getBody() {
+        return body != null ? body.getBodyText() : null;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public byte[] getBodyBytes() {
+        return body != null ? body.getBodyBytes() : null;
+    }
+
+    /**
+     * Returns a read-only view of the body content without copying it.
+     *
+     * @since 5.0
+     */
+    public ByteBuffer getBodyBuffer() {
+        return body != null ? body.getBodyBuffer() : null;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public SimpleBody getSimpleBody() {
         return body;
     }
 
@@ -71,4 +117,3 @@ public final class SimpleHttpResponse extends HttpResponseWrapper {
     }
 
 }
-
@@ -26,14 +26,25 @@
  */
 package org.apache.hc.client5.http.async.methods;
 
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
 import org.apache.hc.core5.http.nio.entity.StringAsyncEntityProducer;
 import org.apache.hc.core5.util.Args;
 
 public final class SimpleRequestProducer extends DefaultAsyncRequestProducer {
 
     public SimpleRequestProducer(final SimpleHttpRequest request) {
-        super(Args.notNull(request, "Request"), request.getBody() != null ?
-                new StringAsyncEntityProducer(request.getBody(), request.getContentType()) : null);
+        super(Args.notNull(request, "Request"), createEntityProducer(request.getSimpleBody()));
+    }
+
+    private static AsyncEntityProducer createEntityProducer(final SimpleBody body) {
+        if (body == null) {
+            return null;
+        }
+        if (body.isText()) {
+            return new StringAsyncEntityProducer(body.getBodyText(), body.getContentType());
+        }
+        return new BasicAsyncEntityProducer(body.getBodyBytes(), body.getContentType());
     }
 
 }
@@ -0,0 +1,54 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cookie;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Extended version of the {@link CookieStore} interface that maintains an index of its
+ * cookies and is capable of selecting those that may apply to the given
+ * {@link CookieOrigin} without examining the entire content of the store.
+ *
+ * @since 5.0
+ */
+public interface IndexedCookieStore extends CookieStore {
+
+    /**
+     * Returns cookies that have not expired by the given date and whose domain and path
+     * attributes may match the given origin as defined by RFC 6265. The result is
+     * a candidate list only and is expected to be further filtered with
+     * {@link CookieSpec#match(Cookie, CookieOrigin)}. Implementations may use this method
+     * to evict cookies that have already expired.
+     *
+     * @param origin the cookie origin.
+     * @param date the current date.
+     * @return matching candidates.
+     */
+    List<Cookie> getCookies(CookieOrigin origin, Date date);
+
+}
@@ -41,11 +41,6 @@ import org.apache.hc.core5.util.Args;
  */
 public class DecompressingEntity extends HttpEntityWrapper {
 
-    /**
-     * Default buffer size.
-     */
-    private static final int BUFFER_SIZE = 1024 * 2;
-
     private final InputStreamFactory inputStreamFactory;
     /**
      * {@link #getContent()} method must return the same {@link InputStream}
@@ -86,12 +81,14 @@ public class DecompressingEntity extends HttpEntityWrapper {
     @Override
     public void writeTo(final OutputStream outstream) throws IOException {
         Args.notNull(outstream, "Output stream");
+        final byte[] buffer = ZlibPool.DEFAULT.leaseBuffer();
         try (InputStream instream = getContent()) {
-            final byte[] buffer = new byte[BUFFER_SIZE];
             int l;
             while ((l = instream.read(buffer)) != -1) {
                 outstream.write(buffer, 0, l);
             }
+        } finally {
+            ZlibPool.DEFAULT.releaseBuffer(buffer);
         }
     }
 
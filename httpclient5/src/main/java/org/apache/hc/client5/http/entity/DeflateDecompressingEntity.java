@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.util.Args;
 
 /**
  * {@link org.apache.hc.core5.http.io.entity.HttpEntityWrapper} responsible for
@@ -57,14 +58,31 @@ public class DeflateDecompressingEntity extends DecompressingEntity {
      *            a non-null {@link HttpEntity} to be wrapped
      */
     public DeflateDecompressingEntity(final HttpEntity entity) {
+        this(entity, ZlibPool.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@link DeflateDecompressingEntity} which will wrap the specified
+     * {@link HttpEntity} and decompress its content with inflaters and buffers
+     * obtained from the given pool.
+     *
+     * @param entity
+     *            a non-null {@link HttpEntity} to be wrapped
+     * @param pool
+     *            the non-null {@link ZlibPool} to be used
+     *
+     * @since 5.0
+     */
+    public DeflateDecompressingEntity(final HttpEntity entity, final ZlibPool pool) {
         super(entity, new InputStreamFactory() {
 
             @Override
             public InputStream create(final InputStream instream) throws IOException {
-                return new DeflateInputStream(instream);
+                return new DeflateInputStream(instream, pool);
             }
 
         });
+        Args.notNull(pool, "Zlib pool");
     }
 
 }
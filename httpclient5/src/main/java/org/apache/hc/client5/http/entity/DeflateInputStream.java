@@ -28,11 +28,11 @@ package org.apache.hc.client5.http.entity;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
-import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipException;
 
+import org.apache.hc.core5.util.Args;
+
 /**
  * Deflate input stream.    This class includes logic needed for various Rfc's in order
  * to reasonably implement the "deflate" compression style.
@@ -42,17 +42,23 @@ public class DeflateInputStream extends InputStream {
     private final InputStream sourceStream;
 
     public DeflateInputStream(final InputStream wrapped) throws IOException {
+        this(wrapped, ZlibPool.DEFAULT);
+    }
 
-        final PushbackInputStream pushback = new PushbackInputStream(wrapped, 2);
-        final int i1 = pushback.read();
-        final int i2 = pushback.read();
+    /**
+     * @param wrapped the stream of deflated content.
+     * @param pool the pool to obtain the {@link java.util.zip.Inflater} and input buffer from.
+     *
+     * @since 5.0
+     */
+    public DeflateInputStream(final InputStream wrapped, final ZlibPool pool) throws IOException {
+        Args.notNull(pool, "Zlib pool");
+        final int i1 = wrapped.read();
+        final int i2 = i1 != -1 ? wrapped.read() : -1;
         if (i1 == -1 || i2 == -1) {
             throw new ZipException("Unexpected end of stream");
         }
 
-        pushback.unread(i2);
-        pushback.unread(i1);
-
         boolean nowrap = true;
         final int b1 = i1 & 0xFF;
         final int compressionMethod = b1 & 0xF;
@@ -61,7 +67,7 @@ public class DeflateInputStream extends InputStream {
         if (compressionMethod == 8 && compressionInfo <= 7 && ((b1 << 8) | b2) % 31 == 0) {
             nowrap = false;
         }
-        sourceStream = new DeflateStream(pushback, new Inflater(nowrap));
+        sourceStream = new DeflateStream(wrapped, pool, nowrap, (byte) i1, (byte) i2);
     }
 
     /**
@@ -138,10 +144,25 @@ public class DeflateInputStream extends InputStream {
 
     static class DeflateStream extends InflaterInputStream {
 
+        private final ZlibPool pool;
+        private final boolean nowrap;
+
         private boolean closed = false;
 
-        public DeflateStream(final InputStream in, final Inflater inflater) {
-            super(in, inflater);
+        /**
+         * Creates stream with the two bytes already read from the wrapped
+         * stream for format detection pending as inflater input.
+         */
+        public DeflateStream(
+                final InputStream in, final ZlibPool pool, final boolean nowrap, final byte b1, final byte b2) {
+            super(in, pool.leaseInflater(nowrap), 1);
+            this.pool = pool;
+            this.nowrap = nowrap;
+            this.buf = pool.leaseBuffer();
+            this.buf[0] = b1;
+            this.buf[1] = b2;
+            this.len = 2;
+            this.inf.setInput(this.buf, 0, 2);
         }
 
         @Override
@@ -150,11 +171,14 @@ public class DeflateInputStream extends InputStream {
                 return;
             }
             closed = true;
-            inf.end();
-            super.close();
+            try {
+                super.close();
+            } finally {
+                pool.releaseInflater(inf, nowrap);
+                pool.releaseBuffer(buf);
+            }
         }
 
     }
 
 }
-
@@ -56,7 +56,6 @@ package org.apache.hc.client5.http.entity;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
@@ -72,8 +71,18 @@ public class GzipCompressingEntity extends HttpEntityWrapper {
 
     private static final String GZIP_CODEC = "gzip";
 
+    private final ZlibPool pool;
+
     public GzipCompressingEntity(final HttpEntity entity) {
+        this(entity, ZlibPool.DEFAULT);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public GzipCompressingEntity(final HttpEntity entity, final ZlibPool pool) {
         super(entity);
+        this.pool = Args.notNull(pool, "Zlib pool");
     }
 
     @Override
@@ -100,11 +109,15 @@ public class GzipCompressingEntity extends HttpEntityWrapper {
     @Override
     public void writeTo(final OutputStream outstream) throws IOException {
         Args.notNull(outstream, "Output stream");
-        final GZIPOutputStream gzip = new GZIPOutputStream(outstream);
-        super.writeTo(gzip);
-        // Only close output stream if the wrapped entity has been
-        // successfully written out
-        gzip.close();
+        final GzipCompressingOutputStream gzip = new GzipCompressingOutputStream(outstream, pool);
+        try {
+            super.writeTo(gzip);
+            // Only close output stream if the wrapped entity has been
+            // successfully written out
+            gzip.close();
+        } finally {
+            gzip.release();
+        }
     }
 
 }
@@ -0,0 +1,143 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Equivalent of {@link java.util.zip.GZIPOutputStream} that obtains its
+ * {@link java.util.zip.Deflater} and output buffer from a {@link ZlibPool}.
+ * The deflater and buffer are returned to the pool by {@link #release()},
+ * which is also invoked on {@link #close()}.
+ */
+class GzipCompressingOutputStream extends DeflaterOutputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final byte[] HEADER = {
+            (byte) GZIP_MAGIC,          // Magic number (short)
+            (byte) (GZIP_MAGIC >> 8),   // Magic number (short)
+            8,                          // Compression method (CM)
+            0,                          // Flags (FLG)
+            0,                          // Modification time MTIME (int)
+            0,                          // Modification time MTIME (int)
+            0,                          // Modification time MTIME (int)
+            0,                          // Modification time MTIME (int)
+            0,                          // Extra flags (XFLG)
+            (byte) 0xff                 // Operating system (OS): unknown
+    };
+
+    private final ZlibPool pool;
+    private final CRC32 crc;
+
+    private boolean finished;
+    private boolean released;
+
+    GzipCompressingOutputStream(final OutputStream out, final ZlibPool pool) throws IOException {
+        super(out, pool.leaseDeflater(), 1);
+        this.pool = pool;
+        this.buf = pool.leaseBuffer();
+        this.crc = new CRC32();
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (released) {
+            throw new IOException("Stream closed");
+        }
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (released) {
+            throw new IOException("Stream closed");
+        }
+        if (finished) {
+            return;
+        }
+        def.finish();
+        while (!def.finished()) {
+            final int n = def.deflate(buf, 0, buf.length);
+            if (def.finished() && n <= buf.length - 8) {
+                writeTrailer(buf, n);
+                out.write(buf, 0, n + 8);
+                finished = true;
+                return;
+            }
+            if (n > 0) {
+                out.write(buf, 0, n);
+            }
+        }
+        final byte[] trailer = new byte[8];
+        writeTrailer(trailer, 0);
+        out.write(trailer);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!released) {
+            try {
+                finish();
+                out.close();
+            } finally {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Returns the deflater and buffer to the pool without finishing
+     * the stream or closing the underlying output stream.
+     */
+    void release() {
+        if (!released) {
+            released = true;
+            pool.releaseDeflater(def);
+            pool.releaseBuffer(buf);
+        }
+    }
+
+    private void writeTrailer(final byte[] b, final int offset) {
+        writeInt((int) crc.getValue(), b, offset);
+        writeInt(def.getTotalIn(), b, offset + 4);
+    }
+
+    private static void writeInt(final int i, final byte[] b, final int offset) {
+        b[offset] = (byte) i;
+        b[offset + 1] = (byte) (i >> 8);
+        b[offset + 2] = (byte) (i >> 16);
+        b[offset + 3] = (byte) (i >> 24);
+    }
+
+}
@@ -28,9 +28,9 @@ package org.apache.hc.client5.http.entity;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.util.Args;
 
 /**
  * {@link org.apache.hc.core5.http.io.entity.HttpEntityWrapper} for handling gzip
@@ -48,14 +48,31 @@ public class GzipDecompressingEntity extends DecompressingEntity {
      *            the non-null {@link HttpEntity} to be wrapped
      */
     public GzipDecompressingEntity(final HttpEntity entity) {
+        this(entity, ZlibPool.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@link GzipDecompressingEntity} which will wrap the specified
+     * {@link HttpEntity} and decompress its content with inflaters and buffers
+     * obtained from the given pool.
+     *
+     * @param entity
+     *            the non-null {@link HttpEntity} to be wrapped
+     * @param pool
+     *            the non-null {@link ZlibPool} to be used
+     *
+     * @since 5.0
+     */
+    public GzipDecompressingEntity(final HttpEntity entity, final ZlibPool pool) {
         super(entity, new InputStreamFactory() {
 
             @Override
             public InputStream create(final InputStream instream) throws IOException {
-                return new GZIPInputStream(instream);
+                return new GzipDecompressingInputStream(instream, pool);
             }
 
         });
+        Args.notNull(pool, "Zlib pool");
     }
 
 }
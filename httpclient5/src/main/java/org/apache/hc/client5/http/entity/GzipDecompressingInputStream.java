@@ -0,0 +1,218 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Equivalent of {@link java.util.zip.GZIPInputStream} that obtains its
+ * {@link java.util.zip.Inflater} and input buffer from a {@link ZlibPool}
+ * and returns them to the pool when closed.
+ *
+ * @since 5.0
+ */
+public class GzipDecompressingInputStream extends InflaterInputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final ZlibPool pool;
+    private final CRC32 crc;
+
+    private boolean eos;
+    private boolean released;
+
+    public GzipDecompressingInputStream(final InputStream in) throws IOException {
+        this(in, ZlibPool.DEFAULT);
+    }
+
+    public GzipDecompressingInputStream(final InputStream in, final ZlibPool pool) throws IOException {
+        super(in, Args.notNull(pool, "Zlib pool").leaseInflater(true), 1);
+        this.pool = pool;
+        this.buf = pool.leaseBuffer();
+        this.crc = new CRC32();
+        try {
+            readHeader(in);
+        } catch (final IOException ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (released) {
+            throw new IOException("Stream closed");
+        }
+        if (eos) {
+            return -1;
+        }
+        final int n = super.read(b, off, len);
+        if (n == -1) {
+            if (readTrailer()) {
+                eos = true;
+            } else {
+                return this.read(b, off, len);
+            }
+        } else {
+            crc.update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!released) {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+    }
+
+    private void release() {
+        released = true;
+        eos = true;
+        pool.releaseInflater(inf, true);
+        pool.releaseBuffer(buf);
+    }
+
+    private int readHeader(final InputStream this_in) throws IOException {
+        crc.reset();
+        if (readUShort(this_in, true) != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readUByte(this_in, true) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        final int flg = readUByte(this_in, true);
+        skipBytes(this_in, 6);
+        int n = 2 + 2 + 6;
+        if ((flg & FEXTRA) == FEXTRA) {
+            final int m = readUShort(this_in, true);
+            skipBytes(this_in, m);
+            n += m + 2;
+        }
+        if ((flg & FNAME) == FNAME) {
+            do {
+                n++;
+            } while (readUByte(this_in, true) != 0);
+        }
+        if ((flg & FCOMMENT) == FCOMMENT) {
+            do {
+                n++;
+            } while (readUByte(this_in, true) != 0);
+        }
+        if ((flg & FHCRC) == FHCRC) {
+            final int v = (int) crc.getValue() & 0xffff;
+            if (readUShort(this_in, false) != v) {
+                throw new ZipException("Corrupt GZIP header");
+            }
+            n += 2;
+        }
+        crc.reset();
+        return n;
+    }
+
+    private boolean readTrailer() throws IOException {
+        InputStream in = this.in;
+        final int n = inf.getRemaining();
+        if (n > 0) {
+            in = new SequenceInputStream(
+                    new ByteArrayInputStream(buf, len - n, n),
+                    new FilterInputStream(in) {
+
+                        @Override
+                        public void close() throws IOException {
+                        }
+
+                    });
+        }
+        if (readUInt(in) != crc.getValue() || readUInt(in) != (inf.getBytesWritten() & 0xffffffffL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+        // Concatenated members: a gzip header is at least 10 bytes, trailer 8
+        if (this.in.available() > 0 || n > 26) {
+            int m = 8;
+            try {
+                m += readHeader(in);
+            } catch (final IOException ex) {
+                // Trailing garbage is ignored
+                return true;
+            }
+            inf.reset();
+            if (n > m) {
+                inf.setInput(buf, len - n + m, n - m);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private long readUInt(final InputStream in) throws IOException {
+        final long s = readUShort(in, false);
+        return ((long) readUShort(in, false) << 16) | s;
+    }
+
+    private int readUShort(final InputStream in, final boolean checked) throws IOException {
+        final int b = readUByte(in, checked);
+        return (readUByte(in, checked) << 8) | b;
+    }
+
+    private int readUByte(final InputStream in, final boolean checked) throws IOException {
+        final int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        if (checked) {
+            crc.update(b);
+        }
+        return b;
+    }
+
+    private void skipBytes(final InputStream in, final int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readUByte(in, true);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Recycling pool of {@link Inflater}s, {@link Deflater}s and I/O buffers
+ * used by content coding streams.
+ * <p>
+ * Every {@link Inflater} and {@link Deflater} holds native zlib state that is
+ * otherwise only freed by {@code end()} or finalization. Instances released
+ * to the pool are reset and handed out again; instances that do not fit into
+ * the pool are ended immediately, so native memory is never left to the
+ * finalizer.
+ * </p>
+ * <p>
+ * Leased objects must be released exactly once and must not be used after
+ * they have been released.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ZlibPool {
+
+    public static final ZlibPool DEFAULT = new ZlibPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() * 2), 4096);
+
+    private final int maxPooled;
+    private final int bufferSize;
+
+    private final Entries<Inflater> inflaters;
+    private final Entries<Inflater> nowrapInflaters;
+    private final Entries<Deflater> nowrapDeflaters;
+    private final Entries<byte[]> buffers;
+
+    /**
+     * @param maxPooled maximum number of idle instances of each kind kept
+     *   in the pool. {@code 0} disables pooling.
+     * @param bufferSize size of the I/O buffers handed out by the pool.
+     */
+    public ZlibPool(final int maxPooled, final int bufferSize) {
+        this.maxPooled = Args.notNegative(maxPooled, "Max pooled");
+        this.bufferSize = Args.positive(bufferSize, "Buffer size");
+        this.inflaters = new Entries<>();
+        this.nowrapInflaters = new Entries<>();
+        this.nowrapDeflaters = new Entries<>();
+        this.buffers = new Entries<>();
+    }
+
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Leases an {@link Inflater}.
+     *
+     * @param nowrap if {@code true} the inflater expects raw deflate data
+     *   without the zlib header and checksum, as used by the gzip format.
+     */
+    public Inflater leaseInflater(final boolean nowrap) {
+        final Inflater inflater = (nowrap ? nowrapInflaters : inflaters).poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+
+    /**
+     * Returns an {@link Inflater} obtained with {@link #leaseInflater(boolean)}
+     * with the same {@code nowrap} value to the pool.
+     */
+    public void releaseInflater(final Inflater inflater, final boolean nowrap) {
+        if (inflater == null) {
+            return;
+        }
+        inflater.reset();
+        if (!(nowrap ? nowrapInflaters : inflaters).offer(inflater, maxPooled)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Leases a {@link Deflater} with default compression level that produces
+     * raw deflate data as used by the gzip format.
+     */
+    public Deflater leaseDeflater() {
+        final Deflater deflater = nowrapDeflaters.poll();
+        return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Returns a {@link Deflater} obtained with {@link #leaseDeflater()} to the pool.
+     */
+    public void releaseDeflater(final Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        deflater.reset();
+        if (!nowrapDeflaters.offer(deflater, maxPooled)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Leases an I/O buffer of {@link #getBufferSize()} bytes. The content
+     * of the buffer is undefined.
+     */
+    public byte[] leaseBuffer() {
+        final byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Returns an I/O buffer obtained with {@link #leaseBuffer()} to the pool.
+     */
+    public void releaseBuffer(final byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            return;
+        }
+        buffers.offer(buffer, maxPooled);
+    }
+
+    /**
+     * Ends all pooled {@link Inflater}s and {@link Deflater}s and discards
+     * pooled buffers.
+     */
+    public void clear() {
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+        while ((inflater = nowrapInflaters.poll()) != null) {
+            inflater.end();
+        }
+        Deflater deflater;
+        while ((deflater = nowrapDeflaters.poll()) != null) {
+            deflater.end();
+        }
+        buffers.clear();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[inflaters: ").append(inflaters.size.get() + nowrapInflaters.size.get());
+        buffer.append("; deflaters: ").append(nowrapDeflaters.size.get());
+        buffer.append("; buffers: ").append(buffers.size.get());
+        buffer.append("; max pooled: ").append(maxPooled);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static class Entries<T> {
+
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        T poll() {
+            final T entry = queue.poll();
+            if (entry != null) {
+                size.decrementAndGet();
+            }
+            return entry;
+        }
+
+        boolean offer(final T entry, final int max) {
+            if (size.incrementAndGet() > max) {
+                size.decrementAndGet();
+                return false;
+            }
+            queue.add(entry);
+            return true;
+        }
+
+        void clear() {
+            while (poll() != null) {
+                // discard
+            }
+        }
+
+    }
+
+}
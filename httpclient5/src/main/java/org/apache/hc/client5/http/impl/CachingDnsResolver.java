@@ -0,0 +1,346 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link DnsResolver} implementation that caches results of another resolver.
+ * <p>
+ * Successful lookups are cached for the configured time to live. Once expired
+ * an entry can still be served for the configured stale period while the host
+ * is being re-resolved in the background. Failed lookups are cached for the
+ * (usually much shorter) negative time to live. Concurrent lookups of the same
+ * host name are merged into a single call to the underlying resolver.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CachingDnsResolver implements DnsResolver, Closeable {
+
+    public static final long DEFAULT_TIME_TO_LIVE = 60000L;
+    public static final long DEFAULT_STALE_TIME_TO_LIVE = 60000L;
+    public static final long DEFAULT_NEGATIVE_TIME_TO_LIVE = 5000L;
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final DnsResolver dnsResolver;
+    private final long timeToLive;
+    private final long staleTimeToLive;
+    private final long negativeTimeToLive;
+    private final int maxEntries;
+    private final ConcurrentMap<String, CacheEntry> cache;
+    private final ConcurrentMap<String, FutureTask<CacheEntry>> lookups;
+    private final ExecutorService executorService;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+
+    /**
+     * @param dnsResolver the resolver to cache results of. If {@code null}
+     *   {@link SystemDefaultDnsResolver} is used.
+     * @param timeToLive time successful lookups are considered fresh.
+     * @param staleTimeToLive time past expiry stale entries can still be served
+     *   while being refreshed in the background. Non-positive value disables
+     *   background refresh.
+     * @param negativeTimeToLive time failed lookups are cached. Non-positive value
+     *   disables negative caching.
+     * @param tunit the time unit of the time to live values.
+     * @param maxEntries the maximum number of cached host names.
+     */
+    public CachingDnsResolver(
+            final DnsResolver dnsResolver,
+            final long timeToLive,
+            final long staleTimeToLive,
+            final long negativeTimeToLive,
+            final TimeUnit tunit,
+            final int maxEntries) {
+        super();
+        Args.notNull(tunit, "Time unit");
+        Args.positive(maxEntries, "Max entries");
+        this.dnsResolver = dnsResolver != null ? dnsResolver : SystemDefaultDnsResolver.INSTANCE;
+        this.timeToLive = tunit.toMillis(timeToLive);
+        this.staleTimeToLive = tunit.toMillis(staleTimeToLive);
+        this.negativeTimeToLive = tunit.toMillis(negativeTimeToLive);
+        this.maxEntries = maxEntries;
+        this.cache = new ConcurrentHashMap<>();
+        this.lookups = new ConcurrentHashMap<>();
+        this.executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DefaultThreadFactory("dns-refresh", true));
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+    }
+
+    public CachingDnsResolver(final DnsResolver dnsResolver, final long timeToLive, final TimeUnit tunit) {
+        this(dnsResolver, tunit != null ? tunit.toMillis(timeToLive) : timeToLive,
+                DEFAULT_STALE_TIME_TO_LIVE, DEFAULT_NEGATIVE_TIME_TO_LIVE, TimeUnit.MILLISECONDS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingDnsResolver(final DnsResolver dnsResolver) {
+        this(dnsResolver, DEFAULT_TIME_TO_LIVE, DEFAULT_STALE_TIME_TO_LIVE, DEFAULT_NEGATIVE_TIME_TO_LIVE,
+                TimeUnit.MILLISECONDS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingDnsResolver() {
+        this(null);
+    }
+
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        Args.notNull(host, "Host name");
+        final CacheEntry entry = this.cache.get(host);
+        if (entry != null) {
+            final long now = System.currentTimeMillis();
+            if (now < entry.expiry) {
+                this.hitCount.incrementAndGet();
+                return entry.getAddresses();
+            }
+            if (entry.isResolved() && now < entry.staleExpiry) {
+                this.hitCount.incrementAndGet();
+                refresh(host, entry);
+                return entry.getAddresses();
+            }
+        }
+        this.missCount.incrementAndGet();
+        return lookup(host, false).getAddresses();
+    }
+
+    @Override
+    public String resolveCanonicalHostname(final String host) throws UnknownHostException {
+        return this.dnsResolver.resolveCanonicalHostname(host);
+    }
+
+    private void refresh(final String host, final CacheEntry entry) {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Refreshing stale DNS entry for " + host);
+            }
+            try {
+                this.executorService.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            lookup(host, true);
+                        } catch (final UnknownHostException ex) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Background lookup of " + host + " failed: " + ex.getMessage());
+                            }
+                        }
+                    }
+
+                });
+            } catch (final RejectedExecutionException ex) {
+                entry.refreshing.set(false);
+            }
+        }
+    }
+
+    private CacheEntry lookup(final String host, final boolean refresh) throws UnknownHostException {
+        FutureTask<CacheEntry> task = this.lookups.get(host);
+        if (task == null) {
+            final FutureTask<CacheEntry> newTask = new FutureTask<>(new Callable<CacheEntry>() {
+
+                @Override
+                public CacheEntry call() {
+                    return doLookup(host, refresh);
+                }
+
+            });
+            task = this.lookups.putIfAbsent(host, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    newTask.run();
+                } finally {
+                    this.lookups.remove(host, newTask);
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("Lookup of " + host + " interrupted");
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private CacheEntry doLookup(final String host, final boolean refresh) {
+        CacheEntry entry;
+        try {
+            final InetAddress[] addresses = this.dnsResolver.resolve(host);
+            final long now = System.currentTimeMillis();
+            entry = new CacheEntry(addresses, null, now + this.timeToLive, now + this.timeToLive + this.staleTimeToLive);
+            if (this.timeToLive > 0 || this.staleTimeToLive > 0) {
+                store(host, entry);
+            }
+        } catch (final UnknownHostException ex) {
+            final long now = System.currentTimeMillis();
+            if (refresh) {
+                // Keep serving the stale entry rather than replacing it with a failure
+                final CacheEntry current = this.cache.get(host);
+                if (current != null && current.isResolved() && now < current.staleExpiry) {
+                    current.refreshing.set(false);
+                    return current;
+                }
+            }
+            entry = new CacheEntry(null, ex, now + this.negativeTimeToLive, now + this.negativeTimeToLive);
+            if (this.negativeTimeToLive > 0) {
+                store(host, entry);
+            } else {
+                this.cache.remove(host);
+            }
+        }
+        return entry;
+    }
+
+    private void store(final String host, final CacheEntry entry) {
+        if (this.cache.size() >= this.maxEntries && !this.cache.containsKey(host)) {
+            evictExpired();
+            final Iterator<String> it = this.cache.keySet().iterator();
+            while (this.cache.size() >= this.maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        this.cache.put(host, entry);
+    }
+
+    /**
+     * Removes entries that can no longer be served, including stale ones.
+     */
+    public void evictExpired() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Map.Entry<String, CacheEntry>> it = this.cache.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, CacheEntry> mapEntry = it.next();
+            if (now >= mapEntry.getValue().staleExpiry) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Returns the number of lookups served from the cache, including stale entries.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that required a call to the underlying resolver.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    @Override
+    public void close() {
+        this.executorService.shutdownNow();
+        this.cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "[entries: " + this.cache.size() + "; hits: " + this.hitCount + "; misses: " + this.missCount + "]";
+    }
+
+    static final class CacheEntry {
+
+        final InetAddress[] addresses;
+        final UnknownHostException exception;
+        final long expiry;
+        final long staleExpiry;
+        final AtomicBoolean refreshing;
+
+        CacheEntry(
+                final InetAddress[] addresses,
+                final UnknownHostException exception,
+                final long expiry,
+                final long staleExpiry) {
+            this.addresses = addresses;
+            this.exception = exception;
+            this.expiry = expiry;
+            this.staleExpiry = staleExpiry;
+            this.refreshing = new AtomicBoolean(false);
+        }
+
+        boolean isResolved() {
+            return this.exception == null;
+        }
+
+        InetAddress[] getAddresses() throws UnknownHostException {
+            if (this.exception != null) {
+                throw new UnknownHostException(this.exception.getMessage());
+            }
+            return this.addresses != null ? this.addresses.clone() : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,495 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects usage statistics of a connection pool: the number of lease requests
+ * pending per route, the distribution of the time spent waiting for a lease,
+ * and the age, reuse count and lease duration of every pooled connection.
+ * <p>
+ * All statistics are maintained with atomic variables and concurrent maps owned by
+ * the monitor, so collecting them never takes the pool lock. Leases held longer than
+ * the configured leak threshold are reported by {@link #findLeakedLeases()}, optionally
+ * along with the stack trace of the code that acquired the connection.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ConnPoolMonitor {
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final ConcurrentMap<HttpRoute, RouteRecord> routes;
+    private final ConcurrentMap<PoolEntry<HttpRoute, ?>, EntryRecord> entries;
+
+    private volatile long leakThreshold;
+    private volatile boolean captureLeaseStack;
+
+    public ConnPoolMonitor() {
+        this.routes = new ConcurrentHashMap<>();
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets the duration after which a lease that has not been released is considered
+     * leaked. A non-positive value disables leak detection.
+     */
+    public void setLeakThreshold(final long threshold, final TimeUnit timeUnit) {
+        Args.notNull(timeUnit, "Time unit");
+        this.leakThreshold = timeUnit.toMillis(threshold);
+    }
+
+    public long getLeakThreshold() {
+        return this.leakThreshold;
+    }
+
+    /**
+     * Determines whether the stack trace of the code that leased a connection
+     * is captured. Capturing it makes leaks easy to locate but costs a stack walk
+     * per lease.
+     */
+    public void setCaptureLeaseStack(final boolean captureLeaseStack) {
+        this.captureLeaseStack = captureLeaseStack;
+    }
+
+    public boolean isCaptureLeaseStack() {
+        return this.captureLeaseStack;
+    }
+
+    private RouteRecord getRouteRecord(final HttpRoute route) {
+        RouteRecord record = routes.get(route);
+        if (record == null) {
+            final RouteRecord newRecord = new RouteRecord();
+            record = routes.putIfAbsent(route, newRecord);
+            if (record == null) {
+                record = newRecord;
+            }
+        }
+        return record;
+    }
+
+    private EntryRecord getEntryRecord(final PoolEntry<HttpRoute, ?> entry) {
+        EntryRecord record = entries.get(entry);
+        if (record == null) {
+            final EntryRecord newRecord = new EntryRecord();
+            record = entries.putIfAbsent(entry, newRecord);
+            if (record == null) {
+                record = newRecord;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Registers a lease request for the route. The returned callback must be passed
+     * to the pool or otherwise be notified of the lease outcome. Only the first
+     * notification is accounted for, all of them are passed on to the given callback.
+     */
+    public <C extends Closeable> FutureCallback<PoolEntry<HttpRoute, C>> leaseRequested(
+            final HttpRoute route,
+            final FutureCallback<PoolEntry<HttpRoute, C>> callback) {
+        final RouteRecord record = getRouteRecord(route);
+        record.pending.incrementAndGet();
+        final long start = System.nanoTime();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        return new FutureCallback<PoolEntry<HttpRoute, C>>() {
+
+            @Override
+            public void completed(final PoolEntry<HttpRoute, C> result) {
+                if (done.compareAndSet(false, true)) {
+                    record.pending.decrementAndGet();
+                    record.leaseWait.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+                if (callback != null) {
+                    callback.completed(result);
+                }
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                if (done.compareAndSet(false, true)) {
+                    record.pending.decrementAndGet();
+                    record.failures.incrementAndGet();
+                }
+                if (callback != null) {
+                    callback.failed(ex);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                if (done.compareAndSet(false, true)) {
+                    record.pending.decrementAndGet();
+                    record.failures.incrementAndGet();
+                }
+                if (callback != null) {
+                    callback.cancelled();
+                }
+            }
+
+        };
+    }
+
+    /**
+     * Notifies the monitor that a new connection has been assigned to the pool entry.
+     */
+    public void connectionAssigned(final PoolEntry<HttpRoute, ?> entry) {
+        final EntryRecord record = getEntryRecord(entry);
+        record.connection = entry.getConnection();
+        record.created = System.currentTimeMillis();
+        record.reuseCount = 0;
+    }
+
+    /**
+     * Notifies the monitor that the pool entry has been handed out to a consumer.
+     */
+    public void entryLeased(final PoolEntry<HttpRoute, ?> entry) {
+        final EntryRecord record = getEntryRecord(entry);
+        final Object connection = entry.getConnection();
+        if (connection != null) {
+            if (record.connection == connection) {
+                record.reuseCount++;
+            } else {
+                record.connection = connection;
+                record.created = System.currentTimeMillis();
+                record.reuseCount = 0;
+            }
+        }
+        record.leaseStack = this.captureLeaseStack ? new Exception("Connection leased") : null;
+        record.reported = false;
+        record.leased = System.currentTimeMillis();
+    }
+
+    /**
+     * Notifies the monitor that the pool entry has been given back by its consumer.
+     */
+    public void entryReleased(final PoolEntry<HttpRoute, ?> entry, final boolean reusable) {
+        if (!reusable) {
+            entries.remove(entry);
+            return;
+        }
+        final EntryRecord record = entries.get(entry);
+        if (record != null) {
+            record.leased = 0;
+            record.leaseStack = null;
+        }
+    }
+
+    /**
+     * Drops the records of idle pool entries whose connection has been closed by the pool.
+     */
+    public void purge() {
+        for (final Iterator<Map.Entry<PoolEntry<HttpRoute, ?>, EntryRecord>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<PoolEntry<HttpRoute, ?>, EntryRecord> mapEntry = it.next();
+            if (mapEntry.getValue().leased == 0 && !mapEntry.getKey().hasConnection()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards all collected statistics.
+     */
+    public void clear() {
+        this.entries.clear();
+        this.routes.clear();
+    }
+
+    /**
+     * Returns the number of lease requests of the route waiting for a connection.
+     */
+    public int getPending(final HttpRoute route) {
+        final RouteRecord record = routes.get(route);
+        return record != null ? record.pending.get() : 0;
+    }
+
+    /**
+     * Returns a snapshot of the lease statistics of every route seen so far.
+     */
+    public Map<HttpRoute, RouteSnapshot> getRouteSnapshots() {
+        final Map<HttpRoute, RouteSnapshot> snapshots = new HashMap<>();
+        for (final Map.Entry<HttpRoute, RouteRecord> mapEntry: routes.entrySet()) {
+            final HttpRoute route = mapEntry.getKey();
+            final RouteRecord record = mapEntry.getValue();
+            snapshots.put(route, new RouteSnapshot(
+                    route, record.pending.get(), record.failures.get(), record.leaseWait.snapshot()));
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Returns a snapshot of every pooled connection known to the monitor.
+     */
+    public List<ConnectionSnapshot> getConnectionSnapshots() {
+        purge();
+        final long now = System.currentTimeMillis();
+        final List<ConnectionSnapshot> snapshots = new ArrayList<>(entries.size());
+        for (final Map.Entry<PoolEntry<HttpRoute, ?>, EntryRecord> mapEntry: entries.entrySet()) {
+            snapshots.add(mapEntry.getValue().snapshot(mapEntry.getKey().getRoute(), now));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Returns snapshots of the connections leased for longer than the leak threshold.
+     * Every leak found for the first time is also logged as a warning.
+     */
+    public List<ConnectionSnapshot> findLeakedLeases() {
+        final long threshold = this.leakThreshold;
+        if (threshold <= 0) {
+            return Collections.emptyList();
+        }
+        final long now = System.currentTimeMillis();
+        final List<ConnectionSnapshot> leaks = new ArrayList<>();
+        for (final Map.Entry<PoolEntry<HttpRoute, ?>, EntryRecord> mapEntry: entries.entrySet()) {
+            final EntryRecord record = mapEntry.getValue();
+            final long leased = record.leased;
+            if (leased != 0 && now - leased > threshold) {
+                final ConnectionSnapshot snapshot = record.snapshot(mapEntry.getKey().getRoute(), now);
+                if (snapshot.isLeased()) {
+                    leaks.add(snapshot);
+                    if (!record.reported) {
+                        record.reported = true;
+                        log.warn("Connection leak detected: " + snapshot, snapshot.getLeaseStack());
+                    }
+                }
+            }
+        }
+        return leaks;
+    }
+
+    @Override
+    public String toString() {
+        return getRouteSnapshots().values().toString();
+    }
+
+    static class RouteRecord {
+
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicLong failures = new AtomicLong();
+        final LatencyHistogram leaseWait = new LatencyHistogram();
+
+    }
+
+    static class EntryRecord {
+
+        // Written by the thread holding the lease only
+        volatile Object connection;
+        volatile long created;
+        volatile long reuseCount;
+        volatile long leased;
+        volatile Throwable leaseStack;
+        volatile boolean reported;
+
+        ConnectionSnapshot snapshot(final HttpRoute route, final long now) {
+            final Object conn = this.connection;
+            final long leasedAt = this.leased;
+            return new ConnectionSnapshot(
+                    route,
+                    ConnPoolSupport.getId(conn),
+                    conn != null ? now - this.created : 0,
+                    this.reuseCount,
+                    leasedAt != 0 ? now - leasedAt : -1,
+                    leasedAt != 0 ? this.leaseStack : null);
+        }
+
+    }
+
+    /**
+     * Lease statistics of a route.
+     */
+    public static final class RouteSnapshot {
+
+        private final HttpRoute route;
+        private final int pending;
+        private final long failures;
+        private final LatencyHistogram.Snapshot leaseWait;
+
+        RouteSnapshot(
+                final HttpRoute route,
+                final int pending,
+                final long failures,
+                final LatencyHistogram.Snapshot leaseWait) {
+            this.route = route;
+            this.pending = pending;
+            this.failures = failures;
+            this.leaseWait = leaseWait;
+        }
+
+        public HttpRoute getRoute() {
+            return route;
+        }
+
+        /**
+         * Returns the number of lease requests waiting for a connection.
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * Returns the number of lease requests that timed out, failed or were cancelled.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the distribution of the time in microseconds successful lease
+         * requests spent waiting for a pool entry.
+         */
+        public LatencyHistogram.Snapshot getLeaseWait() {
+            return leaseWait;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append("[route: ").append(route);
+            buf.append("; pending: ").append(pending);
+            buf.append("; failures: ").append(failures);
+            buf.append("; lease wait: ").append(leaseWait);
+            buf.append("]");
+            return buf.toString();
+        }
+
+    }
+
+    /**
+     * State of a pooled connection.
+     */
+    public static final class ConnectionSnapshot {
+
+        private final HttpRoute route;
+        private final String connectionId;
+        private final long age;
+        private final long reuseCount;
+        private final long leaseDuration;
+        private final Throwable leaseStack;
+
+        ConnectionSnapshot(
+                final HttpRoute route,
+                final String connectionId,
+                final long age,
+                final long reuseCount,
+                final long leaseDuration,
+                final Throwable leaseStack) {
+            this.route = route;
+            this.connectionId = connectionId;
+            this.age = age;
+            this.reuseCount = reuseCount;
+            this.leaseDuration = leaseDuration;
+            this.leaseStack = leaseStack;
+        }
+
+        public HttpRoute getRoute() {
+            return route;
+        }
+
+        /**
+         * Returns the identifier of the connection or {@code null} if the entry
+         * has not been connected yet.
+         */
+        public String getConnectionId() {
+            return connectionId;
+        }
+
+        /**
+         * Returns the time in milliseconds since the connection has been opened.
+         */
+        public long getAge() {
+            return age;
+        }
+
+        /**
+         * Returns how many times the connection has been leased again after
+         * having been released to the pool.
+         */
+        public long getReuseCount() {
+            return reuseCount;
+        }
+
+        public boolean isLeased() {
+            return leaseDuration >= 0;
+        }
+
+        /**
+         * Returns the time in milliseconds the connection has been leased for
+         * or {@code -1} if it is kept available in the pool.
+         */
+        public long getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        /**
+         * Returns the stack trace captured when the connection was leased, if enabled.
+         */
+        public Throwable getLeaseStack() {
+            return leaseStack;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append("[route: ").append(route);
+            buf.append("; id: ").append(connectionId);
+            buf.append("; age: ").append(age).append(" ms");
+            buf.append("; reused: ").append(reuseCount);
+            if (leaseDuration >= 0) {
+                buf.append("; leased for: ").append(leaseDuration).append(" ms");
+            }
+            buf.append("]");
+            return buf.toString();
+        }
+
+    }
+
+}
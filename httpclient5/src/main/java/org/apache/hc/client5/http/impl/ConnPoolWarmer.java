@@ -0,0 +1,55 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interface for connection pools capable of opening connections in advance.
+ *
+ * @param <T> route type.
+ *
+ * @since 5.0
+ */
+public interface ConnPoolWarmer<T> {
+
+    /**
+     * Opens new connections for the given route until the given number of idle
+     * connections is kept in the pool or the maximum number of connections
+     * per route has been reached. Idle connections already kept in the pool
+     * count towards the number.
+     *
+     * @param route the route.
+     * @param connections the desired number of idle connections.
+     * @param timeout lease and connect timeout.
+     * @param tunit time unit.
+     * @return the number of newly opened connections.
+     */
+    int prewarm(T route, int connections, long timeout, TimeUnit tunit) throws IOException, InterruptedException;
+
+}
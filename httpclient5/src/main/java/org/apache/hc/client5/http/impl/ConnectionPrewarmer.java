@@ -0,0 +1,157 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class maintains a background thread that opens persistent connections
+ * in advance for a number of routes and optionally keeps replenishing them
+ * in order to maintain a minimum number of idle connections per route.
+ *
+ * @param <T> route type.
+ *
+ * @since 5.0
+ */
+public final class ConnectionPrewarmer<T> {
+
+    private static final long RETRY_INTERVAL_MS = 1000L;
+    private static final long MAX_RETRY_INTERVAL_MS = 30000L;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final ThreadFactory threadFactory;
+    private final Thread thread;
+    private final Map<T, Integer> routes;
+    private final long intervalMs;
+    private final long timeoutMs;
+
+    private volatile Exception exception;
+
+    /**
+     * @param connPoolWarmer the connection pool.
+     * @param threadFactory the thread factory or {@code null} to use the default one.
+     * @param routes the routes and the number of connections to keep open for each.
+     * @param interval interval at which connections get replenished. Non-positive
+     *   value means connections are opened only once.
+     * @param intervalUnit time unit for the above parameter.
+     * @param timeout lease and connect timeout.
+     * @param timeoutUnit time unit for the above parameter.
+     */
+    public ConnectionPrewarmer(
+            final ConnPoolWarmer<T> connPoolWarmer,
+            final ThreadFactory threadFactory,
+            final Map<T, Integer> routes,
+            final long interval, final TimeUnit intervalUnit,
+            final long timeout, final TimeUnit timeoutUnit) {
+        Args.notNull(connPoolWarmer, "Connection pool");
+        Args.notNull(routes, "Routes");
+        this.threadFactory = threadFactory != null ? threadFactory : new DefaultThreadFactory("connection-prewarmer", true);
+        this.routes = new LinkedHashMap<>(routes);
+        this.intervalMs = intervalUnit != null ? intervalUnit.toMillis(interval) : interval;
+        this.timeoutMs = timeoutUnit != null ? timeoutUnit.toMillis(timeout) : timeout;
+        this.thread = this.threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long retryMs = RETRY_INTERVAL_MS;
+                    while (!Thread.currentThread().isInterrupted()) {
+                        if (!prewarm(connPoolWarmer)) {
+                            // Connection pool is not ready yet
+                            Thread.sleep(retryMs);
+                            retryMs = Math.min(retryMs * 2, MAX_RETRY_INTERVAL_MS);
+                            continue;
+                        }
+                        retryMs = RETRY_INTERVAL_MS;
+                        if (intervalMs <= 0) {
+                            break;
+                        }
+                        Thread.sleep(intervalMs);
+                    }
+                } catch (final Exception ex) {
+                    exception = ex;
+                }
+            }
+        });
+    }
+
+    public ConnectionPrewarmer(
+            final ConnPoolWarmer<T> connPoolWarmer,
+            final Map<T, Integer> routes,
+            final long interval, final TimeUnit intervalUnit,
+            final long timeout, final TimeUnit timeoutUnit) {
+        this(connPoolWarmer, null, routes, interval, intervalUnit, timeout, timeoutUnit);
+    }
+
+    /**
+     * @return {@code false} if the connection pool is not ready yet.
+     */
+    private boolean prewarm(final ConnPoolWarmer<T> connPoolWarmer) throws InterruptedException {
+        boolean ready = true;
+        for (final Map.Entry<T, Integer> entry: this.routes.entrySet()) {
+            try {
+                final int opened = connPoolWarmer.prewarm(
+                        entry.getKey(), entry.getValue(), timeoutMs, TimeUnit.MILLISECONDS);
+                if (opened > 0 && log.isDebugEnabled()) {
+                    log.debug("Opened " + opened + " connection(s) to " + entry.getKey());
+                }
+            } catch (final IllegalStateException ex) {
+                ready = false;
+            } catch (final IOException ex) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to open connections to " + entry.getKey() + ": " + ex.getMessage());
+                }
+            }
+        }
+        return ready;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        thread.join((tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time));
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Policy for request hedging. A hedged request is executed a second time
+ * over another connection if no response has been received after a delay,
+ * the response that arrives first is used and the other attempt is cancelled.
+ * <p>
+ * Only idempotent requests without an enclosed entity are hedged.
+ * The hedge delay of a route is the configured percentile of the response
+ * latencies recently observed on that route, or the default delay as long
+ * as too few latencies have been observed. The latency of a request is
+ * measured from the start of the original attempt until the first response
+ * has been received, so requests won by a hedge include the hedge delay.
+ * The number of hedges per route
+ * is limited by a {@link RetryBudget}, so that hedges cannot amplify load
+ * on a route that is slow for all requests.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class HedgingPolicy {
+
+    private static final int WINDOW_SIZE = 128;
+    private static final int MIN_SAMPLES = 16;
+    private static final int RECALC_INTERVAL = 16;
+
+    private final double percentile;
+    private final long defaultDelay;
+    private final RetryBudget budget;
+    private final ConcurrentMap<HttpRoute, RouteStats> routeStats;
+    private final AtomicLong hedgesSent;
+    private final AtomicLong hedgesWon;
+
+    /**
+     * @param percentile percentile of the observed latencies after which a request is hedged.
+     * @param defaultDelay delay used as long as too few latencies of a route have been observed.
+     * @param timeUnit time unit of the default delay.
+     * @param budget the per route hedge budget or {@code null} if hedges are not limited.
+     */
+    public HedgingPolicy(
+            final double percentile,
+            final long defaultDelay,
+            final TimeUnit timeUnit,
+            final RetryBudget budget) {
+        Args.check(percentile > 0.0d && percentile <= 1.0d, "Percentile must be greater than 0 and at most 1");
+        Args.positive(defaultDelay, "Default delay");
+        Args.notNull(timeUnit, "Time unit");
+        this.percentile = percentile;
+        this.defaultDelay = timeUnit.toNanos(defaultDelay);
+        this.budget = budget;
+        this.routeStats = new ConcurrentHashMap<>();
+        this.hedgesSent = new AtomicLong();
+        this.hedgesWon = new AtomicLong();
+    }
+
+    /**
+     * Creates a policy that hedges requests taking longer than the 95th percentile
+     * (100 ms by default) for at most 5% of the requests of a route.
+     */
+    public HedgingPolicy() {
+        this(0.95d, 100, TimeUnit.MILLISECONDS, new RetryBudget(0.05d, 10));
+    }
+
+    /**
+     * Determines whether the request method permits the request to be hedged.
+     */
+    public boolean isHedgeable(final HttpRequest request) {
+        final String method = request.getMethod();
+        return "GET".equalsIgnoreCase(method)
+                || "HEAD".equalsIgnoreCase(method)
+                || "OPTIONS".equalsIgnoreCase(method);
+    }
+
+    private RouteStats getRouteStats(final HttpRoute route) {
+        RouteStats stats = routeStats.get(route);
+        if (stats == null) {
+            final RouteStats newStats = new RouteStats();
+            stats = routeStats.putIfAbsent(route, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the delay in milliseconds after which a request to the route is to be hedged.
+     */
+    public long getHedgeDelay(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        final RouteStats stats = routeStats.get(route);
+        final long latency = stats != null ? stats.getPercentile(percentile) : -1;
+        final long delay = latency >= 0 ? latency : defaultDelay;
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(delay + 999999));
+    }
+
+    /**
+     * Records the time it took to receive the response head of a request to the route,
+     * measured from the start of the original attempt, whether the response has been
+     * received by the original attempt or by a hedge.
+     */
+    public void recordLatency(final HttpRoute route, final long latency, final TimeUnit timeUnit) {
+        Args.notNull(route, "Route");
+        Args.notNull(timeUnit, "Time unit");
+        getRouteStats(route).record(timeUnit.toNanos(latency));
+    }
+
+    /**
+     * Credits the hedge budget of the route with the share of an original request.
+     */
+    public void deposit(final HttpRoute route) {
+        if (budget != null) {
+            budget.deposit(route);
+        }
+    }
+
+    /**
+     * Withdraws a hedge from the budget of the route.
+     *
+     * @return {@code true} if the hedge is to be sent, {@code false} otherwise.
+     */
+    public boolean tryHedge(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        if (budget != null && !budget.tryWithdraw(route)) {
+            return false;
+        }
+        getRouteStats(route).hedgesSent.incrementAndGet();
+        hedgesSent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Signals that the response of a hedge arrived before the response of the original request.
+     */
+    public void hedgeWon(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        getRouteStats(route).hedgesWon.incrementAndGet();
+        hedgesWon.incrementAndGet();
+    }
+
+    /**
+     * Returns the total number of hedges sent.
+     */
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    /**
+     * Returns the number of hedges sent to the route.
+     */
+    public long getHedgesSent(final HttpRoute route) {
+        final RouteStats stats = routeStats.get(route);
+        return stats != null ? stats.hedgesSent.get() : 0;
+    }
+
+    /**
+     * Returns the total number of hedges whose response arrived first.
+     */
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    /**
+     * Returns the number of hedges to the route whose response arrived first.
+     */
+    public long getHedgesWon(final HttpRoute route) {
+        final RouteStats stats = routeStats.get(route);
+        return stats != null ? stats.hedgesWon.get() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "[percentile: " + percentile + "; hedges sent: " + hedgesSent.get()
+                + "; hedges won: " + hedgesWon.get() + "]";
+    }
+
+    /**
+     * Hedge counters and ring buffer of the most recent latencies of a route.
+     * The percentile is re-computed after every {@link #RECALC_INTERVAL} samples only.
+     */
+    static class RouteStats {
+
+        private final AtomicLongArray samples;
+        private final AtomicLong count;
+        private final AtomicLong hedgesSent;
+        private final AtomicLong hedgesWon;
+        private volatile long computedAt;
+        private volatile long cachedPercentile;
+
+        RouteStats() {
+            this.samples = new AtomicLongArray(WINDOW_SIZE);
+            this.count = new AtomicLong();
+            this.hedgesSent = new AtomicLong();
+            this.hedgesWon = new AtomicLong();
+            this.computedAt = -1;
+        }
+
+        void record(final long latency) {
+            final long n = count.getAndIncrement();
+            samples.set((int) (n % WINDOW_SIZE), latency);
+        }
+
+        long getPercentile(final double percentile) {
+            final long n = count.get();
+            if (n < MIN_SAMPLES) {
+                return -1;
+            }
+            final long last = computedAt;
+            if (last >= 0 && n - last < RECALC_INTERVAL) {
+                return cachedPercentile;
+            }
+            final int size = (int) Math.min(n, WINDOW_SIZE);
+            final long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            final int index = Math.max(0, (int) Math.ceil(percentile * size) - 1);
+            final long value = sorted[index];
+            cachedPercentile = value;
+            computedAt = n;
+            return value;
+        }
+
+    }
+
+}
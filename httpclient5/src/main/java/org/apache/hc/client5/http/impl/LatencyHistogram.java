@@ -0,0 +1,210 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Lock-free histogram of non-negative values with a bounded relative error,
+ * in the manner of an HDR histogram.
+ * <p>
+ * Values below 32 are counted exactly. Larger values are counted in buckets that
+ * split every power of two range into 16 linear sub-buckets, so that the value
+ * reported for a percentile exceeds the recorded value by less than 6.25%.
+ * Values larger than {@link #MAX_VALUE} are counted as {@link #MAX_VALUE}.
+ * </p>
+ * <p>
+ * Recording a value takes a few atomic operations and never allocates.
+ * Snapshots are not atomic with respect to concurrent recording, but
+ * every value recorded before the snapshot is taken is included.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    /**
+     * Largest value that can be recorded (about 19 hours in microseconds).
+     */
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(0);
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (shift + 1) * SUB_BUCKET_HALF + (int) ((value >>> shift) - SUB_BUCKET_HALF);
+    }
+
+    static long highestValueAt(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_HALF - 1;
+        final long subBucket = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records the value.
+     */
+    public void record(final long value) {
+        final long v = value < 0 ? 0 : (value > MAX_VALUE ? MAX_VALUE : value);
+        counts.incrementAndGet(indexOf(v));
+        sum.addAndGet(v);
+        for (;;) {
+            final long current = min.get();
+            if (v >= current || min.compareAndSet(current, v)) {
+                break;
+            }
+        }
+        for (;;) {
+            final long current = max.get();
+            if (v <= current || max.compareAndSet(current, v)) {
+                break;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns a point in time copy of the histogram.
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.get(), total > 0 ? min.get() : 0, max.get());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * Immutable copy of a {@link LatencyHistogram}.
+     */
+    @Contract(threading = ThreadingBehavior.IMMUTABLE)
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(final long[] counts, final long count, final long sum, final long min, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0.0d;
+        }
+
+        /**
+         * Returns the value below or at which the given fraction of the recorded values lie,
+         * for instance {@code getValueAtQuantile(0.99)} for the 99th percentile.
+         */
+        public long getValueAtQuantile(final double quantile) {
+            Args.check(quantile >= 0.0d && quantile <= 1.0d, "Quantile must be between 0 and 1");
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "[count: " + count + "; min: " + min + "; mean: " + Math.round(getMean())
+                    + "; p50: " + getValueAtQuantile(0.5d) + "; p99: " + getValueAtQuantile(0.99d)
+                    + "; max: " + max + "]";
+        }
+
+    }
+
+}
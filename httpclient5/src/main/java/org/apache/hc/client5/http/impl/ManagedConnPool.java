@@ -0,0 +1,70 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.ConnPoolStats;
+import org.apache.hc.core5.pool.PoolEntry;
+
+/**
+ * Connection pool contract used internally by the pooling connection managers.
+ * It decouples the connection managers from a particular pool implementation
+ * so that the pool concurrency policy can be chosen at construction time.
+ *
+ * @param <T> route type
+ * @param <C> connection type
+ *
+ * @see PoolConcurrencyPolicy
+ * @since 5.0
+ */
+public interface ManagedConnPool<T, C extends Closeable> extends ConnPoolControl<T>, ConnPoolStats<T> {
+
+    Future<PoolEntry<T, C>> lease(
+            T route, Object state,
+            long timeout, TimeUnit timeUnit,
+            FutureCallback<PoolEntry<T, C>> callback);
+
+    Future<PoolEntry<T, C>> lease(T route, Object state, FutureCallback<PoolEntry<T, C>> callback);
+
+    void release(PoolEntry<T, C> entry, boolean reusable);
+
+    Set<T> getRoutes();
+
+    void enumAvailable(Callback<PoolEntry<T, C>> callback);
+
+    void enumLeased(Callback<PoolEntry<T, C>> callback);
+
+    void shutdown();
+
+}
@@ -0,0 +1,140 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link RequestPhaseListener} that records the latencies of request execution
+ * phases in microseconds into a {@link LatencyHistogram} per route and phase.
+ * <p>
+ * Comparing the snapshots of the {@link RequestPhase#LEASE} phase with those of
+ * {@link RequestPhase#TIME_TO_FIRST_BYTE} tells for instance whether high latencies
+ * of a route are caused by connection pool starvation or by the server.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class PhaseLatencyRecorder implements RequestPhaseListener {
+
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final ConcurrentMap<HttpRoute, AtomicReferenceArray<LatencyHistogram>> histograms;
+
+    public PhaseLatencyRecorder() {
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    private LatencyHistogram getHistogram(final HttpRoute route, final RequestPhase phase) {
+        AtomicReferenceArray<LatencyHistogram> phases = histograms.get(route);
+        if (phases == null) {
+            final AtomicReferenceArray<LatencyHistogram> newPhases = new AtomicReferenceArray<>(PHASES.length);
+            phases = histograms.putIfAbsent(route, newPhases);
+            if (phases == null) {
+                phases = newPhases;
+            }
+        }
+        final int index = phase.ordinal();
+        LatencyHistogram histogram = phases.get(index);
+        if (histogram == null) {
+            phases.compareAndSet(index, null, new LatencyHistogram());
+            histogram = phases.get(index);
+        }
+        return histogram;
+    }
+
+    @Override
+    public void phaseCompleted(
+            final HttpRoute route,
+            final RequestPhase phase,
+            final long duration,
+            final TimeUnit timeUnit) {
+        if (route == null || phase == null || timeUnit == null) {
+            return;
+        }
+        getHistogram(route, phase).record(timeUnit.toMicros(duration));
+    }
+
+    /**
+     * Returns a snapshot of the latencies of the phase on the route
+     * or {@code null} if none have been recorded.
+     */
+    public LatencyHistogram.Snapshot getSnapshot(final HttpRoute route, final RequestPhase phase) {
+        Args.notNull(route, "Route");
+        Args.notNull(phase, "Request phase");
+        final AtomicReferenceArray<LatencyHistogram> phases = histograms.get(route);
+        final LatencyHistogram histogram = phases != null ? phases.get(phase.ordinal()) : null;
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+    /**
+     * Returns snapshots of the latencies of all routes and phases recorded so far.
+     */
+    public Map<HttpRoute, Map<RequestPhase, LatencyHistogram.Snapshot>> getSnapshots() {
+        final Map<HttpRoute, Map<RequestPhase, LatencyHistogram.Snapshot>> snapshots = new HashMap<>();
+        for (final Map.Entry<HttpRoute, AtomicReferenceArray<LatencyHistogram>> entry: histograms.entrySet()) {
+            final AtomicReferenceArray<LatencyHistogram> phases = entry.getValue();
+            final Map<RequestPhase, LatencyHistogram.Snapshot> routeSnapshots = new EnumMap<>(RequestPhase.class);
+            for (final RequestPhase phase: PHASES) {
+                final LatencyHistogram histogram = phases.get(phase.ordinal());
+                if (histogram != null) {
+                    routeSnapshots.put(phase, histogram.snapshot());
+                }
+            }
+            snapshots.put(entry.getKey(), Collections.unmodifiableMap(routeSnapshots));
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getSnapshots().toString();
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Per route retry budget that limits automatic request re-execution
+ * to a fraction of the original requests in order to prevent retries from
+ * amplifying load on a route that is already failing.
+ * <p>
+ * Every original request deposits {@code depositRatio} of a retry into
+ * the budget of its route, every retry withdraws a whole one. The balance
+ * of a route is capped at {@code maxBalance} retries, which is also the
+ * initial balance, so that occasional failures can always be retried while
+ * a sustained outage is retried at most at the given ratio.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class RetryBudget {
+
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final ConcurrentMap<HttpRoute, AtomicLong> balances;
+
+    /**
+     * @param depositRatio fraction of a retry each original request earns.
+     * @param maxBalance maximum number of retries that can be saved up per route.
+     */
+    public RetryBudget(final double depositRatio, final int maxBalance) {
+        Args.check(depositRatio >= 0.0d && depositRatio <= 1.0d, "Deposit ratio must be between 0 and 1");
+        Args.notNegative(maxBalance, "Max balance");
+        this.deposit = Math.round(depositRatio * UNIT);
+        this.maxBalance = maxBalance * UNIT;
+        this.balances = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a budget allowing retries of 10% of requests with
+     * a reserve of 10 retries per route.
+     */
+    public RetryBudget() {
+        this(0.1d, 10);
+    }
+
+    private AtomicLong getBalance0(final HttpRoute route) {
+        AtomicLong balance = balances.get(route);
+        if (balance == null) {
+            final AtomicLong newBalance = new AtomicLong(maxBalance);
+            balance = balances.putIfAbsent(route, newBalance);
+            if (balance == null) {
+                balance = newBalance;
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Credits the route with the share of an original request.
+     */
+    public void deposit(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        final AtomicLong balance = getBalance0(route);
+        for (;;) {
+            final long current = balance.get();
+            final long next = Math.min(current + deposit, maxBalance);
+            if (next == current || balance.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Withdraws a retry from the budget of the route.
+     *
+     * @return {@code true} if the route has sufficient budget for the retry,
+     *   {@code false} if the retry must not be attempted.
+     */
+    public boolean tryWithdraw(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        final AtomicLong balance = getBalance0(route);
+        for (;;) {
+            final long current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of retries currently available to the route.
+     */
+    public double getBalance(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        final AtomicLong balance = balances.get(route);
+        return (double) (balance != null ? balance.get() : maxBalance) / UNIT;
+    }
+
+    @Override
+    public String toString() {
+        return "[deposit ratio: " + (double) deposit / UNIT + "; max balance: " + maxBalance / UNIT + "]";
+    }
+
+}
@@ -0,0 +1,721 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.pool.ConnPoolListener;
+import org.apache.hc.core5.pool.ConnPoolPolicy;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.Asserts;
+
+/**
+ * Connection pool with strict connection limits that guards each route with its
+ * own lock. Available connections, leased connections and pending lease requests
+ * are maintained on a per route basis, so that lease and release operations on
+ * distinct routes do not contend with one another. The total connection limit is
+ * enforced through a shared atomic counter. Other routes are only visited when
+ * the total limit has been reached, either to evict an idle connection in order to
+ * make room for a new one or to hand a freed up connection slot over to a lease
+ * request pending on another route. The pool keeps count of the lease requests
+ * blocked on the total limit, so that releasing a connection only visits other
+ * routes while there are such requests.
+ * <p>
+ * Pool statistics are maintained incrementally and can be obtained without
+ * acquiring any of the route locks.
+ *
+ * @param <T> route type
+ * @param <C> connection type
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class RouteSegmentedConnPool<T, C extends Closeable> implements ManagedConnPool<T, C> {
+
+    private final long timeToLive;
+    private final TimeUnit tunit;
+    private final ConnPoolPolicy policy;
+    private final ConnPoolListener<T> connPoolListener;
+    private final ConcurrentMap<T, RouteSegment> routeToSegment;
+    private final ConcurrentMap<T, Integer> maxPerRoute;
+    private final AtomicInteger totalAllocated;
+    private final AtomicInteger totalBlocked;
+    private final AtomicBoolean isShutDown;
+
+    private volatile int defaultMaxPerRoute;
+    private volatile int maxTotal;
+
+    public RouteSegmentedConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final long timeToLive,
+            final TimeUnit tunit,
+            final ConnPoolPolicy policy,
+            final ConnPoolListener<T> connPoolListener) {
+        super();
+        Args.positive(defaultMaxPerRoute, "Max per route value");
+        Args.positive(maxTotal, "Max total value");
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.maxTotal = maxTotal;
+        this.timeToLive = timeToLive;
+        this.tunit = tunit != null ? tunit : TimeUnit.MILLISECONDS;
+        this.policy = policy != null ? policy : ConnPoolPolicy.LIFO;
+        this.connPoolListener = connPoolListener;
+        this.routeToSegment = new ConcurrentHashMap<>();
+        this.maxPerRoute = new ConcurrentHashMap<>();
+        this.totalAllocated = new AtomicInteger(0);
+        this.totalBlocked = new AtomicInteger(0);
+        this.isShutDown = new AtomicBoolean(false);
+    }
+
+    public RouteSegmentedConnPool(final int defaultMaxPerRoute, final int maxTotal) {
+        this(defaultMaxPerRoute, maxTotal, -1, TimeUnit.MILLISECONDS, ConnPoolPolicy.LIFO, null);
+    }
+
+    public boolean isShutdown() {
+        return this.isShutDown.get();
+    }
+
+    @Override
+    public void shutdown() {
+        if (this.isShutDown.compareAndSet(false, true)) {
+            for (final RouteSegment segment: this.routeToSegment.values()) {
+                segment.shutdown();
+            }
+            this.routeToSegment.clear();
+        }
+    }
+
+    private RouteSegment getSegment(final T route) {
+        RouteSegment segment = this.routeToSegment.get(route);
+        if (segment == null) {
+            final RouteSegment newSegment = new RouteSegment(route);
+            segment = this.routeToSegment.putIfAbsent(route, newSegment);
+            if (segment == null) {
+                segment = newSegment;
+            }
+        }
+        return segment;
+    }
+
+    @Override
+    public Future<PoolEntry<T, C>> lease(
+            final T route, final Object state,
+            final long timeout, final TimeUnit timeUnit,
+            final FutureCallback<PoolEntry<T, C>> callback) {
+        Args.notNull(route, "Route");
+        Asserts.check(!this.isShutDown.get(), "Connection pool shut down");
+        final long deadline = timeout > 0 ?
+                System.currentTimeMillis() + (timeUnit != null ? timeUnit : TimeUnit.MILLISECONDS).toMillis(timeout) : 0;
+        final LeaseRequest<T, C> request = new LeaseRequest<>(route, state, deadline, callback);
+        final RouteSegment segment = getSegment(route);
+        segment.enqueue(request);
+        if (processPending(segment) && this.totalBlocked.get() > 0) {
+            processPendingElsewhere(segment);
+        }
+        return request.future;
+    }
+
+    @Override
+    public Future<PoolEntry<T, C>> lease(final T route, final Object state, final FutureCallback<PoolEntry<T, C>> callback) {
+        return lease(route, state, -1, TimeUnit.MILLISECONDS, callback);
+    }
+
+    public Future<PoolEntry<T, C>> lease(final T route, final Object state) {
+        return lease(route, state, -1, TimeUnit.MILLISECONDS, null);
+    }
+
+    @Override
+    public void release(final PoolEntry<T, C> entry, final boolean reusable) {
+        if (entry == null) {
+            return;
+        }
+        final RouteSegment segment = this.routeToSegment.get(entry.getRoute());
+        if (segment == null) {
+            entry.discardConnection();
+            return;
+        }
+        segment.release(entry, reusable);
+        if (this.connPoolListener != null) {
+            this.connPoolListener.onRelease(entry.getRoute(), this);
+        }
+        processPending(segment);
+        // The released connection or the freed slot may be what requests
+        // of other routes blocked on the total limit are waiting for
+        if (this.totalBlocked.get() > 0) {
+            processPendingElsewhere(segment);
+        }
+    }
+
+    /**
+     * Services as many pending requests of the given route as possible. Should the total
+     * connection limit get in the way, idle connections of other routes get evicted one
+     * at a time in order to make room for new connections. No lock is held by the caller.
+     *
+     * @return {@code true} if entries of requests cancelled in the meantime have been
+     * returned to the pool.
+     */
+    private boolean processPending(final RouteSegment segment) {
+        boolean released = false;
+        for (;;) {
+            final List<LeaseRequest<T, C>> completed = new ArrayList<>();
+            final boolean blockedOnTotal = segment.servicePending(completed);
+            if (fireCallbacks(segment, completed)) {
+                // entries of cancelled requests may serve other pending requests
+                released = true;
+                continue;
+            }
+            if (!blockedOnTotal) {
+                return released;
+            }
+            if (evictIdle(segment)) {
+                continue;
+            }
+            // A slot freed before the blocked requests were counted may have been
+            // released without visiting this route
+            if (this.totalAllocated.get() >= this.maxTotal) {
+                return released;
+            }
+        }
+    }
+
+    private void processPendingElsewhere(final RouteSegment segment) {
+        boolean released;
+        do {
+            released = false;
+            for (final RouteSegment other: this.routeToSegment.values()) {
+                if (other != segment && other.blockedCount > 0 && processPending(other)) {
+                    released = true;
+                }
+            }
+        } while (released);
+    }
+
+    private void processPendingAll() {
+        for (final RouteSegment segment: this.routeToSegment.values()) {
+            if (segment.pendingCount > 0) {
+                processPending(segment);
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used idle connection of a route other than the given one.
+     * At most one route lock is held at any time.
+     */
+    private boolean evictIdle(final RouteSegment requester) {
+        for (final RouteSegment segment: this.routeToSegment.values()) {
+            if (segment != requester && segment.availableCount > 0 && segment.evictLastUsed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fireCallbacks(final RouteSegment segment, final List<LeaseRequest<T, C>> requests) {
+        boolean released = false;
+        for (final LeaseRequest<T, C> request: requests) {
+            final PoolEntry<T, C> entry = request.entry;
+            if (entry != null) {
+                if (request.future.completed(entry)) {
+                    if (this.connPoolListener != null) {
+                        this.connPoolListener.onLease(entry.getRoute(), this);
+                    }
+                } else {
+                    segment.release(entry, true);
+                    released = true;
+                }
+            } else if (request.exception != null) {
+                request.future.failed(request.exception);
+            } else {
+                request.future.cancel();
+            }
+        }
+        return released;
+    }
+
+    private boolean reserveSlot() {
+        for (;;) {
+            final int current = this.totalAllocated.get();
+            if (current >= this.maxTotal) {
+                return false;
+            }
+            if (this.totalAllocated.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void freeSlot() {
+        this.totalAllocated.decrementAndGet();
+    }
+
+    /**
+     * Returns the number of lease requests that could not be serviced
+     * due to the total connection limit when last processed.
+     */
+    int getTotalBlocked() {
+        return this.totalBlocked.get();
+    }
+
+    @Override
+    public void setMaxTotal(final int max) {
+        Args.positive(max, "Max value");
+        this.maxTotal = max;
+        processPendingAll();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(final int max) {
+        Args.positive(max, "Max value");
+        this.defaultMaxPerRoute = max;
+        processPendingAll();
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return this.defaultMaxPerRoute;
+    }
+
+    @Override
+    public void setMaxPerRoute(final T route, final int max) {
+        Args.notNull(route, "Route");
+        if (max > -1) {
+            this.maxPerRoute.put(route, max);
+        } else {
+            this.maxPerRoute.remove(route);
+        }
+        final RouteSegment segment = this.routeToSegment.get(route);
+        if (segment != null) {
+            processPending(segment);
+        }
+    }
+
+    @Override
+    public int getMaxPerRoute(final T route) {
+        Args.notNull(route, "Route");
+        final Integer v = this.maxPerRoute.get(route);
+        return v != null ? v : this.defaultMaxPerRoute;
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        for (final RouteSegment segment: this.routeToSegment.values()) {
+            leased += segment.leasedCount;
+            pending += segment.pendingCount;
+            available += segment.availableCount;
+        }
+        return new PoolStats(leased, pending, available, this.maxTotal);
+    }
+
+    @Override
+    public PoolStats getStats(final T route) {
+        Args.notNull(route, "Route");
+        final RouteSegment segment = this.routeToSegment.get(route);
+        if (segment == null) {
+            return new PoolStats(0, 0, 0, getMaxPerRoute(route));
+        }
+        return new PoolStats(segment.leasedCount, segment.pendingCount, segment.availableCount, getMaxPerRoute(route));
+    }
+
+    @Override
+    public Set<T> getRoutes() {
+        return new HashSet<>(this.routeToSegment.keySet());
+    }
+
+    @Override
+    public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+        for (final RouteSegment segment: this.routeToSegment.values()) {
+            segment.enumAvailable(callback);
+        }
+        processPendingAll();
+    }
+
+    @Override
+    public void enumLeased(final Callback<PoolEntry<T, C>> callback) {
+        for (final RouteSegment segment: this.routeToSegment.values()) {
+            segment.enumLeased(callback);
+        }
+    }
+
+    @Override
+    public void closeIdle(final long idletime, final TimeUnit tunit) {
+        Args.notNull(tunit, "Time unit");
+        long time = tunit.toMillis(idletime);
+        if (time < 0) {
+            time = 0;
+        }
+        final long deadline = System.currentTimeMillis() - time;
+        enumAvailable(new Callback<PoolEntry<T, C>>() {
+
+            @Override
+            public void execute(final PoolEntry<T, C> entry) {
+                if (entry.getUpdated() <= deadline) {
+                    entry.discardConnection();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public void closeExpired() {
+        final long now = System.currentTimeMillis();
+        enumAvailable(new Callback<PoolEntry<T, C>>() {
+
+            @Override
+            public void execute(final PoolEntry<T, C> entry) {
+                if (entry.getExpiry() < now) {
+                    entry.discardConnection();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public String toString() {
+        final PoolStats totals = getTotalStats();
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[leased: ");
+        buffer.append(totals.getLeased());
+        buffer.append("][available: ");
+        buffer.append(totals.getAvailable());
+        buffer.append("][pending: ");
+        buffer.append(totals.getPending());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static final class LeaseRequest<T, C extends Closeable> {
+
+        final T route;
+        final Object state;
+        final long deadline;
+        final BasicFuture<PoolEntry<T, C>> future;
+
+        PoolEntry<T, C> entry;
+        Exception exception;
+
+        LeaseRequest(
+                final T route,
+                final Object state,
+                final long deadline,
+                final FutureCallback<PoolEntry<T, C>> callback) {
+            this.route = route;
+            this.state = state;
+            this.deadline = deadline;
+            this.future = new BasicFuture<>(callback);
+        }
+
+    }
+
+    final class RouteSegment {
+
+        private final T route;
+        private final ReentrantLock lock;
+        private final Set<PoolEntry<T, C>> leased;
+        private final LinkedList<PoolEntry<T, C>> available;
+        private final LinkedList<LeaseRequest<T, C>> pending;
+
+        volatile int leasedCount;
+        volatile int availableCount;
+        volatile int pendingCount;
+        volatile int blockedCount;
+
+        RouteSegment(final T route) {
+            this.route = route;
+            this.lock = new ReentrantLock();
+            this.leased = new HashSet<>();
+            this.available = new LinkedList<>();
+            this.pending = new LinkedList<>();
+        }
+
+        private void updateCounts() {
+            this.leasedCount = this.leased.size();
+            this.availableCount = this.available.size();
+            this.pendingCount = this.pending.size();
+        }
+
+        private void updateBlocked(final int blocked) {
+            totalBlocked.addAndGet(blocked - this.blockedCount);
+            this.blockedCount = blocked;
+        }
+
+        private void remove(final PoolEntry<T, C> entry) {
+            entry.discardConnection();
+            freeSlot();
+        }
+
+        void enqueue(final LeaseRequest<T, C> request) {
+            this.lock.lock();
+            try {
+                this.pending.add(request);
+                updateCounts();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Services pending requests of this route in the order they have been made.
+         * Serviced, cancelled and timed out requests are added to the given list
+         * so that their futures can be completed once the lock has been released.
+         *
+         * @return {@code true} if at least one request could not be serviced due
+         * to the total connection limit.
+         */
+        boolean servicePending(final List<LeaseRequest<T, C>> completed) {
+            int blocked = 0;
+            this.lock.lock();
+            try {
+                final long now = System.currentTimeMillis();
+                final Iterator<LeaseRequest<T, C>> it = this.pending.iterator();
+                while (it.hasNext()) {
+                    final LeaseRequest<T, C> request = it.next();
+                    if (request.future.isDone()) {
+                        it.remove();
+                        continue;
+                    }
+                    if (isShutDown.get()) {
+                        it.remove();
+                        completed.add(request);
+                        continue;
+                    }
+                    if (request.deadline > 0 && request.deadline < now) {
+                        it.remove();
+                        request.exception = new TimeoutException("Timeout waiting for connection");
+                        completed.add(request);
+                        continue;
+                    }
+                    final PoolEntry<T, C> entry = allocate(request.state, now);
+                    if (entry != null) {
+                        it.remove();
+                        request.entry = entry;
+                        completed.add(request);
+                    } else if (this.leased.size() + this.available.size() < getMaxPerRoute(this.route)) {
+                        blocked++;
+                    }
+                }
+                updateCounts();
+                updateBlocked(blocked);
+            } finally {
+                this.lock.unlock();
+            }
+            return blocked > 0;
+        }
+
+        private PoolEntry<T, C> allocate(final Object state, final long now) {
+            PoolEntry<T, C> entry = getFree(state, now);
+            if (entry != null) {
+                this.leased.add(entry);
+                return entry;
+            }
+            final int max = getMaxPerRoute(this.route);
+            // Drop idle connections in excess of the (possibly reduced) route limit
+            final int excess = Math.max(0, this.leased.size() + this.available.size() + 1 - max);
+            for (int i = 0; i < excess && !this.available.isEmpty(); i++) {
+                remove(this.available.removeLast());
+            }
+            if (this.leased.size() + this.available.size() >= max) {
+                return null;
+            }
+            if (!reserveSlot()) {
+                if (this.available.isEmpty()) {
+                    return null;
+                }
+                // Re-use the slot of an idle connection of this route with a different state
+                this.available.removeLast().discardConnection();
+            }
+            entry = new PoolEntry<>(this.route, timeToLive, tunit);
+            this.leased.add(entry);
+            return entry;
+        }
+
+        private PoolEntry<T, C> getFree(final Object state, final long now) {
+            final Iterator<PoolEntry<T, C>> it = this.available.iterator();
+            while (it.hasNext()) {
+                final PoolEntry<T, C> entry = it.next();
+                if (!entry.hasConnection() || entry.getExpiry() < now) {
+                    it.remove();
+                    remove(entry);
+                }
+            }
+            if (state != null) {
+                for (final Iterator<PoolEntry<T, C>> it2 = this.available.iterator(); it2.hasNext(); ) {
+                    final PoolEntry<T, C> entry = it2.next();
+                    if (state.equals(entry.getState())) {
+                        it2.remove();
+                        return entry;
+                    }
+                }
+            }
+            for (final Iterator<PoolEntry<T, C>> it2 = this.available.iterator(); it2.hasNext(); ) {
+                final PoolEntry<T, C> entry = it2.next();
+                if (entry.getState() == null) {
+                    it2.remove();
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        void release(final PoolEntry<T, C> entry, final boolean reusable) {
+            this.lock.lock();
+            try {
+                if (!this.leased.remove(entry)) {
+                    return;
+                }
+                if (reusable && entry.hasConnection() && !isShutDown.get()) {
+                    if (policy == ConnPoolPolicy.FIFO) {
+                        this.available.addLast(entry);
+                    } else {
+                        this.available.addFirst(entry);
+                    }
+                } else {
+                    remove(entry);
+                }
+                updateCounts();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        boolean evictLastUsed() {
+            this.lock.lock();
+            try {
+                if (this.available.isEmpty()) {
+                    return false;
+                }
+                remove(this.available.removeLast());
+                updateCounts();
+                return true;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+            this.lock.lock();
+            try {
+                final Iterator<PoolEntry<T, C>> it = this.available.iterator();
+                while (it.hasNext()) {
+                    final PoolEntry<T, C> entry = it.next();
+                    callback.execute(entry);
+                    if (!entry.hasConnection()) {
+                        it.remove();
+                        remove(entry);
+                    }
+                }
+                updateCounts();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void enumLeased(final Callback<PoolEntry<T, C>> callback) {
+            this.lock.lock();
+            try {
+                for (final PoolEntry<T, C> entry: this.leased) {
+                    callback.execute(entry);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void shutdown() {
+            final List<LeaseRequest<T, C>> cancelled = new ArrayList<>();
+            this.lock.lock();
+            try {
+                for (final PoolEntry<T, C> entry: this.available) {
+                    remove(entry);
+                }
+                for (final PoolEntry<T, C> entry: this.leased) {
+                    remove(entry);
+                }
+                this.available.clear();
+                this.leased.clear();
+                cancelled.addAll(this.pending);
+                this.pending.clear();
+                updateCounts();
+                updateBlocked(0);
+            } finally {
+                this.lock.unlock();
+            }
+            for (final LeaseRequest<T, C> request: cancelled) {
+                request.future.cancel();
+            }
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[route: ");
+            buffer.append(this.route);
+            buffer.append("][leased: ");
+            buffer.append(this.leasedCount);
+            buffer.append("][available: ");
+            buffer.append(this.availableCount);
+            buffer.append("][pending: ");
+            buffer.append(this.pendingCount);
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.pool.StrictConnPool;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link ManagedConnPool} backed by {@link StrictConnPool}.
+ *
+ * @param <T> route type
+ * @param <C> connection type
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class StrictManagedConnPool<T, C extends Closeable> implements ManagedConnPool<T, C> {
+
+    private final StrictConnPool<T, C> pool;
+
+    public StrictManagedConnPool(final StrictConnPool<T, C> pool) {
+        super();
+        this.pool = Args.notNull(pool, "Connection pool");
+    }
+
+    @Override
+    public Future<PoolEntry<T, C>> lease(
+            final T route, final Object state,
+            final long timeout, final TimeUnit timeUnit,
+            final FutureCallback<PoolEntry<T, C>> callback) {
+        return pool.lease(route, state, timeout, timeUnit, callback);
+    }
+
+    @Override
+    public Future<PoolEntry<T, C>> lease(final T route, final Object state, final FutureCallback<PoolEntry<T, C>> callback) {
+        return pool.lease(route, state, callback);
+    }
+
+    @Override
+    public void release(final PoolEntry<T, C> entry, final boolean reusable) {
+        pool.release(entry, reusable);
+    }
+
+    @Override
+    public Set<T> getRoutes() {
+        return pool.getRoutes();
+    }
+
+    @Override
+    public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+        pool.enumAvailable(callback);
+    }
+
+    @Override
+    public void enumLeased(final Callback<PoolEntry<T, C>> callback) {
+        pool.enumLeased(callback);
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public void setMaxTotal(final int max) {
+        pool.setMaxTotal(max);
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return pool.getMaxTotal();
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(final int max) {
+        pool.setDefaultMaxPerRoute(max);
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return pool.getDefaultMaxPerRoute();
+    }
+
+    @Override
+    public void setMaxPerRoute(final T route, final int max) {
+        pool.setMaxPerRoute(route, max);
+    }
+
+    @Override
+    public int getMaxPerRoute(final T route) {
+        return pool.getMaxPerRoute(route);
+    }
+
+    @Override
+    public void closeIdle(final long idletime, final TimeUnit tunit) {
+        pool.closeIdle(idletime, tunit);
+    }
+
+    @Override
+    public void closeExpired() {
+        pool.closeExpired();
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        return pool.getTotalStats();
+    }
+
+    @Override
+    public PoolStats getStats(final T route) {
+        return pool.getStats(route);
+    }
+
+    @Override
+    public String toString() {
+        return pool.toString();
+    }
+
+}
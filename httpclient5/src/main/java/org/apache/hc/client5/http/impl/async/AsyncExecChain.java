@@ -0,0 +1,955 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.async;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
+import org.apache.hc.client5.http.async.AsyncClientEndpoint;
+import org.apache.hc.client5.http.async.HttpAsyncClient;
+import org.apache.hc.client5.http.auth.AuthExchange;
+import org.apache.hc.client5.http.auth.AuthScheme;
+import org.apache.hc.client5.http.auth.ChallengeType;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.ComplexFuture;
+import org.apache.hc.client5.http.impl.HedgingPolicy;
+import org.apache.hc.client5.http.impl.RetryBudget;
+import org.apache.hc.client5.http.impl.auth.HttpAuthenticator;
+import org.apache.hc.client5.http.protocol.AuthenticationStrategy;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.protocol.NonRepeatableRequestException;
+import org.apache.hc.client5.http.protocol.RedirectException;
+import org.apache.hc.client5.http.protocol.RedirectStrategy;
+import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.client5.http.sync.BackoffManager;
+import org.apache.hc.client5.http.sync.ConnectionBackoffStrategy;
+import org.apache.hc.client5.http.sync.HttpRequestRetryHandler;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
+import org.apache.hc.client5.http.sync.ServiceUnavailableRetryStrategy;
+import org.apache.hc.client5.http.sync.methods.HttpUriRequest;
+import org.apache.hc.client5.http.utils.URIUtils;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.ProtocolException;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.RequestChannel;
+import org.apache.hc.core5.net.URIAuthority;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Non-blocking request execution driver that re-executes requests in response
+ * to I/O failures, authentication challenges, redirects and {@code 503 Service Unavailable}
+ * responses the same way the classic {@code RetryExec}, {@code ServiceUnavailableRetryExec},
+ * {@code RedirectExec} and {@code MainClientExec} do.
+ * <p>
+ * Every attempt leases its own connection endpoint. Delays between attempts are
+ * scheduled on a shared timer instead of blocking an I/O dispatch or worker thread.
+ * I/O failures and {@code 503} responses are only retried as long as
+ * the {@link RetryBudget} of the route permits.
+ * </p>
+ * <p>
+ * If a {@link BackoffManager} is given the outcome of every attempt is reported
+ * to it, including the latency between sending the request and receiving
+ * the response head if it is a {@link LatencyAwareBackoffManager}.
+ * </p>
+ * <p>
+ * If a {@link HedgingPolicy} is given idempotent requests without an entity
+ * are hedged: if no response head has been received after the hedge delay
+ * of the route the request is sent once more over another connection endpoint.
+ * The attempt that receives a response head first is passed on to the response
+ * consumer, the connection of the other attempt is discarded.
+ * </p>
+ * <p>
+ * Request entities are streamed directly from the {@link AsyncRequestProducer},
+ * so a request whose entity has already been produced (partially or completely)
+ * is treated as non-repeatable. Requests that enable {@code Expect: 100-continue}
+ * can be authenticated or redirected with their entity, as the final response
+ * arrives before the entity is sent.
+ * </p>
+ *
+ * @since 5.0
+ */
+final class AsyncExecChain implements Closeable {
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final HttpRoutePlanner routePlanner;
+    private final HttpRequestRetryHandler retryHandler;
+    private final ServiceUnavailableRetryStrategy serviceUnavailStrategy;
+    private final RedirectStrategy redirectStrategy;
+    private final AuthenticationStrategy targetAuthStrategy;
+    private final AuthenticationStrategy proxyAuthStrategy;
+    private final RetryBudget retryBudget;
+    private final ConnectionBackoffStrategy connectionBackoffStrategy;
+    private final BackoffManager backoffManager;
+    private final HedgingPolicy hedgingPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final HttpAuthenticator authenticator;
+    private final Set<Execution<?>> pending;
+
+    /**
+     * @param routePlanner the route planner.
+     * @param retryHandler the I/O failure retry handler or {@code null} if automatic
+     *   retries are disabled.
+     * @param serviceUnavailStrategy the {@code 503} retry strategy or {@code null}.
+     * @param redirectStrategy the redirect strategy or {@code null} if redirect handling
+     *   is disabled.
+     * @param targetAuthStrategy the target authentication strategy.
+     * @param proxyAuthStrategy the proxy authentication strategy.
+     * @param retryBudget the per route retry budget or {@code null} if retries
+     *   are not limited beyond the retry handler and strategy.
+     * @param connectionBackoffStrategy the connection backoff strategy or {@code null}
+     *   if the outcome of request executions is not to be reported.
+     * @param backoffManager the backoff manager or {@code null}
+     *   if the outcome of request executions is not to be reported.
+     * @param hedgingPolicy the hedging policy or {@code null} if requests are not to be hedged.
+     * @param scheduler the scheduler used to delay re-execution.
+     */
+    AsyncExecChain(
+            final HttpRoutePlanner routePlanner,
+            final HttpRequestRetryHandler retryHandler,
+            final ServiceUnavailableRetryStrategy serviceUnavailStrategy,
+            final RedirectStrategy redirectStrategy,
+            final AuthenticationStrategy targetAuthStrategy,
+            final AuthenticationStrategy proxyAuthStrategy,
+            final RetryBudget retryBudget,
+            final ConnectionBackoffStrategy connectionBackoffStrategy,
+            final BackoffManager backoffManager,
+            final HedgingPolicy hedgingPolicy,
+            final ScheduledExecutorService scheduler) {
+        this.routePlanner = Args.notNull(routePlanner, "Route planner");
+        this.retryHandler = retryHandler;
+        this.serviceUnavailStrategy = serviceUnavailStrategy;
+        this.redirectStrategy = redirectStrategy;
+        this.targetAuthStrategy = Args.notNull(targetAuthStrategy, "Target authentication strategy");
+        this.proxyAuthStrategy = Args.notNull(proxyAuthStrategy, "Proxy authentication strategy");
+        this.retryBudget = retryBudget;
+        if (connectionBackoffStrategy != null && backoffManager != null) {
+            this.connectionBackoffStrategy = connectionBackoffStrategy;
+            this.backoffManager = backoffManager;
+        } else {
+            this.connectionBackoffStrategy = null;
+            this.backoffManager = null;
+        }
+        this.hedgingPolicy = hedgingPolicy;
+        this.scheduler = Args.notNull(scheduler, "Scheduler");
+        this.authenticator = new HttpAuthenticator(log);
+        this.pending = Collections.newSetFromMap(new ConcurrentHashMap<Execution<?>, Boolean>());
+    }
+
+    /**
+     * @param request the request produced by the request producer, which is not
+     * asked to produce the request again.
+     */
+    <T> Future<T> execute(
+            final HttpAsyncClient client,
+            final HttpHost target,
+            final HttpRequest request,
+            final AsyncRequestProducer requestProducer,
+            final AsyncResponseConsumer<T> responseConsumer,
+            final HttpClientContext context,
+            final FutureCallback<T> callback) throws HttpException {
+        final Execution<T> execution = new Execution<>(
+                client, target, request, requestProducer, responseConsumer, context, callback);
+        execution.start();
+        return execution.future;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        final List<Execution<?>> executions = new ArrayList<>(pending);
+        pending.clear();
+        for (final Execution<?> execution: executions) {
+            execution.cancel();
+        }
+    }
+
+    private static HttpRequest copy(final HttpRequest request) {
+        final BasicHttpRequest copy = new BasicHttpRequest(request.getMethod(), request.getPath());
+        copy.setScheme(request.getScheme());
+        copy.setAuthority(request.getAuthority());
+        copy.setVersion(request.getVersion());
+        copy.setHeaders(request.getAllHeaders());
+        return copy;
+    }
+
+    private class Execution<T> {
+
+        private final HttpAsyncClient client;
+        private final AsyncRequestProducer requestProducer;
+        private final AsyncResponseConsumer<T> responseConsumer;
+        private final HttpClientContext context;
+        private final ComplexFuture<T> future;
+        private final AtomicBoolean released;
+        private final RequestPhaseListener phaseListener;
+
+        private volatile HttpRequest current;
+        private volatile HttpHost target;
+        private volatile HttpRoute route;
+        private volatile boolean sendEntity;
+        private volatile boolean entityProduced;
+        private volatile int execCount;
+        private volatile int unavailCount;
+        private volatile int redirectCount;
+
+        Execution(
+                final HttpAsyncClient client,
+                final HttpHost target,
+                final HttpRequest request,
+                final AsyncRequestProducer requestProducer,
+                final AsyncResponseConsumer<T> responseConsumer,
+                final HttpClientContext context,
+                final FutureCallback<T> callback) {
+            this.client = client;
+            this.target = target;
+            this.requestProducer = requestProducer;
+            this.responseConsumer = responseConsumer;
+            this.context = context;
+            this.future = new ComplexFuture<>(callback);
+            this.released = new AtomicBoolean(false);
+            this.phaseListener = context.getRequestPhaseListener();
+            this.current = copy(request);
+            this.sendEntity = requestProducer.getEntityDetails() != null;
+        }
+
+        void start() throws HttpException {
+            route = routePlanner.determineRoute(target, context);
+            if (retryBudget != null) {
+                retryBudget.deposit(route);
+            }
+            if (hedgingPolicy != null) {
+                hedgingPolicy.deposit(route);
+            }
+            final List<URI> redirectLocations = context.getRedirectLocations();
+            if (redirectLocations != null) {
+                redirectLocations.clear();
+            }
+            executeAttempt();
+        }
+
+        void executeAttempt() {
+            if (future.isDone()) {
+                releaseResources();
+                return;
+            }
+            execCount++;
+            context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+            final Round round = new Round();
+            future.setDependency(round);
+            try {
+                round.lease(false);
+                if (hedgingPolicy != null && !sendEntity && hedgingPolicy.isHedgeable(current)) {
+                    round.scheduleHedge(hedgingPolicy.getHedgeDelay(route));
+                }
+            } catch (final RuntimeException ex) {
+                fail(ex);
+            }
+        }
+
+        void schedule(final long delay) {
+            if (future.isDone()) {
+                releaseResources();
+                return;
+            }
+            pending.add(this);
+            try {
+                final Future<?> scheduled = scheduler.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        pending.remove(Execution.this);
+                        try {
+                            executeAttempt();
+                        } catch (final RuntimeException ex) {
+                            fail(ex);
+                        }
+                    }
+
+                }, delay, TimeUnit.MILLISECONDS);
+                future.setDependency(new Cancellable() {
+
+                    @Override
+                    public boolean cancel() {
+                        pending.remove(Execution.this);
+                        final boolean cancelled = scheduled.cancel(false);
+                        releaseResources();
+                        return cancelled;
+                    }
+
+                });
+            } catch (final RejectedExecutionException ex) {
+                pending.remove(this);
+                fail(ex);
+            }
+        }
+
+        void backOffIfNecessary(final Exception ex) {
+            if (backoffManager != null && connectionBackoffStrategy.shouldBackoff(ex)) {
+                backoffManager.backOff(route);
+            }
+        }
+
+        void signalResponse(final HttpResponse response, final long latency) {
+            if (backoffManager != null) {
+                if (connectionBackoffStrategy.shouldBackoff(response)) {
+                    backoffManager.backOff(route);
+                } else if (backoffManager instanceof LatencyAwareBackoffManager) {
+                    ((LatencyAwareBackoffManager) backoffManager).probe(route, latency, TimeUnit.NANOSECONDS);
+                } else {
+                    backoffManager.probe(route);
+                }
+            }
+        }
+
+        void handleIOFailure(final IOException ex) {
+            if (retryHandler != null && !future.isDone()
+                    && retryHandler.retryRequest(current, ex, execCount, context)) {
+                if (log.isInfoEnabled()) {
+                    log.info("I/O exception ("+ ex.getClass().getName() +
+                            ") caught when processing request to " + route + ": " + ex.getMessage());
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug(ex.getMessage(), ex);
+                }
+                if (sendEntity && entityProduced) {
+                    log.debug("Cannot retry non-repeatable request");
+                    fail(new NonRepeatableRequestException("Cannot retry request " +
+                            "with a non-repeatable request entity", ex));
+                    return;
+                }
+                if (retryBudget != null && !retryBudget.tryWithdraw(route)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Retry budget of route " + route + " exhausted");
+                    }
+                    fail(ex);
+                    return;
+                }
+                if (log.isInfoEnabled()) {
+                    log.info("Retrying request to " + route);
+                }
+                schedule(0);
+            } else {
+                fail(ex);
+            }
+        }
+
+        /**
+         * Determines whether the response requires the request to be re-executed.
+         *
+         * @return delay in milliseconds before the request is to be re-executed
+         *   or {@code -1} if the response is final.
+         */
+        long determineFollowUp(final HttpResponse response) throws HttpException {
+            final RequestConfig config = context.getRequestConfig();
+            final boolean repeatable = !sendEntity || !entityProduced;
+            if (config.isAuthenticationEnabled() && !"TRACE".equalsIgnoreCase(current.getMethod())
+                    && needAuthentication(response)) {
+                if (repeatable) {
+                    return 0;
+                }
+                log.debug("Cannot retry non-repeatable request");
+                return -1;
+            }
+            if (redirectStrategy != null && config.isRedirectsEnabled()
+                    && redirectStrategy.isRedirected(current, response, context)) {
+                final int maxRedirects = config.getMaxRedirects() > 0 ? config.getMaxRedirects() : 50;
+                if (redirectCount >= maxRedirects) {
+                    throw new RedirectException("Maximum redirects ("+ maxRedirects + ") exceeded");
+                }
+                final HttpUriRequest redirect = redirectStrategy.getRedirect(adapt(current), response, context);
+                final boolean keepEntity = sendEntity && redirect.getMethod().equalsIgnoreCase(current.getMethod());
+                if (keepEntity && !repeatable) {
+                    log.debug("Cannot redirect non-repeatable request");
+                    return -1;
+                }
+                redirectCount++;
+                final URI redirectUri;
+                try {
+                    redirectUri = redirect.getUri();
+                } catch (final URISyntaxException ex) {
+                    throw new ProtocolException(ex.getMessage(), ex);
+                }
+                final HttpHost newTarget = URIUtils.extractHost(redirectUri);
+                if (newTarget == null) {
+                    throw new ProtocolException("Redirect URI does not specify a valid host name: " +
+                            redirectUri);
+                }
+                if (!route.getTargetHost().equals(newTarget)) {
+                    final AuthExchange targetAuthExchange = context.getAuthExchange(route.getTargetHost());
+                    log.debug("Resetting target auth state");
+                    targetAuthExchange.reset();
+                    if (route.getProxyHost() != null) {
+                        final AuthExchange proxyAuthExchange = context.getAuthExchange(route.getProxyHost());
+                        final AuthScheme authScheme = proxyAuthExchange.getAuthScheme();
+                        if (authScheme != null && authScheme.isConnectionBased()) {
+                            log.debug("Resetting proxy auth state");
+                            proxyAuthExchange.reset();
+                        }
+                    }
+                }
+                final BasicHttpRequest redirectRequest = new BasicHttpRequest(redirect.getMethod(), redirectUri);
+                redirectRequest.setHeaders(redirect.getAllHeaders());
+                target = newTarget;
+                route = routePlanner.determineRoute(newTarget, context);
+                current = redirectRequest;
+                sendEntity = keepEntity;
+                if (log.isDebugEnabled()) {
+                    log.debug("Redirecting to '" + redirectUri + "' via " + route);
+                }
+                return 0;
+            }
+            if (serviceUnavailStrategy != null
+                    && serviceUnavailStrategy.retryRequest(response, ++unavailCount, context)) {
+                if (!repeatable) {
+                    log.debug("Cannot retry non-repeatable request");
+                    return -1;
+                }
+                if (retryBudget != null && !retryBudget.tryWithdraw(route)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Retry budget of route " + route + " exhausted");
+                    }
+                    return -1;
+                }
+                final long nextInterval = serviceUnavailStrategy.getRetryInterval(response, context);
+                if (log.isDebugEnabled()) {
+                    log.debug("Retrying request to " + route + " in " + nextInterval + " ms");
+                }
+                return nextInterval > 0 ? nextInterval : 0;
+            }
+            return -1;
+        }
+
+        private boolean needAuthentication(final HttpResponse response) {
+            final AuthExchange targetAuthExchange = context.getAuthExchange(route.getTargetHost());
+            final boolean targetAuthRequested = authenticator.isChallenged(
+                    route.getTargetHost(), ChallengeType.TARGET, response, targetAuthExchange, context);
+
+            HttpHost proxy = route.getProxyHost();
+            // if proxy is not set use target host instead
+            if (proxy == null) {
+                proxy = route.getTargetHost();
+            }
+            final AuthExchange proxyAuthExchange = context.getAuthExchange(proxy);
+            final boolean proxyAuthRequested = authenticator.isChallenged(
+                    proxy, ChallengeType.PROXY, response, proxyAuthExchange, context);
+
+            if (targetAuthRequested) {
+                return authenticator.prepareAuthResponse(route.getTargetHost(), ChallengeType.TARGET, response,
+                        targetAuthStrategy, targetAuthExchange, context);
+            }
+            if (proxyAuthRequested) {
+                return authenticator.prepareAuthResponse(proxy, ChallengeType.PROXY, response,
+                        proxyAuthStrategy, proxyAuthExchange, context);
+            }
+            return false;
+        }
+
+        private BasicClassicHttpRequest adapt(final HttpRequest request) {
+            final BasicClassicHttpRequest classicRequest = new BasicClassicHttpRequest(
+                    request.getMethod(), request.getPath());
+            classicRequest.setScheme(request.getScheme() != null ? request.getScheme() : target.getSchemeName());
+            classicRequest.setAuthority(request.getAuthority() != null ? request.getAuthority() : new URIAuthority(target));
+            classicRequest.setVersion(request.getVersion());
+            classicRequest.setHeaders(request.getAllHeaders());
+            return classicRequest;
+        }
+
+        void complete(final T result) {
+            if (future.completed(result)) {
+                releaseResources();
+            }
+        }
+
+        void fail(final Exception cause) {
+            pending.remove(this);
+            if (future.failed(cause)) {
+                try {
+                    requestProducer.failed(cause);
+                    responseConsumer.failed(cause);
+                } finally {
+                    releaseResources();
+                }
+            } else {
+                releaseResources();
+            }
+        }
+
+        void cancel() {
+            pending.remove(this);
+            future.cancel();
+            releaseResources();
+        }
+
+        void releaseResources() {
+            if (future.isDone() && released.compareAndSet(false, true)) {
+                requestProducer.releaseResources();
+                responseConsumer.releaseResources();
+            }
+        }
+
+        /**
+         * Attempts racing for the response to the same request: the original
+         * attempt and, if the request is hedged, the hedge. The first attempt
+         * that receives a response head wins, the others are discarded.
+         */
+        private class Round implements Cancellable {
+
+            private final AtomicReference<AttemptHandler> winner;
+            private final AtomicInteger active;
+            private final List<Future<AsyncClientEndpoint>> leaseFutures;
+            private final List<AttemptHandler> handlers;
+            private final long started;
+            private volatile Future<?> hedgeTrigger;
+            private volatile boolean cancelled;
+
+            Round() {
+                this.started = System.nanoTime();
+                this.winner = new AtomicReference<>();
+                this.active = new AtomicInteger(1);
+                this.leaseFutures = new CopyOnWriteArrayList<>();
+                this.handlers = new CopyOnWriteArrayList<>();
+            }
+
+            void lease(final boolean hedge) {
+                final Future<AsyncClientEndpoint> leaseFuture = client.lease(target, context,
+                        new FutureCallback<AsyncClientEndpoint>() {
+
+                            @Override
+                            public void completed(final AsyncClientEndpoint endpoint) {
+                                if (future.isDone()) {
+                                    endpoint.releaseAndReuse();
+                                    releaseResources();
+                                    return;
+                                }
+                                if (winner.get() != null) {
+                                    endpoint.releaseAndReuse();
+                                    return;
+                                }
+                                final AttemptHandler handler = new AttemptHandler(endpoint, Round.this, hedge);
+                                handlers.add(handler);
+                                if (cancelled) {
+                                    handler.discard();
+                                    return;
+                                }
+                                endpoint.execute(handler, context);
+                            }
+
+                            @Override
+                            public void failed(final Exception ex) {
+                                backOffIfNecessary(ex);
+                                attemptFailed(ex);
+                            }
+
+                            @Override
+                            public void cancelled() {
+                                if (winner.get() == null) {
+                                    Execution.this.cancel();
+                                }
+                            }
+
+                        });
+                leaseFutures.add(leaseFuture);
+                if (cancelled) {
+                    leaseFuture.cancel(true);
+                }
+            }
+
+            void scheduleHedge(final long delay) {
+                try {
+                    hedgeTrigger = scheduler.schedule(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            if (!isOpen() || !hedgingPolicy.tryHedge(route) || !tryAddAttempt()) {
+                                return;
+                            }
+                            if (log.isDebugEnabled()) {
+                                log.debug("No response from " + route + " after " + delay + " ms; sending hedge");
+                            }
+                            try {
+                                lease(true);
+                            } catch (final RuntimeException ex) {
+                                attemptFailed(ex);
+                            }
+                        }
+
+                    }, delay, TimeUnit.MILLISECONDS);
+                } catch (final RejectedExecutionException ex) {
+                    log.debug("Request hedging rejected by scheduler", ex);
+                }
+            }
+
+            boolean isOpen() {
+                return !cancelled && !future.isDone() && winner.get() == null && active.get() > 0;
+            }
+
+            private boolean tryAddAttempt() {
+                for (;;) {
+                    final int n = active.get();
+                    if (n <= 0 || winner.get() != null) {
+                        return false;
+                    }
+                    if (active.compareAndSet(n, n + 1)) {
+                        return true;
+                    }
+                }
+            }
+
+            boolean isLoser(final AttemptHandler handler) {
+                final AttemptHandler current = winner.get();
+                return current != null && current != handler;
+            }
+
+            /**
+             * Claims the response of the round for the given attempt and
+             * discards all other attempts.
+             */
+            boolean claim(final AttemptHandler handler) {
+                if (!winner.compareAndSet(null, handler)) {
+                    return false;
+                }
+                final Future<?> trigger = hedgeTrigger;
+                if (trigger != null) {
+                    trigger.cancel(false);
+                }
+                for (final AttemptHandler other: handlers) {
+                    if (other != handler) {
+                        other.discard();
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * Handles the failure of an attempt before it has received a response head.
+             * The failure is only acted upon if it was the last attempt in flight.
+             */
+            void attemptFailed(final Exception ex) {
+                if (winner.get() != null || active.decrementAndGet() > 0) {
+                    return;
+                }
+                final Future<?> trigger = hedgeTrigger;
+                if (trigger != null) {
+                    trigger.cancel(false);
+                }
+                if (ex instanceof IOException) {
+                    handleIOFailure((IOException) ex);
+                } else {
+                    fail(ex);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                cancelled = true;
+                final Future<?> trigger = hedgeTrigger;
+                if (trigger != null) {
+                    trigger.cancel(false);
+                }
+                for (final Future<AsyncClientEndpoint> leaseFuture: leaseFutures) {
+                    leaseFuture.cancel(true);
+                }
+                for (final AttemptHandler handler: handlers) {
+                    handler.discard();
+                }
+                return true;
+            }
+
+        }
+
+        private class AttemptHandler implements AsyncClientExchangeHandler {
+
+            private final AsyncClientEndpoint endpoint;
+            private final Round round;
+            private final boolean hedge;
+            private final AtomicBoolean done;
+            private volatile long followUpDelay;
+            private volatile boolean responseConsumed;
+            private volatile long requestTime;
+            private volatile long writeCompleted;
+            private volatile boolean written;
+            private volatile long responseTime;
+            private DataStreamChannel timedChannel;
+
+            AttemptHandler(final AsyncClientEndpoint endpoint, final Round round, final boolean hedge) {
+                this.endpoint = endpoint;
+                this.round = round;
+                this.hedge = hedge;
+                this.done = new AtomicBoolean(false);
+                this.followUpDelay = -1;
+            }
+
+            void discard() {
+                if (done.compareAndSet(false, true)) {
+                    endpoint.releaseAndDiscard();
+                }
+            }
+
+            @Override
+            public void produceRequest(final RequestChannel channel) throws HttpException, IOException {
+                final HttpRequest request = copy(current);
+                if (context.getRequestConfig().isAuthenticationEnabled()) {
+                    authenticator.addAuthResponse(route.getTargetHost(), ChallengeType.TARGET, request,
+                            context.getAuthExchange(route.getTargetHost()), context);
+                    if (route.getProxyHost() != null && !route.isTunnelled()) {
+                        authenticator.addAuthResponse(route.getProxyHost(), ChallengeType.PROXY, request,
+                                context.getAuthExchange(route.getProxyHost()), context);
+                    }
+                }
+                requestTime = System.nanoTime();
+                channel.sendRequest(request, sendEntity ? requestProducer.getEntityDetails() : null);
+            }
+
+            @Override
+            public int available() {
+                return sendEntity ? requestProducer.available() : 0;
+            }
+
+            @Override
+            public void produce(final DataStreamChannel channel) throws IOException {
+                if (sendEntity) {
+                    entityProduced = true;
+                    requestProducer.produce(phaseListener != null ? timed(channel) : channel);
+                }
+            }
+
+            private DataStreamChannel timed(final DataStreamChannel channel) {
+                if (timedChannel == null) {
+                    timedChannel = new DataStreamChannel() {
+
+                        @Override
+                        public void requestOutput() {
+                            channel.requestOutput();
+                        }
+
+                        @Override
+                        public int write(final ByteBuffer src) throws IOException {
+                            return channel.write(src);
+                        }
+
+                        @Override
+                        public void endStream() throws IOException {
+                            channel.endStream();
+                            writeCompleted = System.nanoTime();
+                            written = true;
+                        }
+
+                        @Override
+                        public void endStream(final List<? extends Header> trailers) throws IOException {
+                            channel.endStream(trailers);
+                            writeCompleted = System.nanoTime();
+                            written = true;
+                        }
+
+                    };
+                }
+                return timedChannel;
+            }
+
+            @Override
+            public void consumeInformation(final HttpResponse response) throws HttpException, IOException {
+            }
+
+            @Override
+            public void consumeResponse(
+                    final HttpResponse response,
+                    final EntityDetails entityDetails) throws HttpException, IOException {
+                if (!round.claim(this)) {
+                    discard();
+                    return;
+                }
+                responseTime = System.nanoTime();
+                final long latency = responseTime - requestTime;
+                if (phaseListener != null) {
+                    long start = requestTime;
+                    if (written) {
+                        start = writeCompleted;
+                        phaseListener.phaseCompleted(route, RequestPhase.REQUEST_WRITE,
+                                start - requestTime, TimeUnit.NANOSECONDS);
+                    }
+                    phaseListener.phaseCompleted(route, RequestPhase.TIME_TO_FIRST_BYTE,
+                            responseTime - start, TimeUnit.NANOSECONDS);
+                }
+                if (hedgingPolicy != null) {
+                    // Measured from the start of the original attempt including the hedge delay
+                    hedgingPolicy.recordLatency(route, responseTime - round.started, TimeUnit.NANOSECONDS);
+                    if (hedge) {
+                        hedgingPolicy.hedgeWon(route);
+                    }
+                }
+                signalResponse(response, latency);
+                final long delay = determineFollowUp(response);
+                if (delay >= 0) {
+                    followUpDelay = delay;
+                    if (entityDetails == null) {
+                        followUp();
+                    }
+                } else {
+                    responseConsumed = true;
+                    responseConsumer.consumeResponse(response, entityDetails, new FutureCallback<T>() {
+
+                        @Override
+                        public void completed(final T result) {
+                            if (done.compareAndSet(false, true)) {
+                                endpoint.releaseAndReuse();
+                            }
+                            complete(result);
+                        }
+
+                        @Override
+                        public void failed(final Exception ex) {
+                            if (done.compareAndSet(false, true)) {
+                                endpoint.releaseAndDiscard();
+                            }
+                            fail(ex);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            if (done.compareAndSet(false, true)) {
+                                endpoint.releaseAndDiscard();
+                            }
+                            cancel();
+                        }
+
+                    });
+                }
+            }
+
+            private void followUp() {
+                if (done.compareAndSet(false, true)) {
+                    endpoint.releaseAndReuse();
+                    schedule(followUpDelay);
+                }
+            }
+
+            @Override
+            public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+                if (followUpDelay >= 0 || round.isLoser(this)) {
+                    capacityChannel.update(Integer.MAX_VALUE);
+                } else {
+                    responseConsumer.updateCapacity(capacityChannel);
+                }
+            }
+
+            @Override
+            public int consume(final ByteBuffer src) throws IOException {
+                if (followUpDelay >= 0 || round.isLoser(this)) {
+                    ((Buffer) src).position(src.limit());
+                    return Integer.MAX_VALUE;
+                }
+                return responseConsumer.consume(src);
+            }
+
+            @Override
+            public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+                if (followUpDelay >= 0 || round.isLoser(this)) {
+                    followUp();
+                } else {
+                    if (phaseListener != null) {
+                        phaseListener.phaseCompleted(route, RequestPhase.RESPONSE_BODY,
+                                System.nanoTime() - responseTime, TimeUnit.NANOSECONDS);
+                    }
+                    responseConsumer.streamEnd(trailers);
+                }
+            }
+
+            @Override
+            public void failed(final Exception cause) {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                endpoint.releaseAndDiscard();
+                if (round.isLoser(this)) {
+                    return;
+                }
+                if (!responseConsumed && followUpDelay < 0) {
+                    backOffIfNecessary(cause);
+                }
+                if (round.winner.get() == null) {
+                    round.attemptFailed(cause);
+                } else if (followUpDelay >= 0) {
+                    schedule(followUpDelay);
+                } else if (!responseConsumed && cause instanceof IOException) {
+                    handleIOFailure((IOException) cause);
+                } else {
+                    fail(cause);
+                }
+            }
+
+            @Override
+            public void cancel() {
+                discard();
+                if (!round.isLoser(this)) {
+                    Execution.this.cancel();
+                }
+            }
+
+            @Override
+            public void releaseResources() {
+            }
+
+        }
+
+    }
+
+}
@@ -32,6 +32,7 @@ import java.util.Iterator;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
 import org.apache.hc.client5.http.impl.logging.LoggingIOEventHandler;
 import org.apache.hc.client5.http.impl.logging.LoggingIOSession;
+import org.apache.hc.client5.http.impl.logging.WireCapture;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http.ConnectionClosedException;
@@ -90,13 +91,18 @@ public class DefaultAsyncHttp1ClientEventHandlerFactory implements IOEventHandle
     @Override
     public IOEventHandler createHandler(final IOSession ioSession) {
         final Logger sessionLog = LogManager.getLogger(ioSession.getClass());
-        if (sessionLog.isDebugEnabled()
+        final WireCapture wireCapture = WireCapture.getDefault();
+        final boolean captureWire = wireCapture.isEnabled();
+        if (captureWire
+                || sessionLog.isDebugEnabled()
                 || streamLog.isDebugEnabled()
                 || wireLog.isDebugEnabled()
                 || headerLog.isDebugEnabled()) {
             final String id = ConnPoolSupport.getId(ioSession);
             final ClientHttp1StreamDuplexer streamDuplexer = new ClientHttp1StreamDuplexer(
-                    new LoggingIOSession(ioSession, id, sessionLog, wireLog),
+                    captureWire
+                            ? new LoggingIOSession(ioSession, id, sessionLog, wireCapture)
+                            : new LoggingIOSession(ioSession, id, sessionLog, wireLog),
                     httpProcessor,
                     h1Config,
                     connectionConfig,
@@ -35,6 +35,7 @@ import org.apache.hc.client5.http.impl.ConnPoolSupport;
 import org.apache.hc.client5.http.impl.logging.LogAppendable;
 import org.apache.hc.client5.http.impl.logging.LoggingIOEventHandler;
 import org.apache.hc.client5.http.impl.logging.LoggingIOSession;
+import org.apache.hc.client5.http.impl.logging.WireCapture;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http.ConnectionClosedException;
@@ -88,7 +89,10 @@ public class DefaultAsyncHttp2ClientEventHandlerFactory implements IOEventHandle
     @Override
     public IOEventHandler createHandler(final IOSession ioSession) {
         final Logger sessionLog = LogManager.getLogger(ioSession.getClass());
-        if (sessionLog.isDebugEnabled()
+        final WireCapture wireCapture = WireCapture.getDefault();
+        final boolean captureWire = wireCapture.isEnabled();
+        if (captureWire
+                || sessionLog.isDebugEnabled()
                 || streamLog.isDebugEnabled()
                 || wireLog.isDebugEnabled()
                 || headerLog.isDebugEnabled()
@@ -97,7 +101,9 @@ public class DefaultAsyncHttp2ClientEventHandlerFactory implements IOEventHandle
                 || flowCtrlLog.isDebugEnabled()) {
             final String id = ConnPoolSupport.getId(ioSession);
             return new LoggingIOEventHandler(new DefaultAsyncHttpClientProtocolNegotiator(
-                    new LoggingIOSession(ioSession, id, sessionLog, wireLog),
+                    captureWire
+                            ? new LoggingIOSession(ioSession, id, sessionLog, wireCapture)
+                            : new LoggingIOSession(ioSession, id, sessionLog, wireLog),
                     httpProcessor, exchangeHandlerFactory, charset, h2Config,
                     new ConnectionListener() {
 
@@ -33,28 +33,60 @@ import java.net.ProxySelector;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.async.methods.AsyncContentDecoderFactory;
+import org.apache.hc.client5.http.async.methods.DecompressingAsyncResponseConsumer;
+import org.apache.hc.client5.http.auth.AuthSchemeProvider;
+import org.apache.hc.client5.http.auth.CredentialsProvider;
+import org.apache.hc.client5.http.config.AuthSchemes;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.ConnPoolWarmer;
+import org.apache.hc.client5.http.impl.ConnectionPrewarmer;
 import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
 import org.apache.hc.client5.http.impl.DefaultThreadFactory;
 import org.apache.hc.client5.http.impl.DefaultUserTokenHandler;
+import org.apache.hc.client5.http.impl.HedgingPolicy;
 import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
 import org.apache.hc.client5.http.impl.NoopUserTokenHandler;
+import org.apache.hc.client5.http.impl.RetryBudget;
+import org.apache.hc.client5.http.impl.auth.BasicSchemeFactory;
+import org.apache.hc.client5.http.impl.auth.DigestSchemeFactory;
+import org.apache.hc.client5.http.impl.auth.SystemDefaultCredentialsProvider;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
 import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.protocol.DefaultAuthenticationStrategy;
+import org.apache.hc.client5.http.impl.protocol.DefaultRedirectStrategy;
 import org.apache.hc.client5.http.impl.routing.DefaultProxyRoutePlanner;
 import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
 import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
+import org.apache.hc.client5.http.impl.sync.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.sync.DefaultHttpRequestRetryHandler;
 import org.apache.hc.client5.http.nio.AsyncClientConnectionManager;
+import org.apache.hc.client5.http.protocol.AuthenticationStrategy;
+import org.apache.hc.client5.http.protocol.RedirectStrategy;
+import org.apache.hc.client5.http.protocol.RequestAcceptEncoding;
 import org.apache.hc.client5.http.protocol.RequestDefaultHeaders;
 import org.apache.hc.client5.http.protocol.RequestExpectContinue;
 import org.apache.hc.client5.http.protocol.UserTokenHandler;
 import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.client5.http.sync.BackoffManager;
+import org.apache.hc.client5.http.sync.ConnectionBackoffStrategy;
+import org.apache.hc.client5.http.sync.HttpRequestRetryHandler;
+import org.apache.hc.client5.http.sync.ServiceUnavailableRetryStrategy;
 import org.apache.hc.core5.http.ConnectionReuseStrategy;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpException;
@@ -66,6 +98,8 @@ import org.apache.hc.core5.http.HttpResponseInterceptor;
 import org.apache.hc.core5.http.HttpVersion;
 import org.apache.hc.core5.http.config.ConnectionConfig;
 import org.apache.hc.core5.http.config.H1Config;
+import org.apache.hc.core5.http.config.Lookup;
+import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.hc.core5.http.nio.AsyncPushConsumer;
 import org.apache.hc.core5.http.nio.HandlerFactory;
@@ -81,6 +115,7 @@ import org.apache.hc.core5.pool.ConnPoolControl;
 import org.apache.hc.core5.reactor.IOEventHandlerFactory;
 import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.IOReactorException;
+import org.apache.hc.core5.reactor.IOReactorStatus;
 import org.apache.hc.core5.util.VersionInfo;
 
 /**
@@ -104,6 +139,14 @@ import org.apache.hc.core5.util.VersionInfo;
  * exclusive and may not apply when building {@link CloseableHttpAsyncClient}
  * instances.
  * </p>
+ * <p>
+ * As with the classic client, recoverable I/O failures are retried, redirects
+ * are followed and authentication challenges are answered by default. Use
+ * {@link #disableAutomaticRetries()} and {@link #disableRedirectHandling()}
+ * to have the client return the outcome of the first exchange instead.
+ * Authentication challenges are only answered if credentials are available for
+ * the challenging host.
+ * </p>
  *
  * @since 5.0
  */
@@ -119,13 +162,26 @@ public class HttpAsyncClientBuilder {
     private ConnectionReuseStrategy reuseStrategy;
     private ConnectionKeepAliveStrategy keepAliveStrategy;
     private UserTokenHandler userTokenHandler;
+    private AuthenticationStrategy targetAuthStrategy;
+    private AuthenticationStrategy proxyAuthStrategy;
 
     private LinkedList<HttpRequestInterceptor> requestFirst;
     private LinkedList<HttpRequestInterceptor> requestLast;
     private LinkedList<HttpResponseInterceptor> responseFirst;
     private LinkedList<HttpResponseInterceptor> responseLast;
 
+    private HttpRequestRetryHandler retryHandler;
+    private ServiceUnavailableRetryStrategy serviceUnavailStrategy;
+    private RedirectStrategy redirectStrategy;
+    private RetryBudget retryBudget;
+    private ConnectionBackoffStrategy connectionBackoffStrategy;
+    private BackoffManager backoffManager;
+    private HedgingPolicy hedgingPolicy;
+    private RequestPhaseListener requestPhaseListener;
+
     private HttpRoutePlanner routePlanner;
+    private Lookup<AuthSchemeProvider> authSchemeRegistry;
+    private CredentialsProvider credentialsProvider;
     private String userAgent;
     private HttpHost proxy;
     private Collection<? extends Header> defaultHeaders;
@@ -134,9 +190,17 @@ public class HttpAsyncClientBuilder {
     private boolean evictIdleConnections;
     private long maxIdleTime;
     private TimeUnit maxIdleTimeUnit;
+    private Map<HttpRoute, Integer> prewarmRoutes;
+    private long prewarmInterval;
+    private TimeUnit prewarmIntervalUnit;
 
     private boolean systemProperties;
     private boolean connectionStateDisabled;
+    private boolean contentCompressionDisabled;
+    private boolean redirectHandlingDisabled;
+    private boolean automaticRetriesDisabled;
+
+    private Map<String, AsyncContentDecoderFactory> contentDecoderMap;
 
     private List<Closeable> closeables;
 
@@ -229,6 +293,26 @@ public class HttpAsyncClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link AuthenticationStrategy} instance for target
+     * host authentication.
+     */
+    public final HttpAsyncClientBuilder setTargetAuthenticationStrategy(
+            final AuthenticationStrategy targetAuthStrategy) {
+        this.targetAuthStrategy = targetAuthStrategy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link AuthenticationStrategy} instance for proxy
+     * authentication.
+     */
+    public final HttpAsyncClientBuilder setProxyAuthenticationStrategy(
+            final AuthenticationStrategy proxyAuthStrategy) {
+        this.proxyAuthStrategy = proxyAuthStrategy;
+        return this;
+    }
+
     /**
      * Assigns {@link UserTokenHandler} instance.
      * <p>
@@ -249,6 +333,28 @@ public class HttpAsyncClientBuilder {
         return this;
     }
 
+    /**
+     * Disables automatic content decompression.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder disableContentCompression() {
+        contentCompressionDisabled = true;
+        return this;
+    }
+
+    /**
+     * Assigns a map of {@link AsyncContentDecoderFactory}s
+     * to be used for automatic content decompression.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setContentDecoderRegistry(
+            final Map<String, AsyncContentDecoderFactory> contentDecoderMap) {
+        this.contentDecoderMap = contentDecoderMap;
+        return this;
+    }
+
     /**
      * Assigns {@link SchemePortResolver} instance.
      */
@@ -348,6 +454,142 @@ public class HttpAsyncClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link HttpRequestRetryHandler} instance.
+     * <p>
+     * Please note this value can be overridden by the {@link #disableAutomaticRetries()}
+     * method.
+     * </p>
+     */
+    public final HttpAsyncClientBuilder setRetryHandler(final HttpRequestRetryHandler retryHandler) {
+        this.retryHandler = retryHandler;
+        return this;
+    }
+
+    /**
+     * Disables automatic request recovery and re-execution.
+     */
+    public final HttpAsyncClientBuilder disableAutomaticRetries() {
+        automaticRetriesDisabled = true;
+        return this;
+    }
+
+    /**
+     * Assigns {@link ServiceUnavailableRetryStrategy} instance.
+     */
+    public final HttpAsyncClientBuilder setServiceUnavailableRetryStrategy(
+            final ServiceUnavailableRetryStrategy serviceUnavailStrategy) {
+        this.serviceUnavailStrategy = serviceUnavailStrategy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link RetryBudget} instance that limits re-execution of requests
+     * in response to I/O failures and {@code 503} responses on a per route basis.
+     * By default retries are only limited by the retry handler and strategy.
+     */
+    public final HttpAsyncClientBuilder setRetryBudget(final RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+        return this;
+    }
+
+    /**
+     * Assigns {@link HedgingPolicy} instance. Idempotent requests are only hedged
+     * if a hedging policy is set.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link RequestPhaseListener} instance that receives the latencies
+     * of connection lease, DNS resolution, connect, request write, time to first byte
+     * and response body of every request, for instance
+     * a {@link org.apache.hc.client5.http.impl.PhaseLatencyRecorder}.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setRequestPhaseListener(final RequestPhaseListener requestPhaseListener) {
+        this.requestPhaseListener = requestPhaseListener;
+        return this;
+    }
+
+    /**
+     * Assigns {@link ConnectionBackoffStrategy} instance.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setConnectionBackoffStrategy(
+            final ConnectionBackoffStrategy connectionBackoffStrategy) {
+        this.connectionBackoffStrategy = connectionBackoffStrategy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link BackoffManager} instance that adjusts the per route
+     * connection limits of the connection manager, for instance
+     * {@link org.apache.hc.client5.http.impl.sync.AIMDBackoffManager} or
+     * {@link org.apache.hc.client5.http.impl.sync.GradientBackoffManager}
+     * created for a {@link PoolingAsyncClientConnectionManager}.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder setBackoffManager(final BackoffManager backoffManager) {
+        this.backoffManager = backoffManager;
+        return this;
+    }
+
+    /**
+     * Assigns {@link RedirectStrategy} instance.
+     * <p>
+     * Please note this value can be overridden by the {@link #disableRedirectHandling()}
+     * method.
+     * </p>
+     */
+    public final HttpAsyncClientBuilder setRedirectStrategy(final RedirectStrategy redirectStrategy) {
+        this.redirectStrategy = redirectStrategy;
+        return this;
+    }
+
+    /**
+     * Disables automatic redirect handling.
+     */
+    public final HttpAsyncClientBuilder disableRedirectHandling() {
+        redirectHandlingDisabled = true;
+        return this;
+    }
+
+    /**
+     * Assigns default {@link CredentialsProvider} instance which will be used
+     * for request execution if not explicitly set in the client execution
+     * context.
+     */
+    public final HttpAsyncClientBuilder setDefaultCredentialsProvider(
+            final CredentialsProvider credentialsProvider) {
+        this.credentialsProvider = credentialsProvider;
+        return this;
+    }
+
+    /**
+     * Assigns default {@link org.apache.hc.client5.http.auth.AuthScheme} registry which will
+     * be used for request execution if not explicitly set in the client execution
+     * context.
+     * <p>
+     * Please note that the connection endpoint is released between the individual
+     * request executions of an authentication handshake. By default only
+     * the {@code Basic} and {@code Digest} schemes are registered as connection
+     * based schemes such as {@code NTLM} are not supported.
+     * </p>
+     */
+    public final HttpAsyncClientBuilder setDefaultAuthSchemeRegistry(
+            final Lookup<AuthSchemeProvider> authSchemeRegistry) {
+        this.authSchemeRegistry = authSchemeRegistry;
+        return this;
+    }
+
     /**
      * Assigns default {@link RequestConfig} instance which will be used
      * for request execution if not explicitly set in the client execution
@@ -410,6 +652,50 @@ public class HttpAsyncClientBuilder {
         return this;
     }
 
+    /**
+     * Makes this instance of HttpClient open the given number of persistent connections
+     * to the given route in advance using a background thread once the client has been
+     * started. The number of connections is capped by the maximum number of connections
+     * per route.
+     * <p>
+     * One MUST explicitly close HttpClient with {@link CloseableHttpAsyncClient#close()} in order
+     * to stop and release the background thread.
+     * <p>
+     * Please note this method has no effect if the instance of HttpClient is configured to
+     * use a shared connection manager or a connection manager other than
+     * {@link PoolingAsyncClientConnectionManager}.
+     *
+     * @see #setConnectionManagerShared(boolean)
+     * @see PoolingAsyncClientConnectionManager#prewarm(HttpRoute, int,
+     *   org.apache.hc.core5.reactor.ConnectionInitiator, long, TimeUnit,
+     *   org.apache.hc.core5.concurrent.FutureCallback)
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder prewarmConnections(final HttpRoute route, final int connections) {
+        if (this.prewarmRoutes == null) {
+            this.prewarmRoutes = new LinkedHashMap<>();
+        }
+        this.prewarmRoutes.put(route, connections);
+        return this;
+    }
+
+    /**
+     * Makes this instance of HttpClient periodically re-open connections closed since
+     * they have been pre-warmed, thus maintaining a minimum number of idle connections
+     * for every route given to {@link #prewarmConnections(HttpRoute, int)}.
+     *
+     * @param interval the interval at which connections get replenished.
+     * @param intervalUnit time unit for the above parameter.
+     *
+     * @since 5.0
+     */
+    public final HttpAsyncClientBuilder replenishPrewarmedConnections(final long interval, final TimeUnit intervalUnit) {
+        this.prewarmInterval = interval;
+        this.prewarmIntervalUnit = intervalUnit;
+        return this;
+    }
+
     /**
      * For internal use.
      */
@@ -472,6 +758,22 @@ public class HttpAsyncClientBuilder {
                 new H2RequestConnControl(),
                 new RequestUserAgent(userAgentCopy),
                 new RequestExpectContinue());
+        Lookup<AsyncContentDecoderFactory> contentDecoderRegistry = null;
+        if (!contentCompressionDisabled) {
+            if (contentDecoderMap != null) {
+                final List<String> encodings = new ArrayList<>(contentDecoderMap.keySet());
+                Collections.sort(encodings);
+                b.add(new RequestAcceptEncoding(encodings));
+                final RegistryBuilder<AsyncContentDecoderFactory> b2 = RegistryBuilder.create();
+                for (final Map.Entry<String, AsyncContentDecoderFactory> entry: contentDecoderMap.entrySet()) {
+                    b2.register(entry.getKey(), entry.getValue());
+                }
+                contentDecoderRegistry = b2.build();
+            } else {
+                b.add(new RequestAcceptEncoding());
+                contentDecoderRegistry = DecompressingAsyncResponseConsumer.createDefaultDecoderRegistry();
+            }
+        }
         if (requestLast != null) {
             for (final HttpRequestInterceptor i: requestLast) {
                 b.addLast(i);
@@ -499,11 +801,60 @@ public class HttpAsyncClientBuilder {
                 routePlannerCopy = new DefaultRoutePlanner(schemePortResolverCopy);
             }
         }
-        List<Closeable> closeablesCopy = closeables != null ? new ArrayList<>(closeables) : null;
-        if (!this.connManagerShared) {
-            if (closeablesCopy == null) {
-                closeablesCopy = new ArrayList<>(1);
+        HttpRequestRetryHandler retryHandlerCopy = null;
+        if (!automaticRetriesDisabled) {
+            retryHandlerCopy = this.retryHandler;
+            if (retryHandlerCopy == null) {
+                retryHandlerCopy = DefaultHttpRequestRetryHandler.INSTANCE;
+            }
+        }
+        RedirectStrategy redirectStrategyCopy = null;
+        if (!redirectHandlingDisabled) {
+            redirectStrategyCopy = this.redirectStrategy;
+            if (redirectStrategyCopy == null) {
+                redirectStrategyCopy = DefaultRedirectStrategy.INSTANCE;
             }
+        }
+        AuthenticationStrategy targetAuthStrategyCopy = this.targetAuthStrategy;
+        if (targetAuthStrategyCopy == null) {
+            targetAuthStrategyCopy = DefaultAuthenticationStrategy.INSTANCE;
+        }
+        AuthenticationStrategy proxyAuthStrategyCopy = this.proxyAuthStrategy;
+        if (proxyAuthStrategyCopy == null) {
+            proxyAuthStrategyCopy = DefaultAuthenticationStrategy.INSTANCE;
+        }
+        final AsyncExecChain execChain = new AsyncExecChain(
+                routePlannerCopy,
+                retryHandlerCopy,
+                serviceUnavailStrategy,
+                redirectStrategyCopy,
+                targetAuthStrategyCopy,
+                proxyAuthStrategyCopy,
+                retryBudget,
+                connectionBackoffStrategy,
+                backoffManager,
+                hedgingPolicy,
+                Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("httpclient-scheduler", true)));
+
+        Lookup<AuthSchemeProvider> authSchemeRegistryCopy = this.authSchemeRegistry;
+        if (authSchemeRegistryCopy == null) {
+            authSchemeRegistryCopy = RegistryBuilder.<AuthSchemeProvider>create()
+                    .register(AuthSchemes.BASIC, new BasicSchemeFactory())
+                    .register(AuthSchemes.DIGEST, new DigestSchemeFactory())
+                    .build();
+        }
+        CredentialsProvider defaultCredentialsProvider = this.credentialsProvider;
+        if (defaultCredentialsProvider == null) {
+            if (systemProperties) {
+                defaultCredentialsProvider = new SystemDefaultCredentialsProvider();
+            } else {
+                defaultCredentialsProvider = new BasicCredentialsProvider();
+            }
+        }
+
+        final List<Closeable> closeablesCopy = closeables != null ? new ArrayList<>(closeables) : new ArrayList<Closeable>(2);
+        closeablesCopy.add(execChain);
+        if (!this.connManagerShared) {
             if (evictExpiredConnections || evictIdleConnections) {
                 if (connManagerCopy instanceof ConnPoolControl) {
                     final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor((ConnPoolControl<?>) connManagerCopy,
@@ -563,8 +914,9 @@ public class HttpAsyncClientBuilder {
                     ConnectionConfig.DEFAULT,
                     reuseStrategyCopy);
         }
+        final InternalHttpAsyncClient client;
         try {
-            return new InternalHttpAsyncClient(
+            client = new InternalHttpAsyncClient(
                     ioEventHandlerFactory,
                     pushConsumerRegistry,
                     ioReactorConfig != null ? ioReactorConfig : IOReactorConfig.DEFAULT,
@@ -575,10 +927,62 @@ public class HttpAsyncClientBuilder {
                     keepAliveStrategyCopy,
                     userTokenHandlerCopy,
                     defaultRequestConfig,
+                    contentDecoderRegistry,
+                    authSchemeRegistryCopy,
+                    defaultCredentialsProvider,
+                    requestPhaseListener,
+                    execChain,
                     closeablesCopy);
         } catch (final IOReactorException ex) {
             throw new IllegalStateException(ex.getMessage(), ex);
         }
+        if (!this.connManagerShared && prewarmRoutes != null
+                && connManagerCopy instanceof PoolingAsyncClientConnectionManager) {
+            final PoolingAsyncClientConnectionManager poolingConnManager = (PoolingAsyncClientConnectionManager) connManagerCopy;
+            final ConnPoolWarmer<HttpRoute> connPoolWarmer = new ConnPoolWarmer<HttpRoute>() {
+
+                @Override
+                public int prewarm(
+                        final HttpRoute route,
+                        final int connections,
+                        final long timeout,
+                        final TimeUnit tunit) throws IOException, InterruptedException {
+                    if (client.getStatus() != IOReactorStatus.ACTIVE) {
+                        throw new IllegalStateException("Client is not running");
+                    }
+                    final Future<Integer> future = poolingConnManager.prewarm(
+                            route, connections, client.getConnectionInitiator(), timeout, tunit, null);
+                    try {
+                        return future.get();
+                    } catch (final ExecutionException ex) {
+                        final Throwable cause = ex.getCause();
+                        throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                    }
+                }
+
+            };
+            final RequestConfig requestConfig = defaultRequestConfig != null ? defaultRequestConfig : RequestConfig.DEFAULT;
+            final ConnectionPrewarmer<HttpRoute> connectionPrewarmer = new ConnectionPrewarmer<>(connPoolWarmer,
+                    prewarmRoutes, prewarmInterval, prewarmIntervalUnit,
+                    requestConfig.getConnectTimeout() > 0 ? requestConfig.getConnectTimeout() : RequestConfig.DEFAULT.getConnectTimeout(),
+                    TimeUnit.MILLISECONDS);
+            // Stop pre-warming before the connection manager gets shut down
+            closeablesCopy.add(0, new Closeable() {
+
+                @Override
+                public void close() throws IOException {
+                    connectionPrewarmer.shutdown();
+                    try {
+                        connectionPrewarmer.awaitTermination(1L, TimeUnit.SECONDS);
+                    } catch (final InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            });
+            connectionPrewarmer.start();
+        }
+        return client;
     }
 
 }
@@ -39,7 +39,13 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.async.AsyncClientEndpoint;
+import org.apache.hc.client5.http.async.methods.AsyncContentDecoderFactory;
+import org.apache.hc.client5.http.async.methods.DecompressingAsyncResponseConsumer;
+import org.apache.hc.client5.http.auth.AuthSchemeProvider;
+import org.apache.hc.client5.http.auth.CredentialsProvider;
 import org.apache.hc.client5.http.config.Configurable;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
@@ -56,6 +62,7 @@ import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.message.RequestLine;
 import org.apache.hc.core5.http.message.StatusLine;
 import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
@@ -80,6 +87,11 @@ class InternalHttpAsyncClient extends AbstractHttpAsyncClientBase {
     private final ConnectionKeepAliveStrategy keepAliveStrategy;
     private final UserTokenHandler userTokenHandler;
     private final RequestConfig defaultConfig;
+    private final Lookup<AsyncContentDecoderFactory> contentDecoderRegistry;
+    private final Lookup<AuthSchemeProvider> authSchemeRegistry;
+    private final CredentialsProvider credentialsProvider;
+    private final RequestPhaseListener requestPhaseListener;
+    private final AsyncExecChain execChain;
     private final List<Closeable> closeables;
 
     InternalHttpAsyncClient(
@@ -93,6 +105,11 @@ class InternalHttpAsyncClient extends AbstractHttpAsyncClientBase {
             final ConnectionKeepAliveStrategy keepAliveStrategy,
             final UserTokenHandler userTokenHandler,
             final RequestConfig defaultConfig,
+            final Lookup<AsyncContentDecoderFactory> contentDecoderRegistry,
+            final Lookup<AuthSchemeProvider> authSchemeRegistry,
+            final CredentialsProvider credentialsProvider,
+            final RequestPhaseListener requestPhaseListener,
+            final AsyncExecChain execChain,
             final List<Closeable> closeables) throws IOReactorException {
         super(eventHandlerFactory, pushConsumerRegistry, reactorConfig, threadFactory, workerThreadFactory);
         this.connmgr = connmgr;
@@ -100,6 +117,11 @@ class InternalHttpAsyncClient extends AbstractHttpAsyncClientBase {
         this.keepAliveStrategy = keepAliveStrategy;
         this.userTokenHandler = userTokenHandler;
         this.defaultConfig = defaultConfig;
+        this.contentDecoderRegistry = contentDecoderRegistry;
+        this.authSchemeRegistry = authSchemeRegistry;
+        this.credentialsProvider = credentialsProvider;
+        this.requestPhaseListener = requestPhaseListener;
+        this.execChain = execChain;
         this.closeables = closeables;
     }
 
@@ -123,11 +145,17 @@ class InternalHttpAsyncClient extends AbstractHttpAsyncClientBase {
             final HttpClientContext clientContext,
             final FutureCallback<AsyncConnectionEndpoint> callback) {
         final RequestConfig requestConfig = clientContext.getRequestConfig();
+        final RequestPhaseListener phaseListener = clientContext.getRequestPhaseListener();
+        final long leaseStart = System.nanoTime();
         connmgr.lease(route, userToken, requestConfig.getConnectTimeout(), TimeUnit.MILLISECONDS,
                 new FutureCallback<AsyncConnectionEndpoint>() {
 
                     @Override
                     public void completed(final AsyncConnectionEndpoint connectionEndpoint) {
+                        if (phaseListener != null) {
+                            phaseListener.phaseCompleted(route, RequestPhase.LEASE,
+                                    System.nanoTime() - leaseStart, TimeUnit.NANOSECONDS);
+                        }
                         if (connectionEndpoint.isConnected()) {
                             callback.completed(connectionEndpoint);
                         } else {
@@ -214,7 +242,6 @@ class InternalHttpAsyncClient extends AbstractHttpAsyncClientBase {
             final HttpContext context,
             final FutureCallback<T> callback) {
         ensureRunning();
-        final BasicFuture<T> future = new BasicFuture<>(callback);
         try {
             final HttpClientContext clientContext = HttpClientContext.adapt(context);
             final HttpRequest request = requestProducer.produceRequest();
@@ -225,53 +252,32 @@ class InternalHttpAsyncClient extends AbstractHttpAsyncClientBase {
             if (requestConfig != null) {
                 clientContext.setRequestConfig(requestConfig);
             }
+            setupContext(clientContext);
+            final AsyncResponseConsumer<T> exchangeConsumer;
+            if (contentDecoderRegistry != null && clientContext.getRequestConfig().isContentCompressionEnabled()) {
+                exchangeConsumer = new DecompressingAsyncResponseConsumer<>(responseConsumer, contentDecoderRegistry, true);
+            } else {
+                exchangeConsumer = responseConsumer;
+            }
             final HttpHost target = routePlanner.determineTargetHost(request, clientContext);
-            final HttpRoute route = routePlanner.determineRoute(target, clientContext);
-            final Object userToken = clientContext.getUserToken();
-            leaseEndpoint(route, userToken, clientContext, new FutureCallback<AsyncConnectionEndpoint>() {
-
-                @Override
-                public void completed(final AsyncConnectionEndpoint connectionEndpoint) {
-                    final InternalAsyncClientEndpoint endpoint = new InternalAsyncClientEndpoint(route, connectionEndpoint);
-                    endpoint.executeAndRelease(requestProducer, responseConsumer, clientContext, new FutureCallback<T>() {
-
-                        @Override
-                        public void completed(final T result) {
-                            future.completed(result);
-                        }
-
-                        @Override
-                        public void failed(final Exception ex) {
-                            future.failed(ex);
-                        }
-
-                        @Override
-                        public void cancelled() {
-                            future.cancel();
-                        }
-
-                    });
-
-                }
-
-                @Override
-                public void failed(final Exception ex) {
-                    future.failed(ex);
-                }
-
-                @Override
-                public void cancelled() {
-                    future.cancel();
-                }
-
-            });
+            return execChain.execute(this, target, request, requestProducer, exchangeConsumer, clientContext, callback);
         } catch (final HttpException ex) {
+            final BasicFuture<T> future = new BasicFuture<>(callback);
             future.failed(ex);
+            return future;
         }
-        return future;
     }
 
     private void setupContext(final HttpClientContext context) {
+        if (context.getAttribute(HttpClientContext.AUTHSCHEME_REGISTRY) == null) {
+            context.setAttribute(HttpClientContext.AUTHSCHEME_REGISTRY, authSchemeRegistry);
+        }
+        if (context.getAttribute(HttpClientContext.CREDS_PROVIDER) == null) {
+            context.setAttribute(HttpClientContext.CREDS_PROVIDER, credentialsProvider);
+        }
+        if (requestPhaseListener != null && context.getAttribute(HttpClientContext.REQUEST_PHASE_LISTENER) == null) {
+            context.setAttribute(HttpClientContext.REQUEST_PHASE_LISTENER, requestPhaseListener);
+        }
         if (context.getAttribute(HttpClientContext.REQUEST_CONFIG) == null) {
             context.setAttribute(HttpClientContext.REQUEST_CONFIG, defaultConfig);
         }
@@ -0,0 +1,524 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cookie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.cookie.IndexedCookieStore;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcherLoader;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link IndexedCookieStore} implementation optimized for large numbers of cookies
+ * and concurrent access.
+ * <p>
+ * Cookies are indexed by domain and path, which enables
+ * {@link #getCookies(CookieOrigin, Date)} to select candidates for a request by looking up
+ * the host name of the origin and its parent domains only. Lookups do not block and
+ * do not copy the content of the store. Modifications are serialized.
+ * </p>
+ * <p>
+ * The store enforces a limit on the number of cookies per registrable domain (as defined
+ * by the public suffix list) and on the total number of cookies. Once a limit is exceeded
+ * expired cookies get evicted first followed by the least recently set ones. Expired
+ * cookies are also evicted lazily when encountered by a lookup.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class ConcurrentCookieStore implements IndexedCookieStore {
+
+    public static final int DEFAULT_MAX_PER_DOMAIN = 180;
+    public static final int DEFAULT_MAX_TOTAL = 3000;
+
+    private final PublicSuffixMatcher publicSuffixMatcher;
+    private final int maxPerDomain;
+    private final int maxTotal;
+    private final ReentrantLock lock;
+    private final ConcurrentMap<String, DomainIndex> domainIndexMap;
+    private final Map<CookieKey, Entry> entryMap;
+    private final Map<String, Set<Entry>> registrableDomainMap;
+    private final TreeSet<Entry> expiryIndex;
+
+    private long sequence;
+    private volatile long nextExpiry;
+
+    public ConcurrentCookieStore(
+            final PublicSuffixMatcher publicSuffixMatcher, final int maxPerDomain, final int maxTotal) {
+        super();
+        this.publicSuffixMatcher = Args.notNull(publicSuffixMatcher, "Public suffix matcher");
+        this.maxPerDomain = Args.positive(maxPerDomain, "Max per domain");
+        this.maxTotal = Args.positive(maxTotal, "Max total");
+        this.lock = new ReentrantLock();
+        this.domainIndexMap = new ConcurrentHashMap<>();
+        this.entryMap = new LinkedHashMap<>();
+        this.registrableDomainMap = new HashMap<>();
+        this.expiryIndex = new TreeSet<>(EXPIRY_ORDER);
+        this.nextExpiry = Long.MAX_VALUE;
+    }
+
+    public ConcurrentCookieStore(final int maxPerDomain, final int maxTotal) {
+        this(PublicSuffixMatcherLoader.getDefault(), maxPerDomain, maxTotal);
+    }
+
+    public ConcurrentCookieStore() {
+        this(DEFAULT_MAX_PER_DOMAIN, DEFAULT_MAX_TOTAL);
+    }
+
+    /**
+     * Adds an {@link Cookie HTTP cookie}, replacing any existing equivalent cookies.
+     * If the given cookie has already expired it will not be added, but existing
+     * values will still be removed. Adding a cookie may cause other cookies to be evicted
+     * if the per domain or the total limit gets exceeded.
+     *
+     * @param cookie the {@link Cookie cookie} to be added
+     */
+    @Override
+    public void addCookie(final Cookie cookie) {
+        if (cookie == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final CookieKey key = new CookieKey(cookie);
+        lock.lock();
+        try {
+            final Entry existing = entryMap.get(key);
+            if (existing != null) {
+                unlink(existing);
+            }
+            if (!cookie.isExpired(new Date(now))) {
+                final String domain = normalizeDomain(cookie.getDomain());
+                final Entry entry = new Entry(
+                        cookie,
+                        key,
+                        domain,
+                        normalizePath(cookie.getPath()),
+                        getRegistrableDomain(domain),
+                        sequence++);
+                link(entry);
+                enforceLimits(entry.registrableDomain, now);
+            }
+            updateNextExpiry();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns all cookies contained in this store. The returned list is a snapshot
+     * not backed by the store.
+     *
+     * @return all cookies
+     */
+    @Override
+    public List<Cookie> getCookies() {
+        final List<Cookie> cookies = new ArrayList<>();
+        for (final DomainIndex domainIndex : domainIndexMap.values()) {
+            for (final Entry[] entries : domainIndex.entries) {
+                for (final Entry entry : entries) {
+                    cookies.add(entry.cookie);
+                }
+            }
+        }
+        return cookies;
+    }
+
+    @Override
+    public List<Cookie> getCookies(final CookieOrigin origin, final Date date) {
+        Args.notNull(origin, "Cookie origin");
+        Args.notNull(date, "Date");
+        final long now = date.getTime();
+        if (nextExpiry <= now && lock.tryLock()) {
+            try {
+                purgeExpired(now);
+                updateNextExpiry();
+            } finally {
+                lock.unlock();
+            }
+        }
+        final List<Cookie> cookies = new ArrayList<>();
+        final String path = origin.getPath();
+        String domain = origin.getHost();
+        for (;;) {
+            final DomainIndex domainIndex = domainIndexMap.get(domain);
+            if (domainIndex != null) {
+                domainIndex.select(path, date, cookies);
+            }
+            final int i = domain.indexOf('.');
+            if (i < 0 || i == domain.length() - 1) {
+                break;
+            }
+            domain = domain.substring(i + 1);
+        }
+        return cookies;
+    }
+
+    /**
+     * Removes all of {@link Cookie cookies} in this store that have expired by
+     * the specified {@link java.util.Date date}.
+     *
+     * @return true if any cookies were purged.
+     */
+    @Override
+    public boolean clearExpired(final Date date) {
+        if (date == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            final boolean removed = purgeExpired(date.getTime());
+            updateNextExpiry();
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears all cookies.
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            entryMap.clear();
+            registrableDomainMap.clear();
+            expiryIndex.clear();
+            domainIndexMap.clear();
+            updateNextExpiry();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getCookies().toString();
+    }
+
+    private String getRegistrableDomain(final String domain) {
+        if (domain.isEmpty()) {
+            return domain;
+        }
+        final String root = publicSuffixMatcher.getDomainRoot(domain);
+        return root != null ? root : domain;
+    }
+
+    private void link(final Entry entry) {
+        entryMap.put(entry.key, entry);
+        Set<Entry> entries = registrableDomainMap.get(entry.registrableDomain);
+        if (entries == null) {
+            entries = new LinkedHashSet<>();
+            registrableDomainMap.put(entry.registrableDomain, entries);
+        }
+        entries.add(entry);
+        if (entry.expiry != Long.MAX_VALUE) {
+            expiryIndex.add(entry);
+        }
+        final DomainIndex domainIndex = domainIndexMap.get(entry.domain);
+        domainIndexMap.put(entry.domain, domainIndex != null ? domainIndex.add(entry) : new DomainIndex(entry));
+    }
+
+    private void unlink(final Entry entry) {
+        entryMap.remove(entry.key);
+        final Set<Entry> entries = registrableDomainMap.get(entry.registrableDomain);
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                registrableDomainMap.remove(entry.registrableDomain);
+            }
+        }
+        if (entry.expiry != Long.MAX_VALUE) {
+            expiryIndex.remove(entry);
+        }
+        final DomainIndex domainIndex = domainIndexMap.get(entry.domain);
+        if (domainIndex != null) {
+            final DomainIndex update = domainIndex.remove(entry);
+            if (update != null) {
+                domainIndexMap.put(entry.domain, update);
+            } else {
+                domainIndexMap.remove(entry.domain);
+            }
+        }
+    }
+
+    private boolean purgeExpired(final long now) {
+        boolean removed = false;
+        while (!expiryIndex.isEmpty()) {
+            final Entry entry = expiryIndex.first();
+            if (entry.expiry > now) {
+                break;
+            }
+            unlink(entry);
+            removed = true;
+        }
+        return removed;
+    }
+
+    private void enforceLimits(final String registrableDomain, final long now) {
+        final Set<Entry> entries = registrableDomainMap.get(registrableDomain);
+        if (entries != null && entries.size() > maxPerDomain) {
+            purgeExpired(now);
+            while (entries.size() > maxPerDomain) {
+                unlink(entries.iterator().next());
+            }
+        }
+        if (entryMap.size() > maxTotal) {
+            purgeExpired(now);
+            final Iterator<Entry> it = entryMap.values().iterator();
+            while (entryMap.size() > maxTotal) {
+                final Entry entry = it.next();
+                it.remove();
+                unlink(entry);
+            }
+        }
+    }
+
+    private void updateNextExpiry() {
+        nextExpiry = expiryIndex.isEmpty() ? Long.MAX_VALUE : expiryIndex.first().expiry;
+    }
+
+    static String normalizeDomain(final String domain) {
+        if (domain == null) {
+            return "";
+        }
+        final String s = domain.startsWith(".") ? domain.substring(1) : domain;
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    static String normalizePath(final String path) {
+        if (path == null) {
+            return "/";
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            return path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    static boolean pathMatch(final String uriPath, final String normalizedCookiePath) {
+        if (!uriPath.startsWith(normalizedCookiePath)) {
+            return false;
+        }
+        return normalizedCookiePath.equals("/")
+                || uriPath.length() == normalizedCookiePath.length()
+                || uriPath.charAt(normalizedCookiePath.length()) == '/';
+    }
+
+    private static final Comparator<Entry> EXPIRY_ORDER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry e1, final Entry e2) {
+            if (e1.expiry != e2.expiry) {
+                return e1.expiry < e2.expiry ? -1 : 1;
+            }
+            return e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1);
+        }
+
+    };
+
+    private static final Comparator<Entry> PATH_ORDER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry e1, final Entry e2) {
+            final int len1 = e1.path.length();
+            final int len2 = e2.path.length();
+            if (len1 != len2) {
+                return len1 > len2 ? -1 : 1;
+            }
+            final int res = e1.path.compareTo(e2.path);
+            if (res != 0) {
+                return res;
+            }
+            return e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1);
+        }
+
+    };
+
+    /**
+     * Cookie identity consistent with {@link org.apache.hc.client5.http.cookie.CookieIdentityComparator}.
+     */
+    static final class CookieKey {
+
+        private final String name;
+        private final String domain;
+        private final String path;
+
+        CookieKey(final Cookie cookie) {
+            this.name = cookie.getName();
+            final String d = cookie.getDomain();
+            if (d == null) {
+                this.domain = "";
+            } else if (d.indexOf('.') == -1) {
+                this.domain = (d + ".local").toLowerCase(Locale.ROOT);
+            } else {
+                this.domain = d.toLowerCase(Locale.ROOT);
+            }
+            final String p = cookie.getPath();
+            this.path = p != null ? p : "/";
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof CookieKey) {
+                final CookieKey that = (CookieKey) obj;
+                return this.name.equals(that.name)
+                        && this.domain.equals(that.domain)
+                        && this.path.equals(that.path);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = name.hashCode();
+            hash = 31 * hash + domain.hashCode();
+            hash = 31 * hash + path.hashCode();
+            return hash;
+        }
+
+    }
+
+    static final class Entry {
+
+        final Cookie cookie;
+        final CookieKey key;
+        final String domain;
+        final String path;
+        final String registrableDomain;
+        final long expiry;
+        final long seq;
+
+        Entry(
+                final Cookie cookie,
+                final CookieKey key,
+                final String domain,
+                final String path,
+                final String registrableDomain,
+                final long seq) {
+            this.cookie = cookie;
+            this.key = key;
+            this.domain = domain;
+            this.path = path;
+            this.registrableDomain = registrableDomain;
+            final Date expiryDate = cookie.getExpiryDate();
+            this.expiry = expiryDate != null ? expiryDate.getTime() : Long.MAX_VALUE;
+            this.seq = seq;
+        }
+
+    }
+
+    /**
+     * Immutable index of cookies of a particular domain grouped by path,
+     * with longer paths first.
+     */
+    static final class DomainIndex {
+
+        final String[] paths;
+        final Entry[][] entries;
+
+        DomainIndex(final Entry entry) {
+            this.paths = new String[] { entry.path };
+            this.entries = new Entry[][] { new Entry[] { entry } };
+        }
+
+        DomainIndex(final List<Entry> sorted) {
+            final List<String> pathList = new ArrayList<>();
+            final List<Entry[]> entryList = new ArrayList<>();
+            int start = 0;
+            for (int i = 1; i <= sorted.size(); i++) {
+                if (i == sorted.size() || !sorted.get(i).path.equals(sorted.get(start).path)) {
+                    pathList.add(sorted.get(start).path);
+                    entryList.add(sorted.subList(start, i).toArray(new Entry[i - start]));
+                    start = i;
+                }
+            }
+            this.paths = pathList.toArray(new String[pathList.size()]);
+            this.entries = entryList.toArray(new Entry[entryList.size()][]);
+        }
+
+        private List<Entry> toList() {
+            final List<Entry> list = new ArrayList<>();
+            for (final Entry[] group : entries) {
+                list.addAll(Arrays.asList(group));
+            }
+            return list;
+        }
+
+        DomainIndex add(final Entry entry) {
+            final List<Entry> list = toList();
+            list.add(entry);
+            Collections.sort(list, PATH_ORDER);
+            return new DomainIndex(list);
+        }
+
+        DomainIndex remove(final Entry entry) {
+            final List<Entry> list = toList();
+            list.remove(entry);
+            return !list.isEmpty() ? new DomainIndex(list) : null;
+        }
+
+        void select(final String uriPath, final Date date, final List<Cookie> cookies) {
+            for (int i = 0; i < paths.length; i++) {
+                if (pathMatch(uriPath, paths[i])) {
+                    for (final Entry entry : entries[i]) {
+                        if (!entry.cookie.isExpired(date)) {
+                            cookies.add(entry.cookie);
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -26,21 +26,40 @@
  */
 package org.apache.hc.client5.http.impl.io;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpHostConnectException;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.SystemDefaultDnsResolver;
 import org.apache.hc.client5.http.UnsupportedSchemeException;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.DefaultThreadFactory;
 import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
@@ -61,24 +80,58 @@ import org.apache.logging.log4j.Logger;
  * Default implementation of {@link HttpClientConnectionOperator} used as default in Http client,
  * when no instance provided by user to {@link BasicHttpClientConnectionManager} or {@link
  * PoolingHttpClientConnectionManager} constructor.
+ * <p>
+ * By default resolved addresses of the target host are tried one after another.
+ * If a positive connection attempt delay is given at construction time, connection
+ * attempts are made in the manner described by RFC 8305 (Happy Eyeballs): addresses
+ * of different families are interleaved and a new attempt is started every time
+ * the delay elapses without any of the pending attempts having completed or
+ * as soon as an attempt fails. The first attempt to succeed wins, all other attempts
+ * are aborted. The address that won the race is remembered per host and tried
+ * first next time. Concurrent attempts are run by a pool of at most
+ * {@value #MAX_CONNECT_THREADS} threads shared by all connections of the
+ * operator; once the pool is exhausted further attempts are made by the
+ * thread requesting the connection. The pool is shut down by {@link #close()}.
  *
  * @since 4.4
  */
 @Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
-public class DefaultHttpClientConnectionOperator implements HttpClientConnectionOperator {
+public class DefaultHttpClientConnectionOperator implements HttpClientConnectionOperator, Closeable {
 
     static final String SOCKET_FACTORY_REGISTRY = "http.socket-factory-registry";
 
+    static final int MAX_PREFERRED_ADDRESSES = 512;
+    static final int MAX_CONNECT_THREADS = 32;
+
     private final Logger log = LogManager.getLogger(getClass());
 
     private final Lookup<ConnectionSocketFactory> socketFactoryRegistry;
     private final SchemePortResolver schemePortResolver;
     private final DnsResolver dnsResolver;
+    private final long connectionAttemptDelay;
+    private final ExecutorService executorService;
+    private final Map<String, InetAddress> preferredAddresses;
 
     public DefaultHttpClientConnectionOperator(
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
             final DnsResolver dnsResolver) {
+        this(socketFactoryRegistry, schemePortResolver, dnsResolver, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param connectionAttemptDelay delay after which the next address is tried while
+     *   previous connection attempts are still pending. Non-positive value disables
+     *   concurrent connection attempts.
+     *
+     * @since 5.0
+     */
+    public DefaultHttpClientConnectionOperator(
+            final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final long connectionAttemptDelay,
+            final TimeUnit tunit) {
         super();
         Args.notNull(socketFactoryRegistry, "Socket factory registry");
         this.socketFactoryRegistry = socketFactoryRegistry;
@@ -86,6 +139,53 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
             DefaultSchemePortResolver.INSTANCE;
         this.dnsResolver = dnsResolver != null ? dnsResolver :
             SystemDefaultDnsResolver.INSTANCE;
+        this.connectionAttemptDelay = (tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(connectionAttemptDelay);
+        if (this.connectionAttemptDelay > 0) {
+            this.executorService = new ThreadPoolExecutor(0, MAX_CONNECT_THREADS, 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new DefaultThreadFactory("connect-attempt", true));
+            this.preferredAddresses = createPreferredAddressMap(MAX_PREFERRED_ADDRESSES);
+        } else {
+            this.executorService = null;
+            this.preferredAddresses = null;
+        }
+    }
+
+    /**
+     * Creates a map of preferred addresses by host name that retains
+     * at most the given number of recently used hosts.
+     */
+    static Map<String, InetAddress> createPreferredAddressMap(final int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, InetAddress>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, InetAddress> eldest) {
+                return size() > maxSize;
+            }
+
+        });
+    }
+
+    /**
+     * Returns the address of the given host the last concurrent connection
+     * attempt succeeded with, if any.
+     */
+    InetAddress getPreferredAddress(final String hostname) {
+        return this.preferredAddresses != null ? this.preferredAddresses.get(hostname) : null;
+    }
+
+    /**
+     * Shuts down the threads used for concurrent connection attempts.
+     * Connection attempts made afterwards are no longer concurrent.
+     *
+     * @since 5.0
+     */
+    @Override
+    public void close() {
+        if (this.executorService != null) {
+            this.executorService.shutdown();
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -112,29 +212,35 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
             throw new UnsupportedSchemeException(host.getSchemeName() +
                     " protocol is not supported");
         }
-        final InetAddress[] addresses = host.getAddress() != null ?
-                new InetAddress[] { host.getAddress() } : this.dnsResolver.resolve(host.getHostName());
+        final HttpClientContext clientContext = context != null ? HttpClientContext.adapt(context) : null;
+        final RequestPhaseListener phaseListener = clientContext != null ? clientContext.getRequestPhaseListener() : null;
+        final HttpRoute route = phaseListener != null ?
+                clientContext.getAttribute(HttpClientContext.HTTP_ROUTE, HttpRoute.class) : null;
+        long start = route != null ? System.nanoTime() : 0;
+        final InetAddress[] addresses;
+        if (host.getAddress() != null) {
+            addresses = new InetAddress[] { host.getAddress() };
+        } else {
+            addresses = this.dnsResolver.resolve(host.getHostName());
+            if (route != null) {
+                final long now = System.nanoTime();
+                phaseListener.phaseCompleted(route, RequestPhase.DNS_RESOLVE, now - start, TimeUnit.NANOSECONDS);
+                start = now;
+            }
+        }
         final int port = this.schemePortResolver.resolve(host);
+        if (this.connectionAttemptDelay > 0 && addresses.length > 1) {
+            connectConcurrently(conn, sf, host, addresses, port, localAddress, connectTimeout, socketConfig, context);
+            if (route != null) {
+                phaseListener.phaseCompleted(route, RequestPhase.CONNECT, System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return;
+        }
         for (int i = 0; i < addresses.length; i++) {
             final InetAddress address = addresses[i];
             final boolean last = i == addresses.length - 1;
 
-            Socket sock = sf.createSocket(context);
-            sock.setSoTimeout(socketConfig.getSoTimeout());
-            sock.setReuseAddress(socketConfig.isSoReuseAddress());
-            sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
-            sock.setKeepAlive(socketConfig.isSoKeepAlive());
-            if (socketConfig.getRcvBufSize() > 0) {
-                sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
-            }
-            if (socketConfig.getSndBufSize() > 0) {
-                sock.setSendBufferSize(socketConfig.getSndBufSize());
-            }
-
-            final int linger = socketConfig.getSoLinger();
-            if (linger >= 0) {
-                sock.setSoLinger(true, linger);
-            }
+            Socket sock = createSocket(sf, socketConfig, context);
             conn.bind(sock);
 
             final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
@@ -148,6 +254,9 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
                 if (this.log.isDebugEnabled()) {
                     this.log.debug("Connection established " + conn);
                 }
+                if (route != null) {
+                    phaseListener.phaseCompleted(route, RequestPhase.CONNECT, System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
                 return;
             } catch (final SocketTimeoutException ex) {
                 if (last) {
@@ -174,6 +283,251 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         }
     }
 
+    private static Socket createSocket(
+            final ConnectionSocketFactory sf,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final Socket sock = sf.createSocket(context);
+        sock.setSoTimeout(socketConfig.getSoTimeout());
+        sock.setReuseAddress(socketConfig.isSoReuseAddress());
+        sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
+        sock.setKeepAlive(socketConfig.isSoKeepAlive());
+        if (socketConfig.getRcvBufSize() > 0) {
+            sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
+        }
+        if (socketConfig.getSndBufSize() > 0) {
+            sock.setSendBufferSize(socketConfig.getSndBufSize());
+        }
+
+        final int linger = socketConfig.getSoLinger();
+        if (linger >= 0) {
+            sock.setSoLinger(true, linger);
+        }
+        return sock;
+    }
+
+    private static void closeQuietly(final Socket sock) {
+        try {
+            sock.close();
+        } catch (final IOException ignore) {
+        }
+    }
+
+    /**
+     * Orders addresses for concurrent connection attempts: the preferred address
+     * (if any) goes first, followed by the remaining addresses with address families
+     * interleaved starting with the family of the first address.
+     */
+    static InetAddress[] sortAddresses(final InetAddress[] addresses, final InetAddress preferred) {
+        final List<InetAddress> primary = new ArrayList<>(addresses.length);
+        final List<InetAddress> secondary = new ArrayList<>(addresses.length);
+        InetAddress first = null;
+        if (preferred != null) {
+            for (final InetAddress address: addresses) {
+                if (preferred.equals(address)) {
+                    first = address;
+                    break;
+                }
+            }
+        }
+        final boolean primaryIPv6 = first != null ? first instanceof Inet6Address : addresses[0] instanceof Inet6Address;
+        for (final InetAddress address: addresses) {
+            if (address == first) {
+                continue;
+            }
+            if ((address instanceof Inet6Address) == primaryIPv6) {
+                primary.add(address);
+            } else {
+                secondary.add(address);
+            }
+        }
+        final InetAddress[] result = new InetAddress[addresses.length];
+        int n = 0;
+        if (first != null) {
+            result[n++] = first;
+        }
+        // The preferred address counts as an address of the primary family
+        boolean takePrimary = first == null;
+        int i = 0;
+        int j = 0;
+        while (i < primary.size() || j < secondary.size()) {
+            if ((takePrimary && i < primary.size()) || j >= secondary.size()) {
+                result[n++] = primary.get(i++);
+            } else {
+                result[n++] = secondary.get(j++);
+            }
+            takePrimary = !takePrimary;
+        }
+        return result;
+    }
+
+    private void connectConcurrently(
+            final ManagedHttpClientConnection conn,
+            final ConnectionSocketFactory sf,
+            final HttpHost host,
+            final InetAddress[] addresses,
+            final int port,
+            final InetSocketAddress localAddress,
+            final int connectTimeout,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final String hostname = host.getHostName();
+        final InetAddress[] sorted = sortAddresses(addresses, this.preferredAddresses.get(hostname));
+        final BlockingQueue<ConnectAttempt> completed = new LinkedBlockingQueue<>();
+        final List<ConnectAttempt> attempts = new ArrayList<>(sorted.length);
+        ConnectAttempt winner = null;
+        IOException lastException = null;
+        try {
+            int next = 0;
+            int active = 0;
+            do {
+                if (next < sorted.length) {
+                    final InetSocketAddress remoteAddress = new InetSocketAddress(sorted[next++], port);
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Connecting to " + remoteAddress);
+                    }
+                    final ConnectAttempt attempt = new ConnectAttempt(
+                            createSocket(sf, socketConfig, context), sf, host, remoteAddress, localAddress,
+                            connectTimeout, context, completed);
+                    attempts.add(attempt);
+                    active++;
+                    try {
+                        this.executorService.execute(attempt);
+                    } catch (final RejectedExecutionException ex) {
+                        // No thread available, attempt to connect on the current thread
+                        attempt.run();
+                    }
+                }
+                final ConnectAttempt attempt = next < sorted.length ?
+                        completed.poll(this.connectionAttemptDelay, TimeUnit.MILLISECONDS) : completed.take();
+                if (attempt == null) {
+                    // Connection attempt delay elapsed
+                    continue;
+                }
+                active--;
+                final Socket sock = attempt.getConnectedSocket();
+                if (sock != null) {
+                    winner = attempt;
+                    conn.bind(sock);
+                    this.preferredAddresses.put(hostname, attempt.remoteAddress.getAddress());
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Connection established " + conn);
+                    }
+                    return;
+                }
+                lastException = attempt.getException();
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Connect to " + attempt.remoteAddress + " failed: " + lastException);
+                }
+            } while (active > 0 || next < sorted.length);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connect to " + host + " interrupted");
+        } finally {
+            for (final ConnectAttempt attempt: attempts) {
+                if (attempt != winner) {
+                    attempt.abort();
+                }
+            }
+        }
+        if (lastException instanceof SocketTimeoutException) {
+            throw new ConnectTimeoutException(lastException, host, addresses);
+        } else if (lastException instanceof ConnectException) {
+            if ("Connection timed out".equals(lastException.getMessage())) {
+                throw new ConnectTimeoutException(lastException, host, addresses);
+            } else {
+                throw new HttpHostConnectException(lastException, host, addresses);
+            }
+        } else if (lastException != null) {
+            throw lastException;
+        } else {
+            throw new ConnectTimeoutException(new SocketTimeoutException(), host, addresses);
+        }
+    }
+
+    static final class ConnectAttempt implements Runnable {
+
+        private final Socket sock;
+        private final ConnectionSocketFactory sf;
+        private final HttpHost host;
+        private final InetSocketAddress remoteAddress;
+        private final InetSocketAddress localAddress;
+        private final int connectTimeout;
+        private final HttpContext context;
+        private final BlockingQueue<ConnectAttempt> completed;
+
+        private Socket connectedSocket;
+        private IOException exception;
+        private boolean aborted;
+
+        ConnectAttempt(
+                final Socket sock,
+                final ConnectionSocketFactory sf,
+                final HttpHost host,
+                final InetSocketAddress remoteAddress,
+                final InetSocketAddress localAddress,
+                final int connectTimeout,
+                final HttpContext context,
+                final BlockingQueue<ConnectAttempt> completed) {
+            this.sock = sock;
+            this.sf = sf;
+            this.host = host;
+            this.remoteAddress = remoteAddress;
+            this.localAddress = localAddress;
+            this.connectTimeout = connectTimeout;
+            this.context = context;
+            this.completed = completed;
+        }
+
+        @Override
+        public void run() {
+            Socket result = null;
+            IOException failure = null;
+            try {
+                result = this.sf.connectSocket(
+                        this.connectTimeout, this.sock, this.host, this.remoteAddress, this.localAddress, this.context);
+            } catch (final IOException ex) {
+                failure = ex;
+            } catch (final RuntimeException ex) {
+                failure = new IOException(ex);
+            }
+            final boolean discard;
+            synchronized (this) {
+                discard = this.aborted;
+                if (!discard) {
+                    this.connectedSocket = result;
+                    this.exception = failure;
+                }
+            }
+            if (discard && result != null) {
+                closeQuietly(result);
+            }
+            this.completed.add(this);
+        }
+
+        synchronized Socket getConnectedSocket() {
+            return this.connectedSocket;
+        }
+
+        synchronized IOException getException() {
+            return this.exception;
+        }
+
+        void abort() {
+            final Socket result;
+            synchronized (this) {
+                this.aborted = true;
+                result = this.connectedSocket;
+                this.connectedSocket = null;
+            }
+            closeQuietly(this.sock);
+            if (result != null && result != this.sock) {
+                closeQuietly(result);
+            }
+        }
+
+    }
+
     @Override
     public void upgrade(
             final ManagedHttpClientConnection conn,
@@ -38,6 +38,7 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 
 import org.apache.hc.client5.http.impl.logging.LoggingSocketHolder;
+import org.apache.hc.client5.http.impl.logging.WireCapture;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.utils.Identifiable;
 import org.apache.hc.core5.http.ClassicHttpRequest;
@@ -152,7 +153,12 @@ public class DefaultManagedHttpClientConnection
 
     @Override
     public void bind(final Socket socket) throws IOException {
-        super.bind(this.wirelog.isDebugEnabled() ? new LoggingSocketHolder(socket, this.id, this.wirelog) : new SocketHolder(socket));
+        final WireCapture wireCapture = WireCapture.getDefault();
+        if (wireCapture.isEnabled()) {
+            super.bind(new LoggingSocketHolder(socket, this.id, wireCapture));
+        } else {
+            super.bind(this.wirelog.isDebugEnabled() ? new LoggingSocketHolder(socket, this.id, this.wirelog) : new SocketHolder(socket));
+        }
     }
 
     @Override
@@ -26,7 +26,10 @@
  */
 package org.apache.hc.client5.http.impl.io;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -40,18 +43,26 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.impl.ConnPoolMonitor;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
+import org.apache.hc.client5.http.impl.ConnPoolWarmer;
 import org.apache.hc.client5.http.impl.ConnectionShutdownException;
+import org.apache.hc.client5.http.impl.ManagedConnPool;
+import org.apache.hc.client5.http.impl.PoolConcurrencyPolicy;
+import org.apache.hc.client5.http.impl.RouteSegmentedConnPool;
+import org.apache.hc.client5.http.impl.StrictManagedConnPool;
 import org.apache.hc.client5.http.io.ConnectionEndpoint;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
 import org.apache.hc.client5.http.io.LeaseRequest;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
@@ -97,22 +108,49 @@ import org.apache.logging.log4j.Logger;
  * The code now only checks the connection if the elapsed time since
  * the last use of the connection exceeds the timeout that has been set.
  * The default timeout is set to 5000ms.
+ * <p>
+ * By default all routes share a single pool lock. Applications that spread
+ * requests across a large number of routes can opt for
+ * {@link PoolConcurrencyPolicy#ROUTE_SEGMENTED} in order to have each route
+ * guarded by its own lock.
+ * <p>
+ * Connections can be opened in advance with
+ * {@link #prewarm(HttpRoute, int, long, TimeUnit)} in order to avoid paying
+ * the cost of connection establishment on the first requests to a route.
  *
  * @since 4.3
  */
 @Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
 public class PoolingHttpClientConnectionManager
-    implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+    implements HttpClientConnectionManager, ConnPoolControl<HttpRoute>, ConnPoolWarmer<HttpRoute> {
+
+    private static final FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>> UNMONITORED_LEASE =
+            new FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>>() {
+
+                @Override
+                public void completed(final PoolEntry<HttpRoute, ManagedHttpClientConnection> result) {
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                }
+
+                @Override
+                public void cancelled() {
+                }
+
+            };
 
     private final Logger log = LogManager.getLogger(getClass());
 
     public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 25;
     public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
 
-    private final StrictConnPool<HttpRoute, ManagedHttpClientConnection> pool;
+    private final ManagedConnPool<HttpRoute, ManagedHttpClientConnection> pool;
     private final HttpConnectionFactory<ManagedHttpClientConnection> connFactory;
     private final HttpClientConnectionOperator connectionOperator;
     private final AtomicBoolean closed;
+    private final ConnPoolMonitor monitor;
 
     private volatile SocketConfig defaultSocketConfig;
     private volatile int validateAfterInactivity;
@@ -170,22 +208,58 @@ public class PoolingHttpClientConnectionManager
             final ConnPoolPolicy connPoolPolicy,
             final ConnPoolListener<HttpRoute> connPoolListener,
             final long timeToLive, final TimeUnit tunit) {
+        this(socketFactoryRegistry, connFactory, schemePortResolver, dnsResolver,
+            PoolConcurrencyPolicy.STRICT, connPoolPolicy, connPoolListener, timeToLive, tunit);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public PoolingHttpClientConnectionManager(
+            final Registry<ConnectionSocketFactory> socketFactoryRegistry,
+            final HttpConnectionFactory<ManagedHttpClientConnection> connFactory,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final PoolConcurrencyPolicy poolConcurrencyPolicy,
+            final ConnPoolPolicy connPoolPolicy,
+            final ConnPoolListener<HttpRoute> connPoolListener,
+            final long timeToLive, final TimeUnit tunit) {
         this(new DefaultHttpClientConnectionOperator(socketFactoryRegistry, schemePortResolver, dnsResolver),
-            connFactory, connPoolPolicy, connPoolListener, timeToLive, tunit);
+            connFactory, poolConcurrencyPolicy, connPoolPolicy, connPoolListener, timeToLive, tunit);
+    }
+
+    public PoolingHttpClientConnectionManager(
+            final HttpClientConnectionOperator httpClientConnectionOperator,
+            final HttpConnectionFactory<ManagedHttpClientConnection> connFactory,
+            final ConnPoolPolicy connPoolPolicy,
+            final ConnPoolListener<HttpRoute> connPoolListener,
+            final long timeToLive, final TimeUnit tunit) {
+        this(httpClientConnectionOperator, connFactory, PoolConcurrencyPolicy.STRICT,
+            connPoolPolicy, connPoolListener, timeToLive, tunit);
     }
 
+    /**
+     * @since 5.0
+     */
     public PoolingHttpClientConnectionManager(
             final HttpClientConnectionOperator httpClientConnectionOperator,
             final HttpConnectionFactory<ManagedHttpClientConnection> connFactory,
+            final PoolConcurrencyPolicy poolConcurrencyPolicy,
             final ConnPoolPolicy connPoolPolicy,
             final ConnPoolListener<HttpRoute> connPoolListener,
             final long timeToLive, final TimeUnit tunit) {
         super();
         this.connectionOperator = Args.notNull(httpClientConnectionOperator, "Connection operator");
         this.connFactory = connFactory != null ? connFactory : ManagedHttpClientConnectionFactory.INSTANCE;
-        this.pool = new StrictConnPool<>(
-                DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS, timeToLive, tunit, connPoolPolicy, connPoolListener);
+        if (poolConcurrencyPolicy == PoolConcurrencyPolicy.ROUTE_SEGMENTED) {
+            this.pool = new RouteSegmentedConnPool<>(
+                    DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS, timeToLive, tunit, connPoolPolicy, connPoolListener);
+        } else {
+            this.pool = new StrictManagedConnPool<>(new StrictConnPool<HttpRoute, ManagedHttpClientConnection>(
+                    DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS, timeToLive, tunit, connPoolPolicy, connPoolListener));
+        }
         this.closed = new AtomicBoolean(false);
+        this.monitor = new ConnPoolMonitor();
     }
 
     /**
@@ -196,12 +270,24 @@ public class PoolingHttpClientConnectionManager
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
             final DnsResolver dnsResolver) {
+        this(new StrictManagedConnPool<>(pool), socketFactoryRegistry, schemePortResolver, dnsResolver);
+    }
+
+    /**
+     * Visible for test.
+     */
+    PoolingHttpClientConnectionManager(
+            final ManagedConnPool<HttpRoute, ManagedHttpClientConnection> pool,
+            final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver) {
         super();
         this.connectionOperator = new DefaultHttpClientConnectionOperator(
                 socketFactoryRegistry, schemePortResolver, dnsResolver);
         this.connFactory = ManagedHttpClientConnectionFactory.INSTANCE;
         this.pool = pool;
         this.closed = new AtomicBoolean(false);
+        this.monitor = new ConnPoolMonitor();
     }
 
     @Override
@@ -218,6 +304,14 @@ public class PoolingHttpClientConnectionManager
         if (this.closed.compareAndSet(false, true)) {
             this.log.debug("Connection manager is shutting down");
             this.pool.shutdown();
+            this.monitor.clear();
+            if (this.connectionOperator instanceof Closeable) {
+                try {
+                    ((Closeable) this.connectionOperator).close();
+                } catch (final IOException ex) {
+                    this.log.debug("I/O exception closing connection operator", ex);
+                }
+            }
             this.log.debug("Connection manager shut down");
         }
     }
@@ -234,10 +328,19 @@ public class PoolingHttpClientConnectionManager
     public LeaseRequest lease(
             final HttpRoute route,
             final Object state) {
+        return lease(route, state, true);
+    }
+
+    private LeaseRequest lease(
+            final HttpRoute route,
+            final Object state,
+            final boolean monitored) {
         Args.notNull(route, "HTTP route");
         if (this.log.isDebugEnabled()) {
             this.log.debug("Connection request: " + ConnPoolSupport.formatStats(null, route, state, this.pool));
         }
+        final FutureCallback<PoolEntry<HttpRoute, ManagedHttpClientConnection>> leaseCallback = monitored ?
+                this.monitor.<ManagedHttpClientConnection>leaseRequested(route, null) : UNMONITORED_LEASE;
         final Future<PoolEntry<HttpRoute, ManagedHttpClientConnection>> leaseFuture = this.pool.lease(route, state, null);
         return new LeaseRequest() {
 
@@ -254,12 +357,18 @@ public class PoolingHttpClientConnectionManager
                 try {
                     poolEntry = leaseFuture.get(timeout, tunit);
                     if (poolEntry == null || leaseFuture.isCancelled()) {
+                        leaseCallback.cancelled();
                         throw new InterruptedException();
                     }
                 } catch (final TimeoutException ex) {
                     leaseFuture.cancel(true);
+                    leaseCallback.cancelled();
+                    throw ex;
+                } catch (final InterruptedException | ExecutionException ex) {
+                    leaseCallback.failed(ex);
                     throw ex;
                 }
+                leaseCallback.completed(poolEntry);
                 try {
                     if (validateAfterInactivity > 0) {
                         final ManagedHttpClientConnection conn = poolEntry.getConnection();
@@ -289,6 +398,9 @@ public class PoolingHttpClientConnectionManager
                     if (leaseFuture.isCancelled()) {
                         pool.release(poolEntry, false);
                     } else {
+                        if (monitored) {
+                            monitor.entryLeased(poolEntry);
+                        }
                         this.endpoint = new InternalConnectionEndpoint(poolEntry);
                     }
                     return this.endpoint;
@@ -300,6 +412,7 @@ public class PoolingHttpClientConnectionManager
 
             @Override
             public boolean cancel() {
+                leaseCallback.cancelled();
                 return leaseFuture.cancel(true);
             }
 
@@ -337,6 +450,7 @@ public class PoolingHttpClientConnectionManager
             reusable = false;
             throw ex;
         } finally {
+            this.monitor.entryReleased(entry, reusable);
             this.pool.release(entry, reusable);
             if (this.log.isDebugEnabled()) {
                 this.log.debug("Connection released: " + ConnPoolSupport.formatStats(
@@ -359,6 +473,7 @@ public class PoolingHttpClientConnectionManager
         final PoolEntry<HttpRoute, ManagedHttpClientConnection> poolEntry = internalEndpoint.getPoolEntry();
         if (!poolEntry.hasConnection()) {
             poolEntry.assignConnection(connFactory.createConnection(null));
+            this.monitor.connectionAssigned(poolEntry);
         }
         final HttpRoute route = poolEntry.getRoute();
         final HttpHost host;
@@ -393,12 +508,86 @@ public class PoolingHttpClientConnectionManager
             this.log.debug("Closing connections idle longer than " + idleTimeout + " " + tunit);
         }
         this.pool.closeIdle(idleTimeout, tunit);
+        this.monitor.purge();
     }
 
     @Override
     public void closeExpired() {
         this.log.debug("Closing expired connections");
         this.pool.closeExpired();
+        this.monitor.purge();
+        this.monitor.findLeakedLeases();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Tunnelled routes are not supported as they require execution
+     * of a {@code CONNECT} request.
+     *
+     * @since 5.0
+     */
+    @Override
+    public int prewarm(
+            final HttpRoute route,
+            final int connections,
+            final long timeout,
+            final TimeUnit tunit) throws IOException, InterruptedException {
+        Args.notNull(route, "HTTP route");
+        if (route.isTunnelled()) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Cannot pre-warm tunnelled route " + route);
+            }
+            return 0;
+        }
+        final int n = Math.min(connections, this.pool.getMaxPerRoute(route) - this.pool.getStats(route).getLeased());
+        if (n <= 0) {
+            return 0;
+        }
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Pre-warming " + n + " connection(s): " + ConnPoolSupport.formatStats(null, route, null, this.pool));
+        }
+        // Lease all endpoints at once in order to make sure idle connections
+        // are counted and new ones get opened for the rest
+        final List<ConnectionEndpoint> endpoints = new ArrayList<>(n);
+        final HttpClientContext context = HttpClientContext.create();
+        int opened = 0;
+        try {
+            for (int i = 0; i < n; i++) {
+                // Pre-warming leases are not accounted for by the pool monitor
+                final LeaseRequest leaseRequest = lease(route, null, false);
+                try {
+                    endpoints.add(leaseRequest.get(timeout, tunit));
+                } catch (final TimeoutException ex) {
+                    // The pool is exhausted
+                    break;
+                } catch (final ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+            for (final ConnectionEndpoint endpoint: endpoints) {
+                if (!endpoint.isConnected()) {
+                    connect(endpoint, timeout, tunit, context);
+                    opened++;
+                }
+            }
+        } finally {
+            for (final ConnectionEndpoint endpoint: endpoints) {
+                release(endpoint, null, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Returns the monitor collecting lease and connection statistics of the pool
+     * without taking the pool lock.
+     *
+     * @since 5.0
+     */
+    public ConnPoolMonitor getPoolMonitor() {
+        return this.monitor;
     }
 
     protected void enumAvailable(final Callback<PoolEntry<HttpRoute, ManagedHttpClientConnection>> callback) {
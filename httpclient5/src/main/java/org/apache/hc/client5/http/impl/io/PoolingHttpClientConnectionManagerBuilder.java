@@ -32,6 +32,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.impl.PoolConcurrencyPolicy;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
@@ -75,6 +76,7 @@ public class PoolingHttpClientConnectionManagerBuilder {
     private LayeredConnectionSocketFactory sslSocketFactory;
     private SchemePortResolver schemePortResolver;
     private DnsResolver dnsResolver;
+    private PoolConcurrencyPolicy poolConcurrencyPolicy;
     private ConnPoolPolicy connPoolPolicy;
     private ConnPoolListener<HttpRoute> connPoolListener;
     private SocketConfig defaultSocketConfig;
@@ -87,6 +89,11 @@ public class PoolingHttpClientConnectionManagerBuilder {
     private long connTimeToLive = -1;
     private TimeUnit connTimeToLiveTimeUnit = TimeUnit.MILLISECONDS;
     private int validateAfterInactivity = 2000;
+    private long connectionAttemptDelay = -1;
+    private TimeUnit connectionAttemptDelayTimeUnit = TimeUnit.MILLISECONDS;
+    private long leaseLeakThreshold = -1;
+    private TimeUnit leaseLeakThresholdTimeUnit = TimeUnit.MILLISECONDS;
+    private boolean captureLeaseStack;
 
     public static PoolingHttpClientConnectionManagerBuilder create() {
         return new PoolingHttpClientConnectionManagerBuilder();
@@ -130,6 +137,14 @@ public class PoolingHttpClientConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link PoolConcurrencyPolicy} value.
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setPoolConcurrencyPolicy(final PoolConcurrencyPolicy poolConcurrencyPolicy) {
+        this.poolConcurrencyPolicy = poolConcurrencyPolicy;
+        return this;
+    }
+
     /**
      * Assigns {@link ConnPoolPolicy} value.
      */
@@ -190,6 +205,42 @@ public class PoolingHttpClientConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * Sets delay after which a connection attempt to the next resolved address
+     * of the target host is started while previous attempts are still pending.
+     * Non-positive value disables concurrent connection attempts.
+     *
+     * @see DefaultHttpClientConnectionOperator
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setConnectionAttemptDelay(
+            final long connectionAttemptDelay, final TimeUnit connectionAttemptDelayTimeUnit) {
+        this.connectionAttemptDelay = connectionAttemptDelay;
+        this.connectionAttemptDelayTimeUnit = connectionAttemptDelayTimeUnit;
+        return this;
+    }
+
+    /**
+     * Sets duration after which a connection lease that has not been released
+     * is reported as leaked. Non-positive value disables leak detection.
+     *
+     * @see org.apache.hc.client5.http.impl.ConnPoolMonitor#findLeakedLeases()
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setLeaseLeakThreshold(
+            final long leaseLeakThreshold, final TimeUnit leaseLeakThresholdTimeUnit) {
+        this.leaseLeakThreshold = leaseLeakThreshold;
+        this.leaseLeakThresholdTimeUnit = leaseLeakThresholdTimeUnit;
+        return this;
+    }
+
+    /**
+     * Captures the stack trace of the code leasing a connection so that
+     * leaked leases can be traced back to their origin.
+     */
+    public final PoolingHttpClientConnectionManagerBuilder setCaptureLeaseStack(final boolean captureLeaseStack) {
+        this.captureLeaseStack = captureLeaseStack;
+        return this;
+    }
+
     /**
      * Use system properties when creating and configuring default
      * implementations.
@@ -202,21 +253,28 @@ public class PoolingHttpClientConnectionManagerBuilder {
     public PoolingHttpClientConnectionManager build() {
         @SuppressWarnings("resource")
         final PoolingHttpClientConnectionManager poolingmgr = new PoolingHttpClientConnectionManager(
-                RegistryBuilder.<ConnectionSocketFactory>create()
-                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                        .register("https", sslSocketFactory != null ? sslSocketFactory :
-                                (systemProperties ?
-                                        SSLConnectionSocketFactory.getSystemSocketFactory() :
-                                        SSLConnectionSocketFactory.getSocketFactory()))
-                        .build(),
+                new DefaultHttpClientConnectionOperator(
+                        RegistryBuilder.<ConnectionSocketFactory>create()
+                                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                                .register("https", sslSocketFactory != null ? sslSocketFactory :
+                                        (systemProperties ?
+                                                SSLConnectionSocketFactory.getSystemSocketFactory() :
+                                                SSLConnectionSocketFactory.getSocketFactory()))
+                                .build(),
+                        schemePortResolver,
+                        dnsResolver,
+                        connectionAttemptDelay,
+                        connectionAttemptDelayTimeUnit != null ? connectionAttemptDelayTimeUnit : TimeUnit.MILLISECONDS),
                 connectionFactory,
-                schemePortResolver,
-                dnsResolver,
+                poolConcurrencyPolicy != null ? poolConcurrencyPolicy : PoolConcurrencyPolicy.STRICT,
                 connPoolPolicy,
                 connPoolListener,
                 connTimeToLive,
                 connTimeToLiveTimeUnit != null ? connTimeToLiveTimeUnit : TimeUnit.MILLISECONDS);
         poolingmgr.setValidateAfterInactivity(this.validateAfterInactivity);
+        poolingmgr.getPoolMonitor().setLeakThreshold(leaseLeakThreshold,
+                leaseLeakThresholdTimeUnit != null ? leaseLeakThresholdTimeUnit : TimeUnit.MILLISECONDS);
+        poolingmgr.getPoolMonitor().setCaptureLeaseStack(captureLeaseStack);
         if (defaultSocketConfig != null) {
             poolingmgr.setDefaultSocketConfig(defaultSocketConfig);
         }
@@ -0,0 +1,213 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.logging;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Wire} implementation that hands the content over to {@link WireCapture}
+ * instead of logging it synchronously.
+ */
+class CapturingWire extends Wire {
+
+    private final WireCapture capture;
+    private final String id;
+    private final boolean accepted;
+    private final MessageTracker inbound;
+    private final MessageTracker outbound;
+
+    CapturingWire(final WireCapture capture, final String id, final SocketAddress remoteAddress) {
+        super(null, id);
+        this.capture = capture;
+        this.id = id;
+        this.accepted = capture.accept(remoteAddress);
+        this.inbound = new MessageTracker(true);
+        this.outbound = new MessageTracker(false);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.accepted && this.capture.isEnabled();
+    }
+
+    private void capture(final MessageTracker tracker, final ByteBuffer b) {
+        final int maxBodyBytes = this.capture.getMaxBodyBytes();
+        final int len = b.remaining();
+        final int retained = maxBodyBytes >= 0 ? tracker.retain(b, maxBodyBytes) : len;
+        if (retained > 0) {
+            if (retained < len) {
+                b.limit(b.position() + retained);
+            }
+            this.capture.capture(this.id, tracker.input, b);
+        }
+        if (retained < len && tracker.truncationStarted) {
+            this.capture.capture(this.id, tracker.input, "[body truncated after " + maxBodyBytes + " bytes]");
+        }
+    }
+
+    @Override
+    public void output(final byte[] b, final int pos, final int off) {
+        if (isEnabled()) {
+            capture(this.outbound, ByteBuffer.wrap(b, pos, off));
+        }
+    }
+
+    @Override
+    public void input(final byte[] b, final int pos, final int off) {
+        if (isEnabled()) {
+            capture(this.inbound, ByteBuffer.wrap(b, pos, off));
+        }
+    }
+
+    @Override
+    public void output(final int b) {
+        if (isEnabled()) {
+            super.output(b);
+        }
+    }
+
+    @Override
+    public void input(final int b) {
+        if (isEnabled()) {
+            super.input(b);
+        }
+    }
+
+    @Override
+    public void output(final String s) {
+        if (isEnabled()) {
+            this.capture.capture(this.id, false, s);
+        }
+    }
+
+    @Override
+    public void input(final String s) {
+        if (isEnabled()) {
+            this.capture.capture(this.id, true, s);
+        }
+    }
+
+    @Override
+    public void output(final ByteBuffer b) {
+        if (isEnabled()) {
+            capture(this.outbound, b.duplicate());
+        }
+    }
+
+    @Override
+    public void input(final ByteBuffer b) {
+        if (isEnabled()) {
+            capture(this.inbound, b.duplicate());
+        }
+    }
+
+    /**
+     * Tracks HTTP/1.1 message boundaries in one direction of a connection
+     * in order to limit the number of body bytes being captured.
+     */
+    static final class MessageTracker {
+
+        private static final byte[] HEAD_END = { '\r', '\n', '\r', '\n' };
+
+        final boolean input;
+        int headMatch;
+        boolean inBody;
+        long bodyBytes;
+        boolean truncated;
+        boolean truncationStarted;
+
+        MessageTracker(final boolean input) {
+            this.input = input;
+        }
+
+        /**
+         * @return the number of bytes at the beginning of the given chunk to be captured.
+         */
+        int retain(final ByteBuffer b, final int maxBodyBytes) {
+            final int start = b.position();
+            final int end = b.limit();
+            this.truncationStarted = false;
+            if (this.inBody && startsMessage(b, start, end)) {
+                this.inBody = false;
+                this.headMatch = 0;
+                this.bodyBytes = 0;
+                this.truncated = false;
+            }
+            int headBytes = 0;
+            if (!this.inBody) {
+                for (int i = start; i < end; i++) {
+                    final byte ch = b.get(i);
+                    if (ch == HEAD_END[this.headMatch]) {
+                        this.headMatch++;
+                    } else {
+                        this.headMatch = ch == HEAD_END[0] ? 1 : 0;
+                    }
+                    if (this.headMatch == HEAD_END.length) {
+                        this.headMatch = 0;
+                        this.inBody = true;
+                        headBytes = i + 1 - start;
+                        break;
+                    }
+                }
+                if (!this.inBody) {
+                    return end - start;
+                }
+            }
+            final int chunkBodyBytes = end - start - headBytes;
+            final long allowance = Math.max(0, maxBodyBytes - this.bodyBytes);
+            this.bodyBytes += chunkBodyBytes;
+            if (chunkBodyBytes > allowance) {
+                this.truncationStarted = !this.truncated;
+                this.truncated = true;
+                return headBytes + (int) allowance;
+            }
+            return headBytes + chunkBodyBytes;
+        }
+
+        private boolean startsMessage(final ByteBuffer b, final int start, final int end) {
+            if (this.input) {
+                return end - start >= 5
+                        && b.get(start) == 'H' && b.get(start + 1) == 'T' && b.get(start + 2) == 'T'
+                        && b.get(start + 3) == 'P' && b.get(start + 4) == '/';
+            }
+            // request line starts with a method token in upper case
+            for (int i = start; i < end && i - start <= 16; i++) {
+                final byte ch = b.get(i);
+                if (ch == ' ') {
+                    return i > start;
+                }
+                if (ch < 'A' || ch > 'Z') {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -53,17 +53,30 @@ public class LoggingIOSession implements IOSession, TransportSecurityLayer {
     private final IOSession session;
     private final ByteChannel channel;
 
-    public LoggingIOSession(final IOSession session, final String id, final Logger log, final Logger wirelog) {
+    private LoggingIOSession(final IOSession session, final String id, final Logger log, final Wire wirelog) {
         super();
         this.session = session;
         this.id = id;
         this.log = log;
-        this.wirelog = new Wire(wirelog, this.id);
+        this.wirelog = wirelog;
         this.channel = new LoggingByteChannel();
     }
 
+    public LoggingIOSession(final IOSession session, final String id, final Logger log, final Logger wirelog) {
+        this(session, id, log, new Wire(wirelog, id));
+    }
+
+    /**
+     * Creates session that hands wire content over to the given {@link WireCapture}.
+     *
+     * @since 5.0
+     */
+    public LoggingIOSession(final IOSession session, final String id, final Logger log, final WireCapture wireCapture) {
+        this(session, id, log, new CapturingWire(wireCapture, id, session.getRemoteAddress()));
+    }
+
     public LoggingIOSession(final IOSession session, final String id, final Logger log) {
-        this(session, id, log, null);
+        this(session, id, log, (Logger) null);
     }
 
     @Override
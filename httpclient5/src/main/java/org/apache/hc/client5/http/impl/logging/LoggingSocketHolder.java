@@ -44,6 +44,16 @@ public class LoggingSocketHolder extends SocketHolder {
         this.wire = new Wire(log, id);
     }
 
+    /**
+     * Creates holder that hands wire content over to the given {@link WireCapture}.
+     *
+     * @since 5.0
+     */
+    public LoggingSocketHolder(final Socket socket, final String id, final WireCapture wireCapture) {
+        super(socket);
+        this.wire = new CapturingWire(wireCapture, id, socket.getRemoteSocketAddress());
+    }
+
     @Override
     protected InputStream getInputStream(final Socket socket) throws IOException {
         return new LoggingInputStream(super.getInputStream(socket), wire);
@@ -43,18 +43,22 @@ class Wire {
         this.id = id;
     }
 
-    private void wire(final String header, final byte[] b, final int pos, final int off) {
-        final StringBuilder buffer = new StringBuilder();
-        for (int i = 0; i < off; i++) {
+    /**
+     * Logs the given bytes one line at a time, escaping control and non-ASCII chars.
+     * Each line is preceded by the given prefix.
+     */
+    static void log(final Logger log, final String prefix, final byte[] b, final int pos, final int len) {
+        final StringBuilder buffer = new StringBuilder(prefix.length() + Math.min(len, 256) + 8);
+        buffer.append(prefix).append('\"');
+        final int start = buffer.length();
+        for (int i = 0; i < len; i++) {
             final int ch = b[pos + i];
             if (ch == 13) {
                 buffer.append("[\\r]");
             } else if (ch == 10) {
-                    buffer.append("[\\n]\"");
-                    buffer.insert(0, "\"");
-                    buffer.insert(0, header);
-                    this.log.debug(this.id + " " + buffer.toString());
-                    buffer.setLength(0);
+                buffer.append("[\\n]\"");
+                log.debug(buffer.toString());
+                buffer.setLength(start);
             } else if ((ch < 32) || (ch > 127)) {
                 buffer.append("[0x");
                 buffer.append(Integer.toHexString(ch));
@@ -63,14 +67,15 @@ class Wire {
                 buffer.append((char) ch);
             }
         }
-        if (buffer.length() > 0) {
+        if (buffer.length() > start) {
             buffer.append('\"');
-            buffer.insert(0, '\"');
-            buffer.insert(0, header);
-            this.log.debug(this.id + " " + buffer.toString());
+            log.debug(buffer.toString());
         }
     }
 
+    private void wire(final String header, final byte[] b, final int pos, final int off) {
+        log(this.log, this.id + " " + header, b, pos, off);
+    }
 
     public boolean isEnabled() {
         return this.log.isDebugEnabled();
@@ -0,0 +1,464 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.logging;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.hc.client5.http.impl.DefaultThreadFactory;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Asynchronous capture of the wire content of client connections.
+ * <p>
+ * Unlike the synchronous wire log, which formats and logs every chunk of data on the I/O
+ * thread, the capture copies raw bytes into a preallocated ring buffer and returns
+ * immediately. A background thread formats the captured content and writes it to
+ * the {@code org.apache.hc.client5.http.wire} log at debug level. Content that does not fit
+ * into the buffer is dropped rather than blocking I/O and the number of dropped bytes is
+ * reported to the log.
+ * </p>
+ * <p>
+ * The buffer is divided into as many slots as there can be records, each chunk of content
+ * occupying one or more consecutive slots. I/O threads claim slots with a single atomic
+ * update of the buffer tail, copy their content without holding any lock and publish the
+ * record by marking its first slot, so concurrent connections never contend for a lock.
+ * </p>
+ * <p>
+ * The capture can be enabled and disabled at runtime. Connections opened while the capture
+ * is enabled are subject to the connection {@link Filter} and the sampling rate. Disabling
+ * the capture takes effect immediately for all connections. Enabling it only applies to
+ * connections opened from then on: connections that are already open, including those
+ * kept alive in a connection pool, are not captured until they get replaced. Optionally
+ * message bodies can be truncated to a maximum number of bytes, which only applies to
+ * HTTP/1.1 connections.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class WireCapture {
+
+    /**
+     * Selects connections whose content is to be captured.
+     */
+    public interface Filter {
+
+        /**
+         * @param remoteAddress the address of the opposite endpoint of a connection.
+         * @return {@code true} if the content of the connection is to be captured.
+         */
+        boolean accept(SocketAddress remoteAddress);
+
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+    public static final int DEFAULT_MAX_RECORDS = 8 * 1024;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static volatile WireCapture DEFAULT_INSTANCE;
+
+    /**
+     * Returns the capture used by the default connection implementations.
+     * The capture is disabled initially.
+     */
+    public static WireCapture getDefault() {
+        if (DEFAULT_INSTANCE == null) {
+            synchronized (WireCapture.class) {
+                if (DEFAULT_INSTANCE == null) {
+                    DEFAULT_INSTANCE = new WireCapture(DEFAULT_CAPACITY, DEFAULT_MAX_RECORDS);
+                }
+            }
+        }
+        return DEFAULT_INSTANCE;
+    }
+
+    private final Logger log;
+    private final int capacity;
+    private final int maxRecords;
+    private final ThreadFactory threadFactory;
+    private final AtomicLong capturedBytes;
+    private final AtomicLong droppedBytes;
+
+    private volatile Ring ring;
+    private volatile Thread worker;
+    private volatile boolean waiting;
+    private volatile boolean busy;
+
+    private volatile boolean enabled;
+    private volatile Filter filter;
+    private volatile double samplingRate;
+    private volatile int maxBodyBytes;
+
+    WireCapture(final int capacity, final int maxRecords, final Logger log) {
+        super();
+        this.capacity = Args.positive(capacity, "Capacity");
+        this.maxRecords = Args.positive(maxRecords, "Max records");
+        this.log = Args.notNull(log, "Logger");
+        this.threadFactory = new DefaultThreadFactory("wire-capture", true);
+        this.capturedBytes = new AtomicLong();
+        this.droppedBytes = new AtomicLong();
+        this.samplingRate = 1.0;
+        this.maxBodyBytes = -1;
+    }
+
+    /**
+     * @param capacity the size of the byte buffer.
+     * @param maxRecords the maximum number of chunks of data the buffer can hold.
+     */
+    public WireCapture(final int capacity, final int maxRecords) {
+        this(capacity, maxRecords, LogManager.getLogger("org.apache.hc.client5.http.wire"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the capture. The buffer gets allocated when the capture is
+     * enabled for the first time. Content captured before the capture gets disabled
+     * is still written to the log.
+     */
+    public void setEnabled(final boolean enabled) {
+        final Thread thread;
+        synchronized (this) {
+            if (enabled && ring == null) {
+                ring = new Ring(Math.max(1, capacity / maxRecords), maxRecords);
+            }
+            this.enabled = enabled;
+            if (enabled && worker == null) {
+                worker = threadFactory.newThread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        drain();
+                    }
+
+                });
+                worker.start();
+            }
+            thread = worker;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the filter of connections to be captured. {@code null} means all connections.
+     */
+    public void setFilter(final Filter filter) {
+        this.filter = filter;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Sets the fraction of connections to be captured, from {@code 0.0} to {@code 1.0}.
+     */
+    public void setSamplingRate(final double samplingRate) {
+        Args.check(samplingRate >= 0.0 && samplingRate <= 1.0, "Sampling rate must be in range [0, 1]");
+        this.samplingRate = samplingRate;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes of each message body to be captured.
+     * A negative value means no limit.
+     */
+    public void setMaxBodyBytes(final int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Returns the total number of bytes captured so far.
+     */
+    public long getCapturedBytes() {
+        return capturedBytes.get();
+    }
+
+    /**
+     * Returns the total number of bytes dropped so far due to the buffer being full.
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    private boolean isIdle() {
+        final Ring localRing = ring;
+        return localRing == null || (localRing.head == localRing.tail.get() && !busy);
+    }
+
+    /**
+     * Waits until all captured content has been written to the log.
+     *
+     * @return {@code true} if all content has been written, {@code false} if the timeout
+     * elapsed first.
+     */
+    public boolean awaitIdle(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeUnit.toMillis(timeout);
+        synchronized (this) {
+            while (!isIdle()) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides whether or not the content of a new connection is to be captured.
+     */
+    boolean accept(final SocketAddress remoteAddress) {
+        final Filter localFilter = filter;
+        if (localFilter != null && !localFilter.accept(remoteAddress)) {
+            return false;
+        }
+        final double rate = samplingRate;
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * Copies the remaining content of the given buffer into the ring buffer.
+     * The position of the given buffer gets advanced.
+     */
+    boolean capture(final String id, final boolean input, final ByteBuffer src) {
+        final Ring localRing = ring;
+        if (!enabled || localRing == null) {
+            return false;
+        }
+        final int len = src.remaining();
+        final long seq = localRing.claim(len);
+        if (seq < 0) {
+            droppedBytes.addAndGet(len);
+            return false;
+        }
+        final int slot = localRing.slotOf(seq);
+        final int p = slot * localRing.slotSize;
+        final byte[] data = localRing.data;
+        final int first = Math.min(len, data.length - p);
+        src.get(data, p, first);
+        if (first < len) {
+            src.get(data, 0, len - first);
+        }
+        publish(localRing, seq, id, input, len, null);
+        capturedBytes.addAndGet(len);
+        return true;
+    }
+
+    /**
+     * Captures an event such as end of stream or an I/O error.
+     */
+    boolean capture(final String id, final boolean input, final String message) {
+        final Ring localRing = ring;
+        if (!enabled || localRing == null) {
+            return false;
+        }
+        final long seq = localRing.claim(0);
+        if (seq < 0) {
+            return false;
+        }
+        publish(localRing, seq, id, input, 0, message);
+        return true;
+    }
+
+    private void publish(
+            final Ring localRing, final long seq,
+            final String id, final boolean input, final int len, final String message) {
+        final int slot = localRing.slotOf(seq);
+        localRing.ids[slot] = id;
+        localRing.inputs[slot] = input;
+        localRing.lengths[slot] = len;
+        localRing.messages[slot] = message;
+        // The volatile write makes the record visible to the worker
+        localRing.published.set(slot, seq + 1);
+        if (waiting) {
+            final Thread thread = worker;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private void drain() {
+        final Ring localRing = ring;
+        byte[] buffer = new byte[4096];
+        long reportedDrops = 0;
+        for (;;) {
+            final long seq = localRing.head;
+            final int slot = localRing.slotOf(seq);
+            if (localRing.published.get(slot) != seq + 1) {
+                if (localRing.tail.get() != seq) {
+                    // A record is being copied into the buffer
+                    Thread.yield();
+                    continue;
+                }
+                busy = false;
+                synchronized (this) {
+                    notifyAll();
+                    if (!enabled) {
+                        worker = null;
+                        return;
+                    }
+                }
+                waiting = true;
+                if (localRing.published.get(slot) != seq + 1) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+                if (Thread.interrupted()) {
+                    synchronized (this) {
+                        worker = null;
+                    }
+                    return;
+                }
+                continue;
+            }
+            busy = true;
+            final String id = localRing.ids[slot];
+            final boolean input = localRing.inputs[slot];
+            final String message = localRing.messages[slot];
+            final int len = localRing.lengths[slot];
+            localRing.ids[slot] = null;
+            localRing.messages[slot] = null;
+            if (len > buffer.length) {
+                buffer = new byte[Math.max(len, buffer.length * 2)];
+            }
+            final int p = slot * localRing.slotSize;
+            final int first = Math.min(len, localRing.data.length - p);
+            System.arraycopy(localRing.data, p, buffer, 0, first);
+            if (first < len) {
+                System.arraycopy(localRing.data, 0, buffer, first, len - first);
+            }
+            // Release the slots to the I/O threads
+            localRing.head = seq + localRing.slotsFor(len);
+            try {
+                final long dropped = droppedBytes.get();
+                if (dropped > reportedDrops) {
+                    log.warn("Wire capture buffer overflow: " + (dropped - reportedDrops) + " bytes dropped");
+                    reportedDrops = dropped;
+                }
+                final String prefix = id + (input ? " << " : " >> ");
+                if (message != null) {
+                    final byte[] b = message.getBytes(StandardCharsets.US_ASCII);
+                    Wire.log(log, prefix, b, 0, b.length);
+                } else {
+                    Wire.log(log, prefix, buffer, 0, len);
+                }
+            } catch (final RuntimeException ex) {
+                log.error("Failure writing wire capture", ex);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[enabled: " + enabled + "; captured: " + capturedBytes + "; dropped: " + droppedBytes + "]";
+    }
+
+    /**
+     * Ring buffer of fixed size slots. Records are claimed by any number of
+     * I/O threads and consumed by a single worker thread.
+     */
+    static final class Ring {
+
+        final int slotSize;
+        final int slots;
+        final byte[] data;
+        final String[] ids;
+        final boolean[] inputs;
+        final int[] lengths;
+        final String[] messages;
+        // sequence number + 1 of the record starting at the slot
+        final AtomicLongArray published;
+        final AtomicLong tail;
+        volatile long head;
+
+        Ring(final int slotSize, final int slots) {
+            this.slotSize = slotSize;
+            this.slots = slots;
+            this.data = new byte[slotSize * slots];
+            this.ids = new String[slots];
+            this.inputs = new boolean[slots];
+            this.lengths = new int[slots];
+            this.messages = new String[slots];
+            this.published = new AtomicLongArray(slots);
+            this.tail = new AtomicLong();
+        }
+
+        int slotOf(final long seq) {
+            return (int) (seq % slots);
+        }
+
+        int slotsFor(final int len) {
+            return len > slotSize ? (len + slotSize - 1) / slotSize : 1;
+        }
+
+        /**
+         * @return the sequence number of the first claimed slot or {@code -1}
+         * if there is not enough space.
+         */
+        long claim(final int len) {
+            final int n = slotsFor(len);
+            for (;;) {
+                final long t = tail.get();
+                if (t + n - head > slots) {
+                    return -1;
+                }
+                if (tail.compareAndSet(t, t + n)) {
+                    return t;
+                }
+            }
+        }
+
+    }
+
+}
@@ -39,15 +39,20 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpHostConnectException;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.SystemDefaultDnsResolver;
 import org.apache.hc.client5.http.UnsupportedSchemeException;
 import org.apache.hc.client5.http.impl.ComplexFuture;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.reactor.ConnectionInitiator;
 import org.apache.hc.core5.reactor.IOSession;
 import org.apache.hc.core5.reactor.SessionRequest;
@@ -75,10 +80,16 @@ final class AsyncClientConnectionOperator {
             final SocketAddress localAddress,
             final long timeout,
             final TimeUnit timeUnit,
+            final HttpContext context,
             final FutureCallback<ManagedAsyncClientConnection> callback) {
         Args.notNull(connectionInitiator, "Connection initiator");
         Args.notNull(host, "Host");
         final ComplexFuture<ManagedAsyncClientConnection> future = new ComplexFuture<>(callback);
+        final HttpClientContext clientContext = context != null ? HttpClientContext.adapt(context) : null;
+        final RequestPhaseListener phaseListener = clientContext != null ? clientContext.getRequestPhaseListener() : null;
+        final HttpRoute route = phaseListener != null ?
+                clientContext.getAttribute(HttpClientContext.HTTP_ROUTE, HttpRoute.class) : null;
+        final long dnsStart = System.nanoTime();
         final InetAddress[] remoteAddresses;
         try {
             remoteAddresses = dnsResolver.resolve(host.getHostName());
@@ -86,6 +97,10 @@ final class AsyncClientConnectionOperator {
             future.failed(ex);
             return future;
         }
+        final long connectStart = System.nanoTime();
+        if (route != null) {
+            phaseListener.phaseCompleted(route, RequestPhase.DNS_RESOLVE, connectStart - dnsStart, TimeUnit.NANOSECONDS);
+        }
         final int port;
         try {
             port = schemePortResolver.resolve(host);
@@ -110,6 +125,10 @@ final class AsyncClientConnectionOperator {
 
                             @Override
                             public void completed(final SessionRequest request) {
+                                if (route != null) {
+                                    phaseListener.phaseCompleted(route, RequestPhase.CONNECT,
+                                            System.nanoTime() - connectStart, TimeUnit.NANOSECONDS);
+                                }
                                 final IOSession session = request.getSession();
                                 final ManagedAsyncClientConnection connection = new ManagedAsyncClientConnection(session);
                                 if (tlsStrategy != null) {
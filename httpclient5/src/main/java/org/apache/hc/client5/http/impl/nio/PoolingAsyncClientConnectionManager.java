@@ -29,22 +29,34 @@ package org.apache.hc.client5.http.impl.nio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.impl.ComplexFuture;
+import org.apache.hc.client5.http.impl.ConnPoolMonitor;
 import org.apache.hc.client5.http.impl.ConnPoolSupport;
 import org.apache.hc.client5.http.impl.ConnectionShutdownException;
+import org.apache.hc.client5.http.impl.ManagedConnPool;
+import org.apache.hc.client5.http.impl.PoolConcurrencyPolicy;
+import org.apache.hc.client5.http.impl.RouteSegmentedConnPool;
+import org.apache.hc.client5.http.impl.StrictManagedConnPool;
 import org.apache.hc.client5.http.nio.AsyncClientConnectionManager;
 import org.apache.hc.client5.http.nio.AsyncConnectionEndpoint;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.utils.Identifiable;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.HttpHost;
@@ -84,6 +96,18 @@ import org.apache.logging.log4j.Logger;
  * Total time to live (TTL) set at construction time defines maximum life span
  * of persistent connections regardless of their expiration setting. No persistent
  * connection will be re-used past its TTL value.
+ * <p>
+ * Optionally, persistent HTTP/2 connections can be shared by multiple concurrent
+ * message exchanges (see {@link #setMaxConcurrentStreams(int)}). A persistent HTTP/2
+ * connection leased from the pool is then kept in a per route registry and
+ * subsequent stateless lease requests for the same route are serviced from
+ * that connection without going through the connection pool, as long as
+ * the number of concurrent exchanges does not exceed the configured limit.
+ * The connection is returned to the pool once the last exchange has completed.
+ * <p>
+ * Connections can be opened in advance with {@link #prewarm(HttpRoute, int,
+ * ConnectionInitiator, long, TimeUnit, FutureCallback)} in order to avoid paying
+ * the cost of connection establishment on the first requests to a route.
  *
  * @since 5.0
  */
@@ -93,10 +117,25 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
     private final Logger log = LogManager.getLogger(getClass());
 
     private final AsyncClientConnectionOperator connectionOperator;
-    private final StrictConnPool<HttpRoute, ManagedAsyncClientConnection> pool;
+    private final ManagedConnPool<HttpRoute, ManagedAsyncClientConnection> pool;
+    private final ConcurrentMap<HttpRoute, SharedConnection> sharedConnections;
     private final AtomicBoolean closed;
+    private final ConnPoolMonitor monitor;
 
     private volatile int validateAfterInactivity;
+    private volatile int maxConcurrentStreams;
+
+    public PoolingAsyncClientConnectionManager(
+            final Lookup<TlsStrategy> tlsStrategyLookup,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final long timeToLive,
+            final TimeUnit timeUnit,
+            final ConnPoolPolicy policy,
+            final ConnPoolListener<HttpRoute> connPoolListener) {
+        this(tlsStrategyLookup, schemePortResolver, dnsResolver, timeToLive, timeUnit,
+                PoolConcurrencyPolicy.STRICT, policy, connPoolListener);
+    }
 
     public PoolingAsyncClientConnectionManager(
             final Lookup<TlsStrategy> tlsStrategyLookup,
@@ -104,12 +143,20 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
             final DnsResolver dnsResolver,
             final long timeToLive,
             final TimeUnit timeUnit,
+            final PoolConcurrencyPolicy poolConcurrencyPolicy,
             final ConnPoolPolicy policy,
             final ConnPoolListener<HttpRoute> connPoolListener) {
         this.connectionOperator = new AsyncClientConnectionOperator(schemePortResolver, dnsResolver, tlsStrategyLookup);
-        this.pool = new StrictConnPool<>(20, 50, timeToLive, timeUnit,
-                policy != null ? policy : ConnPoolPolicy.LIFO, connPoolListener);
+        if (poolConcurrencyPolicy == PoolConcurrencyPolicy.ROUTE_SEGMENTED) {
+            this.pool = new RouteSegmentedConnPool<>(20, 50, timeToLive, timeUnit,
+                    policy != null ? policy : ConnPoolPolicy.LIFO, connPoolListener);
+        } else {
+            this.pool = new StrictManagedConnPool<>(new StrictConnPool<HttpRoute, ManagedAsyncClientConnection>(20, 50, timeToLive, timeUnit,
+                    policy != null ? policy : ConnPoolPolicy.LIFO, connPoolListener));
+        }
+        this.sharedConnections = new ConcurrentHashMap<>();
         this.closed = new AtomicBoolean(false);
+        this.monitor = new ConnPoolMonitor();
     }
 
     @Override
@@ -125,7 +172,11 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
     public void close() {
         if (closed.compareAndSet(false, true)) {
             log.debug("Connection manager is shutting down");
+            for (final SharedConnection sharedConnection: sharedConnections.values()) {
+                sharedConnection.retire();
+            }
             pool.shutdown();
+            monitor.clear();
             log.debug("Connection manager shut down");
         }
     }
@@ -138,6 +189,36 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
         }
     }
 
+    private static boolean isMultiplexing(final ManagedAsyncClientConnection connection) {
+        final ProtocolVersion protocolVersion = connection.getProtocolVersion();
+        return protocolVersion != null && protocolVersion.greaterEquals(HttpVersion.HTTP_2);
+    }
+
+    private SharedConnectionEndpoint leaseShared(final HttpRoute route) {
+        final SharedConnection sharedConnection = sharedConnections.get(route);
+        if (sharedConnection == null) {
+            return null;
+        }
+        if (!sharedConnection.isUsable(System.currentTimeMillis())) {
+            sharedConnection.retire();
+            return null;
+        }
+        if (sharedConnection.acquire(maxConcurrentStreams)) {
+            return new SharedConnectionEndpoint(sharedConnection);
+        }
+        return null;
+    }
+
+    private SharedConnection share(final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poolEntry) {
+        final ManagedAsyncClientConnection connection = poolEntry.getConnection();
+        if (maxConcurrentStreams <= 0 || poolEntry.getState() != null || closed.get()
+                || connection == null || !connection.isOpen() || !isMultiplexing(connection)) {
+            return null;
+        }
+        final SharedConnection sharedConnection = new SharedConnection(poolEntry);
+        return sharedConnections.putIfAbsent(poolEntry.getRoute(), sharedConnection) == null ? sharedConnection : null;
+    }
+
     @Override
     public Future<AsyncConnectionEndpoint> lease(
             final HttpRoute route,
@@ -145,15 +226,47 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
             final long timeout,
             final TimeUnit timeUnit,
             final FutureCallback<AsyncConnectionEndpoint> callback) {
+        return lease(route, state, timeout, timeUnit, callback, true);
+    }
+
+    private Future<AsyncConnectionEndpoint> lease(
+            final HttpRoute route,
+            final Object state,
+            final long timeout,
+            final TimeUnit timeUnit,
+            final FutureCallback<AsyncConnectionEndpoint> callback,
+            final boolean monitored) {
         if (log.isDebugEnabled()) {
             log.debug("Connection request: " + ConnPoolSupport.formatStats(null, route, state, pool));
         }
         final ComplexFuture<AsyncConnectionEndpoint> resultFuture = new ComplexFuture<>(callback);
-        final Future<PoolEntry<HttpRoute, ManagedAsyncClientConnection>> leaseFuture = pool.lease(
-                route, state, timeout, timeUnit, new FutureCallback<PoolEntry<HttpRoute, ManagedAsyncClientConnection>>() {
+        if (maxConcurrentStreams > 0 && state == null) {
+            final SharedConnectionEndpoint sharedEndpoint = leaseShared(route);
+            if (sharedEndpoint != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Connection shared: " + sharedEndpoint);
+                }
+                resultFuture.completed(sharedEndpoint);
+                return resultFuture;
+            }
+        }
+        final FutureCallback<PoolEntry<HttpRoute, ManagedAsyncClientConnection>> leaseCallback =
+                new FutureCallback<PoolEntry<HttpRoute, ManagedAsyncClientConnection>>() {
 
                     void leaseCompleted(final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poolEntry) {
-                        resultFuture.completed(new InternalConnectionEndpoint(poolEntry));
+                        if (monitored) {
+                            monitor.entryLeased(poolEntry);
+                        }
+                        final SharedConnection sharedConnection = share(poolEntry);
+                        if (sharedConnection != null) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Connection " + ConnPoolSupport.getId(poolEntry.getConnection())
+                                        + " can be shared by concurrent exchanges");
+                            }
+                            resultFuture.completed(new SharedConnectionEndpoint(sharedConnection));
+                        } else {
+                            resultFuture.completed(new InternalConnectionEndpoint(poolEntry));
+                        }
                         if (log.isDebugEnabled()) {
                             log.debug("Connection leased: " + ConnPoolSupport.formatStats(poolEntry.getConnection(), route, state, pool));
                         }
@@ -198,7 +311,9 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
                         resultFuture.cancel();
                     }
 
-                });
+                };
+        final Future<PoolEntry<HttpRoute, ManagedAsyncClientConnection>> leaseFuture = pool.lease(
+                route, state, timeout, timeUnit, monitored ? monitor.leaseRequested(route, leaseCallback) : leaseCallback);
         resultFuture.setDependency(leaseFuture);
         return resultFuture;
     }
@@ -209,6 +324,16 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
             final Object state,
             final long keepAlive, final TimeUnit timeUnit) {
         Args.notNull(endpoint, "Managed endpoint");
+        if (endpoint instanceof SharedConnectionEndpoint) {
+            final SharedConnection sharedConnection = ((SharedConnectionEndpoint) endpoint).detach();
+            if (sharedConnection != null) {
+                sharedConnection.releaseStream(keepAlive, timeUnit);
+                if (log.isDebugEnabled()) {
+                    log.debug("Shared connection released: " + sharedConnection);
+                }
+            }
+            return;
+        }
         final PoolEntry<HttpRoute, ManagedAsyncClientConnection> entry = cast(endpoint).detach();
         if (entry == null) {
             return;
@@ -233,6 +358,7 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
             reusable = false;
             throw ex;
         } finally {
+            monitor.entryReleased(entry, reusable);
             pool.release(entry, reusable);
             if (log.isDebugEnabled()) {
                 log.debug("Connection released: " + ConnPoolSupport.formatStats(
@@ -251,13 +377,25 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
             final FutureCallback<AsyncConnectionEndpoint> callback) {
         Args.notNull(endpoint, "Endpoint");
         Args.notNull(connectionInitiator, "Connection initiator");
-        final InternalConnectionEndpoint internalEndpoint = cast(endpoint);
         final ComplexFuture<AsyncConnectionEndpoint> resultFuture = new ComplexFuture<>(callback);
+        if (endpoint instanceof SharedConnectionEndpoint) {
+            if (endpoint.isConnected()) {
+                resultFuture.completed(endpoint);
+            } else {
+                resultFuture.failed(new ConnectionShutdownException());
+            }
+            return resultFuture;
+        }
+        final InternalConnectionEndpoint internalEndpoint = cast(endpoint);
         if (internalEndpoint.isConnected()) {
             resultFuture.completed(endpoint);
             return resultFuture;
         }
         final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poolEntry = internalEndpoint.getPoolEntry();
+        if (poolEntry.hasConnection()) {
+            // Kept alive connection has been closed by the opposite endpoint
+            poolEntry.discardConnection();
+        }
         final HttpRoute route = poolEntry.getRoute();
         final HttpHost host;
         if (route.getProxyHost() != null) {
@@ -267,11 +405,13 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
         }
         final InetSocketAddress localAddress = route.getLocalSocketAddress();
         final Future<ManagedAsyncClientConnection> connectFuture = connectionOperator.connect(
-                connectionInitiator, host, localAddress, timeout, timeUnit, new FutureCallback<ManagedAsyncClientConnection>() {
+                connectionInitiator, host, localAddress, timeout, timeUnit, context,
+                new FutureCallback<ManagedAsyncClientConnection>() {
 
                     @Override
                     public void completed(final ManagedAsyncClientConnection connection) {
                         poolEntry.assignConnection(connection);
+                        monitor.connectionAssigned(poolEntry);
                         resultFuture.completed(new InternalConnectionEndpoint(poolEntry));
                     }
 
@@ -334,11 +474,134 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
     @Override
     public void closeIdle(final long idletime, final TimeUnit tunit) {
         pool.closeIdle(idletime, tunit);
+        monitor.purge();
     }
 
     @Override
     public void closeExpired() {
+        final long now = System.currentTimeMillis();
+        for (final SharedConnection sharedConnection: sharedConnections.values()) {
+            if (!sharedConnection.isUsable(now)) {
+                sharedConnection.retire();
+            }
+        }
         pool.closeExpired();
+        monitor.purge();
+        monitor.findLeakedLeases();
+    }
+
+    /**
+     * Opens new connections for the given route until the given number of idle
+     * connections is kept in the pool or the maximum number of connections
+     * per route has been reached. Idle connections already kept in the pool
+     * count towards the number. Tunnelled routes are not supported as they
+     * require execution of a {@code CONNECT} request. No new connections are
+     * opened for a route already served by a shared HTTP/2 connection.
+     *
+     * @param route the route.
+     * @param connections the desired number of idle connections.
+     * @param connectionInitiator the connection initiator.
+     * @param timeout lease and connect timeout.
+     * @param timeUnit time unit.
+     * @param callback result callback.
+     * @return the future number of newly opened connections.
+     */
+    public Future<Integer> prewarm(
+            final HttpRoute route,
+            final int connections,
+            final ConnectionInitiator connectionInitiator,
+            final long timeout,
+            final TimeUnit timeUnit,
+            final FutureCallback<Integer> callback) {
+        Args.notNull(route, "HTTP route");
+        Args.notNull(connectionInitiator, "Connection initiator");
+        final BasicFuture<Integer> resultFuture = new BasicFuture<>(callback);
+        final int n = Math.min(connections, pool.getMaxPerRoute(route) - pool.getStats(route).getLeased());
+        if (n <= 0 || route.isTunnelled() || sharedConnections.containsKey(route)) {
+            resultFuture.completed(0);
+            return resultFuture;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Pre-warming " + n + " connection(s): " + ConnPoolSupport.formatStats(null, route, null, pool));
+        }
+        // Hold on to all endpoints until every connection has been established in order
+        // to make sure idle connections are counted and new ones get opened for the rest
+        final HttpClientContext context = HttpClientContext.create();
+        final List<AsyncConnectionEndpoint> endpoints = new ArrayList<>(n);
+        final AtomicInteger remaining = new AtomicInteger(n);
+        final AtomicInteger opened = new AtomicInteger(0);
+        final FutureCallback<AsyncConnectionEndpoint> connectCallback = new FutureCallback<AsyncConnectionEndpoint>() {
+
+            private void done() {
+                if (remaining.decrementAndGet() == 0) {
+                    synchronized (endpoints) {
+                        for (final AsyncConnectionEndpoint endpoint: endpoints) {
+                            release(endpoint, null, 0, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                    resultFuture.completed(opened.get());
+                }
+            }
+
+            @Override
+            public void completed(final AsyncConnectionEndpoint endpoint) {
+                opened.incrementAndGet();
+                done();
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Pre-warming of connection to " + route + " failed: " + ex.getMessage());
+                }
+                done();
+            }
+
+            @Override
+            public void cancelled() {
+                done();
+            }
+
+        };
+        for (int i = 0; i < n; i++) {
+            // Pre-warming leases are not accounted for by the pool monitor
+            lease(route, null, timeout, timeUnit, new FutureCallback<AsyncConnectionEndpoint>() {
+
+                @Override
+                public void completed(final AsyncConnectionEndpoint endpoint) {
+                    synchronized (endpoints) {
+                        endpoints.add(endpoint);
+                    }
+                    if (endpoint.isConnected()) {
+                        // Idle connection kept in the pool
+                        connectCallback.cancelled();
+                    } else {
+                        connect(endpoint, connectionInitiator, timeout, timeUnit, context, connectCallback);
+                    }
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    connectCallback.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    connectCallback.cancelled();
+                }
+
+            }, false);
+        }
+        return resultFuture;
+    }
+
+    /**
+     * Returns the monitor collecting lease and connection statistics of the pool
+     * without taking the pool lock. Exchanges served by shared HTTP/2 connections
+     * do not go through the pool and are not accounted for.
+     */
+    public ConnPoolMonitor getPoolMonitor() {
+        return monitor;
     }
 
     @Override
@@ -366,6 +629,179 @@ public class PoolingAsyncClientConnectionManager implements AsyncClientConnectio
         validateAfterInactivity = ms;
     }
 
+    /**
+     * @see #setMaxConcurrentStreams(int)
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Defines the maximum number of concurrent message exchanges a persistent HTTP/2
+     * connection can be shared by without going through the connection pool.
+     * This value should not exceed {@code SETTINGS_MAX_CONCURRENT_STREAMS} announced
+     * by the opposite endpoint. Non-positive value passed to this method disables
+     * sharing of connections.
+     */
+    public void setMaxConcurrentStreams(final int max) {
+        maxConcurrentStreams = max;
+        if (max <= 0) {
+            for (final SharedConnection sharedConnection: sharedConnections.values()) {
+                sharedConnection.retire();
+            }
+        }
+    }
+
+    /**
+     * Persistent HTTP/2 connection shared by concurrent message exchanges.
+     * The pool entry of the connection remains leased for as long as the connection
+     * carries at least one exchange and gets released back to the pool once the last
+     * exchange has completed. No more exchanges can be added to the connection
+     * after that.
+     */
+    class SharedConnection {
+
+        private final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poolEntry;
+        private final AtomicInteger streamCount;
+        private final AtomicBoolean retired;
+
+        SharedConnection(final PoolEntry<HttpRoute, ManagedAsyncClientConnection> poolEntry) {
+            this.poolEntry = poolEntry;
+            this.streamCount = new AtomicInteger(1);
+            this.retired = new AtomicBoolean(false);
+        }
+
+        ManagedAsyncClientConnection getConnection() {
+            return poolEntry.getConnection();
+        }
+
+        boolean isUsable(final long now) {
+            final ManagedAsyncClientConnection connection = poolEntry.getConnection();
+            return !retired.get() && connection != null && connection.isOpen() && poolEntry.getExpiry() > now;
+        }
+
+        boolean acquire(final int max) {
+            for (;;) {
+                final int count = streamCount.get();
+                if (count == 0 || count >= max || retired.get()) {
+                    return false;
+                }
+                if (streamCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void releaseStream(final long keepAlive, final TimeUnit timeUnit) {
+            final ManagedAsyncClientConnection connection = poolEntry.getConnection();
+            final boolean reusable = connection != null && connection.isOpen();
+            if (!reusable) {
+                retire();
+            }
+            if (streamCount.decrementAndGet() == 0) {
+                retire();
+                if (reusable) {
+                    poolEntry.updateConnection(keepAlive, timeUnit != null ? timeUnit : TimeUnit.MILLISECONDS, null);
+                }
+                monitor.entryReleased(poolEntry, reusable);
+                pool.release(poolEntry, reusable);
+                if (log.isDebugEnabled()) {
+                    log.debug("Connection released: " + ConnPoolSupport.formatStats(
+                            connection, poolEntry.getRoute(), null, pool));
+                }
+            }
+        }
+
+        void retire() {
+            retired.set(true);
+            sharedConnections.remove(poolEntry.getRoute(), this);
+        }
+
+        @Override
+        public String toString() {
+            return "[id: " + ConnPoolSupport.getId(poolEntry.getConnection()) + "][route: " + poolEntry.getRoute()
+                    + "][exchanges: " + streamCount.get() + "]";
+        }
+
+    }
+
+    class SharedConnectionEndpoint extends AsyncConnectionEndpoint implements Identifiable {
+
+        private final AtomicReference<SharedConnection> sharedConnectionRef;
+
+        SharedConnectionEndpoint(final SharedConnection sharedConnection) {
+            this.sharedConnectionRef = new AtomicReference<>(sharedConnection);
+        }
+
+        @Override
+        public String getId() {
+            final SharedConnection sharedConnection = sharedConnectionRef.get();
+            return ConnPoolSupport.getId(sharedConnection != null ? sharedConnection.getConnection() : null);
+        }
+
+        SharedConnection detach() {
+            return sharedConnectionRef.getAndSet(null);
+        }
+
+        ManagedAsyncClientConnection getValidatedConnection() {
+            final SharedConnection sharedConnection = sharedConnectionRef.get();
+            if (sharedConnection == null) {
+                throw new ConnectionShutdownException();
+            }
+            final ManagedAsyncClientConnection connection = sharedConnection.getConnection();
+            Asserts.check(connection != null && connection.isOpen(), "Endpoint is not connected");
+            return connection;
+        }
+
+        @Override
+        public void shutdown() throws IOException {
+            final SharedConnection sharedConnection = sharedConnectionRef.get();
+            if (sharedConnection != null) {
+                sharedConnection.retire();
+                final ManagedAsyncClientConnection connection = sharedConnection.getConnection();
+                if (connection != null) {
+                    connection.shutdown();
+                }
+            }
+        }
+
+        /**
+         * Closing a shared endpoint does not close the underlying connection
+         * as it may still be carrying other message exchanges. A connection that
+         * got closed by the opposite endpoint or failed is retired automatically.
+         */
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public boolean isConnected() {
+            final SharedConnection sharedConnection = sharedConnectionRef.get();
+            if (sharedConnection == null) {
+                throw new ConnectionShutdownException();
+            }
+            final ManagedAsyncClientConnection connection = sharedConnection.getConnection();
+            return connection != null && connection.isOpen();
+        }
+
+        @Override
+        public void setSocketTimeout(final int timeout) {
+            getValidatedConnection().setSocketTimeout(timeout);
+        }
+
+        @Override
+        public void execute(final AsyncClientExchangeHandler exchangeHandler, final HttpContext context) {
+            getValidatedConnection().submitCommand(new ExecutionCommand(exchangeHandler, context));
+        }
+
+        @Override
+        public String toString() {
+            final SharedConnection sharedConnection = sharedConnectionRef.get();
+            return sharedConnection != null ? sharedConnection.toString() : "[released]";
+        }
+
+    }
+
     class InternalConnectionEndpoint extends AsyncConnectionEndpoint implements Identifiable {
 
         private final AtomicReference<PoolEntry<HttpRoute, ManagedAsyncClientConnection>> poolEntryRef;
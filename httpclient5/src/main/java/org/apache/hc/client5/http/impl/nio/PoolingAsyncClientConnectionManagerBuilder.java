@@ -32,6 +32,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.impl.PoolConcurrencyPolicy;
 import org.apache.hc.client5.http.ssl.SSLUpgradeStrategy;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
@@ -69,6 +70,7 @@ public class PoolingAsyncClientConnectionManagerBuilder {
     private TlsStrategy tlsStrategy;
     private SchemePortResolver schemePortResolver;
     private DnsResolver dnsResolver;
+    private PoolConcurrencyPolicy poolConcurrencyPolicy;
     private ConnPoolPolicy connPoolPolicy;
     private ConnPoolListener<HttpRoute> connPoolListener;
 
@@ -80,6 +82,10 @@ public class PoolingAsyncClientConnectionManagerBuilder {
     private long connTimeToLive = -1;
     private TimeUnit connTimeToLiveTimeUnit = TimeUnit.MILLISECONDS;
     private int validateAfterInactivity = 2000;
+    private int maxConcurrentStreams = 0;
+    private long leaseLeakThreshold = -1;
+    private TimeUnit leaseLeakThresholdTimeUnit = TimeUnit.MILLISECONDS;
+    private boolean captureLeaseStack;
 
     public static PoolingAsyncClientConnectionManagerBuilder create() {
         return new PoolingAsyncClientConnectionManagerBuilder();
@@ -114,6 +120,14 @@ public class PoolingAsyncClientConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link PoolConcurrencyPolicy} value.
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setPoolConcurrencyPolicy(final PoolConcurrencyPolicy poolConcurrencyPolicy) {
+        this.poolConcurrencyPolicy = poolConcurrencyPolicy;
+        return this;
+    }
+
     /**
      * Assigns {@link ConnPoolPolicy} value.
      */
@@ -166,6 +180,40 @@ public class PoolingAsyncClientConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * Sets maximum number of concurrent message exchanges a persistent HTTP/2
+     * connection can be shared by without going through the connection pool.
+     * Non-positive value disables sharing of HTTP/2 connections.
+     *
+     * @see PoolingAsyncClientConnectionManager#setMaxConcurrentStreams(int)
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setMaxConcurrentStreams(final int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        return this;
+    }
+
+    /**
+     * Sets duration after which a connection lease that has not been released
+     * is reported as leaked. Non-positive value disables leak detection.
+     *
+     * @see org.apache.hc.client5.http.impl.ConnPoolMonitor#findLeakedLeases()
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setLeaseLeakThreshold(
+            final long leaseLeakThreshold, final TimeUnit leaseLeakThresholdTimeUnit) {
+        this.leaseLeakThreshold = leaseLeakThreshold;
+        this.leaseLeakThresholdTimeUnit = leaseLeakThresholdTimeUnit;
+        return this;
+    }
+
+    /**
+     * Captures the stack trace of the code leasing a connection so that
+     * leaked leases can be traced back to their origin.
+     */
+    public final PoolingAsyncClientConnectionManagerBuilder setCaptureLeaseStack(final boolean captureLeaseStack) {
+        this.captureLeaseStack = captureLeaseStack;
+        return this;
+    }
+
     /**
      * Use system properties when creating and configuring default
      * implementations.
@@ -188,9 +236,14 @@ public class PoolingAsyncClientConnectionManagerBuilder {
                 dnsResolver,
                 connTimeToLive,
                 connTimeToLiveTimeUnit != null ? connTimeToLiveTimeUnit : TimeUnit.MILLISECONDS,
+                poolConcurrencyPolicy != null ? poolConcurrencyPolicy : PoolConcurrencyPolicy.STRICT,
                 connPoolPolicy,
                 connPoolListener);
         poolingmgr.setValidateAfterInactivity(this.validateAfterInactivity);
+        poolingmgr.getPoolMonitor().setLeakThreshold(leaseLeakThreshold,
+                leaseLeakThresholdTimeUnit != null ? leaseLeakThresholdTimeUnit : TimeUnit.MILLISECONDS);
+        poolingmgr.getPoolMonitor().setCaptureLeaseStack(captureLeaseStack);
+        poolingmgr.setMaxConcurrentStreams(this.maxConcurrentStreams);
         if (maxConnTotal > 0) {
             poolingmgr.setMaxTotal(maxConnTotal);
         }
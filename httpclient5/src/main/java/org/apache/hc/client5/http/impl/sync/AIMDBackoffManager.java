@@ -26,11 +26,18 @@
  */
 package org.apache.hc.client5.http.impl.sync;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.sync.BackoffManager;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.pool.ConnPoolControl;
 import org.apache.hc.core5.util.Args;
 
@@ -52,17 +59,27 @@ import org.apache.hc.core5.util.Args;
  * capacity among clients (fairness) to happen faster, at the
  * expense of having more server capacity unused in the short term.</p>
  *
+ * <p>Signals are processed without locking. Only one adjustment per
+ * route and cool down period wins the right to change the pool size,
+ * concurrent signals within the same period are ignored. The limit of
+ * each route is kept by the manager itself and changed atomically, so a
+ * probe cannot overwrite a concurrent backoff. It is initialized from
+ * the pool on the first signal for a route; later changes made directly
+ * to the pool are overridden by the next adjustment.</p>
+ *
  * @since 4.2
  */
+@Contract(threading = ThreadingBehavior.SAFE)
 public class AIMDBackoffManager implements BackoffManager {
 
     private final ConnPoolControl<HttpRoute> connPerRoute;
     private final Clock clock;
-    private final Map<HttpRoute,Long> lastRouteProbes;
-    private final Map<HttpRoute,Long> lastRouteBackoffs;
-    private long coolDown = 5 * 1000L;
-    private double backoffFactor = 0.5;
-    private int cap = 2; // Per RFC 2616 sec 8.1.4
+    private final ConcurrentMap<HttpRoute, AtomicLong> lastRouteProbes;
+    private final ConcurrentMap<HttpRoute, AtomicLong> lastRouteBackoffs;
+    private final ConcurrentMap<HttpRoute, AtomicInteger> routeLimits;
+    private volatile long coolDown = 5 * 1000L;
+    private volatile double backoffFactor = 0.5;
+    private volatile int cap = 2; // Per RFC 2616 sec 8.1.4
 
     /**
      * Creates an {@code AIMDBackoffManager} to manage
@@ -78,22 +95,27 @@ public class AIMDBackoffManager implements BackoffManager {
     AIMDBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, final Clock clock) {
         this.clock = clock;
         this.connPerRoute = connPerRoute;
-        this.lastRouteProbes = new HashMap<>();
-        this.lastRouteBackoffs = new HashMap<>();
+        this.lastRouteProbes = new ConcurrentHashMap<>();
+        this.lastRouteBackoffs = new ConcurrentHashMap<>();
+        this.routeLimits = new ConcurrentHashMap<>();
     }
 
     @Override
     public void backOff(final HttpRoute route) {
-        synchronized(connPerRoute) {
-            final int curr = connPerRoute.getMaxPerRoute(route);
-            final Long lastUpdate = getLastUpdate(lastRouteBackoffs, route);
-            final long now = clock.getCurrentTime();
-            if (now - lastUpdate.longValue() < coolDown) {
-                return;
+        final AtomicLong lastBackoff = getLastUpdate(lastRouteBackoffs, route);
+        final long now = clock.getCurrentTime();
+        final long last = lastBackoff.get();
+        if (now - last < coolDown || !lastBackoff.compareAndSet(last, now)) {
+            return;
+        }
+        final AtomicInteger limit = getLimit(route);
+        for (;;) {
+            final int curr = limit.get();
+            if (limit.compareAndSet(curr, getBackedOffPoolSize(curr))) {
+                break;
             }
-            connPerRoute.setMaxPerRoute(route, getBackedOffPoolSize(curr));
-            lastRouteBackoffs.put(route, Long.valueOf(now));
         }
+        apply(route, limit);
     }
 
     private int getBackedOffPoolSize(final int curr) {
@@ -105,28 +127,72 @@ public class AIMDBackoffManager implements BackoffManager {
 
     @Override
     public void probe(final HttpRoute route) {
-        synchronized(connPerRoute) {
-            final int curr = connPerRoute.getMaxPerRoute(route);
+        final AtomicLong lastProbe = getLastUpdate(lastRouteProbes, route);
+        final AtomicLong lastBackoff = getLastUpdate(lastRouteBackoffs, route);
+        final long now = clock.getCurrentTime();
+        final long last = lastProbe.get();
+        if (now - last < coolDown || now - lastBackoff.get() < coolDown
+                || !lastProbe.compareAndSet(last, now)) {
+            return;
+        }
+        final AtomicInteger limit = getLimit(route);
+        for (;;) {
+            final int curr = limit.get();
             final int max = (curr >= cap) ? cap : curr + 1;
-            final Long lastProbe = getLastUpdate(lastRouteProbes, route);
-            final Long lastBackoff = getLastUpdate(lastRouteBackoffs, route);
-            final long now = clock.getCurrentTime();
-            if (now - lastProbe.longValue() < coolDown || now - lastBackoff.longValue() < coolDown) {
-                return;
+            if (limit.compareAndSet(curr, max)) {
+                break;
             }
-            connPerRoute.setMaxPerRoute(route, max);
-            lastRouteProbes.put(route, Long.valueOf(now));
         }
+        apply(route, limit);
     }
 
-    private Long getLastUpdate(final Map<HttpRoute,Long> updates, final HttpRoute route) {
-        Long lastUpdate = updates.get(route);
+    private AtomicInteger getLimit(final HttpRoute route) {
+        AtomicInteger limit = routeLimits.get(route);
+        if (limit == null) {
+            final AtomicInteger newLimit = new AtomicInteger(connPerRoute.getMaxPerRoute(route));
+            limit = routeLimits.putIfAbsent(route, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        return limit;
+    }
+
+    private void apply(final HttpRoute route, final AtomicInteger limit) {
+        // Push again if a concurrent adjustment changed the limit in the meantime
+        int max;
+        do {
+            max = limit.get();
+            connPerRoute.setMaxPerRoute(route, max);
+        } while (limit.get() != max);
+    }
+
+    private AtomicLong getLastUpdate(final ConcurrentMap<HttpRoute, AtomicLong> updates, final HttpRoute route) {
+        AtomicLong lastUpdate = updates.get(route);
         if (lastUpdate == null) {
-            lastUpdate = Long.valueOf(0L);
+            final AtomicLong newUpdate = new AtomicLong(0L);
+            lastUpdate = updates.putIfAbsent(route, newUpdate);
+            if (lastUpdate == null) {
+                lastUpdate = newUpdate;
+            }
         }
         return lastUpdate;
     }
 
+    /**
+     * Returns the current connection limits of all routes that have
+     * been signalled so far.
+     *
+     * @since 5.0
+     */
+    public Map<HttpRoute, Integer> getRouteLimits() {
+        final Map<HttpRoute, Integer> limits = new HashMap<>();
+        for (final Map.Entry<HttpRoute, AtomicInteger> entry: routeLimits.entrySet()) {
+            limits.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(limits);
+    }
+
     /**
      * Sets the factor to use when backing off; the new
      * per-host limit will be roughly the current max times
@@ -149,7 +215,7 @@ public class AIMDBackoffManager implements BackoffManager {
      * @param l must be positive
      */
     public void setCooldownMillis(final long l) {
-        Args.positive(coolDown, "Cool down");
+        Args.positive(l, "Cool down");
         coolDown = l;
     }
 
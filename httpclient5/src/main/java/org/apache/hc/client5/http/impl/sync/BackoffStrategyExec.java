@@ -29,11 +29,13 @@ package org.apache.hc.client5.http.impl.sync;
 
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.sync.BackoffManager;
 import org.apache.hc.client5.http.sync.ConnectionBackoffStrategy;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
 import org.apache.hc.client5.http.sync.methods.HttpExecutionAware;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
@@ -74,6 +76,7 @@ public class BackoffStrategyExec implements ClientExecChain {
         final HttpRoute route = request.getRoute();
 
         ClassicHttpResponse out = null;
+        context.removeAttribute(HttpClientContext.RESPONSE_LATENCY);
         try {
             out = this.requestExecutor.execute(request, context, execAware);
         } catch (final Exception ex) {
@@ -94,8 +97,13 @@ public class BackoffStrategyExec implements ClientExecChain {
             }
             throw new UndeclaredThrowableException(ex);
         }
+        // Latency of the last exchange over a leased connection, excluding the wait
+        // for the lease, retries and redirects
+        final Long latency = context.getAttribute(HttpClientContext.RESPONSE_LATENCY, Long.class);
         if (this.connectionBackoffStrategy.shouldBackoff(out)) {
             this.backoffManager.backOff(route);
+        } else if (this.backoffManager instanceof LatencyAwareBackoffManager && latency != null) {
+            ((LatencyAwareBackoffManager) this.backoffManager).probe(route, latency, TimeUnit.NANOSECONDS);
         } else {
             this.backoffManager.probe(route);
         }
@@ -0,0 +1,285 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.sync;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * <p>The {@code GradientBackoffManager} manages a dynamic limit to the
+ * number of connections allowed to a given host based on the latency of
+ * request executions, in the spirit of TCP Vegas.</p>
+ *
+ * <p>The manager tracks the minimum latency observed for a route as an
+ * estimate of its latency without queuing and a smoothed latency of recent
+ * request executions. As long as the recent latency stays close to the
+ * minimum the limit grows by roughly its square root per sample. As soon as
+ * requests start queuing on the server side and latency grows the limit
+ * is scaled down by the ratio of the two, but never by more than half per
+ * sample. Explicit backoff signals such as connection timeouts or
+ * {@code 503} responses decrease the limit multiplicatively.</p>
+ *
+ * <p>The minimum latency is re-measured periodically so that
+ * the manager can adapt to permanent changes of the route.
+ * Successful executions without latency information do not affect
+ * the limit.</p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class GradientBackoffManager implements LatencyAwareBackoffManager {
+
+    private final ConnPoolControl<HttpRoute> connPerRoute;
+    private final Clock clock;
+    private final ConcurrentMap<HttpRoute, AtomicReference<RouteState>> routeStates;
+    private volatile long coolDown = 5 * 1000L;
+    private volatile long minLatencyWindow = 30 * 1000L;
+    private volatile double backoffFactor = 0.5;
+    private volatile double tolerance = 1.5;
+    private volatile double smoothing = 0.2;
+    private volatile int cap = 20;
+
+    /**
+     * Creates a {@code GradientBackoffManager} to manage
+     * per-host connection pool sizes represented by the
+     * given {@link ConnPoolControl}.
+     * @param connPerRoute per-host routing maximums to
+     *   be managed
+     */
+    public GradientBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute) {
+        this(connPerRoute, new SystemClock());
+    }
+
+    GradientBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, final Clock clock) {
+        this.connPerRoute = Args.notNull(connPerRoute, "Connection pool control");
+        this.clock = clock;
+        this.routeStates = new ConcurrentHashMap<>();
+    }
+
+    private AtomicReference<RouteState> getStateRef(final HttpRoute route) {
+        AtomicReference<RouteState> stateRef = routeStates.get(route);
+        if (stateRef == null) {
+            final AtomicReference<RouteState> newStateRef = new AtomicReference<>(
+                    new RouteState(connPerRoute.getMaxPerRoute(route), 0L, 0.0d, 0L, 0L));
+            stateRef = routeStates.putIfAbsent(route, newStateRef);
+            if (stateRef == null) {
+                stateRef = newStateRef;
+            }
+        }
+        return stateRef;
+    }
+
+    private void apply(final HttpRoute route, final RouteState state) {
+        final int max = Math.max(1, (int) state.limit);
+        if (connPerRoute.getMaxPerRoute(route) != max) {
+            connPerRoute.setMaxPerRoute(route, max);
+        }
+    }
+
+    @Override
+    public void backOff(final HttpRoute route) {
+        final AtomicReference<RouteState> stateRef = getStateRef(route);
+        final long now = clock.getCurrentTime();
+        for (;;) {
+            final RouteState current = stateRef.get();
+            if (now - current.lastBackoff < coolDown) {
+                return;
+            }
+            final double limit = Math.max(1.0d, Math.floor(current.limit * backoffFactor));
+            final RouteState next = new RouteState(
+                    limit, current.minLatency, current.latency, current.minLatencyExpiry, now);
+            if (stateRef.compareAndSet(current, next)) {
+                apply(route, next);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Does nothing as the limit is only increased based on latency samples.
+     */
+    @Override
+    public void probe(final HttpRoute route) {
+    }
+
+    @Override
+    public void probe(final HttpRoute route, final long latency, final TimeUnit timeUnit) {
+        Args.notNegative(latency, "Latency");
+        final long sample = Math.max(1L, timeUnit.toMicros(latency));
+        final AtomicReference<RouteState> stateRef = getStateRef(route);
+        final long now = clock.getCurrentTime();
+        for (;;) {
+            final RouteState current = stateRef.get();
+            final long minLatency;
+            final long minLatencyExpiry;
+            if (current.minLatency == 0L || sample < current.minLatency || now >= current.minLatencyExpiry) {
+                minLatency = sample;
+                minLatencyExpiry = now + minLatencyWindow;
+            } else {
+                minLatency = current.minLatency;
+                minLatencyExpiry = current.minLatencyExpiry;
+            }
+            final double smoothedLatency = current.latency > 0.0d
+                    ? current.latency + (sample - current.latency) * smoothing
+                    : sample;
+            final double limit;
+            if (now - current.lastBackoff < coolDown) {
+                // Let the last backoff take effect first
+                limit = current.limit;
+            } else {
+                final double gradient = Math.max(0.5d, Math.min(1.0d, tolerance * minLatency / smoothedLatency));
+                final double newLimit = current.limit * gradient + Math.sqrt(current.limit);
+                limit = Math.max(1.0d, Math.min(cap,
+                        current.limit * (1.0d - smoothing) + newLimit * smoothing));
+            }
+            final RouteState next = new RouteState(
+                    limit, minLatency, smoothedLatency, minLatencyExpiry, current.lastBackoff);
+            if (stateRef.compareAndSet(current, next)) {
+                apply(route, next);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current connection limit of the given route.
+     */
+    public int getRouteLimit(final HttpRoute route) {
+        final AtomicReference<RouteState> stateRef = routeStates.get(route);
+        return stateRef != null ? Math.max(1, (int) stateRef.get().limit) : connPerRoute.getMaxPerRoute(route);
+    }
+
+    /**
+     * Returns the current connection limits of all routes that have
+     * been signalled so far.
+     */
+    public Map<HttpRoute, Integer> getRouteLimits() {
+        final Map<HttpRoute, Integer> limits = new HashMap<>();
+        for (final Map.Entry<HttpRoute, AtomicReference<RouteState>> entry: routeStates.entrySet()) {
+            limits.put(entry.getKey(), Math.max(1, (int) entry.getValue().get().limit));
+        }
+        return Collections.unmodifiableMap(limits);
+    }
+
+    /**
+     * Sets the factor to use when backing off; the new
+     * per-host limit will be roughly the current limit times
+     * this factor. Defaults to 0.5.
+     * @param d must be between 0.0 and 1.0, exclusive.
+     */
+    public void setBackoffFactor(final double d) {
+        Args.check(d > 0.0 && d < 1.0, "Backoff factor must be 0.0 < f < 1.0");
+        backoffFactor = d;
+    }
+
+    /**
+     * Sets the amount of time, in milliseconds, during which the limit
+     * is not increased or backed off again after a backoff. Defaults
+     * to 5000L (5 seconds).
+     * @param l must be positive
+     */
+    public void setCooldownMillis(final long l) {
+        Args.positive(l, "Cool down");
+        coolDown = l;
+    }
+
+    /**
+     * Sets the amount of time, in milliseconds, after which the minimum
+     * latency of a route is measured anew. Defaults to 30000L (30 seconds).
+     * @param l must be positive
+     */
+    public void setMinLatencyWindowMillis(final long l) {
+        Args.positive(l, "Min latency window");
+        minLatencyWindow = l;
+    }
+
+    /**
+     * Sets the ratio of recent to minimum latency that is tolerated before
+     * the limit is scaled down. Defaults to 1.5.
+     * @param d must be at least 1.0.
+     */
+    public void setTolerance(final double d) {
+        Args.check(d >= 1.0, "Tolerance must be >= 1.0");
+        tolerance = d;
+    }
+
+    /**
+     * Sets the weight of a new sample when updating the smoothed latency
+     * and the limit. Defaults to 0.2.
+     * @param d must be between 0.0 exclusive and 1.0 inclusive.
+     */
+    public void setSmoothing(final double d) {
+        Args.check(d > 0.0 && d <= 1.0, "Smoothing must be 0.0 < f <= 1.0");
+        smoothing = d;
+    }
+
+    /**
+     * Sets the absolute maximum per-host connection pool size to
+     * grow up to; defaults to 20.
+     * @param cap must be &gt;= 1
+     */
+    public void setPerHostConnectionCap(final int cap) {
+        Args.positive(cap, "Per host connection cap");
+        this.cap = cap;
+    }
+
+    static final class RouteState {
+
+        final double limit;
+        final long minLatency;
+        final double latency;
+        final long minLatencyExpiry;
+        final long lastBackoff;
+
+        RouteState(
+                final double limit,
+                final long minLatency,
+                final double latency,
+                final long minLatencyExpiry,
+                final long lastBackoff) {
+            this.limit = limit;
+            this.minLatency = minLatency;
+            this.latency = latency;
+            this.minLatencyExpiry = minLatencyExpiry;
+            this.lastBackoff = lastBackoff;
+        }
+
+    }
+
+}
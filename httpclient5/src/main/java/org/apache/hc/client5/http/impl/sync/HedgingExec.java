@@ -0,0 +1,294 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.sync;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.HedgingPolicy;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.sync.methods.HttpExecutionAware;
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.protocol.BasicHttpContext;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Request executor in the request execution chain that is responsible
+ * for hedging idempotent requests as advised by the {@link HedgingPolicy}.
+ * <p>
+ * The request is executed by the calling thread. If no response has been
+ * received after the hedge delay of the route a copy of the request is executed
+ * by a thread of the executor over another connection. The scheduler is only
+ * used to trigger the hedge and never blocks on I/O; if the executor rejects
+ * the hedge, the request is not hedged. The response that
+ * arrives first is returned, the other attempt is aborted and its response,
+ * if any, is closed. The latency recorded with the policy is measured from
+ * the start of the original attempt until the first response has been received.
+ * </p>
+ * <p>
+ * The hedged attempt is executed with a child of the request context, so that
+ * attributes it sets, such as the connection and the user token, are not
+ * visible in the request context.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
+public class HedgingExec implements ClientExecChain {
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final ClientExecChain requestExecutor;
+    private final HedgingPolicy hedgingPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    /**
+     * @param requestExecutor the next executor in the chain.
+     * @param hedgingPolicy the hedging policy.
+     * @param scheduler the scheduler used to trigger hedges after the hedge delay.
+     * @param executor the executor that runs hedged requests.
+     */
+    public HedgingExec(
+            final ClientExecChain requestExecutor,
+            final HedgingPolicy hedgingPolicy,
+            final ScheduledExecutorService scheduler,
+            final Executor executor) {
+        this.requestExecutor = Args.notNull(requestExecutor, "HTTP request executor");
+        this.hedgingPolicy = Args.notNull(hedgingPolicy, "Hedging policy");
+        this.scheduler = Args.notNull(scheduler, "Scheduler");
+        this.executor = Args.notNull(executor, "Executor");
+    }
+
+    @Override
+    public ClassicHttpResponse execute(
+            final RoutedHttpRequest request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware) throws IOException, HttpException {
+        Args.notNull(request, "HTTP request");
+        Args.notNull(context, "HTTP context");
+        if (request.getEntity() != null || !hedgingPolicy.isHedgeable(request)) {
+            return requestExecutor.execute(request, context, execAware);
+        }
+        final HttpRoute route = request.getRoute();
+        hedgingPolicy.deposit(route);
+
+        final AtomicReference<Attempt> winner = new AtomicReference<>();
+        final Attempt primary = new Attempt(request, context, winner);
+        final Attempt hedge = new Attempt(copy(request), HttpClientContext.adapt(new BasicHttpContext(context)), winner);
+        primary.other = hedge;
+        hedge.other = primary;
+        if (execAware != null) {
+            if (execAware.isAborted()) {
+                throw new RequestAbortedException("Request aborted");
+            }
+            execAware.setCancellable(new Cancellable() {
+
+                @Override
+                public boolean cancel() {
+                    primary.cancel();
+                    hedge.cancel();
+                    return true;
+                }
+
+            });
+        }
+
+        final long delay = hedgingPolicy.getHedgeDelay(route);
+        final long start = System.nanoTime();
+        ScheduledFuture<?> trigger;
+        try {
+            trigger = scheduler.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (winner.get() != null || primary.isAborted() || !hedgingPolicy.tryHedge(route)) {
+                        hedge.latch.countDown();
+                        return;
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("No response from " + route + " after " + delay + " ms; sending hedge");
+                    }
+                    try {
+                        executor.execute(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                try {
+                                    hedge.run();
+                                } finally {
+                                    hedge.latch.countDown();
+                                }
+                            }
+
+                        });
+                    } catch (final RejectedExecutionException ex) {
+                        log.debug("Hedge of request to " + route + " rejected by executor");
+                        hedge.latch.countDown();
+                    }
+                }
+
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ex) {
+            trigger = null;
+        }
+
+        primary.run();
+        if (trigger != null && !trigger.cancel(false) && winner.get() != primary) {
+            try {
+                hedge.latch.await();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                hedge.cancel();
+                throw new RequestAbortedException("Request aborted", ex);
+            }
+        }
+        final Attempt attempt = winner.get();
+        if (attempt != null) {
+            // A late response of the original attempt that lost is still a latency sample
+            final long end = primary.completed ? primary.end : attempt.end;
+            hedgingPolicy.recordLatency(route, end - start, TimeUnit.NANOSECONDS);
+        }
+        if (attempt == hedge) {
+            hedgingPolicy.hedgeWon(route);
+            return hedge.response;
+        }
+        if (attempt == primary) {
+            return primary.response;
+        }
+        if (primary.ioException != null) {
+            throw primary.ioException;
+        }
+        if (primary.httpException != null) {
+            throw primary.httpException;
+        }
+        throw primary.runtimeException;
+    }
+
+    private static RoutedHttpRequest copy(final RoutedHttpRequest request) {
+        final RoutedHttpRequest copy = RoutedHttpRequest.adapt(request.getOriginal(), request.getRoute());
+        copy.setVersion(request.getVersion());
+        copy.setScheme(request.getScheme());
+        copy.setAuthority(request.getAuthority());
+        copy.setPath(request.getPath());
+        copy.setHeaders(request.getAllHeaders());
+        return copy;
+    }
+
+    private class Attempt implements Runnable, HttpExecutionAware, Cancellable {
+
+        private final RoutedHttpRequest request;
+        private final HttpClientContext context;
+        private final AtomicReference<Attempt> winner;
+        private final AtomicReference<Cancellable> cancellableRef;
+        private final CountDownLatch latch;
+
+        private volatile Attempt other;
+        private volatile boolean aborted;
+        private volatile boolean completed;
+        private volatile long end;
+        private volatile ClassicHttpResponse response;
+        private volatile IOException ioException;
+        private volatile HttpException httpException;
+        private volatile RuntimeException runtimeException;
+
+        Attempt(
+                final RoutedHttpRequest request,
+                final HttpClientContext context,
+                final AtomicReference<Attempt> winner) {
+            this.request = request;
+            this.context = context;
+            this.winner = winner;
+            this.cancellableRef = new AtomicReference<>();
+            this.latch = new CountDownLatch(1);
+        }
+
+        @Override
+        public void run() {
+            final ClassicHttpResponse result;
+            try {
+                result = requestExecutor.execute(request, context, this);
+            } catch (final IOException ex) {
+                ioException = ex;
+                return;
+            } catch (final HttpException ex) {
+                httpException = ex;
+                return;
+            } catch (final RuntimeException ex) {
+                runtimeException = ex;
+                return;
+            }
+            end = System.nanoTime();
+            completed = true;
+            if (winner.compareAndSet(null, this)) {
+                response = result;
+                other.cancel();
+            } else {
+                try {
+                    result.close();
+                } catch (final IOException ex) {
+                    log.debug("I/O exception closing response of cancelled attempt", ex);
+                }
+            }
+        }
+
+        @Override
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        @Override
+        public void setCancellable(final Cancellable cancellable) {
+            cancellableRef.set(cancellable);
+            if (aborted) {
+                cancel();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            aborted = true;
+            final Cancellable cancellable = cancellableRef.getAndSet(null);
+            return cancellable != null && cancellable.cancel();
+        }
+
+    }
+
+}
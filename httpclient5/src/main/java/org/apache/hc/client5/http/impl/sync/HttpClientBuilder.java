@@ -33,12 +33,20 @@ import java.net.ProxySelector;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.SystemDefaultDnsResolver;
 import org.apache.hc.client5.http.auth.AuthSchemeProvider;
@@ -51,7 +59,11 @@ import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.entity.InputStreamFactory;
 import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.DefaultThreadFactory;
 import org.apache.hc.client5.http.impl.DefaultUserTokenHandler;
+import org.apache.hc.client5.http.impl.ConnPoolWarmer;
+import org.apache.hc.client5.http.impl.ConnectionPrewarmer;
+import org.apache.hc.client5.http.impl.HedgingPolicy;
 import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
 import org.apache.hc.client5.http.impl.NoopUserTokenHandler;
 import org.apache.hc.client5.http.impl.auth.BasicSchemeFactory;
@@ -147,6 +159,8 @@ public class HttpClientBuilder {
     private LinkedList<HttpResponseInterceptor> responseLast;
 
     private HttpRequestRetryHandler retryHandler;
+    private HedgingPolicy hedgingPolicy;
+    private RequestPhaseListener requestPhaseListener;
     private HttpRoutePlanner routePlanner;
     private RedirectStrategy redirectStrategy;
     private ConnectionBackoffStrategy connectionBackoffStrategy;
@@ -165,6 +179,9 @@ public class HttpClientBuilder {
     private boolean evictIdleConnections;
     private long maxIdleTime;
     private TimeUnit maxIdleTimeUnit;
+    private Map<HttpRoute, Integer> prewarmRoutes;
+    private long prewarmInterval;
+    private TimeUnit prewarmIntervalUnit;
 
     private boolean systemProperties;
     private boolean redirectHandlingDisabled;
@@ -395,6 +412,30 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link HedgingPolicy} instance. Idempotent requests are only hedged
+     * if a hedging policy is set.
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link RequestPhaseListener} instance that receives the latencies
+     * of connection lease, DNS resolution, connect, TLS handshake, request write,
+     * time to first byte and response body of every request, for instance
+     * a {@link org.apache.hc.client5.http.impl.PhaseLatencyRecorder}.
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setRequestPhaseListener(final RequestPhaseListener requestPhaseListener) {
+        this.requestPhaseListener = requestPhaseListener;
+        return this;
+    }
+
     /**
      * Disables automatic request recovery and re-execution.
      */
@@ -590,6 +631,47 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Makes this instance of HttpClient open the given number of persistent connections
+     * to the given route in advance using a background thread. The number of connections
+     * is capped by the maximum number of connections per route.
+     * <p>
+     * One MUST explicitly close HttpClient with {@link CloseableHttpClient#close()} in order
+     * to stop and release the background thread.
+     * <p>
+     * Please note this method has no effect if the instance of HttpClient is configured to
+     * use a shared connection manager or a connection manager that does not implement
+     * {@link ConnPoolWarmer}.
+     *
+     * @see #setConnectionManagerShared(boolean)
+     * @see ConnPoolWarmer#prewarm(Object, int, long, TimeUnit)
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder prewarmConnections(final HttpRoute route, final int connections) {
+        if (this.prewarmRoutes == null) {
+            this.prewarmRoutes = new LinkedHashMap<>();
+        }
+        this.prewarmRoutes.put(route, connections);
+        return this;
+    }
+
+    /**
+     * Makes this instance of HttpClient periodically re-open connections closed since
+     * they have been pre-warmed, thus maintaining a minimum number of idle connections
+     * for every route given to {@link #prewarmConnections(HttpRoute, int)}.
+     *
+     * @param interval the interval at which connections get replenished.
+     * @param intervalUnit time unit for the above parameter.
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder replenishPrewarmedConnections(final long interval, final TimeUnit intervalUnit) {
+        this.prewarmInterval = interval;
+        this.prewarmIntervalUnit = intervalUnit;
+        return this;
+    }
+
     /**
      * Produces an instance of {@link ClientExecChain} to be used as a main exec.
      * <p>
@@ -793,6 +875,18 @@ public class HttpClientBuilder {
             execChain = new RetryExec(execChain, retryHandlerCopy);
         }
 
+        // Optionally, add request hedging executor
+        ScheduledExecutorService hedgingScheduler = null;
+        ExecutorService hedgingExecutor = null;
+        if (this.hedgingPolicy != null) {
+            hedgingScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("httpclient-hedging", true));
+            hedgingExecutor = new ThreadPoolExecutor(0, Math.max(8, 4 * Runtime.getRuntime().availableProcessors()),
+                    60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                    new DefaultThreadFactory("httpclient-hedge", true));
+            execChain = new HedgingExec(execChain, this.hedgingPolicy, hedgingScheduler, hedgingExecutor);
+        }
+
         HttpRoutePlanner routePlannerCopy = this.routePlanner;
         if (routePlannerCopy == null) {
             SchemePortResolver schemePortResolverCopy = this.schemePortResolver;
@@ -860,6 +954,22 @@ public class HttpClientBuilder {
         }
 
         List<Closeable> closeablesCopy = closeables != null ? new ArrayList<>(closeables) : null;
+        if (hedgingScheduler != null) {
+            if (closeablesCopy == null) {
+                closeablesCopy = new ArrayList<>(1);
+            }
+            final ScheduledExecutorService scheduler = hedgingScheduler;
+            final ExecutorService executor = hedgingExecutor;
+            closeablesCopy.add(new Closeable() {
+
+                @Override
+                public void close() throws IOException {
+                    scheduler.shutdownNow();
+                    executor.shutdownNow();
+                }
+
+            });
+        }
         if (!this.connManagerShared) {
             if (closeablesCopy == null) {
                 closeablesCopy = new ArrayList<>(1);
@@ -885,6 +995,29 @@ public class HttpClientBuilder {
                     connectionEvictor.start();
                 }
             }
+            if (prewarmRoutes != null && connManagerCopy instanceof ConnPoolWarmer) {
+                @SuppressWarnings("unchecked")
+                final ConnPoolWarmer<HttpRoute> connPoolWarmer = (ConnPoolWarmer<HttpRoute>) connManagerCopy;
+                final RequestConfig requestConfig = defaultRequestConfig != null ? defaultRequestConfig : RequestConfig.DEFAULT;
+                final ConnectionPrewarmer<HttpRoute> connectionPrewarmer = new ConnectionPrewarmer<>(connPoolWarmer,
+                        prewarmRoutes, prewarmInterval, prewarmIntervalUnit,
+                        requestConfig.getConnectTimeout() > 0 ? requestConfig.getConnectTimeout() : RequestConfig.DEFAULT.getConnectTimeout(),
+                        TimeUnit.MILLISECONDS);
+                closeablesCopy.add(new Closeable() {
+
+                    @Override
+                    public void close() throws IOException {
+                        connectionPrewarmer.shutdown();
+                        try {
+                            connectionPrewarmer.awaitTermination(1L, TimeUnit.SECONDS);
+                        } catch (final InterruptedException interrupted) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                });
+                connectionPrewarmer.start();
+            }
             closeablesCopy.add(connManagerCopy);
         }
 
@@ -896,6 +1029,7 @@ public class HttpClientBuilder {
                 defaultCookieStore,
                 defaultCredentialsProvider,
                 defaultRequestConfig != null ? defaultRequestConfig : RequestConfig.DEFAULT,
+                requestPhaseListener,
                 closeablesCopy);
     }
 
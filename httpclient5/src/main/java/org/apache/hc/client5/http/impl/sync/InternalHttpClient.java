@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.util.List;
 
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.auth.AuthSchemeProvider;
 import org.apache.hc.client5.http.auth.CredentialsProvider;
 import org.apache.hc.client5.http.config.Configurable;
@@ -74,6 +75,7 @@ class InternalHttpClient extends CloseableHttpClient implements Configurable {
     private final CookieStore cookieStore;
     private final CredentialsProvider credentialsProvider;
     private final RequestConfig defaultConfig;
+    private final RequestPhaseListener requestPhaseListener;
     private final List<Closeable> closeables;
 
     public InternalHttpClient(
@@ -85,6 +87,23 @@ class InternalHttpClient extends CloseableHttpClient implements Configurable {
             final CredentialsProvider credentialsProvider,
             final RequestConfig defaultConfig,
             final List<Closeable> closeables) {
+        this(execChain, routePlanner, cookieSpecRegistry, authSchemeRegistry, cookieStore,
+                credentialsProvider, defaultConfig, null, closeables);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public InternalHttpClient(
+            final ClientExecChain execChain,
+            final HttpRoutePlanner routePlanner,
+            final Lookup<CookieSpecProvider> cookieSpecRegistry,
+            final Lookup<AuthSchemeProvider> authSchemeRegistry,
+            final CookieStore cookieStore,
+            final CredentialsProvider credentialsProvider,
+            final RequestConfig defaultConfig,
+            final RequestPhaseListener requestPhaseListener,
+            final List<Closeable> closeables) {
         super();
         Args.notNull(execChain, "HTTP client exec chain");
         Args.notNull(routePlanner, "HTTP route planner");
@@ -95,6 +114,7 @@ class InternalHttpClient extends CloseableHttpClient implements Configurable {
         this.cookieStore = cookieStore;
         this.credentialsProvider = credentialsProvider;
         this.defaultConfig = defaultConfig;
+        this.requestPhaseListener = requestPhaseListener;
         this.closeables = closeables;
     }
 
@@ -122,6 +142,10 @@ class InternalHttpClient extends CloseableHttpClient implements Configurable {
         if (context.getAttribute(HttpClientContext.REQUEST_CONFIG) == null) {
             context.setAttribute(HttpClientContext.REQUEST_CONFIG, this.defaultConfig);
         }
+        if (this.requestPhaseListener != null
+                && context.getAttribute(HttpClientContext.REQUEST_PHASE_LISTENER) == null) {
+            context.setAttribute(HttpClientContext.REQUEST_PHASE_LISTENER, this.requestPhaseListener);
+        }
     }
 
     @Override
@@ -35,6 +35,8 @@ import java.util.concurrent.TimeoutException;
 
 import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.RouteTracker;
 import org.apache.hc.client5.http.auth.AuthExchange;
 import org.apache.hc.client5.http.auth.ChallengeType;
@@ -158,11 +160,13 @@ public class MainClientExec implements ClientExecChain {
         Args.notNull(request, "HTTP request");
         Args.notNull(context, "HTTP context");
         final HttpRoute route = request.getRoute();
+        final RequestPhaseListener phaseListener = context.getRequestPhaseListener();
 
         RequestEntityProxy.enhance(request);
 
         Object userToken = context.getUserToken();
 
+        final long leaseStart = System.nanoTime();
         final LeaseRequest leaseRequest = connManager.lease(route, userToken);
         if (execAware != null) {
             if (execAware.isAborted()) {
@@ -191,6 +195,9 @@ public class MainClientExec implements ClientExecChain {
             }
             throw new RequestAbortedException("Request execution failed", cause);
         }
+        if (phaseListener != null) {
+            phaseListener.phaseCompleted(route, RequestPhase.LEASE, System.nanoTime() - leaseStart, TimeUnit.NANOSECONDS);
+        }
 
         context.setAttribute(HttpCoreContext.HTTP_CONNECTION, endpoint);
 
@@ -258,7 +265,32 @@ public class MainClientExec implements ClientExecChain {
                             route.getProxyHost(), ChallengeType.PROXY, request, proxyAuthExchange, context);
                 }
 
-                response = endpoint.execute(request, requestExecutor, context);
+                final HttpEntity requestEntity = request.getEntity();
+                final TimedRequestEntity timedEntity = phaseListener != null && requestEntity != null ?
+                        new TimedRequestEntity(requestEntity) : null;
+                if (timedEntity != null) {
+                    request.setEntity(timedEntity);
+                }
+                final long execStart = System.nanoTime();
+                try {
+                    response = endpoint.execute(request, requestExecutor, context);
+                } finally {
+                    if (timedEntity != null) {
+                        request.setEntity(requestEntity);
+                    }
+                }
+                final long responseTime = System.nanoTime();
+                context.setAttribute(HttpClientContext.RESPONSE_LATENCY, responseTime - execStart);
+                if (phaseListener != null) {
+                    long writeCompleted = execStart;
+                    if (timedEntity != null && timedEntity.isWritten()) {
+                        writeCompleted = timedEntity.getWriteCompleted();
+                        phaseListener.phaseCompleted(route, RequestPhase.REQUEST_WRITE,
+                                writeCompleted - execStart, TimeUnit.NANOSECONDS);
+                    }
+                    phaseListener.phaseCompleted(route, RequestPhase.TIME_TO_FIRST_BYTE,
+                            responseTime - writeCompleted, TimeUnit.NANOSECONDS);
+                }
 
                 // The connection is in or can be brought to a re-usable state.
                 if (reuseStrategy.keepAlive(request, response, context)) {
@@ -333,7 +365,7 @@ public class MainClientExec implements ClientExecChain {
                 endpointHolder.releaseConnection();
                 return new CloseableHttpResponse(response, null);
             } else {
-                ResponseEntityProxy.enchance(response, endpointHolder);
+                ResponseEntityProxy.enchance(response, endpointHolder, route, phaseListener);
                 return new CloseableHttpResponse(response, endpointHolder);
             }
         } catch (final ConnectionShutdownException ex) {
@@ -31,7 +31,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.io.EofSensorInputStream;
@@ -46,17 +50,49 @@ import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
 class ResponseEntityProxy extends HttpEntityWrapper implements EofSensorWatcher {
 
     private final EndpointHolder endpointHolder;
+    private final HttpRoute route;
+    private final RequestPhaseListener phaseListener;
+    private final long startTime;
 
     public static void enchance(final ClassicHttpResponse response, final EndpointHolder connHolder) {
+        enchance(response, connHolder, null, null);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public static void enchance(
+            final ClassicHttpResponse response,
+            final EndpointHolder connHolder,
+            final HttpRoute route,
+            final RequestPhaseListener phaseListener) {
         final HttpEntity entity = response.getEntity();
         if (entity != null && entity.isStreaming() && connHolder != null) {
-            response.setEntity(new ResponseEntityProxy(entity, connHolder));
+            response.setEntity(new ResponseEntityProxy(entity, connHolder, route, phaseListener));
         }
     }
 
     ResponseEntityProxy(final HttpEntity entity, final EndpointHolder endpointHolder) {
+        this(entity, endpointHolder, null, null);
+    }
+
+    ResponseEntityProxy(
+            final HttpEntity entity,
+            final EndpointHolder endpointHolder,
+            final HttpRoute route,
+            final RequestPhaseListener phaseListener) {
         super(entity);
         this.endpointHolder = endpointHolder;
+        this.route = route;
+        this.phaseListener = route != null ? phaseListener : null;
+        this.startTime = this.phaseListener != null ? System.nanoTime() : 0;
+    }
+
+    private void bodyCompleted() {
+        if (this.phaseListener != null) {
+            this.phaseListener.phaseCompleted(
+                    this.route, RequestPhase.RESPONSE_BODY, System.nanoTime() - this.startTime, TimeUnit.NANOSECONDS);
+        }
     }
 
     private void cleanup() throws IOException {
@@ -92,6 +128,7 @@ class ResponseEntityProxy extends HttpEntityWrapper implements EofSensorWatcher
         try {
             if (outstream != null) {
                 super.writeTo(outstream);
+                bodyCompleted();
             }
             releaseConnection();
         } catch (IOException | RuntimeException ex) {
@@ -110,6 +147,7 @@ class ResponseEntityProxy extends HttpEntityWrapper implements EofSensorWatcher
             if (wrapped != null) {
                 wrapped.close();
             }
+            bodyCompleted();
             releaseConnection();
         } catch (IOException | RuntimeException ex) {
             abortConnection();
@@ -130,6 +168,9 @@ class ResponseEntityProxy extends HttpEntityWrapper implements EofSensorWatcher
                 if (wrapped != null) {
                     wrapped.close();
                 }
+                if (open) {
+                    bodyCompleted();
+                }
                 releaseConnection();
             } catch (final SocketException ex) {
                 if (open) {
@@ -0,0 +1,68 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.sync;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+
+/**
+ * Request entity wrapper that records the time the entity
+ * has been completely written.
+ *
+ * @since 5.0
+ */
+class TimedRequestEntity extends HttpEntityWrapper {
+
+    private volatile boolean written;
+    private volatile long writeCompleted;
+
+    TimedRequestEntity(final HttpEntity entity) {
+        super(entity);
+    }
+
+    boolean isWritten() {
+        return written;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the entity has been written.
+     */
+    long getWriteCompleted() {
+        return writeCompleted;
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+        super.writeTo(outstream);
+        writeCompleted = System.nanoTime();
+        written = true;
+    }
+
+}
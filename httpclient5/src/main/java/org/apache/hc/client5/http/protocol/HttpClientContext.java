@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhaseListener;
 import org.apache.hc.client5.http.RouteInfo;
 import org.apache.hc.client5.http.auth.AuthCache;
 import org.apache.hc.client5.http.auth.AuthExchange;
@@ -132,6 +133,23 @@ public class HttpClientContext extends HttpCoreContext {
      */
     public static final String REQUEST_CONFIG = "http.request-config";
 
+    /**
+     * Attribute name of a {@link RequestPhaseListener} object
+     * that receives the latencies of request execution phases.
+     *
+     * @since 5.0
+     */
+    public static final String REQUEST_PHASE_LISTENER = "http.request-phase-listener";
+
+    /**
+     * Attribute name of a {@link Long} object that represents the time in
+     * nanoseconds between sending the last request message over a leased
+     * connection and receiving its response head.
+     *
+     * @since 5.0
+     */
+    public static final String RESPONSE_LATENCY = "http.response-latency";
+
     public static HttpClientContext adapt(final HttpContext context) {
         Args.notNull(context, "HTTP context");
         if (context instanceof HttpClientContext) {
@@ -279,4 +297,18 @@ public class HttpClientContext extends HttpCoreContext {
         setAttribute(REQUEST_CONFIG, config);
     }
 
+    /**
+     * @since 5.0
+     */
+    public RequestPhaseListener getRequestPhaseListener() {
+        return getAttribute(REQUEST_PHASE_LISTENER, RequestPhaseListener.class);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public void setRequestPhaseListener(final RequestPhaseListener requestPhaseListener) {
+        setAttribute(REQUEST_PHASE_LISTENER, requestPhaseListener);
+    }
+
 }
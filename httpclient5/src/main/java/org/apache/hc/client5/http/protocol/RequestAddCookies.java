@@ -40,6 +40,7 @@ import org.apache.hc.client5.http.cookie.CookieOrigin;
 import org.apache.hc.client5.http.cookie.CookieSpec;
 import org.apache.hc.client5.http.cookie.CookieSpecProvider;
 import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.cookie.IndexedCookieStore;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http.EntityDetails;
@@ -139,11 +140,17 @@ public class RequestAddCookies implements HttpRequestInterceptor {
             return;
         }
         final CookieSpec cookieSpec = provider.create(clientContext);
-        // Get all cookies available in the HTTP state
-        final List<Cookie> cookies = cookieStore.getCookies();
+        final Date now = new Date();
+        // Get all cookies available in the HTTP state or only those
+        // the store considers candidates for the given origin
+        final List<Cookie> cookies;
+        if (cookieStore instanceof IndexedCookieStore) {
+            cookies = ((IndexedCookieStore) cookieStore).getCookies(cookieOrigin, now);
+        } else {
+            cookies = cookieStore.getCookies();
+        }
         // Find cookies matching the given origin
         final List<Cookie> matchedCookies = new ArrayList<>();
-        final Date now = new Date();
         boolean expired = false;
         for (final Cookie cookie : cookies) {
             if (!cookie.isExpired(now)) {
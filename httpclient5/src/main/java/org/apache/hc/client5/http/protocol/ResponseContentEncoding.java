@@ -29,10 +29,10 @@ package org.apache.hc.client5.http.protocol;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.entity.DeflateInputStream;
+import org.apache.hc.client5.http.entity.GzipDecompressingInputStream;
 import org.apache.hc.client5.http.entity.InputStreamFactory;
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
@@ -63,7 +63,7 @@ public class ResponseContentEncoding implements HttpResponseInterceptor {
 
         @Override
         public InputStream create(final InputStream instream) throws IOException {
-            return new GZIPInputStream(instream);
+            return new GzipDecompressingInputStream(instream);
         }
     };
 
@@ -110,7 +110,7 @@ public class ResponseContentEncoding implements HttpResponseInterceptor {
      * Handles {@code gzip} and {@code deflate} compressed entities by using the following
      * decoders:
      * <ul>
-     * <li>gzip - see {@link GZIPInputStream}</li>
+     * <li>gzip - see {@link GzipDecompressingInputStream}</li>
      * <li>deflate - see {@link DeflateInputStream}</li>
      * </ul>
      */
@@ -27,11 +27,12 @@
 package org.apache.hc.client5.http.psl;
 
 import java.net.IDN;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
@@ -42,16 +43,36 @@ import org.apache.hc.core5.util.Args;
  * <p>
  * An up-to-date list of suffixes can be obtained from
  * <a href="http://publicsuffix.org/">publicsuffix.org</a>
+ * </p>
+ * <p>
+ * Rules are compiled once into a trie of domain labels in reverse order (top level
+ * domain first) encoded in a few flat arrays. Internationalized labels are reachable
+ * both in Unicode and in their ASCII compatible (punycode) form. Lookups walk the trie
+ * from the last label of the domain name comparing characters in place, so that
+ * {@link #matches(String)} does not allocate and {@link #getDomainRoot(String)}
+ * only allocates the returned string.
+ * </p>
  *
  * @see PublicSuffixList
  *
  * @since 4.4
  */
-@Contract(threading = ThreadingBehavior.SAFE)
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
 public final class PublicSuffixMatcher {
 
-    private final Map<String, DomainType> rules;
-    private final Map<String, DomainType> exceptions;
+    private static final byte NONE = -1;
+    private static final String WILDCARD = "*";
+
+    // Node attributes: domain type ordinal of the matching rule, or NONE
+    private final byte[] ruleTypes;
+    private final byte[] wildcardTypes;
+    private final byte[] exceptionTypes;
+    // Edges of node n are firstEdge[n] .. firstEdge[n + 1] - 1, sorted by label
+    private final int[] firstEdge;
+    private final int[] labelStart;
+    private final int[] labelEnd;
+    private final int[] edgeTargets;
+    private final char[] labels;
 
     public PublicSuffixMatcher(final Collection<String> rules, final Collection<String> exceptions) {
         this(DomainType.UNKNOWN, rules, exceptions);
@@ -62,60 +83,174 @@ public final class PublicSuffixMatcher {
      */
     public PublicSuffixMatcher(
             final DomainType domainType, final Collection<String> rules, final Collection<String> exceptions) {
-        Args.notNull(domainType,  "Domain type");
-        Args.notNull(rules,  "Domain suffix rules");
-        this.rules = new ConcurrentHashMap<>(rules.size());
-        for (final String rule: rules) {
-            this.rules.put(rule, domainType);
-        }
-        this.exceptions = new ConcurrentHashMap<>();
-        if (exceptions != null) {
-            for (final String exception: exceptions) {
-                this.exceptions.put(exception, domainType);
-            }
-        }
+        this(build(domainType, rules, exceptions));
     }
 
     /**
      * @since 4.5
      */
     public PublicSuffixMatcher(final Collection<PublicSuffixList> lists) {
+        this(build(lists));
+    }
+
+    private static TrieBuilder build(
+            final DomainType domainType, final Collection<String> rules, final Collection<String> exceptions) {
+        Args.notNull(domainType,  "Domain type");
+        Args.notNull(rules,  "Domain suffix rules");
+        return new TrieBuilder().add(domainType, rules, exceptions);
+    }
+
+    private static TrieBuilder build(final Collection<PublicSuffixList> lists) {
         Args.notNull(lists,  "Domain suffix lists");
-        this.rules = new ConcurrentHashMap<>();
-        this.exceptions = new ConcurrentHashMap<>();
+        final TrieBuilder builder = new TrieBuilder();
         for (final PublicSuffixList list: lists) {
-            final DomainType domainType = list.getType();
-            final List<String> rules = list.getRules();
-            for (final String rule: rules) {
-                this.rules.put(rule, domainType);
+            builder.add(list.getType(), list.getRules(), list.getExceptions());
+        }
+        return builder;
+    }
+
+    private PublicSuffixMatcher(final TrieBuilder builder) {
+        final List<TrieBuilder.Node> nodes = builder.nodes;
+        final int nodeCount = nodes.size();
+        this.ruleTypes = new byte[nodeCount];
+        this.wildcardTypes = new byte[nodeCount];
+        this.exceptionTypes = new byte[nodeCount];
+        this.firstEdge = new int[nodeCount + 1];
+        int edgeCount = 0;
+        int labelLength = 0;
+        for (final TrieBuilder.Node node: nodes) {
+            edgeCount += node.edges.size();
+            for (final String label: node.edges.keySet()) {
+                labelLength += label.length();
             }
-            final List<String> exceptions = list.getExceptions();
-            if (exceptions != null) {
-                for (final String exception: exceptions) {
-                    this.exceptions.put(exception, domainType);
-                }
+        }
+        this.labelStart = new int[edgeCount];
+        this.labelEnd = new int[edgeCount];
+        this.edgeTargets = new int[edgeCount];
+        this.labels = new char[labelLength];
+        int edge = 0;
+        int pos = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            final TrieBuilder.Node node = nodes.get(n);
+            this.ruleTypes[n] = node.ruleType;
+            this.wildcardTypes[n] = node.wildcardType;
+            this.exceptionTypes[n] = node.exceptionType;
+            this.firstEdge[n] = edge;
+            for (final Map.Entry<String, TrieBuilder.Node> entry: node.edges.entrySet()) {
+                final String label = entry.getKey();
+                label.getChars(0, label.length(), this.labels, pos);
+                this.labelStart[edge] = pos;
+                pos += label.length();
+                this.labelEnd[edge] = pos;
+                this.edgeTargets[edge] = entry.getValue().index;
+                edge++;
             }
         }
+        this.firstEdge[nodeCount] = edge;
     }
 
-    private static boolean hasEntry(final Map<String, DomainType> map, final String rule, final DomainType expectedType) {
-        if (map == null) {
-            return false;
+    private static boolean hasType(final byte type, final DomainType expectedType) {
+        return type != NONE && (expectedType == null || type == expectedType.ordinal());
+    }
+
+    /**
+     * Compares the label stored at the given range with the given part of the domain
+     * name, ignoring the case of the latter.
+     */
+    private int compareLabel(final int edge, final String domain, final int start, final int end) {
+        int i = this.labelStart[edge];
+        final int labelEnd = this.labelEnd[edge];
+        int j = start;
+        while (i < labelEnd && j < end) {
+            final char c1 = this.labels[i++];
+            final char c2 = Character.toLowerCase(domain.charAt(j++));
+            if (c1 != c2) {
+                return c1 - c2;
+            }
         }
-        final DomainType domainType = map.get(rule);
-        if (domainType == null) {
-            return false;
-        } else {
-            return expectedType == null || domainType.equals(expectedType);
+        return (labelEnd - i) - (end - j);
+    }
+
+    private int findChild(final int node, final String domain, final int start, final int end) {
+        int low = this.firstEdge[node];
+        int high = this.firstEdge[node + 1] - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareLabel(mid, domain, start, end);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return this.edgeTargets[mid];
+            }
         }
+        return -1;
     }
 
-    private boolean hasRule(final String rule, final DomainType expectedType) {
-        return hasEntry(this.rules, rule, expectedType);
+    /**
+     * Returns the index of the first character of the suffix of the domain name
+     * made of the given number of labels.
+     */
+    private static int suffixStart(final String domain, final int from, final int labelCount) {
+        int start = domain.length();
+        for (int i = 0; i < labelCount; i++) {
+            start = domain.lastIndexOf('.', start - 1);
+            if (start < from) {
+                return from;
+            }
+        }
+        return start + 1;
     }
 
-    private boolean hasException(final String exception, final DomainType expectedType) {
-        return hasEntry(this.exceptions, exception, expectedType);
+    /**
+     * Returns the index of the first character of the registrable part of the domain
+     * name starting at the given index or {@code -1} if it represents a public suffix.
+     * <p>
+     * Of all suffixes of the domain name the longest one matching an exception is
+     * its registrable part. Otherwise the registrable part is made of the longest
+     * suffix matching a rule or a wildcard plus one label.
+     * </p>
+     */
+    private int getDomainRootStart(final String domain, final int from, final DomainType expectedType) {
+        int matchedLabels = 0;
+        boolean exception = false;
+        int labelCount = 0;
+        int node = 0;
+        int end = domain.length();
+        while (node != -1) {
+            final int start = Math.max(domain.lastIndexOf('.', end - 1) + 1, from);
+            labelCount++;
+            if (labelCount > 1 && hasType(this.wildcardTypes[node], expectedType)) {
+                matchedLabels = labelCount;
+                exception = false;
+            }
+            node = findChild(node, domain, start, end);
+            if (node != -1) {
+                if (hasType(this.exceptionTypes[node], expectedType)) {
+                    matchedLabels = labelCount;
+                    exception = true;
+                } else if (hasType(this.ruleTypes[node], expectedType)) {
+                    matchedLabels = labelCount;
+                    exception = false;
+                }
+            }
+            if (start == from) {
+                break;
+            }
+            end = start - 1;
+        }
+        if (exception) {
+            return suffixStart(domain, from, matchedLabels);
+        }
+        int totalLabels = 1;
+        for (int i = domain.indexOf('.', from); i != -1; i = domain.indexOf('.', i + 1)) {
+            totalLabels++;
+        }
+        if (matchedLabels == 0) {
+            return totalLabels >= 2 ? suffixStart(domain, from, 2) : -1;
+        }
+        return matchedLabels < totalLabels ? suffixStart(domain, from, matchedLabels + 1) : -1;
     }
 
     /**
@@ -146,33 +281,8 @@ public final class PublicSuffixMatcher {
         if (domain.startsWith(".")) {
             return null;
         }
-        String domainName = null;
-        String segment = domain.toLowerCase(Locale.ROOT);
-        while (segment != null) {
-
-            // An exception rule takes priority over any other matching rule.
-            if (hasException(IDN.toUnicode(segment), expectedType)) {
-                return segment;
-            }
-
-            if (hasRule(IDN.toUnicode(segment), expectedType)) {
-                break;
-            }
-
-            final int nextdot = segment.indexOf('.');
-            final String nextSegment = nextdot != -1 ? segment.substring(nextdot + 1) : null;
-
-            if (nextSegment != null) {
-                if (hasRule("*." + IDN.toUnicode(nextSegment), expectedType)) {
-                    break;
-                }
-            }
-            if (nextdot != -1) {
-                domainName = segment;
-            }
-            segment = nextSegment;
-        }
-        return domainName;
+        final int start = getDomainRootStart(domain, 0, expectedType);
+        return start != -1 ? domain.substring(start).toLowerCase(Locale.ROOT) : null;
     }
 
     /**
@@ -195,9 +305,105 @@ public final class PublicSuffixMatcher {
         if (domain == null) {
             return false;
         }
-        final String domainRoot = getDomainRoot(
-                domain.startsWith(".") ? domain.substring(1) : domain, expectedType);
-        return domainRoot == null;
+        final int from = domain.startsWith(".") ? 1 : 0;
+        if (domain.startsWith(".", from)) {
+            return true;
+        }
+        return getDomainRootStart(domain, from, expectedType) == -1;
+    }
+
+    /**
+     * Collects rules into a trie of linked nodes prior to compilation.
+     */
+    static final class TrieBuilder {
+
+        static final class Node {
+
+            final int index;
+            // Sorted by label, as required by the binary search of the compiled trie
+            final TreeMap<String, Node> edges;
+            byte ruleType;
+            byte wildcardType;
+            byte exceptionType;
+
+            Node(final int index) {
+                this.index = index;
+                this.edges = new TreeMap<>();
+                this.ruleType = NONE;
+                this.wildcardType = NONE;
+                this.exceptionType = NONE;
+            }
+
+        }
+
+        final List<Node> nodes;
+
+        TrieBuilder() {
+            this.nodes = new ArrayList<>();
+            this.nodes.add(new Node(0));
+        }
+
+        private static String toAscii(final String label) {
+            try {
+                return IDN.toASCII(label).toLowerCase(Locale.ROOT);
+            } catch (final IllegalArgumentException ex) {
+                return null;
+            }
+        }
+
+        private Node child(final Node parent, final String label) {
+            Node node = parent.edges.get(label);
+            if (node == null) {
+                node = new Node(this.nodes.size());
+                this.nodes.add(node);
+                parent.edges.put(label, node);
+            }
+            // Make the node reachable by the ASCII compatible form of the label as well
+            final String ascii = toAscii(label);
+            if (ascii != null && !ascii.equals(label) && !parent.edges.containsKey(ascii)) {
+                parent.edges.put(ascii, node);
+            }
+            return node;
+        }
+
+        private Node insert(final String[] labels, final int first) {
+            Node node = this.nodes.get(0);
+            for (int i = labels.length - 1; i >= first; i--) {
+                node = child(node, labels[i]);
+            }
+            return node;
+        }
+
+        private void addRule(final String rule, final byte type) {
+            final String[] labels = rule.toLowerCase(Locale.ROOT).split("\\.", -1);
+            if (labels.length > 1 && labels[0].equals(WILDCARD)) {
+                insert(labels, 1).wildcardType = type;
+            } else {
+                insert(labels, 0).ruleType = type;
+            }
+        }
+
+        private void addException(final String exception, final byte type) {
+            final String[] labels = exception.toLowerCase(Locale.ROOT).split("\\.", -1);
+            insert(labels, 0).exceptionType = type;
+        }
+
+        TrieBuilder add(
+                final DomainType domainType,
+                final Collection<String> rules,
+                final Collection<String> exceptions) {
+            final byte type = (byte) domainType.ordinal();
+            for (final String rule: rules) {
+                addRule(rule, type);
+            }
+            if (exceptions != null) {
+                for (final String exception: exceptions) {
+                    addException(exception, type);
+                }
+            }
+            return this;
+        }
+
     }
 
 }
@@ -0,0 +1,216 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.ssl;
+
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link HttpClientHostnameVerifier} that caches successful verifications of another
+ * verifier. Entries are keyed by host name and peer certificate (compared by their
+ * DER encoding), so connections re-established to the same host, in particular
+ * over resumed TLS sessions, skip subject alternative name extraction and matching.
+ * <p>
+ * Only successful verifications are cached, for no longer than the configured
+ * time to live and never past the expiry of the certificate. Failures are always
+ * reported by the underlying verifier.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CachingHostnameVerifier implements HttpClientHostnameVerifier {
+
+    public static final long DEFAULT_TIME_TO_LIVE = 3600000L;
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final HttpClientHostnameVerifier hostnameVerifier;
+    private final long timeToLive;
+    private final int maxEntries;
+    private final ConcurrentMap<CacheKey, Long> cache;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+
+    /**
+     * @param hostnameVerifier the verifier to cache results of.
+     * @param timeToLive time successful verifications are cached.
+     * @param tunit the time unit of the time to live.
+     * @param maxEntries the maximum number of cached verifications.
+     */
+    public CachingHostnameVerifier(
+            final HttpClientHostnameVerifier hostnameVerifier,
+            final long timeToLive,
+            final TimeUnit tunit,
+            final int maxEntries) {
+        super();
+        this.hostnameVerifier = Args.notNull(hostnameVerifier, "Hostname verifier");
+        Args.notNull(tunit, "Time unit");
+        Args.positive(maxEntries, "Max entries");
+        this.timeToLive = tunit.toMillis(timeToLive);
+        this.maxEntries = maxEntries;
+        this.cache = new ConcurrentHashMap<>();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+    }
+
+    public CachingHostnameVerifier(final HttpClientHostnameVerifier hostnameVerifier) {
+        this(hostnameVerifier, DEFAULT_TIME_TO_LIVE, TimeUnit.MILLISECONDS, DEFAULT_MAX_ENTRIES);
+    }
+
+    @Override
+    public boolean verify(final String host, final SSLSession session) {
+        try {
+            final Certificate[] certs = session.getPeerCertificates();
+            final X509Certificate x509 = (X509Certificate) certs[0];
+            verify(host, x509);
+            return true;
+        } catch (final SSLException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug(ex.getMessage(), ex);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void verify(final String host, final X509Certificate cert) throws SSLException {
+        final CacheKey key = new CacheKey(host, cert);
+        final Long expiry = this.cache.get(key);
+        final long now = System.currentTimeMillis();
+        if (expiry != null) {
+            if (now < expiry.longValue()) {
+                this.hitCount.incrementAndGet();
+                return;
+            }
+            this.cache.remove(key, expiry);
+        }
+        this.missCount.incrementAndGet();
+        this.hostnameVerifier.verify(host, cert);
+        final long newExpiry = Math.min(now + this.timeToLive, cert.getNotAfter().getTime());
+        if (newExpiry > now) {
+            store(key, newExpiry);
+        }
+    }
+
+    private void store(final CacheKey key, final long expiry) {
+        if (this.cache.size() >= this.maxEntries && !this.cache.containsKey(key)) {
+            evictExpired();
+            final Iterator<CacheKey> it = this.cache.keySet().iterator();
+            while (this.cache.size() >= this.maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        this.cache.put(key, Long.valueOf(expiry));
+    }
+
+    /**
+     * Removes expired entries.
+     */
+    public void evictExpired() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Map.Entry<CacheKey, Long>> it = this.cache.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now >= it.next().getValue().longValue()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Returns the number of verifications served from the cache.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Returns the number of verifications delegated to the underlying verifier.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "[entries: " + this.cache.size() + "; hits: " + this.hitCount + "; misses: " + this.missCount + "]";
+    }
+
+    static final class CacheKey {
+
+        private final String host;
+        private final X509Certificate cert;
+
+        CacheKey(final String host, final X509Certificate cert) {
+            this.host = host;
+            this.cert = cert;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof CacheKey) {
+                final CacheKey that = (CacheKey) obj;
+                return this.host.equals(that.host) && this.cert.equals(that.cert);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.host.hashCode() + this.cert.hashCode();
+        }
+
+    }
+
+}
@@ -37,6 +37,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.SocketFactory;
 import javax.net.ssl.HostnameVerifier;
@@ -44,9 +46,14 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.security.auth.x500.X500Principal;
 
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.RequestPhaseListener;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.psl.PublicSuffixMatcherLoader;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
 import org.apache.hc.core5.annotation.Contract;
@@ -55,6 +62,7 @@ import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.ssl.SSLContexts;
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.Asserts;
 import org.apache.hc.core5.util.TextUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -131,6 +139,17 @@ import org.apache.logging.log4j.Logger;
  *       <pre>keytool -list -v -keystore my.keystore</pre>
  *     </li>
  *   </ul>
+ * <p>
+ * TLS sessions are resumed from the client session cache of the SSL context, which JSSE
+ * keys by peer host and port, so that subsequent connections of the same route avoid
+ * a full handshake. Session tickets are used transparently if the JSSE provider supports
+ * them. The size and timeout of the session cache can be set with
+ * {@link #setSessionCacheSize(int)} and {@link #setSessionTimeout(long, TimeUnit)} when
+ * the factory is created from an {@link SSLContext}. The number of full and resumed
+ * handshakes is counted on a best-effort basis: a handshake is taken as resumed if its
+ * session was created before the handshake started. JSSE providers that create a new
+ * session object on resumption, as with TLS 1.3, are counted as full handshakes.
+ * </p>
  *
  * @since 4.3
  */
@@ -146,7 +165,7 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
      * @since 4.4
      */
     public static HostnameVerifier getDefaultHostnameVerifier() {
-        return new DefaultHostnameVerifier(PublicSuffixMatcherLoader.getDefault());
+        return new CachingHostnameVerifier(new DefaultHostnameVerifier(PublicSuffixMatcherLoader.getDefault()));
     }
 
     /**
@@ -184,9 +203,12 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
     }
 
     private final javax.net.ssl.SSLSocketFactory socketfactory;
+    private final SSLSessionContext sessionContext;
     private final HostnameVerifier hostnameVerifier;
     private final String[] supportedProtocols;
     private final String[] supportedCipherSuites;
+    private final AtomicLong fullHandshakes;
+    private final AtomicLong resumedHandshakes;
 
     public SSLConnectionSocketFactory(final SSLContext sslContext) {
         this(sslContext, getDefaultHostnameVerifier());
@@ -197,8 +219,7 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
      */
     public SSLConnectionSocketFactory(
             final SSLContext sslContext, final HostnameVerifier hostnameVerifier) {
-        this(Args.notNull(sslContext, "SSL context").getSocketFactory(),
-                null, null, hostnameVerifier);
+        this(sslContext, null, null, hostnameVerifier);
     }
 
     /**
@@ -209,7 +230,7 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
             final String[] supportedProtocols,
             final String[] supportedCipherSuites,
             final HostnameVerifier hostnameVerifier) {
-        this(Args.notNull(sslContext, "SSL context").getSocketFactory(),
+        this(Args.notNull(sslContext, "SSL context").getSocketFactory(), sslContext.getClientSessionContext(),
                 supportedProtocols, supportedCipherSuites, hostnameVerifier);
     }
 
@@ -230,10 +251,74 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
             final String[] supportedProtocols,
             final String[] supportedCipherSuites,
             final HostnameVerifier hostnameVerifier) {
+        this(socketfactory, null, supportedProtocols, supportedCipherSuites, hostnameVerifier);
+    }
+
+    private SSLConnectionSocketFactory(
+            final javax.net.ssl.SSLSocketFactory socketfactory,
+            final SSLSessionContext sessionContext,
+            final String[] supportedProtocols,
+            final String[] supportedCipherSuites,
+            final HostnameVerifier hostnameVerifier) {
         this.socketfactory = Args.notNull(socketfactory, "SSL socket factory");
+        this.sessionContext = sessionContext;
         this.supportedProtocols = supportedProtocols;
         this.supportedCipherSuites = supportedCipherSuites;
         this.hostnameVerifier = hostnameVerifier != null ? hostnameVerifier : getDefaultHostnameVerifier();
+        this.fullHandshakes = new AtomicLong();
+        this.resumedHandshakes = new AtomicLong();
+    }
+
+    /**
+     * Sets the maximum number of TLS sessions kept for resumption by the client
+     * session cache of the SSL context. Zero means no limit.
+     *
+     * @throws IllegalStateException if the factory has not been created from
+     *   an {@link SSLContext}.
+     *
+     * @since 5.0
+     */
+    public void setSessionCacheSize(final int size) {
+        Args.notNegative(size, "Session cache size");
+        Asserts.notNull(this.sessionContext, "SSL session context");
+        this.sessionContext.setSessionCacheSize(size);
+    }
+
+    /**
+     * Sets the time TLS sessions are kept for resumption by the client session cache
+     * of the SSL context. Zero means no limit.
+     *
+     * @throws IllegalStateException if the factory has not been created from
+     *   an {@link SSLContext}.
+     *
+     * @since 5.0
+     */
+    public void setSessionTimeout(final long timeout, final TimeUnit tunit) {
+        Args.notNegative(timeout, "Session timeout");
+        Args.notNull(tunit, "Time unit");
+        Asserts.notNull(this.sessionContext, "SSL session context");
+        this.sessionContext.setSessionTimeout((int) Math.min(Integer.MAX_VALUE, tunit.toSeconds(timeout)));
+    }
+
+    /**
+     * Returns the number of handshakes that established a new TLS session.
+     * This is a best-effort count that also includes resumptions the JSSE
+     * provider reports with a new session object.
+     *
+     * @since 5.0
+     */
+    public long getFullHandshakeCount() {
+        return this.fullHandshakes.get();
+    }
+
+    /**
+     * Returns the number of handshakes that resumed a cached TLS session.
+     * This is a best-effort count, see {@link #getFullHandshakeCount()}.
+     *
+     * @since 5.0
+     */
+    public long getResumedHandshakeCount() {
+        return this.resumedHandshakes.get();
     }
 
     /**
@@ -284,9 +369,12 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
         // Setup SSL layering if necessary
         if (sock instanceof SSLSocket) {
             final SSLSocket sslsock = (SSLSocket) sock;
+            final long startTime = System.currentTimeMillis();
+            final long start = System.nanoTime();
             this.log.debug("Starting handshake");
             sslsock.startHandshake();
             verifyHostname(sslsock, host.getHostName());
+            handshakeCompleted(sslsock, startTime, start, context);
             return sock;
         } else {
             return createLayeredSocket(sock, host.getHostName(), remoteAddress.getPort(), context);
@@ -329,12 +417,36 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
         }
 
         prepareSocket(sslsock);
+        final long startTime = System.currentTimeMillis();
+        final long start = System.nanoTime();
         this.log.debug("Starting handshake");
         sslsock.startHandshake();
         verifyHostname(sslsock, target);
+        handshakeCompleted(sslsock, startTime, start, context);
         return sslsock;
     }
 
+    private void handshakeCompleted(
+            final SSLSocket sslsock, final long startTime, final long start, final HttpContext context) {
+        // A resumed session keeps the creation time of the handshake that established it
+        final SSLSession session = sslsock.getSession();
+        if (session != null && session.getCreationTime() < startTime) {
+            this.resumedHandshakes.incrementAndGet();
+            this.log.debug("TLS session resumed");
+        } else {
+            this.fullHandshakes.incrementAndGet();
+        }
+        if (context == null) {
+            return;
+        }
+        final HttpClientContext clientContext = HttpClientContext.adapt(context);
+        final RequestPhaseListener phaseListener = clientContext.getRequestPhaseListener();
+        final HttpRoute route = clientContext.getAttribute(HttpClientContext.HTTP_ROUTE, HttpRoute.class);
+        if (phaseListener != null && route != null) {
+            phaseListener.phaseCompleted(route, RequestPhase.TLS_HANDSHAKE, System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
     private void verifyHostname(final SSLSocket sslsock, final String hostname) throws IOException {
         try {
             SSLSession session = sslsock.getSession();
@@ -71,7 +71,7 @@ public class SSLUpgradeStrategy implements TlsStrategy {
     }
 
     public static HostnameVerifier getDefaultHostnameVerifier() {
-        return new DefaultHostnameVerifier(PublicSuffixMatcherLoader.getDefault());
+        return new CachingHostnameVerifier(new DefaultHostnameVerifier(PublicSuffixMatcherLoader.getDefault()));
     }
 
     public static TlsStrategy getDefault() {
@@ -45,6 +45,12 @@ import org.apache.hc.core5.util.Args;
  * A utility class for parsing and formatting HTTP dates as used in cookies and
  * other headers.  This class handles dates as defined by RFC 2616 section
  * 3.3.1 as well as some other common non-standard formats.
+ * <p>
+ * Values in the standard formats are parsed and formatted without the use of
+ * {@link SimpleDateFormat} and without allocation of intermediate objects.
+ * {@link SimpleDateFormat} is used only for custom patterns and
+ * non-standard values.
+ * </p>
  *
  * @since 4.3
  */
@@ -97,6 +103,34 @@ public final class DateUtils {
         return parseDate(dateValue, null, null);
     }
 
+    /**
+     * Parses a date value in one of the default formats and returns it as
+     * the number of milliseconds since the epoch. Values in the standard formats
+     * are parsed without allocation of intermediate objects.
+     *
+     * @param dateValue the date value to parse
+     *
+     * @return the parsed date or {@link Long#MIN_VALUE} if input could not be parsed
+     *
+     * @since 5.0
+     */
+    public static long parseDateMillis(final CharSequence dateValue) {
+        Args.notNull(dateValue, "Date value");
+        int from = 0;
+        int to = dateValue.length();
+        if (to > 1 && dateValue.charAt(0) == '\'' && dateValue.charAt(to - 1) == '\'') {
+            from++;
+            to--;
+        }
+        final long time = HttpDateFormat.parse(
+                dateValue, from, to, DEFAULT_TWO_DIGIT_YEAR_START.getTime());
+        if (time != HttpDateFormat.INVALID) {
+            return time;
+        }
+        final Date date = parseDate(dateValue.toString(), DEFAULT_PATTERNS, null);
+        return date != null ? date.getTime() : Long.MIN_VALUE;
+    }
+
     /**
      * Parses the date value using the given date formats.
      *
@@ -128,10 +162,21 @@ public final class DateUtils {
         Args.notNull(dateValue, "Date value");
         final String[] localDateFormats = dateFormats != null ? dateFormats : DEFAULT_PATTERNS;
         final Date localStartDate = startDate != null ? startDate : DEFAULT_TWO_DIGIT_YEAR_START;
+        final boolean quoted = dateValue.length() > 1 && dateValue.startsWith("'") && dateValue.endsWith("'");
+        if (dateFormats == null) {
+            final long time = HttpDateFormat.parse(
+                    dateValue,
+                    quoted ? 1 : 0,
+                    quoted ? dateValue.length() - 1 : dateValue.length(),
+                    localStartDate.getTime());
+            if (time != HttpDateFormat.INVALID) {
+                return new Date(time);
+            }
+        }
         String v = dateValue;
         // trim single quotes around date if present
         // see issue #5279
-        if (v.length() > 1 && v.startsWith("'") && v.endsWith("'")) {
+        if (quoted) {
             v = v.substring (1, v.length() - 1);
         }
 
@@ -175,6 +220,11 @@ public final class DateUtils {
     public static String formatDate(final Date date, final String pattern) {
         Args.notNull(date, "Date");
         Args.notNull(pattern, "Pattern");
+        final long time = date.getTime();
+        if (PATTERN_RFC1123.equals(pattern)
+                && time >= HttpDateFormat.MIN_TIME && time <= HttpDateFormat.MAX_TIME) {
+            return HttpDateFormat.format(time);
+        }
         final SimpleDateFormat formatter = DateFormatHolder.formatFor(pattern);
         return formatter.format(date);
     }
@@ -0,0 +1,396 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+/**
+ * Hand written parser and formatter of HTTP dates as defined by RFC 7231 section 7.1.1.1.
+ * The parser recognizes the preferred IMF-fixdate format as well as the obsolete RFC 850
+ * and ANSI C {@code asctime()} formats. It operates on {@link CharSequence}s and does not
+ * allocate memory. The formatter produces IMF-fixdate values and keeps the most recently
+ * formatted value for re-use.
+ * <p>
+ * Only input that unambiguously conforms to one of the above formats is recognized.
+ * Dates outside the range of years from 1600 to 9999 are not supported. Callers
+ * are expected to fall back onto {@link java.text.SimpleDateFormat} in all other cases.
+ * </p>
+ */
+final class HttpDateFormat {
+
+    /**
+     * Value returned by the parse methods if the input could not be recognized.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int MIN_YEAR = 1600;
+    private static final int MAX_YEAR = 9999;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    static final long MIN_TIME = toEpochDay(MIN_YEAR, 1, 1) * SECONDS_PER_DAY * MILLIS_PER_SECOND;
+    static final long MAX_TIME = toEpochDay(MAX_YEAR + 1, 1, 1) * SECONDS_PER_DAY * MILLIS_PER_SECOND - 1;
+
+    private static final String[] DAYS = {
+            "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+    private static final String[] DAYS_LONG = {
+            "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday" };
+    private static final String[] MONTHS = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    private static volatile CachedDate lastFormatted;
+
+    private HttpDateFormat() {
+    }
+
+    /**
+     * Parses the given date value.
+     *
+     * @param s the date value.
+     * @param from the index of the first char of the value.
+     * @param to the index following the last char of the value.
+     * @param twoDigitYearStart the start of the 100 year period two digit years
+     *                          are placed in.
+     * @return the number of milliseconds since the epoch or {@link #INVALID}.
+     */
+    static long parse(final CharSequence s, final int from, final int to, final long twoDigitYearStart) {
+        final int dayNameEnd = skipAlpha(s, from, to);
+        if (!isDayName(s, from, dayNameEnd) || dayNameEnd + 1 >= to) {
+            return INVALID;
+        }
+        if (s.charAt(dayNameEnd) == ',') {
+            // IMF-fixdate: Sun, 06 Nov 1994 08:49:37 GMT
+            // RFC 850:     Sunday, 06-Nov-94 08:49:37 GMT
+            int pos = dayNameEnd + 1;
+            if (s.charAt(pos++) != ' ' || pos + 3 > to) {
+                return INVALID;
+            }
+            final int day = parseDigits(s, pos, 2);
+            pos += 2;
+            final char separator = s.charAt(pos++);
+            if (separator != ' ' && separator != '-') {
+                return INVALID;
+            }
+            final int month = parseMonth(s, pos, to);
+            pos += 3;
+            if (month < 0 || pos >= to || s.charAt(pos++) != separator) {
+                return INVALID;
+            }
+            final int yearEnd = skipDigits(s, pos, to);
+            final int yearDigits = yearEnd - pos;
+            final boolean twoDigitYear = separator == '-' && yearDigits == 2;
+            if (yearDigits != 4 && !twoDigitYear) {
+                return INVALID;
+            }
+            int year = parseDigits(s, pos, yearDigits);
+            pos = yearEnd;
+            if (pos >= to || s.charAt(pos++) != ' ') {
+                return INVALID;
+            }
+            final int timeOfDay = parseTimeOfDay(s, pos, to);
+            pos += 8;
+            if (timeOfDay < 0 || pos >= to || s.charAt(pos++) != ' ' || !isGmt(s, pos, to)) {
+                return INVALID;
+            }
+            if (twoDigitYear) {
+                year = resolveTwoDigitYear(year, day, month, timeOfDay, twoDigitYearStart);
+            }
+            return toEpochMillis(year, month, day, timeOfDay);
+        } else if (s.charAt(dayNameEnd) == ' ' && dayNameEnd - from == 3) {
+            // asctime: Sun Nov  6 08:49:37 1994
+            int pos = dayNameEnd + 1;
+            final int month = parseMonth(s, pos, to);
+            pos += 3;
+            if (month < 0 || pos + 2 >= to || s.charAt(pos++) != ' ') {
+                return INVALID;
+            }
+            if (s.charAt(pos) == ' ') {
+                pos++;
+            }
+            final int dayEnd = skipDigits(s, pos, to);
+            if (dayEnd == pos || dayEnd - pos > 2) {
+                return INVALID;
+            }
+            final int day = parseDigits(s, pos, dayEnd - pos);
+            pos = dayEnd;
+            if (pos >= to || s.charAt(pos++) != ' ') {
+                return INVALID;
+            }
+            final int timeOfDay = parseTimeOfDay(s, pos, to);
+            pos += 8;
+            if (timeOfDay < 0 || pos + 5 != to || s.charAt(pos++) != ' ') {
+                return INVALID;
+            }
+            final int year = parseDigits(s, pos, 4);
+            return toEpochMillis(year, month, day, timeOfDay);
+        }
+        return INVALID;
+    }
+
+    /**
+     * Formats the given time as IMF-fixdate.
+     *
+     * @param time the number of milliseconds since the epoch in range from
+     *             {@link #MIN_TIME} to {@link #MAX_TIME}.
+     */
+    static String format(final long time) {
+        final long second = floorDiv(time, MILLIS_PER_SECOND);
+        final CachedDate cached = lastFormatted;
+        if (cached != null && cached.second == second) {
+            return cached.value;
+        }
+        final StringBuilder buffer = new StringBuilder(29);
+        format(time, buffer);
+        final String value = buffer.toString();
+        lastFormatted = new CachedDate(second, value);
+        return value;
+    }
+
+    /**
+     * Appends the given time formatted as IMF-fixdate to the buffer.
+     *
+     * @param time the number of milliseconds since the epoch in range from
+     *             {@link #MIN_TIME} to {@link #MAX_TIME}.
+     */
+    static void format(final long time, final StringBuilder buffer) {
+        final long seconds = floorDiv(time, MILLIS_PER_SECOND);
+        final long epochDay = floorDiv(seconds, SECONDS_PER_DAY);
+        final int secondOfDay = (int) (seconds - epochDay * SECONDS_PER_DAY);
+
+        // Civil from days algorithm (proleptic Gregorian calendar)
+        final long z = epochDay + 719468;
+        final long era = floorDiv(z, 146097);
+        final int doe = (int) (z - era * 146097);
+        final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int day = doy - (153 * mp + 2) / 5 + 1;
+        final int month = mp < 10 ? mp + 3 : mp - 9;
+        final int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+        final int dayOfWeek = (int) floorMod(epochDay + 4, 7);
+
+        buffer.append(DAYS[dayOfWeek]).append(", ");
+        appendDigits(buffer, day, 2);
+        buffer.append(' ').append(MONTHS[month - 1]).append(' ');
+        appendDigits(buffer, year, 4);
+        buffer.append(' ');
+        appendDigits(buffer, secondOfDay / 3600, 2);
+        buffer.append(':');
+        appendDigits(buffer, secondOfDay / 60 % 60, 2);
+        buffer.append(':');
+        appendDigits(buffer, secondOfDay % 60, 2);
+        buffer.append(" GMT");
+    }
+
+    private static void appendDigits(final StringBuilder buffer, final int value, final int digits) {
+        for (int divisor = digits == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            buffer.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int skipAlpha(final CharSequence s, final int from, final int to) {
+        int pos = from;
+        while (pos < to) {
+            final char ch = s.charAt(pos);
+            if ((ch < 'a' || ch > 'z') && (ch < 'A' || ch > 'Z')) {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipDigits(final CharSequence s, final int from, final int to) {
+        int pos = from;
+        while (pos < to && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigit(final char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * @return the value of the given number of digits or {@code -1} if any of the chars
+     * is not a digit.
+     */
+    private static int parseDigits(final CharSequence s, final int from, final int digits) {
+        int value = 0;
+        for (int i = from; i < from + digits; i++) {
+            final char ch = s.charAt(i);
+            if (!isDigit(ch)) {
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    private static boolean regionEquals(final CharSequence s, final int from, final int to, final String name) {
+        if (to - from != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (s.charAt(from + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDayName(final CharSequence s, final int from, final int to) {
+        for (int i = 0; i < DAYS.length; i++) {
+            if (regionEquals(s, from, to, DAYS[i]) || regionEquals(s, from, to, DAYS_LONG[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the month from 1 to 12 or {@code -1} if not recognized.
+     */
+    private static int parseMonth(final CharSequence s, final int from, final int to) {
+        if (from + 3 > to) {
+            return -1;
+        }
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (regionEquals(s, from, from + 3, MONTHS[i])) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses time of day in {@code HH:mm:ss} format.
+     *
+     * @return the second of day or {@code -1} if not recognized.
+     */
+    private static int parseTimeOfDay(final CharSequence s, final int from, final int to) {
+        if (from + 8 > to || s.charAt(from + 2) != ':' || s.charAt(from + 5) != ':') {
+            return -1;
+        }
+        final int hour = parseDigits(s, from, 2);
+        final int minute = parseDigits(s, from + 3, 2);
+        final int second = parseDigits(s, from + 6, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    private static boolean isGmt(final CharSequence s, final int from, final int to) {
+        return regionEquals(s, from, to, "GMT") || regionEquals(s, from, to, "UTC");
+    }
+
+    private static boolean isLeapYear(final int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days from civil algorithm (proleptic Gregorian calendar).
+     */
+    private static long toEpochDay(final int year, final int month, final int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yoe = y - era * 400;
+        final int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    private static long toEpochMillis(final int year, final int month, final int day, final int secondOfDay) {
+        if (year < MIN_YEAR || year > MAX_YEAR || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return (toEpochDay(year, month, day) * SECONDS_PER_DAY + secondOfDay) * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Places the two digit year within the 100 year period starting at the given time
+     * following the same rules as {@link java.text.SimpleDateFormat}.
+     */
+    private static int resolveTwoDigitYear(
+            final int twoDigitYear, final int day, final int month, final int secondOfDay,
+            final long twoDigitYearStart) {
+        final long startDay = floorDiv(twoDigitYearStart, SECONDS_PER_DAY * MILLIS_PER_SECOND);
+        final long z = startDay + 719468;
+        final long era = floorDiv(z, 146097);
+        final int doe = (int) (z - era * 146097);
+        final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int startYear = (int) (yoe + era * 400) + (mp >= 10 ? 1 : 0);
+        final int ambiguousTwoDigitYear = startYear % 100;
+        int year = startYear / 100 * 100 + twoDigitYear + (twoDigitYear < ambiguousTwoDigitYear ? 100 : 0);
+        if (twoDigitYear == ambiguousTwoDigitYear) {
+            final long time = toEpochMillis(year, month, day, secondOfDay);
+            if (time != INVALID && time < twoDigitYearStart) {
+                year += 100;
+            }
+        }
+        return year;
+    }
+
+    private static long floorDiv(final long x, final long y) {
+        final long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static long floorMod(final long x, final long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    static final class CachedDate {
+
+        final long second;
+        final String value;
+
+        CachedDate(final long second, final String value) {
+            this.second = second;
+            this.value = value;
+        }
+
+    }
+
+}
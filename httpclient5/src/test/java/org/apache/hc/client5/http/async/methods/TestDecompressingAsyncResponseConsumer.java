@@ -0,0 +1,343 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDecompressingAsyncResponseConsumer {
+
+    private static final String TEXT = "some kind of text, some kind of text, some kind of text";
+
+    private static byte[] gzip(final byte[] content) throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final GZIPOutputStream out = new GZIPOutputStream(buf)) {
+            out.write(content);
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] deflate(final byte[] content, final boolean nowrap) throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final DeflaterOutputStream out = new DeflaterOutputStream(buf, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+            out.write(content);
+        }
+        return buf.toByteArray();
+    }
+
+    private static SimpleHttpResponse execute(
+            final HttpResponse response, final byte[] content, final String encoding, final int chunkSize) throws Exception {
+        final ByteArrayEntity entity = new ByteArrayEntity(content, ContentType.TEXT_PLAIN);
+        entity.setContentEncoding(encoding);
+        final DecompressingAsyncResponseConsumer<SimpleHttpResponse> consumer =
+                new DecompressingAsyncResponseConsumer<>(new SimpleResponseConsumer());
+        final BasicFuture<SimpleHttpResponse> future = new BasicFuture<>(null);
+        final FutureCallbackAdaptor callback = new FutureCallbackAdaptor(future);
+        try {
+            consumer.consumeResponse(response, entity, callback);
+            consumer.updateCapacity(new CapacityChannel() {
+
+                @Override
+                public void update(final int increment) {
+                }
+
+            });
+            for (int i = 0; i < content.length; i += chunkSize) {
+                final ByteBuffer chunk = ByteBuffer.wrap(content, i, Math.min(chunkSize, content.length - i));
+                consumer.consume(chunk);
+                Assert.assertFalse(chunk.hasRemaining());
+            }
+            consumer.streamEnd(null);
+        } finally {
+            consumer.releaseResources();
+        }
+        return future.get();
+    }
+
+    private static HttpResponse createResponse(final String encoding, final int length) {
+        final HttpResponse response = new BasicHttpResponse(200, "OK");
+        response.setHeader("Content-Encoding", encoding);
+        response.setHeader("Content-Length", Integer.toString(length));
+        return response;
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        final byte[] content = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        final HttpResponse response = createResponse("gzip", content.length);
+        final SimpleHttpResponse result = execute(response, content, "gzip", 1024);
+        Assert.assertEquals(TEXT, result.getBody());
+        Assert.assertFalse(response.containsHeader("Content-Encoding"));
+        Assert.assertFalse(response.containsHeader("Content-Length"));
+    }
+
+    @Test
+    public void testGzipByteByByte() throws Exception {
+        final byte[] content = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        final SimpleHttpResponse result = execute(createResponse("gzip", content.length), content, "x-gzip", 1);
+        Assert.assertEquals(TEXT, result.getBody());
+    }
+
+    @Test
+    public void testGzipLargeContent() throws Exception {
+        final byte[] raw = new byte[256 * 1024];
+        final Random random = new Random(1234);
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) ('a' + random.nextInt(4));
+        }
+        final byte[] content = gzip(raw);
+        final SimpleHttpResponse result = execute(createResponse("gzip", content.length), content, "gzip", 777);
+        Assert.assertArrayEquals(raw, result.getBody().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testGzipMultipleMembers() throws Exception {
+        final byte[] member = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        final byte[] content = Arrays.copyOf(member, member.length * 2);
+        System.arraycopy(member, 0, content, member.length, member.length);
+        final SimpleHttpResponse result = execute(createResponse("gzip", content.length), content, "gzip", 5);
+        Assert.assertEquals(TEXT + TEXT, result.getBody());
+    }
+
+    @Test
+    public void testGzipHeaderWithOptionalFields() throws Exception {
+        final byte[] member = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        buf.write(member, 0, 3);
+        // FEXTRA | FNAME | FCOMMENT
+        buf.write(4 | 8 | 16);
+        buf.write(member, 4, 6);
+        buf.write(new byte[] {3, 0, 'a', 'b', 'c'});
+        buf.write("name\0".getBytes(StandardCharsets.US_ASCII));
+        buf.write("comment\0".getBytes(StandardCharsets.US_ASCII));
+        buf.write(member, 10, member.length - 10);
+        final byte[] content = buf.toByteArray();
+        final SimpleHttpResponse result = execute(createResponse("gzip", content.length), content, "gzip", 3);
+        Assert.assertEquals(TEXT, result.getBody());
+    }
+
+    @Test
+    public void testGzipTrailingPartialHeader() throws Exception {
+        final byte[] member = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        final byte[][] trailers = {
+                {'a', 'b', 'c'},
+                {0x1f, (byte) 0x8b, 8, 0, 0},
+                {0x1f, (byte) 0x8b, 8, 8, 0, 0, 0, 0, 0, 0, 'n', 'a'}
+        };
+        for (final byte[] trailer: trailers) {
+            final byte[] content = Arrays.copyOf(member, member.length + trailer.length);
+            System.arraycopy(trailer, 0, content, member.length, trailer.length);
+            final SimpleHttpResponse result = execute(createResponse("gzip", content.length), content, "gzip", 4);
+            Assert.assertEquals(TEXT, result.getBody());
+        }
+    }
+
+    @Test
+    public void testGzipHonorsCapacity() throws Exception {
+        final byte[] raw = new byte[1024 * 1024];
+        Arrays.fill(raw, (byte) 'a');
+        final byte[] content = gzip(raw);
+        final ThrottlingDataConsumer dataConsumer = new ThrottlingDataConsumer(4096);
+        final DecompressingAsyncDataConsumer consumer = new DecompressingAsyncDataConsumer(
+                dataConsumer, GzipAsyncContentDecoder.FACTORY.create(), 1024);
+        final int[] increments = new int[1];
+        try {
+            Assert.assertEquals(0, consumer.consume(ByteBuffer.wrap(content)));
+            Assert.assertEquals(4096, dataConsumer.content.size());
+            consumer.streamEnd(null);
+            Assert.assertFalse(dataConsumer.ended);
+            consumer.updateCapacity(new CapacityChannel() {
+
+                @Override
+                public void update(final int increment) {
+                    increments[0]++;
+                }
+
+            });
+            int rounds = 0;
+            while (!dataConsumer.ended) {
+                Assert.assertTrue(++rounds <= raw.length / 4096);
+                dataConsumer.release();
+            }
+        } finally {
+            consumer.releaseResources();
+        }
+        Assert.assertEquals(0, increments[0]);
+        Assert.assertArrayEquals(raw, dataConsumer.content.toByteArray());
+    }
+
+    @Test(expected = ZipException.class)
+    public void testGzipCorruptTrailer() throws Exception {
+        final byte[] content = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        content[content.length - 5]++;
+        execute(createResponse("gzip", content.length), content, "gzip", 1024);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testGzipTruncated() throws Exception {
+        final byte[] content = gzip(TEXT.getBytes(StandardCharsets.US_ASCII));
+        execute(createResponse("gzip", content.length), Arrays.copyOf(content, content.length - 4), "gzip", 1024);
+    }
+
+    @Test
+    public void testDeflateZlib() throws Exception {
+        final byte[] content = deflate(TEXT.getBytes(StandardCharsets.US_ASCII), false);
+        final SimpleHttpResponse result = execute(createResponse("deflate", content.length), content, "deflate", 1);
+        Assert.assertEquals(TEXT, result.getBody());
+    }
+
+    @Test
+    public void testDeflateRaw() throws Exception {
+        final byte[] content = deflate(TEXT.getBytes(StandardCharsets.US_ASCII), true);
+        final SimpleHttpResponse result = execute(createResponse("deflate", content.length), content, "deflate", 7);
+        Assert.assertEquals(TEXT, result.getBody());
+    }
+
+    @Test
+    public void testMultipleEncodings() throws Exception {
+        final byte[] content = gzip(deflate(TEXT.getBytes(StandardCharsets.US_ASCII), false));
+        final SimpleHttpResponse result = execute(
+                createResponse("deflate, gzip", content.length), content, "deflate, gzip", 16);
+        Assert.assertEquals(TEXT, result.getBody());
+    }
+
+    @Test
+    public void testUnknownEncodingIsPassedThrough() throws Exception {
+        final byte[] content = TEXT.getBytes(StandardCharsets.US_ASCII);
+        final HttpResponse response = createResponse("whatever", content.length);
+        final SimpleHttpResponse result = execute(response, content, "whatever", 1024);
+        Assert.assertEquals(TEXT, result.getBody());
+        Assert.assertTrue(response.containsHeader("Content-Encoding"));
+    }
+
+    @Test(expected = HttpException.class)
+    public void testUnknownEncodingRejected() throws Exception {
+        final ByteArrayEntity entity = new ByteArrayEntity(new byte[] {1, 2, 3}, ContentType.TEXT_PLAIN);
+        entity.setContentEncoding("whatever");
+        final DecompressingAsyncResponseConsumer<SimpleHttpResponse> consumer =
+                new DecompressingAsyncResponseConsumer<>(new SimpleResponseConsumer(), null, false);
+        consumer.consumeResponse(createResponse("whatever", 3), entity,
+                new FutureCallbackAdaptor(new BasicFuture<SimpleHttpResponse>(null)));
+    }
+
+    static class ThrottlingDataConsumer implements AsyncDataConsumer {
+
+        private final int window;
+        private final ByteArrayOutputStream content;
+
+        private int available;
+        private CapacityChannel capacityChannel;
+        private boolean ended;
+
+        ThrottlingDataConsumer(final int window) {
+            this.window = window;
+            this.content = new ByteArrayOutputStream();
+            this.available = window;
+        }
+
+        void release() throws IOException {
+            Assert.assertNotNull(capacityChannel);
+            final CapacityChannel channel = capacityChannel;
+            capacityChannel = null;
+            available = window;
+            channel.update(window);
+        }
+
+        @Override
+        public void updateCapacity(final CapacityChannel capacityChannel) {
+            this.capacityChannel = capacityChannel;
+        }
+
+        @Override
+        public int consume(final ByteBuffer src) {
+            Assert.assertTrue(src.remaining() <= available);
+            available -= src.remaining();
+            while (src.hasRemaining()) {
+                content.write(src.get());
+            }
+            return available;
+        }
+
+        @Override
+        public void streamEnd(final List<? extends Header> trailers) {
+            ended = true;
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+    }
+
+    static class FutureCallbackAdaptor implements org.apache.hc.core5.concurrent.FutureCallback<SimpleHttpResponse> {
+
+        private final BasicFuture<SimpleHttpResponse> future;
+
+        FutureCallbackAdaptor(final BasicFuture<SimpleHttpResponse> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void completed(final SimpleHttpResponse result) {
+            future.completed(result);
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            future.failed(ex);
+        }
+
+        @Override
+        public void cancelled() {
+            future.cancel();
+        }
+
+    }
+
+}
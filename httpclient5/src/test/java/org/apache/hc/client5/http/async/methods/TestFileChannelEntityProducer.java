@@ -0,0 +1,157 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFileChannelEntityProducer {
+
+    static class ChunkedDataStreamChannel implements DataStreamChannel {
+
+        private final int maxChunk;
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private int endStreamCount;
+
+        ChunkedDataStreamChannel(final int maxChunk) {
+            this.maxChunk = maxChunk;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            final int len = Math.min(maxChunk, src.remaining());
+            for (int i = 0; i < len; i++) {
+                buf.write(src.get());
+            }
+            return len;
+        }
+
+        @Override
+        public void requestOutput() {
+        }
+
+        @Override
+        public void endStream(final List<? extends Header> trailers) throws IOException {
+            endStreamCount++;
+        }
+
+        @Override
+        public void endStream() throws IOException {
+            endStream(null);
+        }
+
+    }
+
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setup() throws Exception {
+        content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = File.createTempFile("tmp", ".bin");
+        try (final FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+
+    @After
+    public void cleanup() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static byte[] produceAll(final FileChannelEntityProducer producer, final ChunkedDataStreamChannel channel) throws Exception {
+        int n = 0;
+        while (channel.endStreamCount == 0) {
+            producer.produce(channel);
+            Assert.assertTrue("Too many iterations", ++n < 100000);
+        }
+        producer.produce(channel);
+        Assert.assertEquals(1, channel.endStreamCount);
+        Assert.assertEquals(0, producer.available());
+        return channel.buf.toByteArray();
+    }
+
+    @Test
+    public void testProduceFile() throws Exception {
+        final FileChannelEntityProducer producer = new FileChannelEntityProducer(file, ContentType.APPLICATION_OCTET_STREAM);
+        Assert.assertEquals(content.length, producer.getContentLength());
+        Assert.assertEquals(content.length, producer.available());
+        Assert.assertFalse(producer.isChunked());
+        Assert.assertEquals("application/octet-stream", producer.getContentType());
+        Assert.assertArrayEquals(content, produceAll(producer, new ChunkedDataStreamChannel(1000)));
+    }
+
+    @Test
+    public void testProduceFileRegion() throws Exception {
+        final FileChannelEntityProducer producer = new FileChannelEntityProducer(file, 1234, 5000, null, 512);
+        Assert.assertEquals(5000, producer.getContentLength());
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 1234, 6234),
+                produceAll(producer, new ChunkedDataStreamChannel(300)));
+    }
+
+    @Test
+    public void testProduceAgainAfterRelease() throws Exception {
+        final FileChannelEntityProducer producer = new FileChannelEntityProducer(file, 0, 3000, null, 1024);
+        final ChunkedDataStreamChannel channel1 = new ChunkedDataStreamChannel(100);
+        producer.produce(channel1);
+        producer.releaseResources();
+        Assert.assertEquals(3000, producer.available());
+        Assert.assertArrayEquals(Arrays.copyOf(content, 3000), produceAll(producer, new ChunkedDataStreamChannel(700)));
+    }
+
+    @Test
+    public void testEmptyRegion() throws Exception {
+        final FileChannelEntityProducer producer = new FileChannelEntityProducer(file, 10, 0, null);
+        Assert.assertEquals(0, produceAll(producer, new ChunkedDataStreamChannel(100)).length);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testFileTruncated() throws Exception {
+        final FileChannelEntityProducer producer = new FileChannelEntityProducer(file, 0, content.length + 10, null);
+        produceAll(producer, new ChunkedDataStreamChannel(Integer.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.ProtocolException;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFileResponseConsumer {
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        file = File.createTempFile("tmp", ".bin");
+    }
+
+    @After
+    public void cleanup() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static void writeFile(final File file, final String content) throws Exception {
+        try (final FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private String readFile() throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+    }
+
+    private static HttpResponse execute(
+            final FileResponseConsumer consumer,
+            final HttpResponse response,
+            final String content,
+            final boolean direct) throws Exception {
+        final byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+        final BasicFuture<HttpResponse> future = new BasicFuture<>(null);
+        try {
+            consumer.consumeResponse(response, new ByteArrayEntity(bytes, ContentType.TEXT_PLAIN),
+                    new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed(final HttpResponse result) {
+                    future.completed(result);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    future.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel();
+                }
+
+            });
+            for (int i = 0; i < bytes.length; i += 3) {
+                final int len = Math.min(3, bytes.length - i);
+                final ByteBuffer chunk;
+                if (direct) {
+                    chunk = ByteBuffer.allocateDirect(len);
+                    chunk.put(bytes, i, len);
+                    chunk.flip();
+                } else {
+                    chunk = ByteBuffer.wrap(bytes, i, len);
+                }
+                consumer.consume(chunk);
+                Assert.assertFalse(chunk.hasRemaining());
+            }
+            consumer.streamEnd(null);
+        } finally {
+            consumer.releaseResources();
+        }
+        return future.get();
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        writeFile(file, "some old stuff that should be gone");
+        final FileResponseConsumer consumer = new FileResponseConsumer(file);
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        Assert.assertEquals(0, consumer.applyRange(request));
+        Assert.assertFalse(request.containsHeader("Range"));
+        final HttpResponse response = execute(consumer, new BasicHttpResponse(200, "OK"), "0123456789", false);
+        Assert.assertEquals(200, response.getCode());
+        Assert.assertEquals("0123456789", readFile());
+        Assert.assertEquals(10, consumer.getBytesWritten());
+    }
+
+    @Test
+    public void testDownloadDirectBuffers() throws Exception {
+        final FileResponseConsumer consumer = new FileResponseConsumer(file);
+        execute(consumer, new BasicHttpResponse(200, "OK"), "0123456789", true);
+        Assert.assertEquals("0123456789", readFile());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        writeFile(file, "01234");
+        final FileResponseConsumer consumer = new FileResponseConsumer(file, true);
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        Assert.assertEquals(5, consumer.applyRange(request));
+        Assert.assertEquals("bytes=5-", request.getFirstHeader("Range").getValue());
+        final HttpResponse response = new BasicHttpResponse(206, "Partial Content");
+        response.setHeader("Content-Range", "bytes 5-9/10");
+        execute(consumer, response, "56789", false);
+        Assert.assertEquals("0123456789", readFile());
+        Assert.assertEquals(5, consumer.getBytesWritten());
+    }
+
+    @Test
+    public void testResumeIgnoredByServer() throws Exception {
+        writeFile(file, "01234");
+        final FileResponseConsumer consumer = new FileResponseConsumer(file, true);
+        consumer.applyRange(new BasicHttpRequest("GET", "/"));
+        execute(consumer, new BasicHttpResponse(200, "OK"), "0123456789", false);
+        Assert.assertEquals("0123456789", readFile());
+    }
+
+    @Test
+    public void testResumeContentRangeMismatch() throws Exception {
+        writeFile(file, "01234");
+        final FileResponseConsumer consumer = new FileResponseConsumer(file, true);
+        consumer.applyRange(new BasicHttpRequest("GET", "/"));
+        final HttpResponse response = new BasicHttpResponse(206, "Partial Content");
+        response.setHeader("Content-Range", "bytes 3-9/10");
+        try {
+            execute(consumer, response, "3456789", false);
+            Assert.fail("ProtocolException expected");
+        } catch (final ProtocolException expected) {
+        }
+        Assert.assertEquals("01234", readFile());
+    }
+
+    @Test
+    public void testErrorResponseLeavesFileUntouched() throws Exception {
+        writeFile(file, "01234");
+        final FileResponseConsumer consumer = new FileResponseConsumer(file, true);
+        final HttpResponse response = execute(consumer, new BasicHttpResponse(404, "Not Found"), "not found", false);
+        Assert.assertEquals(404, response.getCode());
+        Assert.assertEquals("01234", readFile());
+        Assert.assertEquals(0, consumer.getBytesWritten());
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.http.ContentTooLongException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSimpleBinResponseConsumer {
+
+    private static SimpleHttpResponse execute(
+            final SimpleBinResponseConsumer consumer,
+            final HttpResponse response,
+            final byte[] content,
+            final int chunkSize) throws Exception {
+        final BasicFuture<SimpleHttpResponse> future = new BasicFuture<>(null);
+        final TestDecompressingAsyncResponseConsumer.FutureCallbackAdaptor callback =
+                new TestDecompressingAsyncResponseConsumer.FutureCallbackAdaptor(future);
+        consumer.consumeResponse(response, content != null ? new ByteArrayEntity(content, ContentType.TEXT_PLAIN) : null, callback);
+        if (content != null) {
+            for (int i = 0; i < content.length; i += chunkSize) {
+                final ByteBuffer chunk = ByteBuffer.wrap(content, i, Math.min(chunkSize, content.length - i));
+                consumer.consume(chunk);
+                Assert.assertFalse(chunk.hasRemaining());
+            }
+            consumer.streamEnd(null);
+        }
+        return future.get();
+    }
+
+    @Test
+    public void testBodyWithContentLength() throws Exception {
+        final byte[] content = "some binary content".getBytes(StandardCharsets.US_ASCII);
+        final HttpResponse response = new BasicHttpResponse(200, "OK");
+        response.setHeader("Content-Length", Integer.toString(content.length));
+        final SimpleHttpResponse result = execute(new SimpleBinResponseConsumer(), response, content, 3);
+        Assert.assertArrayEquals(content, result.getBodyBytes());
+        Assert.assertEquals("some binary content", result.getBody());
+        Assert.assertEquals(ContentType.TEXT_PLAIN.getMimeType(), result.getContentType().getMimeType());
+        final ByteBuffer buffer = result.getBodyBuffer();
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(content.length, buffer.remaining());
+        // buffer pre-sized from Content-Length is handed over without copying
+        Assert.assertSame(result.getBodyBytes(), result.getBodyBytes());
+    }
+
+    @Test
+    public void testBodyWithoutContentLength() throws Exception {
+        final byte[] content = new byte[10000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        final SimpleHttpResponse result = execute(
+                new SimpleBinResponseConsumer(), new BasicHttpResponse(200, "OK"), content, 1024);
+        Assert.assertArrayEquals(content, result.getBodyBytes());
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        final SimpleHttpResponse result = execute(
+                new SimpleBinResponseConsumer(), new BasicHttpResponse(200, "OK"), new byte[0], 1);
+        Assert.assertNotNull(result.getBodyBytes());
+        Assert.assertEquals(0, result.getBodyBytes().length);
+        Assert.assertEquals("", result.getBody());
+    }
+
+    @Test
+    public void testNoEntity() throws Exception {
+        final SimpleHttpResponse result = execute(
+                new SimpleBinResponseConsumer(), new BasicHttpResponse(204, "No Content"), null, 1);
+        Assert.assertEquals(204, result.getCode());
+        Assert.assertNull(result.getBody());
+        Assert.assertNull(result.getBodyBytes());
+        Assert.assertNull(result.getBodyBuffer());
+    }
+
+    @Test(expected = ContentTooLongException.class)
+    public void testContentLengthExceedsMaxBodySize() throws Exception {
+        final HttpResponse response = new BasicHttpResponse(200, "OK");
+        response.setHeader("Content-Length", "100");
+        execute(new SimpleBinResponseConsumer(50), response, new byte[100], 10);
+    }
+
+    @Test
+    public void testStreamExceedsMaxBodySize() throws Exception {
+        try {
+            execute(new SimpleBinResponseConsumer(50), new BasicHttpResponse(200, "OK"), new byte[100], 10);
+            Assert.fail("ContentTooLongException expected");
+        } catch (final ContentTooLongException expected) {
+        } catch (final ExecutionException ex) {
+            Assert.fail(ex.getMessage());
+        }
+    }
+
+}
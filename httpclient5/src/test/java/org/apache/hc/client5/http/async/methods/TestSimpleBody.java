@@ -0,0 +1,78 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.async.methods;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.core5.http.ContentType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSimpleBody {
+
+    @Test
+    public void testTextBody() throws Exception {
+        final SimpleBody body = SimpleBody.create("café", ContentType.create("text/plain", StandardCharsets.UTF_8));
+        Assert.assertTrue(body.isText());
+        Assert.assertFalse(body.isBytes());
+        Assert.assertEquals("café", body.getBodyText());
+        Assert.assertArrayEquals("café".getBytes(StandardCharsets.UTF_8), body.getBodyBytes());
+        Assert.assertEquals(5, body.length());
+    }
+
+    @Test
+    public void testBinaryBodyNoCopy() throws Exception {
+        final byte[] content = "stuff".getBytes(StandardCharsets.US_ASCII);
+        final SimpleBody body = SimpleBody.create(content, ContentType.APPLICATION_OCTET_STREAM);
+        Assert.assertTrue(body.isBytes());
+        Assert.assertSame(content, body.getBodyBytes());
+        final ByteBuffer buffer = body.getBodyBuffer();
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(5, buffer.remaining());
+    }
+
+    @Test
+    public void testBinaryBodyLazyText() throws Exception {
+        final byte[] content = "xxcaféxx".getBytes(StandardCharsets.UTF_8);
+        final SimpleBody body = SimpleBody.create(content, 2, content.length - 4,
+                ContentType.create("text/plain", StandardCharsets.UTF_8));
+        final String text = body.getBodyText();
+        Assert.assertEquals("café", text);
+        Assert.assertSame(text, body.getBodyText());
+        Assert.assertArrayEquals("café".getBytes(StandardCharsets.UTF_8), body.getBodyBytes());
+        Assert.assertEquals(5, body.length());
+    }
+
+    @Test
+    public void testBinaryBodyDefaultCharset() throws Exception {
+        final SimpleBody body = SimpleBody.create(ByteBuffer.wrap("stuff".getBytes(StandardCharsets.US_ASCII)), null);
+        Assert.assertNull(body.getContentType());
+        Assert.assertEquals("stuff", body.getBodyText());
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares gzip coding with JDK streams that allocate a new inflater / deflater
+ * per message against the {@link ZlibPool} backed entity classes. Run with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main GzipEntityBenchmark -prof gc}
+ * to see the difference in allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GzipEntityBenchmark {
+
+    @Param({"256", "16384"})
+    public int contentLength;
+
+    private byte[] content;
+    private byte[] compressed;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        final Random random = new Random(42);
+        content = new byte[contentLength];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(16));
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        compressed = out.toByteArray();
+        buffer = new byte[4096];
+    }
+
+    private int drain(final InputStream instream) throws IOException {
+        int total = 0;
+        try {
+            int l;
+            while ((l = instream.read(buffer)) != -1) {
+                total += l;
+            }
+        } finally {
+            instream.close();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int decompressJdk() throws IOException {
+        return drain(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    @Benchmark
+    public int decompressPooled() throws IOException {
+        return drain(new GzipDecompressingEntity(
+                new ByteArrayEntity(compressed, ContentType.APPLICATION_OCTET_STREAM)).getContent());
+    }
+
+    @Benchmark
+    public byte[] compressJdk() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length + 64);
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] compressPooled() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length + 64);
+        new GzipCompressingEntity(new ByteArrayEntity(content, ContentType.APPLICATION_OCTET_STREAM)).writeTo(out);
+        return out.toByteArray();
+    }
+
+}
@@ -55,4 +55,22 @@ public class TestDeflate {
         Assert.assertEquals(s, EntityUtils.toString(entity));
     }
 
+    @Test
+    public void testDecompressRawDeflate() throws Exception {
+
+        final String s = "some kind of text";
+        final byte[] input = s.getBytes(StandardCharsets.US_ASCII);
+
+        final byte[] compressed = new byte[input.length * 2];
+        final Deflater compresser = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        compresser.setInput(input);
+        compresser.finish();
+        final int len = compresser.deflate(compressed);
+
+        final ZlibPool pool = new ZlibPool(1, 512);
+        final HttpEntity entity = new DeflateDecompressingEntity(new ByteArrayEntity(compressed, 0, len), pool);
+        Assert.assertEquals(s, EntityUtils.toString(entity));
+        Assert.assertEquals(s, EntityUtils.toString(entity));
+    }
+
 }
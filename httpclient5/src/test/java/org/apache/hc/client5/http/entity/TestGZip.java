@@ -27,10 +27,15 @@
 
 package org.apache.hc.client5.http.entity;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
@@ -79,4 +84,56 @@ public class TestGZip {
         }
     }
 
+    private static byte[] gzip(final String s) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final GZIPOutputStream out = new GZIPOutputStream(buf)) {
+            out.write(s.getBytes(StandardCharsets.US_ASCII));
+        }
+        return buf.toByteArray();
+    }
+
+    @Test
+    public void testCompressedContentReadableByJdk() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.append("some kind of text ").append(i);
+        }
+        final String s = buf.toString();
+        final GzipCompressingEntity gzipe = new GzipCompressingEntity(new StringEntity(s, ContentType.TEXT_PLAIN));
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            gzipe.writeTo(out);
+            try (final InputStream instream = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+                final byte[] tmp = new byte[1024];
+                int l;
+                while ((l = instream.read(tmp)) != -1) {
+                    decompressed.write(tmp, 0, l);
+                }
+                Assert.assertEquals(s, new String(decompressed.toByteArray(), StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    @Test
+    public void testDecompressionMultipleMembers() throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        buf.write(gzip("some kind "));
+        buf.write(gzip("of text"));
+        final ByteArrayEntity entity = new ByteArrayEntity(buf.toByteArray());
+        Assert.assertEquals("some kind of text",
+                EntityUtils.toString(new GzipDecompressingEntity(entity), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testDecompressionReturnsInflaterToPool() throws Exception {
+        final ZlibPool pool = new ZlibPool(1, 512);
+        final Inflater inflater = pool.leaseInflater(true);
+        pool.releaseInflater(inflater, true);
+        final ByteArrayEntity entity = new ByteArrayEntity(gzip("some kind of text"));
+        Assert.assertEquals("some kind of text",
+                EntityUtils.toString(new GzipDecompressingEntity(entity, pool), StandardCharsets.US_ASCII));
+        Assert.assertSame(inflater, pool.leaseInflater(true));
+    }
+
 }
@@ -0,0 +1,85 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestZlibPool {
+
+    @Test
+    public void testInflaterReuse() throws Exception {
+        final ZlibPool pool = new ZlibPool(2, 1024);
+        final Inflater inflater1 = pool.leaseInflater(true);
+        pool.releaseInflater(inflater1, true);
+        Assert.assertSame(inflater1, pool.leaseInflater(true));
+        Assert.assertNotSame(inflater1, pool.leaseInflater(true));
+    }
+
+    @Test
+    public void testInflatersPooledByFormat() throws Exception {
+        final ZlibPool pool = new ZlibPool(2, 1024);
+        final Inflater inflater = pool.leaseInflater(true);
+        pool.releaseInflater(inflater, true);
+        Assert.assertNotSame(inflater, pool.leaseInflater(false));
+        Assert.assertSame(inflater, pool.leaseInflater(true));
+    }
+
+    @Test
+    public void testPoolBounded() throws Exception {
+        final ZlibPool pool = new ZlibPool(1, 1024);
+        final Deflater deflater1 = pool.leaseDeflater();
+        final Deflater deflater2 = pool.leaseDeflater();
+        pool.releaseDeflater(deflater1);
+        pool.releaseDeflater(deflater2);
+        Assert.assertSame(deflater1, pool.leaseDeflater());
+        Assert.assertNotSame(deflater2, pool.leaseDeflater());
+    }
+
+    @Test
+    public void testBufferReuse() throws Exception {
+        final ZlibPool pool = new ZlibPool(2, 1024);
+        final byte[] buffer = pool.leaseBuffer();
+        Assert.assertEquals(1024, buffer.length);
+        pool.releaseBuffer(buffer);
+        pool.releaseBuffer(new byte[10]);
+        Assert.assertSame(buffer, pool.leaseBuffer());
+        Assert.assertNotSame(buffer, pool.leaseBuffer());
+    }
+
+    @Test
+    public void testPoolingDisabled() throws Exception {
+        final ZlibPool pool = new ZlibPool(0, 1024);
+        final Inflater inflater = pool.leaseInflater(false);
+        pool.releaseInflater(inflater, false);
+        Assert.assertNotSame(inflater, pool.leaseInflater(false));
+    }
+
+}
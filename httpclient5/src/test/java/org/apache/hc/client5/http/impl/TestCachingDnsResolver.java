@@ -0,0 +1,199 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link CachingDnsResolver}.
+ */
+public class TestCachingDnsResolver {
+
+    private DnsResolver backend;
+    private InetAddress address1;
+    private InetAddress address2;
+    private CachingDnsResolver resolver;
+
+    @Before
+    public void setup() throws Exception {
+        backend = Mockito.mock(DnsResolver.class);
+        address1 = InetAddress.getByAddress("somehost", new byte[] { 10, 0, 0, 1 });
+        address2 = InetAddress.getByAddress("somehost", new byte[] { 10, 0, 0, 2 });
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        if (resolver != null) {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        Mockito.when(backend.resolve("somehost")).thenReturn(new InetAddress[] { address1 });
+        resolver = new CachingDnsResolver(backend, 1, 0, 0, TimeUnit.MINUTES, 10);
+
+        Assert.assertArrayEquals(new InetAddress[] { address1 }, resolver.resolve("somehost"));
+        Assert.assertArrayEquals(new InetAddress[] { address1 }, resolver.resolve("somehost"));
+
+        Mockito.verify(backend, Mockito.times(1)).resolve("somehost");
+        Assert.assertEquals(1, resolver.getHitCount());
+        Assert.assertEquals(1, resolver.getMissCount());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        Mockito.when(backend.resolve("somehost"))
+                .thenReturn(new InetAddress[] { address1 })
+                .thenReturn(new InetAddress[] { address2 });
+        resolver = new CachingDnsResolver(backend, 50, 0, 0, TimeUnit.MILLISECONDS, 10);
+
+        Assert.assertArrayEquals(new InetAddress[] { address1 }, resolver.resolve("somehost"));
+        Thread.sleep(100);
+        Assert.assertArrayEquals(new InetAddress[] { address2 }, resolver.resolve("somehost"));
+
+        Mockito.verify(backend, Mockito.times(2)).resolve("somehost");
+        Assert.assertEquals(0, resolver.getHitCount());
+        Assert.assertEquals(2, resolver.getMissCount());
+    }
+
+    @Test
+    public void testStaleEntryRefreshedInBackground() throws Exception {
+        Mockito.when(backend.resolve("somehost"))
+                .thenReturn(new InetAddress[] { address1 })
+                .thenReturn(new InetAddress[] { address2 });
+        resolver = new CachingDnsResolver(backend, 50, 60000, 0, TimeUnit.MILLISECONDS, 10);
+
+        Assert.assertArrayEquals(new InetAddress[] { address1 }, resolver.resolve("somehost"));
+        Thread.sleep(100);
+        Assert.assertArrayEquals(new InetAddress[] { address1 }, resolver.resolve("somehost"));
+
+        Mockito.verify(backend, Mockito.timeout(1000).times(2)).resolve("somehost");
+        Thread.sleep(50);
+        Assert.assertArrayEquals(new InetAddress[] { address2 }, resolver.resolve("somehost"));
+        Assert.assertEquals(1, resolver.getMissCount());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        Mockito.when(backend.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        resolver = new CachingDnsResolver(backend, 1, 0, 1, TimeUnit.MINUTES, 10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("somehost");
+                Assert.fail("UnknownHostException expected");
+            } catch (final UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(backend, Mockito.times(1)).resolve("somehost");
+    }
+
+    @Test
+    public void testNegativeCachingDisabled() throws Exception {
+        Mockito.when(backend.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        resolver = new CachingDnsResolver(backend, 1, 0, 0, TimeUnit.MINUTES, 10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("somehost");
+                Assert.fail("UnknownHostException expected");
+            } catch (final UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(backend, Mockito.times(2)).resolve("somehost");
+    }
+
+    @Test
+    public void testConcurrentLookupsMerged() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Mockito.when(backend.resolve("somehost")).thenAnswer(new Answer<InetAddress[]>() {
+
+            @Override
+            public InetAddress[] answer(final InvocationOnMock invocation) throws Throwable {
+                latch.await(5, TimeUnit.SECONDS);
+                return new InetAddress[] { address1 };
+            }
+
+        });
+        resolver = new CachingDnsResolver(backend, 1, 0, 0, TimeUnit.MINUTES, 10);
+
+        final InetAddress[][] results = new InetAddress[5][];
+        final Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int n = i;
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        results[n] = resolver.resolve("somehost");
+                    } catch (final UnknownHostException ignore) {
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        Thread.sleep(100);
+        latch.countDown();
+        for (final Thread thread: threads) {
+            thread.join(5000);
+        }
+        for (final InetAddress[] result: results) {
+            Assert.assertArrayEquals(new InetAddress[] { address1 }, result);
+        }
+        Mockito.verify(backend, Mockito.times(1)).resolve("somehost");
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        Mockito.when(backend.resolve(Mockito.anyString())).thenReturn(new InetAddress[] { address1 });
+        resolver = new CachingDnsResolver(backend, 1, 0, 0, TimeUnit.MINUTES, 2);
+
+        resolver.resolve("host1");
+        resolver.resolve("host2");
+        resolver.resolve("host3");
+        resolver.resolve("host3");
+
+        Assert.assertEquals(1, resolver.getHitCount());
+        Assert.assertEquals(3, resolver.getMissCount());
+    }
+
+}
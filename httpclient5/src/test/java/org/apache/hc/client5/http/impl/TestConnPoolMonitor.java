@@ -0,0 +1,146 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestConnPoolMonitor {
+
+    private HttpRoute route;
+    private ConnPoolMonitor monitor;
+
+    @Before
+    public void setup() {
+        route = new HttpRoute(new HttpHost("somehost", 80));
+        monitor = new ConnPoolMonitor();
+    }
+
+    @Test
+    public void testPendingLeases() throws Exception {
+        @SuppressWarnings("unchecked")
+        final FutureCallback<PoolEntry<HttpRoute, Closeable>> callback = Mockito.mock(FutureCallback.class);
+        final FutureCallback<PoolEntry<HttpRoute, Closeable>> callback1 = monitor.leaseRequested(route, callback);
+        final FutureCallback<PoolEntry<HttpRoute, Closeable>> callback2 = monitor.leaseRequested(route, callback);
+        final FutureCallback<PoolEntry<HttpRoute, Closeable>> callback3 = monitor.leaseRequested(route, null);
+        Assert.assertEquals(3, monitor.getPending(route));
+
+        final PoolEntry<HttpRoute, Closeable> entry = new PoolEntry<>(route);
+        callback1.completed(entry);
+        Mockito.verify(callback).completed(entry);
+        final Exception ex = new Exception();
+        callback2.failed(ex);
+        Mockito.verify(callback).failed(ex);
+        callback3.cancelled();
+        Assert.assertEquals(0, monitor.getPending(route));
+        callback3.cancelled();
+        Assert.assertEquals(0, monitor.getPending(route));
+
+        final ConnPoolMonitor.RouteSnapshot snapshot = monitor.getRouteSnapshots().get(route);
+        Assert.assertEquals(0, snapshot.getPending());
+        Assert.assertEquals(2, snapshot.getFailures());
+        Assert.assertEquals(1, snapshot.getLeaseWait().getCount());
+    }
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        final PoolEntry<HttpRoute, Closeable> entry = new PoolEntry<>(route);
+        monitor.entryLeased(entry);
+        entry.assignConnection(Mockito.mock(Closeable.class));
+        monitor.connectionAssigned(entry);
+        monitor.entryReleased(entry, true);
+
+        monitor.entryLeased(entry);
+        List<ConnPoolMonitor.ConnectionSnapshot> snapshots = monitor.getConnectionSnapshots();
+        Assert.assertEquals(1, snapshots.size());
+        Assert.assertEquals(1, snapshots.get(0).getReuseCount());
+        Assert.assertTrue(snapshots.get(0).isLeased());
+        Assert.assertNotNull(snapshots.get(0).getConnectionId());
+        monitor.entryReleased(entry, true);
+
+        entry.discardConnection();
+        entry.assignConnection(Mockito.mock(Closeable.class));
+        monitor.entryLeased(entry);
+        snapshots = monitor.getConnectionSnapshots();
+        Assert.assertEquals(0, snapshots.get(0).getReuseCount());
+        monitor.entryReleased(entry, false);
+        Assert.assertTrue(monitor.getConnectionSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testPurgeClosedConnections() throws Exception {
+        final PoolEntry<HttpRoute, Closeable> entry = new PoolEntry<>(route);
+        entry.assignConnection(Mockito.mock(Closeable.class));
+        monitor.entryLeased(entry);
+        monitor.entryReleased(entry, true);
+        monitor.purge();
+        Assert.assertEquals(1, monitor.getConnectionSnapshots().size());
+
+        entry.discardConnection();
+        monitor.purge();
+        Assert.assertTrue(monitor.getConnectionSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        final PoolEntry<HttpRoute, Closeable> entry1 = new PoolEntry<>(route);
+        final PoolEntry<HttpRoute, Closeable> entry2 = new PoolEntry<>(route);
+        monitor.entryLeased(entry1);
+        Assert.assertTrue(monitor.findLeakedLeases().isEmpty());
+
+        monitor.setLeakThreshold(1, TimeUnit.MILLISECONDS);
+        monitor.setCaptureLeaseStack(true);
+        monitor.entryLeased(entry2);
+        Thread.sleep(10);
+
+        final List<ConnPoolMonitor.ConnectionSnapshot> leaks = monitor.findLeakedLeases();
+        Assert.assertEquals(2, leaks.size());
+        int withStack = 0;
+        for (final ConnPoolMonitor.ConnectionSnapshot leak: leaks) {
+            Assert.assertTrue(leak.getLeaseDuration() >= 10);
+            if (leak.getLeaseStack() != null) {
+                withStack++;
+            }
+        }
+        Assert.assertEquals(1, withStack);
+
+        monitor.entryReleased(entry1, true);
+        monitor.entryReleased(entry2, true);
+        Assert.assertTrue(monitor.findLeakedLeases().isEmpty());
+    }
+
+}
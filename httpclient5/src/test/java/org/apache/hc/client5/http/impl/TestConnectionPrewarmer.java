@@ -0,0 +1,95 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link ConnectionPrewarmer}.
+ */
+public class TestConnectionPrewarmer {
+
+    @Test
+    public void testPrewarmImmediately() throws Exception {
+        @SuppressWarnings("unchecked")
+        final ConnPoolWarmer<String> cm = Mockito.mock(ConnPoolWarmer.class);
+        Mockito.when(cm.prewarm("route", 2, 3000, TimeUnit.MILLISECONDS)).thenReturn(2);
+        final ConnectionPrewarmer<String> connectionPrewarmer = new ConnectionPrewarmer<>(cm,
+                Collections.singletonMap("route", 2), 1, TimeUnit.HOURS, 3, TimeUnit.SECONDS);
+        connectionPrewarmer.start();
+
+        Mockito.verify(cm, Mockito.timeout(1000)).prewarm("route", 2, 3000, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(connectionPrewarmer.isRunning());
+
+        connectionPrewarmer.shutdown();
+        connectionPrewarmer.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertFalse(connectionPrewarmer.isRunning());
+    }
+
+    @Test
+    public void testPrewarmOnce() throws Exception {
+        @SuppressWarnings("unchecked")
+        final ConnPoolWarmer<String> cm = Mockito.mock(ConnPoolWarmer.class);
+        final ConnectionPrewarmer<String> connectionPrewarmer = new ConnectionPrewarmer<>(cm,
+                Collections.singletonMap("route", 2), 0, TimeUnit.SECONDS, 3, TimeUnit.SECONDS);
+        connectionPrewarmer.start();
+        connectionPrewarmer.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertFalse(connectionPrewarmer.isRunning());
+
+        Mockito.verify(cm, Mockito.times(1)).prewarm("route", 2, 3000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testRetryWhilePoolNotReady() throws Exception {
+        @SuppressWarnings("unchecked")
+        final ConnPoolWarmer<String> cm = Mockito.mock(ConnPoolWarmer.class);
+        Mockito.when(cm.prewarm("route", 2, 3000, TimeUnit.MILLISECONDS))
+                .thenThrow(new IllegalStateException("Not running"))
+                .thenReturn(2);
+        final ConnectionPrewarmer<String> connectionPrewarmer = new ConnectionPrewarmer<>(cm,
+                Collections.singletonMap("route", 2), 0, TimeUnit.SECONDS, 3, TimeUnit.SECONDS);
+        connectionPrewarmer.start();
+
+        Thread.sleep(500);
+
+        // No busy spinning while the pool is not ready
+        Mockito.verify(cm, Mockito.times(1)).prewarm("route", 2, 3000, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(connectionPrewarmer.isRunning());
+
+        connectionPrewarmer.awaitTermination(3, TimeUnit.SECONDS);
+        Assert.assertFalse(connectionPrewarmer.isRunning());
+
+        Mockito.verify(cm, Mockito.times(2)).prewarm("route", 2, 3000, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHedgingPolicy {
+
+    private final HttpRoute route = new HttpRoute(new HttpHost("localhost", 80));
+
+    @Test
+    public void testIdempotentMethodsAreHedgeable() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy();
+        Assert.assertTrue(hedgingPolicy.isHedgeable(new BasicHttpRequest("GET", "/")));
+        Assert.assertTrue(hedgingPolicy.isHedgeable(new BasicHttpRequest("HEAD", "/")));
+        Assert.assertTrue(hedgingPolicy.isHedgeable(new BasicHttpRequest("OPTIONS", "/")));
+        Assert.assertFalse(hedgingPolicy.isHedgeable(new BasicHttpRequest("POST", "/")));
+        Assert.assertFalse(hedgingPolicy.isHedgeable(new BasicHttpRequest("PUT", "/")));
+    }
+
+    @Test
+    public void testDefaultDelayUntilEnoughSamples() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.9d, 250, TimeUnit.MILLISECONDS, null);
+        Assert.assertEquals(250, hedgingPolicy.getHedgeDelay(route));
+        for (int i = 0; i < 5; i++) {
+            hedgingPolicy.recordLatency(route, 10, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertEquals(250, hedgingPolicy.getHedgeDelay(route));
+    }
+
+    @Test
+    public void testPercentileDelay() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.9d, 250, TimeUnit.MILLISECONDS, null);
+        for (int i = 1; i <= 100; i++) {
+            hedgingPolicy.recordLatency(route, i, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertEquals(90, hedgingPolicy.getHedgeDelay(route));
+        final HttpRoute other = new HttpRoute(new HttpHost("otherhost", 80));
+        Assert.assertEquals(250, hedgingPolicy.getHedgeDelay(other));
+    }
+
+    @Test
+    public void testPercentileDelayOfRecentSamples() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.5d, 250, TimeUnit.MILLISECONDS, null);
+        for (int i = 0; i < 1000; i++) {
+            hedgingPolicy.recordLatency(route, 500, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < 1000; i++) {
+            hedgingPolicy.recordLatency(route, 20, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertEquals(20, hedgingPolicy.getHedgeDelay(route));
+    }
+
+    @Test
+    public void testDelayIsAtLeastOneMillisecond() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.9d, 250, TimeUnit.MILLISECONDS, null);
+        for (int i = 0; i < 100; i++) {
+            hedgingPolicy.recordLatency(route, 10, TimeUnit.MICROSECONDS);
+        }
+        Assert.assertEquals(1, hedgingPolicy.getHedgeDelay(route));
+    }
+
+    @Test
+    public void testHedgeBudget() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(
+                0.9d, 250, TimeUnit.MILLISECONDS, new RetryBudget(0.5d, 1));
+        Assert.assertTrue(hedgingPolicy.tryHedge(route));
+        Assert.assertFalse(hedgingPolicy.tryHedge(route));
+        hedgingPolicy.deposit(route);
+        Assert.assertFalse(hedgingPolicy.tryHedge(route));
+        hedgingPolicy.deposit(route);
+        Assert.assertTrue(hedgingPolicy.tryHedge(route));
+        hedgingPolicy.hedgeWon(route);
+        Assert.assertEquals(2, hedgingPolicy.getHedgesSent());
+        Assert.assertEquals(1, hedgingPolicy.getHedgesWon());
+    }
+
+    @Test
+    public void testHedgeCountersPerRoute() {
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.9d, 250, TimeUnit.MILLISECONDS, null);
+        final HttpRoute other = new HttpRoute(new HttpHost("otherhost", 80));
+        Assert.assertTrue(hedgingPolicy.tryHedge(route));
+        Assert.assertTrue(hedgingPolicy.tryHedge(route));
+        Assert.assertTrue(hedgingPolicy.tryHedge(other));
+        hedgingPolicy.hedgeWon(other);
+        Assert.assertEquals(2, hedgingPolicy.getHedgesSent(route));
+        Assert.assertEquals(0, hedgingPolicy.getHedgesWon(route));
+        Assert.assertEquals(1, hedgingPolicy.getHedgesSent(other));
+        Assert.assertEquals(1, hedgingPolicy.getHedgesWon(other));
+        Assert.assertEquals(3, hedgingPolicy.getHedgesSent());
+        Assert.assertEquals(1, hedgingPolicy.getHedgesWon());
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testEmptySnapshot() {
+        final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(0, snapshot.getMax());
+        Assert.assertEquals(0, snapshot.getValueAtQuantile(0.99d));
+        Assert.assertEquals(0.0d, snapshot.getMean(), 0.0d);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(20, snapshot.getCount());
+        Assert.assertEquals(1, snapshot.getMin());
+        Assert.assertEquals(20, snapshot.getMax());
+        Assert.assertEquals(10.5d, snapshot.getMean(), 0.001d);
+        Assert.assertEquals(10, snapshot.getValueAtQuantile(0.5d));
+        Assert.assertEquals(19, snapshot.getValueAtQuantile(0.95d));
+        Assert.assertEquals(20, snapshot.getValueAtQuantile(1.0d));
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 100000; value++) {
+            final int index = LatencyHistogram.indexOf(value);
+            final long highest = LatencyHistogram.highestValueAt(index);
+            Assert.assertTrue(highest >= value);
+            Assert.assertTrue(highest - value <= value / 16);
+            if (index > 0) {
+                Assert.assertTrue(LatencyHistogram.highestValueAt(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testRelativeError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        final long p50 = snapshot.getValueAtQuantile(0.5d);
+        final long p99 = snapshot.getValueAtQuantile(0.99d);
+        Assert.assertTrue(p50 >= 500000 && p50 < 500000 * 1.0625);
+        Assert.assertTrue(p99 >= 990000 && p99 < 990000 * 1.0625);
+        Assert.assertEquals(1000000, snapshot.getValueAtQuantile(1.0d));
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMax());
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getValueAtQuantile(1.0d));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        final CountDownLatch latch = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i);
+                    }
+                    latch.countDown();
+                }
+
+            });
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executorService.shutdown();
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(40000, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(9999, snapshot.getMax());
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RetryBudget}.
+ */
+public class TestRetryBudget {
+
+    private static final HttpRoute ROUTE1 = new HttpRoute(new HttpHost("somehost", 80));
+    private static final HttpRoute ROUTE2 = new HttpRoute(new HttpHost("otherhost", 80));
+
+    @Test
+    public void testInitialBalance() throws Exception {
+        final RetryBudget budget = new RetryBudget(0.5d, 2);
+        Assert.assertEquals(2.0d, budget.getBalance(ROUTE1), 0.0001d);
+        Assert.assertTrue(budget.tryWithdraw(ROUTE1));
+        Assert.assertTrue(budget.tryWithdraw(ROUTE1));
+        Assert.assertFalse(budget.tryWithdraw(ROUTE1));
+        Assert.assertEquals(0.0d, budget.getBalance(ROUTE1), 0.0001d);
+        Assert.assertTrue(budget.tryWithdraw(ROUTE2));
+    }
+
+    @Test
+    public void testDeposit() throws Exception {
+        final RetryBudget budget = new RetryBudget(0.5d, 2);
+        Assert.assertTrue(budget.tryWithdraw(ROUTE1));
+        Assert.assertTrue(budget.tryWithdraw(ROUTE1));
+        budget.deposit(ROUTE1);
+        Assert.assertFalse(budget.tryWithdraw(ROUTE1));
+        budget.deposit(ROUTE1);
+        Assert.assertTrue(budget.tryWithdraw(ROUTE1));
+        Assert.assertFalse(budget.tryWithdraw(ROUTE1));
+    }
+
+    @Test
+    public void testBalanceCapped() throws Exception {
+        final RetryBudget budget = new RetryBudget(1.0d, 3);
+        for (int i = 0; i < 10; i++) {
+            budget.deposit(ROUTE1);
+        }
+        Assert.assertEquals(3.0d, budget.getBalance(ROUTE1), 0.0001d);
+    }
+
+    @Test
+    public void testEmptyBudget() throws Exception {
+        final RetryBudget budget = new RetryBudget(0.0d, 0);
+        budget.deposit(ROUTE1);
+        Assert.assertFalse(budget.tryWithdraw(ROUTE1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRatio() throws Exception {
+        new RetryBudget(1.5d, 1);
+    }
+
+}
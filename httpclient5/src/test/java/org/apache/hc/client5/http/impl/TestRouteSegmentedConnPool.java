@@ -0,0 +1,289 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link RouteSegmentedConnPool}.
+ */
+public class TestRouteSegmentedConnPool {
+
+    @Test
+    public void testLeaseRelease() throws Exception {
+        final Closeable conn = Mockito.mock(Closeable.class);
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(2, 10);
+
+        final Future<PoolEntry<String, Closeable>> future1 = pool.lease("somehost", null);
+        Assert.assertTrue(future1.isDone());
+        final PoolEntry<String, Closeable> entry1 = future1.get();
+        Assert.assertNotNull(entry1);
+        Assert.assertFalse(entry1.hasConnection());
+        entry1.assignConnection(conn);
+
+        PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(1, totals.getLeased());
+        Assert.assertEquals(0, totals.getAvailable());
+
+        pool.release(entry1, true);
+
+        totals = pool.getTotalStats();
+        Assert.assertEquals(0, totals.getLeased());
+        Assert.assertEquals(1, totals.getAvailable());
+
+        final Future<PoolEntry<String, Closeable>> future2 = pool.lease("somehost", null);
+        Assert.assertTrue(future2.isDone());
+        Assert.assertSame(entry1, future2.get());
+        Assert.assertSame(conn, future2.get().getConnection());
+
+        pool.release(entry1, false);
+        Mockito.verify(conn).close();
+
+        totals = pool.getTotalStats();
+        Assert.assertEquals(0, totals.getLeased());
+        Assert.assertEquals(0, totals.getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMaxPerRouteLimit() throws Exception {
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(1, 10);
+
+        final Future<PoolEntry<String, Closeable>> future1 = pool.lease("somehost", null);
+        final Future<PoolEntry<String, Closeable>> future2 = pool.lease("somehost", null);
+        final Future<PoolEntry<String, Closeable>> future3 = pool.lease("otherhost", null);
+        Assert.assertTrue(future1.isDone());
+        Assert.assertFalse(future2.isDone());
+        Assert.assertTrue(future3.isDone());
+
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(1, stats.getLeased());
+        Assert.assertEquals(1, stats.getPending());
+        Assert.assertEquals(1, stats.getMax());
+
+        final PoolEntry<String, Closeable> entry1 = future1.get();
+        entry1.assignConnection(Mockito.mock(Closeable.class));
+        pool.release(entry1, true);
+
+        Assert.assertTrue(future2.isDone());
+        Assert.assertSame(entry1, future2.get());
+        Assert.assertEquals(0, pool.getStats("somehost").getPending());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testMaxTotalEvictsIdleOfOtherRoute() throws Exception {
+        final Closeable conn1 = Mockito.mock(Closeable.class);
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(2, 2);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("host1", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, Closeable> entry2 = pool.lease("host1", null).get();
+        entry2.assignConnection(Mockito.mock(Closeable.class));
+
+        final Future<PoolEntry<String, Closeable>> future3 = pool.lease("host2", null);
+        Assert.assertFalse(future3.isDone());
+        Assert.assertEquals(1, pool.getTotalStats().getPending());
+
+        pool.release(entry1, true);
+
+        Assert.assertTrue(future3.isDone());
+        final PoolEntry<String, Closeable> entry3 = future3.get();
+        Assert.assertEquals("host2", entry3.getRoute());
+        Mockito.verify(conn1).close();
+
+        final PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(2, totals.getLeased());
+        Assert.assertEquals(0, totals.getAvailable());
+        Assert.assertEquals(0, totals.getPending());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testNonReusableReleaseWakesOtherRoute() throws Exception {
+        final Closeable conn1 = Mockito.mock(Closeable.class);
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(1, 1);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("host1", null).get();
+        entry1.assignConnection(conn1);
+
+        final Future<PoolEntry<String, Closeable>> future2 = pool.lease("host2", null);
+        Assert.assertFalse(future2.isDone());
+
+        pool.release(entry1, false);
+        Mockito.verify(conn1).close();
+
+        Assert.assertTrue(future2.isDone());
+        Assert.assertEquals("host2", future2.get().getRoute());
+        Assert.assertEquals(0, pool.getTotalStats().getPending());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCancelledLeaseWakesOtherRoute() throws Exception {
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(1, 1);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("host1", null).get();
+        entry1.assignConnection(Mockito.mock(Closeable.class));
+
+        final Future<PoolEntry<String, Closeable>> future2 = pool.lease("host1", null);
+        final Future<PoolEntry<String, Closeable>> future3 = pool.lease("host2", null);
+        Assert.assertFalse(future2.isDone());
+        Assert.assertFalse(future3.isDone());
+        future2.cancel(true);
+
+        // the entry handed over to the cancelled request goes back to the pool
+        // and gets evicted in favor of the other route
+        pool.release(entry1, true);
+
+        Assert.assertTrue(future3.isDone());
+        Assert.assertEquals("host2", future3.get().getRoute());
+        Assert.assertEquals(0, pool.getTotalStats().getPending());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRequestsBlockedOnTotalCounted() throws Exception {
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(1, 2);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("host1", null).get();
+        entry1.assignConnection(Mockito.mock(Closeable.class));
+        final PoolEntry<String, Closeable> entry2 = pool.lease("host2", null).get();
+        entry2.assignConnection(Mockito.mock(Closeable.class));
+
+        // blocked on the route limit
+        final Future<PoolEntry<String, Closeable>> future3 = pool.lease("host1", null);
+        Assert.assertFalse(future3.isDone());
+        Assert.assertEquals(0, pool.getTotalBlocked());
+
+        // blocked on the total limit
+        final Future<PoolEntry<String, Closeable>> future4 = pool.lease("host3", null);
+        final Future<PoolEntry<String, Closeable>> future5 = pool.lease("host4", null);
+        Assert.assertFalse(future4.isDone());
+        Assert.assertFalse(future5.isDone());
+        Assert.assertEquals(2, pool.getTotalBlocked());
+
+        pool.release(entry2, false);
+
+        // either of the other routes gets the freed slot
+        Assert.assertTrue(future4.isDone() ^ future5.isDone());
+        Assert.assertEquals(1, pool.getTotalBlocked());
+
+        final Future<PoolEntry<String, Closeable>> leased = future4.isDone() ? future4 : future5;
+        final Future<PoolEntry<String, Closeable>> blocked = future4.isDone() ? future5 : future4;
+        blocked.cancel(true);
+        pool.release(leased.get(), false);
+
+        Assert.assertEquals(0, pool.getTotalBlocked());
+        Assert.assertFalse(future3.isDone());
+        Assert.assertEquals(1, pool.getTotalStats().getPending());
+        pool.shutdown();
+        Assert.assertEquals(0, pool.getTotalBlocked());
+    }
+
+    @Test
+    public void testStateMatching() throws Exception {
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(2, 10);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(Mockito.mock(Closeable.class));
+        entry1.updateConnection(-1, TimeUnit.MILLISECONDS, "some-state");
+        pool.release(entry1, true);
+
+        final PoolEntry<String, Closeable> entry2 = pool.lease("somehost", null).get();
+        Assert.assertNotSame(entry1, entry2);
+        final PoolEntry<String, Closeable> entry3 = pool.lease("somehost", "some-state").get();
+        Assert.assertSame(entry1, entry3);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseTimeout() throws Exception {
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(1, 1);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(Mockito.mock(Closeable.class));
+        final Future<PoolEntry<String, Closeable>> future2 = pool.lease("somehost", null, 10, TimeUnit.MILLISECONDS, null);
+        Assert.assertFalse(future2.isDone());
+
+        Thread.sleep(50);
+        pool.release(entry1, true);
+
+        Assert.assertTrue(future2.isDone());
+        try {
+            future2.get();
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException expected) {
+        }
+        Assert.assertEquals(1, pool.getTotalStats().getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCloseIdle() throws Exception {
+        final Closeable conn1 = Mockito.mock(Closeable.class);
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(2, 10);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        entry1.updateConnection(-1, TimeUnit.MILLISECONDS, null);
+        pool.release(entry1, true);
+
+        Thread.sleep(20);
+        pool.closeIdle(10, TimeUnit.MILLISECONDS);
+
+        Mockito.verify(conn1).close();
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        final Closeable conn1 = Mockito.mock(Closeable.class);
+        final RouteSegmentedConnPool<String, Closeable> pool = new RouteSegmentedConnPool<>(1, 10);
+
+        final PoolEntry<String, Closeable> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final Future<PoolEntry<String, Closeable>> future2 = pool.lease("somehost", null);
+
+        pool.shutdown();
+
+        Assert.assertTrue(future2.isCancelled());
+        Mockito.verify(conn1).close();
+        Assert.assertTrue(pool.isShutdown());
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cookie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrentCookieStore}.
+ */
+public class TestConcurrentCookieStore {
+
+    private static final PublicSuffixMatcher MATCHER = new PublicSuffixMatcher(
+            Arrays.asList("com", "co.uk"), Collections.<String>emptyList());
+
+    private static BasicClientCookie createCookie(final String name, final String domain, final String path) {
+        final BasicClientCookie cookie = new BasicClientCookie(name, "value");
+        cookie.setDomain(domain);
+        cookie.setPath(path);
+        cookie.setAttribute(Cookie.DOMAIN_ATTR, domain);
+        return cookie;
+    }
+
+    private static List<String> names(final List<Cookie> cookies) {
+        final List<String> names = new ArrayList<>();
+        for (final Cookie cookie : cookies) {
+            names.add(cookie.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testBasics() throws Exception {
+        final ConcurrentCookieStore store = new ConcurrentCookieStore(MATCHER, 10, 100);
+        store.addCookie(new BasicClientCookie("name1", "value1"));
+        store.addCookie(new BasicClientCookie("name2", "value2"));
+        store.addCookie(new BasicClientCookie("name1", "value3"));
+        final List<Cookie> l = store.getCookies();
+        Assert.assertEquals(2, l.size());
+        for (final Cookie cookie : l) {
+            if (cookie.getName().equals("name1")) {
+                Assert.assertEquals("value3", cookie.getValue());
+            }
+        }
+        store.clear();
+        Assert.assertEquals(0, store.getCookies().size());
+    }
+
+    @Test
+    public void testExpiredCookie() throws Exception {
+        final ConcurrentCookieStore store = new ConcurrentCookieStore(MATCHER, 10, 100);
+        final BasicClientCookie cookie = createCookie("name1", "www.example.com", "/");
+        store.addCookie(cookie);
+        final BasicClientCookie expired = createCookie("name1", "www.example.com", "/");
+        expired.setExpiryDate(new Date(System.currentTimeMillis() - 10000L));
+        store.addCookie(expired);
+        Assert.assertEquals(0, store.getCookies().size());
+    }
+
+    @Test
+    public void testCandidateLookup() throws Exception {
+        final ConcurrentCookieStore store = new ConcurrentCookieStore(MATCHER, 10, 100);
+        store.addCookie(createCookie("c1", ".example.com", "/"));
+        store.addCookie(createCookie("c2", "www.example.com", "/a"));
+        store.addCookie(createCookie("c3", "www.example.com", "/a/b/"));
+        store.addCookie(createCookie("c4", "www.example.com", "/ab"));
+        store.addCookie(createCookie("c5", "other.example.com", "/"));
+        store.addCookie(createCookie("c6", "example.co.uk", "/"));
+        store.addCookie(createCookie("c7", "WWW.Example.com", "/a/b/c"));
+
+        Assert.assertEquals(Arrays.asList("c1", "c2", "c3", "c7"), names(store.getCookies(
+                new CookieOrigin("www.example.com", 80, "/a/b/c", false), new Date())));
+        Assert.assertEquals(Arrays.asList("c1", "c2"), names(store.getCookies(
+                new CookieOrigin("www.example.com", 80, "/a", false), new Date())));
+        Assert.assertEquals(Arrays.asList("c1", "c4"), names(store.getCookies(
+                new CookieOrigin("www.example.com", 80, "/ab/", false), new Date())));
+        Assert.assertEquals(Arrays.asList("c1"), names(store.getCookies(
+                new CookieOrigin("sub.www1.example.com", 80, "/a", false), new Date())));
+        Assert.assertEquals(Collections.<String>emptyList(), names(store.getCookies(
+                new CookieOrigin("example.org", 80, "/", false), new Date())));
+    }
+
+    @Test
+    public void testLazyEviction() throws Exception {
+        final ConcurrentCookieStore store = new ConcurrentCookieStore(MATCHER, 10, 100);
+        final long now = System.currentTimeMillis();
+        final BasicClientCookie cookie1 = createCookie("c1", "www.example.com", "/");
+        cookie1.setExpiryDate(new Date(now + 10000L));
+        store.addCookie(cookie1);
+        final BasicClientCookie cookie2 = createCookie("c2", "www.example.com", "/");
+        cookie2.setExpiryDate(new Date(now + 20000L));
+        store.addCookie(cookie2);
+        store.addCookie(createCookie("c3", "www.example.com", "/"));
+
+        final CookieOrigin origin = new CookieOrigin("www.example.com", 80, "/", false);
+        Assert.assertEquals(Arrays.asList("c1", "c2", "c3"), names(store.getCookies(origin, new Date(now))));
+        Assert.assertEquals(Arrays.asList("c2", "c3"), names(store.getCookies(origin, new Date(now + 15000L))));
+        Assert.assertEquals(Arrays.asList("c2", "c3"), names(store.getCookies()));
+        Assert.assertFalse(store.clearExpired(new Date(now + 15000L)));
+        Assert.assertTrue(store.clearExpired(new Date(now + 25000L)));
+        Assert.assertEquals(Arrays.asList("c3"), names(store.getCookies()));
+    }
+
+    @Test
+    public void testPerDomainLimit() throws Exception {
+        final ConcurrentCookieStore store = new ConcurrentCookieStore(MATCHER, 2, 100);
+        store.addCookie(createCookie("c1", "a.example.com", "/"));
+        store.addCookie(createCookie("c2", "b.example.com", "/"));
+        store.addCookie(createCookie("c3", "other.com", "/"));
+        store.addCookie(createCookie("c4", "example.com", "/"));
+        Assert.assertEquals(Arrays.asList("c2", "c3", "c4"), names(store.getCookies()));
+
+        // Replacing a cookie makes it the most recently set one
+        store.addCookie(createCookie("c2", "b.example.com", "/"));
+        store.addCookie(createCookie("c5", "c.example.com", "/"));
+        Assert.assertEquals(Arrays.asList("c2", "c3", "c5"), names(store.getCookies()));
+    }
+
+    @Test
+    public void testTotalLimit() throws Exception {
+        final ConcurrentCookieStore store = new ConcurrentCookieStore(MATCHER, 10, 3);
+        final BasicClientCookie expiring = createCookie("c1", "one.com", "/");
+        expiring.setExpiryDate(new Date(System.currentTimeMillis() + 200L));
+        store.addCookie(expiring);
+        store.addCookie(createCookie("c2", "two.com", "/"));
+        store.addCookie(createCookie("c3", "three.com", "/"));
+        store.addCookie(createCookie("c4", "four.com", "/"));
+        Assert.assertEquals(Arrays.asList("c2", "c3", "c4"), names(store.getCookies()));
+        store.addCookie(createCookie("c5", "five.com", "/"));
+        Assert.assertEquals(Arrays.asList("c3", "c4", "c5"), names(store.getCookies()));
+    }
+
+}
@@ -0,0 +1,361 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.integration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.impl.HedgingPolicy;
+import org.apache.hc.client5.http.impl.RetryBudget;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.logging.WireCapture;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.sync.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.sync.DefaultBackoffStrategy;
+import org.apache.hc.client5.http.impl.sync.DefaultServiceUnavailableRetryStrategy;
+import org.apache.hc.client5.http.localserver.LocalServerTestBase;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.HttpRequestHandler;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+/**
+ * Redirect, authentication and re-execution tests for the async client.
+ */
+public class TestAsyncClientRequestExecution extends LocalServerTestBase {
+
+    private final AtomicInteger unavailableCount = new AtomicInteger();
+    private final AtomicInteger slowCount = new AtomicInteger();
+
+    private CloseableHttpAsyncClient asyncclient;
+
+    @Before @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.serverBootstrap.registerHandler("/ok", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                response.setEntity(new StringEntity("All is well", ContentType.TEXT_PLAIN));
+            }
+
+        });
+        this.serverBootstrap.registerHandler("/redirect", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                response.setCode(HttpStatus.SC_MOVED_TEMPORARILY);
+                response.addHeader(HttpHeaders.LOCATION, "/ok");
+                response.setEntity(new StringEntity("Moved", ContentType.TEXT_PLAIN));
+            }
+
+        });
+        this.serverBootstrap.registerHandler("/circular", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                response.setCode(HttpStatus.SC_MOVED_TEMPORARILY);
+                response.addHeader(HttpHeaders.LOCATION, "/circular");
+            }
+
+        });
+        this.serverBootstrap.registerHandler("/unavailable", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                if (unavailableCount.incrementAndGet() == 1) {
+                    response.setCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+                    response.addHeader(HttpHeaders.RETRY_AFTER, "1");
+                } else {
+                    response.setEntity(new StringEntity("All is well", ContentType.TEXT_PLAIN));
+                }
+            }
+
+        });
+        this.serverBootstrap.registerHandler("/slow", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                if (slowCount.incrementAndGet() == 1) {
+                    try {
+                        Thread.sleep(2000);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                response.setEntity(new StringEntity("All is well", ContentType.TEXT_PLAIN));
+            }
+
+        });
+        this.serverBootstrap.registerHandler("/auth", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final ClassicHttpRequest request,
+                    final ClassicHttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                if (!request.containsHeader(HttpHeaders.AUTHORIZATION)) {
+                    response.setCode(HttpStatus.SC_UNAUTHORIZED);
+                    response.addHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"test realm\"");
+                } else {
+                    response.setEntity(new StringEntity("Authenticated", ContentType.TEXT_PLAIN));
+                }
+            }
+
+        });
+    }
+
+    @After @Override
+    public void shutDown() throws Exception {
+        if (this.asyncclient != null) {
+            this.asyncclient.close();
+        }
+        super.shutDown();
+    }
+
+    private SimpleHttpResponse execute(
+            final HttpAsyncClientBuilder builder,
+            final HttpHost target,
+            final String path,
+            final HttpContext context) throws Exception {
+        this.asyncclient = builder.build();
+        this.asyncclient.start();
+        final Future<SimpleHttpResponse> future = this.asyncclient.execute(
+                new SimpleRequestProducer(new SimpleHttpRequest("GET", target, path, (String) null, null)),
+                new SimpleResponseConsumer(),
+                context,
+                null);
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRedirect() throws Exception {
+        final HttpHost target = start();
+        final HttpClientContext context = HttpClientContext.create();
+        final SimpleHttpResponse response = execute(HttpAsyncClients.custom(), target, "/redirect", context);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals("All is well", response.getBody());
+        final List<?> redirectLocations = context.getRedirectLocations();
+        Assert.assertNotNull(redirectLocations);
+        Assert.assertEquals(1, redirectLocations.size());
+    }
+
+    @Test
+    public void testRedirectHandlingDisabled() throws Exception {
+        final HttpHost target = start();
+        final SimpleHttpResponse response = execute(HttpAsyncClients.custom().disableRedirectHandling(),
+                target, "/redirect", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_MOVED_TEMPORARILY, response.getCode());
+        Assert.assertEquals("Moved", response.getBody());
+    }
+
+    @Test
+    public void testCircularRedirect() throws Exception {
+        final HttpHost target = start();
+        try {
+            execute(HttpAsyncClients.custom(), target, "/circular", HttpClientContext.create());
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof HttpException);
+        }
+    }
+
+    @Test
+    public void testBasicAuthentication() throws Exception {
+        final HttpHost target = start();
+        final BasicCredentialsProvider credsProvider = new BasicCredentialsProvider();
+        credsProvider.setCredentials(new AuthScope(target),
+                new UsernamePasswordCredentials("test", "test".toCharArray()));
+        final SimpleHttpResponse response = execute(
+                HttpAsyncClients.custom().setDefaultCredentialsProvider(credsProvider),
+                target, "/auth", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals("Authenticated", response.getBody());
+    }
+
+    @Test
+    public void testAuthenticationNoCredentials() throws Exception {
+        final HttpHost target = start();
+        final SimpleHttpResponse response = execute(HttpAsyncClients.custom(),
+                target, "/auth", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, response.getCode());
+    }
+
+    @Test
+    public void testServiceUnavailableRetryAfter() throws Exception {
+        final HttpHost target = start();
+        final long start = System.currentTimeMillis();
+        final SimpleHttpResponse response = execute(
+                HttpAsyncClients.custom().setServiceUnavailableRetryStrategy(
+                        new DefaultServiceUnavailableRetryStrategy(1, 50)),
+                target, "/unavailable", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals(2, unavailableCount.get());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    @Test
+    public void testServiceUnavailableRetryBudgetExhausted() throws Exception {
+        final HttpHost target = start();
+        final SimpleHttpResponse response = execute(
+                HttpAsyncClients.custom()
+                        .setServiceUnavailableRetryStrategy(new DefaultServiceUnavailableRetryStrategy(1, 50))
+                        .setRetryBudget(new RetryBudget(0.0d, 0)),
+                target, "/unavailable", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, response.getCode());
+        Assert.assertEquals(1, unavailableCount.get());
+    }
+
+    @Test
+    public void testBackoffSignals() throws Exception {
+        final HttpHost target = start();
+        final LatencyAwareBackoffManager backoffManager = Mockito.mock(LatencyAwareBackoffManager.class);
+        final HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                .setConnectionBackoffStrategy(new DefaultBackoffStrategy())
+                .setBackoffManager(backoffManager);
+        final SimpleHttpResponse response1 = execute(builder, target, "/unavailable", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, response1.getCode());
+        Mockito.verify(backoffManager).backOff(Matchers.<HttpRoute>any());
+        this.asyncclient.close();
+
+        final SimpleHttpResponse response2 = execute(builder, target, "/ok", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_OK, response2.getCode());
+        Mockito.verify(backoffManager).probe(
+                Matchers.<HttpRoute>any(), Matchers.anyLong(), Matchers.eq(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testHedgedRequest() throws Exception {
+        final HttpHost target = start();
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.95d, 100, TimeUnit.MILLISECONDS, null);
+        final long start = System.currentTimeMillis();
+        final SimpleHttpResponse response = execute(HttpAsyncClients.custom().setHedgingPolicy(hedgingPolicy),
+                target, "/slow", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals("All is well", response.getBody());
+        Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+        Assert.assertEquals(2, slowCount.get());
+        Assert.assertEquals(1, hedgingPolicy.getHedgesSent());
+        Assert.assertEquals(1, hedgingPolicy.getHedgesWon());
+    }
+
+    @Test
+    public void testHedgeBudgetExhausted() throws Exception {
+        final HttpHost target = start();
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(
+                0.95d, 100, TimeUnit.MILLISECONDS, new RetryBudget(0.0d, 0));
+        final SimpleHttpResponse response = execute(HttpAsyncClients.custom().setHedgingPolicy(hedgingPolicy),
+                target, "/slow", HttpClientContext.create());
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals(1, slowCount.get());
+        Assert.assertEquals(0, hedgingPolicy.getHedgesSent());
+    }
+
+    @Test
+    public void testWireCapture() throws Exception {
+        final HttpHost target = start();
+        final WireCapture wireCapture = WireCapture.getDefault();
+        final long captured = wireCapture.getCapturedBytes();
+        wireCapture.setEnabled(true);
+        try {
+            final SimpleHttpResponse response = execute(
+                    HttpAsyncClients.custom(), target, "/redirect", HttpClientContext.create());
+            Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+            Assert.assertTrue(wireCapture.awaitIdle(5, TimeUnit.SECONDS));
+        } finally {
+            wireCapture.setEnabled(false);
+        }
+        Assert.assertTrue(wireCapture.getCapturedBytes() > captured);
+    }
+
+    @Test
+    public void testPrewarmConnectionsBeforeStart() throws Exception {
+        final HttpHost target = start();
+        final HttpRoute route = new HttpRoute(target, null, false);
+        final PoolingAsyncClientConnectionManager connManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .build();
+        this.asyncclient = HttpAsyncClients.custom()
+                .setConnectionManager(connManager)
+                .prewarmConnections(route, 2)
+                .build();
+
+        // The connection manager cannot open connections until the client is started
+        Thread.sleep(500);
+        Assert.assertEquals(0, connManager.getStats(route).getAvailable());
+
+        this.asyncclient.start();
+        for (int i = 0; i < 50 && connManager.getStats(route).getAvailable() < 2; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(2, connManager.getStats(route).getAvailable());
+        Assert.assertEquals(0, connManager.getStats(route).getLeased());
+    }
+
+}
@@ -30,7 +30,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.hc.client5.http.impl.logging.WireCapture;
 import org.apache.hc.client5.http.localserver.LocalServerTestBase;
 import org.apache.hc.client5.http.protocol.ClientProtocolException;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
@@ -269,4 +271,22 @@ public class TestClientRequestExecution extends LocalServerTestBase {
         Assert.assertEquals(uri, location);
     }
 
+    @Test
+    public void testWireCapture() throws Exception {
+        this.serverBootstrap.registerHandler("*", new SimpleService());
+        final HttpHost target = start();
+        final WireCapture wireCapture = WireCapture.getDefault();
+        final long captured = wireCapture.getCapturedBytes();
+        wireCapture.setEnabled(true);
+        try {
+            final ClassicHttpResponse response = this.httpclient.execute(target, new HttpGet("/"));
+            EntityUtils.consume(response.getEntity());
+            Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+            Assert.assertTrue(wireCapture.awaitIdle(5, TimeUnit.SECONDS));
+        } finally {
+            wireCapture.setEnabled(false);
+        }
+        Assert.assertTrue(wireCapture.getCapturedBytes() > captured);
+    }
+
 }
@@ -28,10 +28,12 @@
 package org.apache.hc.client5.http.impl.integration;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.ConnPoolMonitor;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.io.ConnectionEndpoint;
 import org.apache.hc.client5.http.io.LeaseRequest;
@@ -297,4 +299,111 @@ public class TestConnectionManagement extends LocalServerTestBase {
         this.connManager.close();
     }
 
+    @Test
+    public void testPrewarmConnections() throws Exception {
+
+        this.connManager.setMaxTotal(10);
+        this.connManager.setDefaultMaxPerRoute(3);
+
+        final HttpHost target = start();
+        final HttpRoute route = new HttpRoute(target, null, false);
+
+        Assert.assertEquals(2, this.connManager.prewarm(route, 2, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, this.connManager.getStats(route).getLeased());
+        Assert.assertEquals(2, this.connManager.getStats(route).getAvailable());
+
+        // Idle connections count towards the number, max per route is honored
+        Assert.assertEquals(1, this.connManager.prewarm(route, 5, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(3, this.connManager.getStats(route).getAvailable());
+        Assert.assertEquals(0, this.connManager.prewarm(route, 3, 1, TimeUnit.SECONDS));
+
+        // Pre-warming is not accounted for as lease requests
+        final ConnPoolMonitor monitor = this.connManager.getPoolMonitor();
+        Assert.assertFalse(monitor.getRouteSnapshots().containsKey(route));
+
+        final LeaseRequest leaseRequest = this.connManager.lease(route, null);
+        final ConnectionEndpoint endpoint = leaseRequest.get(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(endpoint.isConnected());
+        this.connManager.release(endpoint, null, 0, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, monitor.getRouteSnapshots().get(route).getLeaseWait().getCount());
+
+        this.connManager.close();
+    }
+
+    @Test
+    public void testPoolMonitor() throws Exception {
+
+        this.connManager.setMaxTotal(1);
+        final ConnPoolMonitor monitor = this.connManager.getPoolMonitor();
+        monitor.setLeakThreshold(1, TimeUnit.MILLISECONDS);
+        monitor.setCaptureLeaseStack(true);
+
+        final HttpHost target = start();
+        final HttpRoute route = new HttpRoute(target, null, false);
+        final HttpContext context = new BasicHttpContext();
+
+        final LeaseRequest leaseRequest1 = this.connManager.lease(route, null);
+        final ConnectionEndpoint endpoint1 = leaseRequest1.get(0, TimeUnit.MILLISECONDS);
+        this.connManager.connect(endpoint1, 0, TimeUnit.MILLISECONDS, context);
+
+        final LeaseRequest leaseRequest2 = this.connManager.lease(route, null);
+        Assert.assertEquals(1, monitor.getPending(route));
+        try {
+            leaseRequest2.get(10, TimeUnit.MILLISECONDS);
+            Assert.fail("TimeoutException expected");
+        } catch (final TimeoutException ex) {
+            // expected
+        }
+        Assert.assertEquals(0, monitor.getPending(route));
+
+        final List<ConnPoolMonitor.ConnectionSnapshot> leaks = monitor.findLeakedLeases();
+        Assert.assertEquals(1, leaks.size());
+        final ConnPoolMonitor.ConnectionSnapshot leak = leaks.get(0);
+        Assert.assertEquals(route, leak.getRoute());
+        Assert.assertTrue(leak.getLeaseDuration() >= 10);
+        Assert.assertNotNull(leak.getLeaseStack());
+
+        this.connManager.release(endpoint1, null, -1, null);
+        Assert.assertTrue(monitor.findLeakedLeases().isEmpty());
+
+        final LeaseRequest leaseRequest3 = this.connManager.lease(route, null);
+        final ConnectionEndpoint endpoint3 = leaseRequest3.get(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(endpoint3.isConnected());
+        final List<ConnPoolMonitor.ConnectionSnapshot> connections = monitor.getConnectionSnapshots();
+        Assert.assertEquals(1, connections.size());
+        Assert.assertEquals(1, connections.get(0).getReuseCount());
+        Assert.assertTrue(connections.get(0).isLeased());
+        this.connManager.release(endpoint3, null, -1, null);
+
+        final ConnPoolMonitor.RouteSnapshot routeSnapshot = monitor.getRouteSnapshots().get(route);
+        Assert.assertNotNull(routeSnapshot);
+        Assert.assertEquals(0, routeSnapshot.getPending());
+        Assert.assertEquals(1, routeSnapshot.getFailures());
+        Assert.assertEquals(2, routeSnapshot.getLeaseWait().getCount());
+
+        this.connManager.close();
+    }
+
+    @Test
+    public void testPrewarmConnectionsOnBuild() throws Exception {
+
+        this.connManager.setMaxTotal(10);
+        this.connManager.setDefaultMaxPerRoute(3);
+
+        this.server = this.serverBootstrap.create();
+        this.server.start();
+        final HttpHost target = new HttpHost("localhost", this.server.getLocalPort(), getSchemeName());
+        final HttpRoute route = new HttpRoute(target, null, false);
+
+        this.httpclient = this.clientBuilder
+                .prewarmConnections(route, 2)
+                .build();
+
+        for (int i = 0; i < 50 && this.connManager.getStats(route).getAvailable() < 2; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(2, this.connManager.getStats(route).getAvailable());
+        Assert.assertEquals(0, this.connManager.getStats(route).getLeased());
+    }
+
 }
@@ -0,0 +1,127 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.integration;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.RequestPhase;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.impl.LatencyHistogram;
+import org.apache.hc.client5.http.impl.PhaseLatencyRecorder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.localserver.LocalServerTestBase;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.sync.methods.HttpGet;
+import org.apache.hc.client5.http.sync.methods.HttpPost;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Request phase latency reporting of the classic and the async client.
+ */
+public class TestRequestPhaseLatencies extends LocalServerTestBase {
+
+    private CloseableHttpAsyncClient asyncclient;
+
+    @After @Override
+    public void shutDown() throws Exception {
+        if (this.asyncclient != null) {
+            this.asyncclient.close();
+        }
+        super.shutDown();
+    }
+
+    @Test
+    public void testClassicPhases() throws Exception {
+        final PhaseLatencyRecorder recorder = new PhaseLatencyRecorder();
+        this.clientBuilder.setRequestPhaseListener(recorder);
+        final HttpHost target = start();
+
+        final ClassicHttpResponse response1 = this.httpclient.execute(target, new HttpGet("/random/1024"));
+        Assert.assertEquals(HttpStatus.SC_OK, response1.getCode());
+        EntityUtils.consume(response1.getEntity());
+
+        final HttpPost post = new HttpPost("/echo/");
+        post.setEntity(new StringEntity("Hello", ContentType.TEXT_PLAIN));
+        final ClassicHttpResponse response2 = this.httpclient.execute(target, post);
+        Assert.assertEquals(HttpStatus.SC_OK, response2.getCode());
+        EntityUtils.consume(response2.getEntity());
+
+        final Map<HttpRoute, Map<RequestPhase, LatencyHistogram.Snapshot>> snapshots = recorder.getSnapshots();
+        Assert.assertEquals(1, snapshots.size());
+        final Map<RequestPhase, LatencyHistogram.Snapshot> phases = snapshots.values().iterator().next();
+        Assert.assertEquals(2, phases.get(RequestPhase.LEASE).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.DNS_RESOLVE).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.CONNECT).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.REQUEST_WRITE).getCount());
+        Assert.assertEquals(2, phases.get(RequestPhase.TIME_TO_FIRST_BYTE).getCount());
+        Assert.assertEquals(2, phases.get(RequestPhase.RESPONSE_BODY).getCount());
+        Assert.assertNull(phases.get(RequestPhase.TLS_HANDSHAKE));
+    }
+
+    @Test
+    public void testAsyncPhases() throws Exception {
+        final HttpHost target = start();
+        final PhaseLatencyRecorder recorder = new PhaseLatencyRecorder();
+        this.asyncclient = HttpAsyncClients.custom().setRequestPhaseListener(recorder).build();
+        this.asyncclient.start();
+
+        final Future<SimpleHttpResponse> future = this.asyncclient.execute(
+                new SimpleRequestProducer(new SimpleHttpRequest("POST", target, "/echo/", "Hello", ContentType.TEXT_PLAIN)),
+                new SimpleResponseConsumer(),
+                HttpClientContext.create(),
+                null);
+        final SimpleHttpResponse response = future.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getCode());
+        Assert.assertEquals("Hello", response.getBody());
+
+        final Map<HttpRoute, Map<RequestPhase, LatencyHistogram.Snapshot>> snapshots = recorder.getSnapshots();
+        Assert.assertEquals(1, snapshots.size());
+        final Map<RequestPhase, LatencyHistogram.Snapshot> phases = snapshots.values().iterator().next();
+        Assert.assertEquals(1, phases.get(RequestPhase.LEASE).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.DNS_RESOLVE).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.CONNECT).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.REQUEST_WRITE).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.TIME_TO_FIRST_BYTE).getCount());
+        Assert.assertEquals(1, phases.get(RequestPhase.RESPONSE_BODY).getCount());
+    }
+
+}
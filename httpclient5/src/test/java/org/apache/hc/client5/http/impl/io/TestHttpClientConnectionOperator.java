@@ -32,6 +32,9 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
@@ -46,9 +49,12 @@ import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.SocketConfig;
 import org.apache.hc.core5.http.protocol.BasicHttpContext;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 @SuppressWarnings({"boxing","static-access"}) // test code
 public class TestHttpClientConnectionOperator {
@@ -238,6 +244,171 @@ public class TestHttpClientConnectionOperator {
         Mockito.verify(conn, Mockito.times(2)).bind(socket);
     }
 
+    @Test
+    public void testSortAddresses() throws Exception {
+        final InetAddress ip4a = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip4b = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        final InetAddress ip6a = InetAddress.getByName("::1");
+        final InetAddress ip6b = InetAddress.getByName("fe80::1");
+
+        Assert.assertArrayEquals(
+                new InetAddress[] { ip6a, ip4a, ip6b, ip4b },
+                DefaultHttpClientConnectionOperator.sortAddresses(new InetAddress[] { ip6a, ip6b, ip4a, ip4b }, null));
+        Assert.assertArrayEquals(
+                new InetAddress[] { ip4a, ip6a, ip4b },
+                DefaultHttpClientConnectionOperator.sortAddresses(new InetAddress[] { ip4a, ip4b, ip6a }, null));
+        Assert.assertArrayEquals(
+                new InetAddress[] { ip4b, ip6a, ip4a, ip6b },
+                DefaultHttpClientConnectionOperator.sortAddresses(new InetAddress[] { ip6a, ip6b, ip4a, ip4b }, ip4b));
+    }
+
+    @Test
+    public void testConnectConcurrently() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+        final Socket socket1 = Mockito.mock(Socket.class);
+        final Socket socket2 = Mockito.mock(Socket.class);
+        final CountDownLatch blackhole = new CountDownLatch(1);
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket1, socket2);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenAnswer(new Answer<Socket>() {
+
+                    @Override
+                    public Socket answer(final InvocationOnMock invocation) throws Throwable {
+                        blackhole.await(10, TimeUnit.SECONDS);
+                        throw new SocketTimeoutException();
+                    }
+
+                });
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip2, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket2);
+
+        final DefaultHttpClientConnectionOperator racingOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 50, TimeUnit.MILLISECONDS);
+        try {
+            final long start = System.currentTimeMillis();
+            racingOperator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+            Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+
+            Mockito.verify(conn).bind(socket2);
+            Mockito.verify(conn, Mockito.never()).bind(socket1);
+            Mockito.verify(socket1).close();
+            Assert.assertEquals(ip2, racingOperator.getPreferredAddress("somehost"));
+        } finally {
+            blackhole.countDown();
+            racingOperator.close();
+        }
+    }
+
+    @Test
+    public void testConnectConcurrentlyPrefersLastWinner() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenThrow(new ConnectException());
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip2, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket);
+
+        final DefaultHttpClientConnectionOperator racingOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 5, TimeUnit.SECONDS);
+        try {
+            racingOperator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+            racingOperator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+        } finally {
+            racingOperator.close();
+        }
+
+        // The second connect starts with the address that won the first one
+        Mockito.verify(plainSocketFactory, Mockito.times(1)).connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.eq(new InetSocketAddress(ip1, 80)),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any());
+        Mockito.verify(conn, Mockito.times(2)).bind(socket);
+    }
+
+    @Test
+    public void testConnectConcurrentlyAfterClose() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {127, 0, 0, 2});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenReturn(socket);
+
+        final DefaultHttpClientConnectionOperator racingOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 50, TimeUnit.MILLISECONDS);
+        racingOperator.close();
+        racingOperator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+
+        Mockito.verify(conn).bind(socket);
+    }
+
+    @Test
+    public void testPreferredAddressMapEvictsLeastRecentlyUsed() throws Exception {
+        final Map<String, InetAddress> map = DefaultHttpClientConnectionOperator.createPreferredAddressMap(
+                DefaultHttpClientConnectionOperator.MAX_PREFERRED_ADDRESSES);
+        final InetAddress address = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+        for (int i = 0; i < DefaultHttpClientConnectionOperator.MAX_PREFERRED_ADDRESSES; i++) {
+            map.put("host" + i, address);
+        }
+        Assert.assertEquals(DefaultHttpClientConnectionOperator.MAX_PREFERRED_ADDRESSES, map.size());
+
+        // Touch the eldest entry so that the next one becomes the least recently used
+        Assert.assertSame(address, map.get("host0"));
+        map.put("another-host", address);
+
+        Assert.assertEquals(DefaultHttpClientConnectionOperator.MAX_PREFERRED_ADDRESSES, map.size());
+        Assert.assertTrue(map.containsKey("host0"));
+        Assert.assertFalse(map.containsKey("host1"));
+        Assert.assertTrue(map.containsKey("another-host"));
+    }
+
     @Test
     public void testUpgrade() throws Exception {
         final HttpContext context = new BasicHttpContext();
@@ -0,0 +1,197 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.logging;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestWireCapture {
+
+    private Logger log;
+    private WireCapture capture;
+
+    @Before
+    public void setup() {
+        log = Mockito.mock(Logger.class);
+        capture = new WireCapture(64, 16, log);
+        capture.setEnabled(true);
+    }
+
+    @After
+    public void shutdown() {
+        capture.setEnabled(false);
+    }
+
+    private static byte[] ascii(final String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testWireFormat() throws Exception {
+        final Wire wire = new Wire(log, "c0");
+        wire.output(ascii("GET / HTTP/1.1\r\nHost: x\r\n"));
+        wire.input(ascii("\u0001abc"));
+        Mockito.verify(log).debug("c0 >> \"GET / HTTP/1.1[\\r][\\n]\"");
+        Mockito.verify(log).debug("c0 >> \"Host: x[\\r][\\n]\"");
+        Mockito.verify(log).debug("c0 << \"[0x1]abc\"");
+    }
+
+    @Test
+    public void testCapture() throws Exception {
+        final Wire wire = new CapturingWire(capture, "c1", null);
+        Assert.assertTrue(wire.isEnabled());
+        wire.output(ascii("GET / HTTP/1.1\r\n\r\n"));
+        wire.input(ByteBuffer.wrap(ascii("HTTP/1.1 200 OK\r\n")));
+        wire.input("end of stream");
+        Assert.assertTrue(capture.awaitIdle(5, TimeUnit.SECONDS));
+
+        Mockito.verify(log).debug("c1 >> \"GET / HTTP/1.1[\\r][\\n]\"");
+        Mockito.verify(log).debug("c1 >> \"[\\r][\\n]\"");
+        Mockito.verify(log).debug("c1 << \"HTTP/1.1 200 OK[\\r][\\n]\"");
+        Mockito.verify(log).debug("c1 << \"end of stream\"");
+        Assert.assertEquals(35, capture.getCapturedBytes());
+        Assert.assertEquals(0, capture.getDroppedBytes());
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        final Wire wire = new CapturingWire(capture, "c1", null);
+        wire.output(new byte[100]);
+        Assert.assertEquals(100, capture.getDroppedBytes());
+        // content that fits into the buffer gets through
+        for (int i = 0; i < 10; i++) {
+            wire.output(ascii("0123456789\r\n"));
+            Assert.assertTrue(capture.awaitIdle(5, TimeUnit.SECONDS));
+        }
+        Mockito.verify(log, Mockito.times(10)).debug("c1 >> \"0123456789[\\r][\\n]\"");
+        Mockito.verify(log).warn("Wire capture buffer overflow: 100 bytes dropped");
+    }
+
+    @Test
+    public void testConcurrentCapture() throws Exception {
+        final WireCapture concurrentCapture = new WireCapture(64 * 1024, 1024, log);
+        concurrentCapture.setEnabled(true);
+        try {
+            final Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                final Wire wire = new CapturingWire(concurrentCapture, "c" + i, null);
+                threads[i] = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (int n = 0; n < 100; n++) {
+                            wire.output(ascii("chunk " + n));
+                        }
+                    }
+
+                });
+            }
+            for (final Thread thread : threads) {
+                thread.start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertTrue(concurrentCapture.awaitIdle(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, concurrentCapture.getDroppedBytes());
+            for (int i = 0; i < threads.length; i++) {
+                Mockito.verify(log).debug("c" + i + " >> \"chunk 0\"");
+                Mockito.verify(log).debug("c" + i + " >> \"chunk 99\"");
+            }
+            Mockito.verify(log, Mockito.times(400)).debug(Mockito.contains("chunk"));
+        } finally {
+            concurrentCapture.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testBodyTruncation() throws Exception {
+        capture.setMaxBodyBytes(4);
+        final Wire wire = new CapturingWire(capture, "c1", null);
+        wire.input(ascii("HTTP/1.1 200 OK\r\n\r\n01"));
+        wire.input(ascii("23456"));
+        wire.input(ascii("789"));
+        wire.input(ascii("HTTP/1.1 204 No Content\r\n\r\n"));
+        Assert.assertTrue(capture.awaitIdle(5, TimeUnit.SECONDS));
+
+        Mockito.verify(log).debug("c1 << \"01\"");
+        Mockito.verify(log).debug("c1 << \"23\"");
+        Mockito.verify(log).debug("c1 << \"[body truncated after 4 bytes]\"");
+        Mockito.verify(log).debug("c1 << \"HTTP/1.1 204 No Content[\\r][\\n]\"");
+        Mockito.verify(log, Mockito.never()).debug(Mockito.contains("789"));
+        Mockito.verify(log, Mockito.never()).debug(Mockito.contains("456"));
+    }
+
+    @Test
+    public void testFilterAndSampling() throws Exception {
+        final InetSocketAddress address1 = InetSocketAddress.createUnresolved("somehost", 80);
+        final InetSocketAddress address2 = InetSocketAddress.createUnresolved("otherhost", 80);
+        capture.setFilter(new WireCapture.Filter() {
+
+            @Override
+            public boolean accept(final SocketAddress remoteAddress) {
+                return remoteAddress instanceof InetSocketAddress
+                        && ((InetSocketAddress) remoteAddress).getHostString().equals("somehost");
+            }
+
+        });
+        Assert.assertTrue(new CapturingWire(capture, "c1", address1).isEnabled());
+        final Wire wire = new CapturingWire(capture, "c2", address2);
+        Assert.assertFalse(wire.isEnabled());
+        wire.output(ascii("stuff"));
+        Assert.assertEquals(0, capture.getCapturedBytes());
+
+        capture.setFilter(null);
+        capture.setSamplingRate(0.0);
+        Assert.assertFalse(new CapturingWire(capture, "c3", address1).isEnabled());
+    }
+
+    @Test
+    public void testToggle() throws Exception {
+        final Wire wire = new CapturingWire(capture, "c1", null);
+        capture.setEnabled(false);
+        Assert.assertFalse(wire.isEnabled());
+        wire.output(ascii("stuff"));
+        Assert.assertEquals(0, capture.getCapturedBytes());
+        capture.setEnabled(true);
+        Assert.assertTrue(wire.isEnabled());
+        wire.output(ascii("stuff"));
+        Assert.assertTrue(capture.awaitIdle(5, TimeUnit.SECONDS));
+        Mockito.verify(log).debug("c1 >> \"stuff\"");
+    }
+
+}
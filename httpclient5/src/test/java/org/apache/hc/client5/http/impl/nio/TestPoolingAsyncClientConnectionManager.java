@@ -0,0 +1,210 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.nio;
+
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.nio.AsyncConnectionEndpoint;
+import org.apache.hc.core5.http.HttpConnection;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.reactor.ConnectionInitiator;
+import org.apache.hc.core5.reactor.IOEventHandler;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.SessionRequest;
+import org.apache.hc.core5.reactor.SessionRequestCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for sharing of HTTP/2 connections by {@link PoolingAsyncClientConnectionManager}.
+ */
+public class TestPoolingAsyncClientConnectionManager {
+
+    private final HttpRoute route = new HttpRoute(new HttpHost("somehost", 80));
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private ConnectionInitiator connectionInitiator;
+    private PoolingAsyncClientConnectionManager connManager;
+
+    @Before
+    public void setup() throws Exception {
+        final DnsResolver dnsResolver = Mockito.mock(DnsResolver.class);
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { InetAddress.getLoopbackAddress() });
+
+        final IOEventHandler handler = Mockito.mock(IOEventHandler.class,
+                Mockito.withSettings().extraInterfaces(HttpConnection.class));
+        Mockito.when(((HttpConnection) handler).getProtocolVersion()).thenReturn(HttpVersion.HTTP_2);
+
+        connectionInitiator = Mockito.mock(ConnectionInitiator.class);
+        Mockito.when(connectionInitiator.connect(
+                Mockito.<NamedEndpoint>any(),
+                Mockito.<SocketAddress>any(),
+                Mockito.any(),
+                Mockito.<SessionRequestCallback>any())).thenAnswer(new Answer<SessionRequest>() {
+
+            @Override
+            public SessionRequest answer(final InvocationOnMock invocation) throws Throwable {
+                final IOSession session = Mockito.mock(IOSession.class);
+                Mockito.when(session.getHandler()).thenReturn(handler);
+                Mockito.when(session.isClosed()).thenAnswer(new Answer<Boolean>() {
+
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        return closed.get();
+                    }
+
+                });
+                final SessionRequest sessionRequest = Mockito.mock(SessionRequest.class);
+                Mockito.when(sessionRequest.getSession()).thenReturn(session);
+                final SessionRequestCallback callback = (SessionRequestCallback) invocation.getArguments()[3];
+                callback.completed(sessionRequest);
+                return sessionRequest;
+            }
+
+        });
+
+        connManager = new PoolingAsyncClientConnectionManager(null, null, dnsResolver,
+                -1, TimeUnit.MILLISECONDS, null, null);
+        connManager.setMaxConcurrentStreams(2);
+        connManager.setDefaultMaxPerRoute(2);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        connManager.close();
+    }
+
+    private AsyncConnectionEndpoint lease() throws Exception {
+        final AsyncConnectionEndpoint endpoint = connManager.lease(route, null, 1, TimeUnit.SECONDS, null)
+                .get(1, TimeUnit.SECONDS);
+        if (!endpoint.isConnected()) {
+            connManager.connect(endpoint, connectionInitiator, 1, TimeUnit.SECONDS, null, null)
+                    .get(1, TimeUnit.SECONDS);
+        }
+        return endpoint;
+    }
+
+    private void release(final AsyncConnectionEndpoint endpoint) {
+        connManager.release(endpoint, null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private void openConnection() throws Exception {
+        final AsyncConnectionEndpoint endpoint = lease();
+        Assert.assertFalse(endpoint instanceof PoolingAsyncClientConnectionManager.SharedConnectionEndpoint);
+        release(endpoint);
+        Assert.assertEquals(1, connManager.getStats(route).getAvailable());
+    }
+
+    @Test
+    public void testConcurrentLeasesShareConnection() throws Exception {
+        openConnection();
+
+        final AsyncConnectionEndpoint endpoint1 = lease();
+        final AsyncConnectionEndpoint endpoint2 = lease();
+        Assert.assertTrue(endpoint1 instanceof PoolingAsyncClientConnectionManager.SharedConnectionEndpoint);
+        Assert.assertTrue(endpoint2 instanceof PoolingAsyncClientConnectionManager.SharedConnectionEndpoint);
+        Assert.assertEquals(endpoint1.toString(), endpoint2.toString());
+        Assert.assertEquals(1, connManager.getStats(route).getLeased());
+        Assert.assertEquals(0, connManager.getStats(route).getAvailable());
+
+        // Stream limit reached, a new connection gets opened
+        final AsyncConnectionEndpoint endpoint3 = connManager.lease(route, null, 1, TimeUnit.SECONDS, null)
+                .get(1, TimeUnit.SECONDS);
+        Assert.assertFalse(endpoint3 instanceof PoolingAsyncClientConnectionManager.SharedConnectionEndpoint);
+        Assert.assertFalse(endpoint3.isConnected());
+        Assert.assertEquals(2, connManager.getStats(route).getLeased());
+        release(endpoint3);
+
+        Mockito.verify(connectionInitiator, Mockito.times(1)).connect(
+                Mockito.<NamedEndpoint>any(),
+                Mockito.<SocketAddress>any(),
+                Mockito.any(),
+                Mockito.<SessionRequestCallback>any());
+
+        release(endpoint1);
+        release(endpoint2);
+    }
+
+    @Test
+    public void testReleaseOfLastStreamReturnsConnectionToPool() throws Exception {
+        openConnection();
+
+        final AsyncConnectionEndpoint endpoint1 = lease();
+        final AsyncConnectionEndpoint endpoint2 = lease();
+
+        release(endpoint1);
+        Assert.assertEquals(1, connManager.getStats(route).getLeased());
+        Assert.assertEquals(0, connManager.getStats(route).getAvailable());
+
+        release(endpoint2);
+        Assert.assertEquals(0, connManager.getStats(route).getLeased());
+        Assert.assertEquals(1, connManager.getStats(route).getAvailable());
+
+        // The same connection gets shared again
+        final AsyncConnectionEndpoint endpoint3 = lease();
+        Assert.assertTrue(endpoint3 instanceof PoolingAsyncClientConnectionManager.SharedConnectionEndpoint);
+        Assert.assertEquals(1, connManager.getStats(route).getLeased());
+        release(endpoint3);
+        Assert.assertEquals(1, connManager.getStats(route).getAvailable());
+    }
+
+    @Test
+    public void testClosedConnectionNoLongerShared() throws Exception {
+        openConnection();
+
+        final AsyncConnectionEndpoint endpoint1 = lease();
+        final AsyncConnectionEndpoint endpoint2 = lease();
+
+        closed.set(true);
+        release(endpoint1);
+
+        // The connection is no longer shared and remains leased by the remaining stream
+        final AsyncConnectionEndpoint endpoint3 = connManager.lease(route, null, 1, TimeUnit.SECONDS, null)
+                .get(1, TimeUnit.SECONDS);
+        Assert.assertFalse(endpoint3 instanceof PoolingAsyncClientConnectionManager.SharedConnectionEndpoint);
+        Assert.assertFalse(endpoint3.isConnected());
+        Assert.assertEquals(2, connManager.getStats(route).getLeased());
+        release(endpoint3);
+
+        release(endpoint2);
+        Assert.assertEquals(0, connManager.getStats(route).getLeased());
+        Assert.assertEquals(0, connManager.getStats(route).getAvailable());
+    }
+
+}
@@ -30,12 +30,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.sync.BackoffManager;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.ConnPoolControl;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class TestAIMDBackoffManager {
 
@@ -177,4 +183,77 @@ public class TestAIMDBackoffManager {
         impl.probe(route);
         assertTrue(max0 < connPerRoute.getMaxPerRoute(route));
     }
+
+    @Test
+    public void exposesRouteLimits() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.backOff(route);
+        assertEquals(Integer.valueOf(2), impl.getRouteLimits().get(route));
+    }
+
+    @Test
+    public void concurrentBackoffsAdjustOncePerCoolDownPeriod() throws Exception {
+        connPerRoute.setMaxPerRoute(route, 8);
+        final long now = System.currentTimeMillis();
+        clock.setCurrentTime(now);
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    impl.backOff(route);
+                }
+
+            });
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void probeDoesNotOverwriteConcurrentBackoff() {
+        @SuppressWarnings("unchecked")
+        final ConnPoolControl<HttpRoute> pool = Mockito.mock(ConnPoolControl.class);
+        final AtomicInteger max = new AtomicInteger(8);
+        final AtomicBoolean interleave = new AtomicBoolean(false);
+        final AIMDBackoffManager manager = new AIMDBackoffManager(pool, clock);
+        manager.setPerHostConnectionCap(10);
+        Mockito.when(pool.getMaxPerRoute(route)).thenAnswer(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(final InvocationOnMock invocation) {
+                return max.get();
+            }
+
+        });
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                if (interleave.compareAndSet(true, false)) {
+                    // Back off while the probe is about to update the pool
+                    manager.backOff(route);
+                }
+                max.set((Integer) invocation.getArguments()[1]);
+                return null;
+            }
+
+        }).when(pool).setMaxPerRoute(Mockito.eq(route), Mockito.anyInt());
+
+        final long now = System.currentTimeMillis();
+        clock.setCurrentTime(now);
+        manager.probe(route);
+        assertEquals(9, max.get());
+        clock.setCurrentTime(now + 10 * 1000L);
+        interleave.set(true);
+        manager.probe(route);
+        assertEquals(5, max.get());
+        assertEquals(Integer.valueOf(5), manager.getRouteLimits().get(route));
+    }
 }
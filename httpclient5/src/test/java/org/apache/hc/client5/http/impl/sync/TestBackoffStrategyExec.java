@@ -0,0 +1,105 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.sync;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.sync.ConnectionBackoffStrategy;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
+import org.apache.hc.client5.http.sync.methods.HttpExecutionAware;
+import org.apache.hc.client5.http.sync.methods.HttpGet;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestBackoffStrategyExec {
+
+    @Mock
+    private ClientExecChain requestExecutor;
+    @Mock
+    private ConnectionBackoffStrategy connectionBackoffStrategy;
+    @Mock
+    private LatencyAwareBackoffManager backoffManager;
+    @Mock
+    private HttpExecutionAware execAware;
+
+    private BackoffStrategyExec backoffStrategyExec;
+    private HttpRoute route;
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        backoffStrategyExec = new BackoffStrategyExec(requestExecutor, connectionBackoffStrategy, backoffManager);
+        route = new HttpRoute(new HttpHost("foo", 80));
+    }
+
+    @Test
+    public void testProbeWithResponseLatency() throws Exception {
+        final HttpClientContext context = HttpClientContext.create();
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("http://foo/test"), route);
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        Mockito.when(requestExecutor.execute(request, context, execAware)).thenAnswer(new Answer<ClassicHttpResponse>() {
+
+            @Override
+            public ClassicHttpResponse answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                // Time spent waiting for a lease or retrying must not be reported
+                Thread.sleep(50);
+                context.setAttribute(HttpClientContext.RESPONSE_LATENCY, 1234L);
+                return response;
+            }
+
+        });
+
+        backoffStrategyExec.execute(request, context, execAware);
+        Mockito.verify(backoffManager).probe(route, 1234L, TimeUnit.NANOSECONDS);
+        Mockito.verify(backoffManager, Mockito.never()).probe(route);
+    }
+
+    @Test
+    public void testProbeWithoutResponseLatency() throws Exception {
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpClientContext.RESPONSE_LATENCY, 1234L);
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("http://foo/test"), route);
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        Mockito.when(requestExecutor.execute(request, context, execAware)).thenReturn(response);
+
+        backoffStrategyExec.execute(request, context, execAware);
+        Mockito.verify(backoffManager).probe(route);
+        Mockito.verify(backoffManager, Mockito.never()).probe(
+                Mockito.<HttpRoute>any(), Mockito.anyLong(), Mockito.<TimeUnit>any());
+    }
+
+}
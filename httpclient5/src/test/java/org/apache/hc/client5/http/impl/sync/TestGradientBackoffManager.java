@@ -0,0 +1,135 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGradientBackoffManager {
+
+    private GradientBackoffManager impl;
+    private MockConnPoolControl connPerRoute;
+    private HttpRoute route;
+    private MockClock clock;
+
+    @Before
+    public void setUp() {
+        connPerRoute = new MockConnPoolControl();
+        route = new HttpRoute(new HttpHost("localhost", 80));
+        clock = new MockClock();
+        clock.setCurrentTime(System.currentTimeMillis());
+        impl = new GradientBackoffManager(connPerRoute, clock);
+        impl.setPerHostConnectionCap(10);
+    }
+
+    @Test
+    public void growsWhileLatencyIsStable() {
+        connPerRoute.setMaxPerRoute(route, 2);
+        for (int i = 0; i < 100; i++) {
+            impl.probe(route, 10, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(10, connPerRoute.getMaxPerRoute(route));
+        assertEquals(10, impl.getRouteLimit(route));
+    }
+
+    @Test
+    public void shrinksWhenLatencyGrows() {
+        connPerRoute.setMaxPerRoute(route, 10);
+        impl.probe(route, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            impl.probe(route, 100, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(connPerRoute.getMaxPerRoute(route) < 10);
+    }
+
+    @Test
+    public void adaptsToNewMinimumLatency() {
+        connPerRoute.setMaxPerRoute(route, 10);
+        impl.setMinLatencyWindowMillis(1000);
+        impl.probe(route, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            impl.probe(route, 100, TimeUnit.MILLISECONDS);
+        }
+        final int max = connPerRoute.getMaxPerRoute(route);
+        clock.setCurrentTime(clock.getCurrentTime() + 1000);
+        for (int i = 0; i < 100; i++) {
+            impl.probe(route, 100, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(max < connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void halvesConnectionsOnBackoff() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        impl.backOff(route);
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void doesNotBackoffBelowOneConnection() {
+        connPerRoute.setMaxPerRoute(route, 1);
+        impl.backOff(route);
+        assertEquals(1, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void backoffDoesNotAdjustDuringCoolDownPeriod() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        impl.backOff(route);
+        clock.setCurrentTime(clock.getCurrentTime() + 1);
+        impl.backOff(route);
+        for (int i = 0; i < 100; i++) {
+            impl.probe(route, 10, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+        clock.setCurrentTime(clock.getCurrentTime() + 10 * 1000L);
+        impl.backOff(route);
+        assertEquals(2, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void probeWithoutLatencyHasNoEffect() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        impl.probe(route);
+        assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void exposesRouteLimits() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        impl.backOff(route);
+        assertEquals(Integer.valueOf(4), impl.getRouteLimits().get(route));
+    }
+
+}
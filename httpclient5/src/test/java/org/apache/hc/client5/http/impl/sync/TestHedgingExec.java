@@ -0,0 +1,280 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.sync;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.HedgingPolicy;
+import org.apache.hc.client5.http.impl.RetryBudget;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.sync.methods.HttpExecutionAware;
+import org.apache.hc.client5.http.sync.methods.HttpGet;
+import org.apache.hc.client5.http.sync.methods.HttpPost;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestHedgingExec {
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+    private HttpRoute route;
+
+    @Before
+    public void setup() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+        route = new HttpRoute(new HttpHost("localhost", 80));
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testNonIdempotentRequestNotHedged() throws Exception {
+        final ClientExecChain requestExecutor = Mockito.mock(ClientExecChain.class);
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.95d, 1, TimeUnit.MILLISECONDS, null);
+        final HedgingExec hedgingExec = new HedgingExec(requestExecutor, hedgingPolicy, scheduler, executor);
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpPost("/test"), route);
+        final HttpClientContext context = HttpClientContext.create();
+
+        hedgingExec.execute(request, context, null);
+
+        Mockito.verify(requestExecutor).execute(request, context, null);
+        Assert.assertEquals(0, hedgingPolicy.getHedgesSent());
+    }
+
+    @Test
+    public void testFastResponseNotHedged() throws Exception {
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        final ClientExecChain requestExecutor = Mockito.mock(ClientExecChain.class);
+        Mockito.when(requestExecutor.execute(
+                Mockito.<RoutedHttpRequest>any(),
+                Mockito.<HttpClientContext>any(),
+                Mockito.<HttpExecutionAware>any())).thenReturn(response);
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.95d, 100, TimeUnit.MILLISECONDS, null);
+        final HedgingExec hedgingExec = new HedgingExec(requestExecutor, hedgingPolicy, scheduler, executor);
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("/test"), route);
+
+        Assert.assertSame(response, hedgingExec.execute(request, HttpClientContext.create(), null));
+        Thread.sleep(200);
+
+        Mockito.verify(requestExecutor, Mockito.times(1)).execute(
+                Mockito.<RoutedHttpRequest>any(),
+                Mockito.<HttpClientContext>any(),
+                Mockito.<HttpExecutionAware>any());
+        Assert.assertEquals(0, hedgingPolicy.getHedgesSent());
+    }
+
+    @Test
+    public void testSlowResponseHedged() throws Exception {
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("/test"), route);
+        final AtomicInteger aborted = new AtomicInteger();
+        final ClientExecChain requestExecutor = new ClientExecChain() {
+
+            @Override
+            public ClassicHttpResponse execute(
+                    final RoutedHttpRequest r,
+                    final HttpClientContext context,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                if (r != request) {
+                    return response;
+                }
+                final CountDownLatch latch = new CountDownLatch(1);
+                execAware.setCancellable(new Cancellable() {
+
+                    @Override
+                    public boolean cancel() {
+                        latch.countDown();
+                        return true;
+                    }
+
+                });
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                aborted.incrementAndGet();
+                throw new RequestAbortedException("Request aborted");
+            }
+
+        };
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.95d, 50, TimeUnit.MILLISECONDS, null);
+        final HedgingExec hedgingExec = new HedgingExec(requestExecutor, hedgingPolicy, scheduler, executor);
+
+        Assert.assertSame(response, hedgingExec.execute(request, HttpClientContext.create(), null));
+        Assert.assertEquals(1, aborted.get());
+        Assert.assertEquals(1, hedgingPolicy.getHedgesSent());
+        Assert.assertEquals(1, hedgingPolicy.getHedgesWon());
+    }
+
+    @Test
+    public void testLatencyOfHedgedRequestIncludesHedgeDelay() throws Exception {
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        final Thread caller = Thread.currentThread();
+        final ClientExecChain requestExecutor = new ClientExecChain() {
+
+            @Override
+            public ClassicHttpResponse execute(
+                    final RoutedHttpRequest r,
+                    final HttpClientContext context,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                if (Thread.currentThread() != caller) {
+                    return response;
+                }
+                final CountDownLatch latch = new CountDownLatch(1);
+                execAware.setCancellable(new Cancellable() {
+
+                    @Override
+                    public boolean cancel() {
+                        latch.countDown();
+                        return true;
+                    }
+
+                });
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RequestAbortedException("Request aborted");
+            }
+
+        };
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.5d, 50, TimeUnit.MILLISECONDS, null);
+        final HedgingExec hedgingExec = new HedgingExec(requestExecutor, hedgingPolicy, scheduler, executor);
+
+        for (int i = 0; i < 20; i++) {
+            final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("/test"), route);
+            Assert.assertSame(response, hedgingExec.execute(request, HttpClientContext.create(), null));
+        }
+        Assert.assertEquals(20, hedgingPolicy.getHedgesWon(route));
+        // Hedges answer immediately, the latency of the original request is at least the delay
+        Assert.assertTrue(hedgingPolicy.getHedgeDelay(route) >= 50);
+    }
+
+    @Test
+    public void testHedgeBudgetExhausted() throws Exception {
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        final ClientExecChain requestExecutor = new ClientExecChain() {
+
+            @Override
+            public ClassicHttpResponse execute(
+                    final RoutedHttpRequest r,
+                    final HttpClientContext context,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                try {
+                    Thread.sleep(200);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return response;
+            }
+
+        };
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(
+                0.95d, 10, TimeUnit.MILLISECONDS, new RetryBudget(0.0d, 0));
+        final HedgingExec hedgingExec = new HedgingExec(requestExecutor, hedgingPolicy, scheduler, executor);
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("/test"), route);
+
+        Assert.assertSame(response, hedgingExec.execute(request, HttpClientContext.create(), null));
+        Assert.assertEquals(0, hedgingPolicy.getHedgesSent());
+    }
+
+    @Test
+    public void testHedgeNotExecutedByScheduler() throws Exception {
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("/test"), route);
+        final AtomicReference<Thread> hedgeThread = new AtomicReference<>();
+        final ClientExecChain requestExecutor = new ClientExecChain() {
+
+            @Override
+            public ClassicHttpResponse execute(
+                    final RoutedHttpRequest r,
+                    final HttpClientContext context,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                if (r != request) {
+                    hedgeThread.set(Thread.currentThread());
+                    return response;
+                }
+                final CountDownLatch latch = new CountDownLatch(1);
+                execAware.setCancellable(new Cancellable() {
+
+                    @Override
+                    public boolean cancel() {
+                        latch.countDown();
+                        return true;
+                    }
+
+                });
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RequestAbortedException("Request aborted");
+            }
+
+        };
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy(0.95d, 50, TimeUnit.MILLISECONDS, null);
+        final HedgingExec hedgingExec = new HedgingExec(requestExecutor, hedgingPolicy, scheduler, executor);
+
+        Assert.assertSame(response, hedgingExec.execute(request, HttpClientContext.create(), null));
+        final Thread schedulerThread = scheduler.submit(new Callable<Thread>() {
+
+            @Override
+            public Thread call() throws Exception {
+                return Thread.currentThread();
+            }
+
+        }).get();
+        Assert.assertNotNull(hedgeThread.get());
+        Assert.assertNotSame(schedulerThread, hedgeThread.get());
+    }
+
+}
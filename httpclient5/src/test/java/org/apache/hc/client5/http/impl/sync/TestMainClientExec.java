@@ -164,6 +164,41 @@ public class TestMainClientExec {
         Assert.assertTrue(finalResponse instanceof CloseableHttpResponse);
     }
 
+    @Test
+    public void testResponseLatencyExcludesLeaseWait() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpClientContext context = new HttpClientContext();
+        final RoutedHttpRequest request = RoutedHttpRequest.adapt(new HttpGet("http://bar/test"), route);
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200, "OK");
+        Mockito.when(connRequest.get(Mockito.anyLong(), Mockito.<TimeUnit>any())).thenAnswer(new Answer<ConnectionEndpoint>() {
+
+            @Override
+            public ConnectionEndpoint answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                Thread.sleep(500);
+                return endpoint;
+            }
+
+        });
+        Mockito.when(endpoint.execute(
+                Mockito.same(request),
+                Mockito.<HttpRequestExecutor>any(),
+                Mockito.<HttpClientContext>any())).thenAnswer(new Answer<ClassicHttpResponse>() {
+
+            @Override
+            public ClassicHttpResponse answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                Thread.sleep(50);
+                return response;
+            }
+
+        });
+
+        mainClientExec.execute(request, context, execAware);
+        final Long latency = context.getAttribute(HttpClientContext.RESPONSE_LATENCY, Long.class);
+        Assert.assertNotNull(latency);
+        Assert.assertTrue(latency >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(latency < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
     @Test
     public void testExecRequestPersistentConnection() throws Exception {
         final HttpRoute route = new HttpRoute(target);
@@ -39,6 +39,7 @@ import org.apache.hc.client5.http.cookie.CookieSpec;
 import org.apache.hc.client5.http.cookie.CookieSpecProvider;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.impl.cookie.BasicClientCookie;
+import org.apache.hc.client5.http.impl.cookie.ConcurrentCookieStore;
 import org.apache.hc.client5.http.impl.cookie.IgnoreSpecProvider;
 import org.apache.hc.client5.http.impl.cookie.RFC6265CookieSpecProvider;
 import org.apache.hc.client5.http.impl.cookie.RFC6265StrictSpec;
@@ -410,4 +411,39 @@ public class TestRequestAddCookies {
         Assert.assertEquals("name1=value; name2=value; name3=value", headers1[0].getValue());
     }
 
+    @Test
+    public void testIndexedCookieStore() throws Exception {
+        final HttpRequest request = new BasicHttpRequest("GET", "/stuff");
+
+        final ConcurrentCookieStore indexedStore = Mockito.spy(new ConcurrentCookieStore());
+        indexedStore.addCookie(this.cookieStore.getCookies().get(0));
+        indexedStore.addCookie(this.cookieStore.getCookies().get(1));
+        final BasicClientCookie cookie3 = new BasicClientCookie("name3", "value3");
+        cookie3.setDomain("www.somedomain.com");
+        cookie3.setPath("/");
+        indexedStore.addCookie(cookie3);
+        final BasicClientCookie cookie4 = new BasicClientCookie("name4", "value4");
+        cookie4.setDomain("localhost.local");
+        cookie4.setPath("/other");
+        indexedStore.addCookie(cookie4);
+
+        final HttpRoute route = new HttpRoute(this.target, null, false);
+
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        context.setAttribute(HttpClientContext.COOKIE_STORE, indexedStore);
+        context.setAttribute(HttpClientContext.COOKIESPEC_REGISTRY, this.cookieSpecRegistry);
+
+        final HttpRequestInterceptor interceptor = new RequestAddCookies();
+        interceptor.process(request, null, context);
+
+        final Header[] headers = request.getHeaders("Cookie");
+        Assert.assertNotNull(headers);
+        Assert.assertEquals(1, headers.length);
+        Assert.assertEquals("name1=value1; name2=value2", headers[0].getValue());
+
+        Mockito.verify(indexedStore).getCookies(Mockito.<CookieOrigin>any(), Mockito.<Date>any());
+        Mockito.verify(indexedStore, Mockito.never()).getCookies();
+    }
+
 }
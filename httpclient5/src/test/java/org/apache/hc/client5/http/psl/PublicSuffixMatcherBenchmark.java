@@ -0,0 +1,191 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.psl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the trie based {@link PublicSuffixMatcher} with the previous implementation
+ * probing hash maps with every suffix of the domain name, over a corpus of typical host
+ * and cookie domain names. Uses the Mozilla list if available on the test classpath,
+ * the small test list otherwise. Run with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main PublicSuffixMatcherBenchmark -prof gc}
+ * to see the difference in allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicSuffixMatcherBenchmark {
+
+    private static final String[] HOSTS = {
+            "www.example.com",
+            "api.example.com",
+            "static.cdn.example.net",
+            "a.b.c.d.example.org",
+            "www.bbc.co.uk",
+            "news.bbc.co.uk",
+            "co.uk",
+            "s3.eu-west-1.amazonaws.com",
+            "mybucket.s3.amazonaws.com",
+            "user.github.io",
+            "blah.blah.tokyo.jp",
+            "metro.tokyo.jp",
+            "www.city.kawasaki.jp",
+            "xn--h-2fa.no",
+            "www.xn--h-2fa.no",
+            "WWW.Example.COM",
+            "localhost",
+            "intranet.corp",
+            "www.example.xx",
+            "com"
+    };
+
+    private PublicSuffixMatcher trieMatcher;
+    private MapPublicSuffixMatcher mapMatcher;
+
+    @Setup
+    public void setup() throws IOException {
+        InputStream in = getClass().getResourceAsStream("/mozilla/public-suffix-list.txt");
+        if (in == null) {
+            in = getClass().getResourceAsStream("/suffixlist.txt");
+        }
+        final List<PublicSuffixList> lists;
+        try {
+            lists = new PublicSuffixListParser().parseByType(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } finally {
+            in.close();
+        }
+        trieMatcher = new PublicSuffixMatcher(lists);
+        mapMatcher = new MapPublicSuffixMatcher(lists);
+    }
+
+    @Benchmark
+    public void getDomainRootTrie(final Blackhole blackhole) {
+        for (final String host: HOSTS) {
+            blackhole.consume(trieMatcher.getDomainRoot(host));
+        }
+    }
+
+    @Benchmark
+    public void getDomainRootMap(final Blackhole blackhole) {
+        for (final String host: HOSTS) {
+            blackhole.consume(mapMatcher.getDomainRoot(host));
+        }
+    }
+
+    @Benchmark
+    public void matchesTrie(final Blackhole blackhole) {
+        for (final String host: HOSTS) {
+            blackhole.consume(trieMatcher.matches(host));
+        }
+    }
+
+    @Benchmark
+    public void matchesMap(final Blackhole blackhole) {
+        for (final String host: HOSTS) {
+            blackhole.consume(mapMatcher.matches(host));
+        }
+    }
+
+    /**
+     * The previous matcher implementation.
+     */
+    static final class MapPublicSuffixMatcher {
+
+        private final Map<String, DomainType> rules;
+        private final Map<String, DomainType> exceptions;
+
+        MapPublicSuffixMatcher(final List<PublicSuffixList> lists) {
+            this.rules = new ConcurrentHashMap<>();
+            this.exceptions = new ConcurrentHashMap<>();
+            for (final PublicSuffixList list: lists) {
+                for (final String rule: list.getRules()) {
+                    this.rules.put(rule, list.getType());
+                }
+                for (final String exception: list.getExceptions()) {
+                    this.exceptions.put(exception, list.getType());
+                }
+            }
+        }
+
+        String getDomainRoot(final String domain) {
+            if (domain == null || domain.startsWith(".")) {
+                return null;
+            }
+            String domainName = null;
+            String segment = domain.toLowerCase(Locale.ROOT);
+            while (segment != null) {
+                if (this.exceptions.containsKey(IDN.toUnicode(segment))) {
+                    return segment;
+                }
+                if (this.rules.containsKey(IDN.toUnicode(segment))) {
+                    break;
+                }
+                final int nextdot = segment.indexOf('.');
+                final String nextSegment = nextdot != -1 ? segment.substring(nextdot + 1) : null;
+                if (nextSegment != null && this.rules.containsKey("*." + IDN.toUnicode(nextSegment))) {
+                    break;
+                }
+                if (nextdot != -1) {
+                    domainName = segment;
+                }
+                segment = nextSegment;
+            }
+            return domainName;
+        }
+
+        boolean matches(final String domain) {
+            return domain != null && getDomainRoot(domain.startsWith(".") ? domain.substring(1) : domain) == null;
+        }
+
+    }
+
+}
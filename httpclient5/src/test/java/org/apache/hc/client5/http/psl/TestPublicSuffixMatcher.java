@@ -30,6 +30,7 @@ package org.apache.hc.client5.http.psl;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -89,4 +90,43 @@ public class TestPublicSuffixMatcher {
         Assert.assertTrue(matcher.matches(".xn--h-2fa.no"));
     }
 
+    @Test
+    public void testGetDomainRootEdgeCases() throws Exception {
+        Assert.assertEquals(null, matcher.getDomainRoot(null));
+        Assert.assertEquals(null, matcher.getDomainRoot(""));
+        Assert.assertEquals(null, matcher.getDomainRoot(".example.xx"));
+        Assert.assertEquals("xx.", matcher.getDomainRoot("example.xx."));
+        Assert.assertEquals("metro.tokyo.jp", matcher.getDomainRoot("www.METRO.tokyo.jp"));
+        Assert.assertEquals("tokyo.jp", matcher.getDomainRoot("tokyo.jp"));
+        Assert.assertEquals("blah.xn--h-2fa.no", matcher.getDomainRoot("www.blah.xn--h-2fa.no"));
+        Assert.assertEquals("blah.h\u00E5.no", matcher.getDomainRoot("www.blah.h\u00E5.no"));
+    }
+
+    @Test
+    public void testDomainTypes() throws Exception {
+        final PublicSuffixMatcher typedMatcher = new PublicSuffixMatcher(Arrays.asList(
+                new PublicSuffixList(DomainType.ICANN, Arrays.asList("com", "*.jp"), Arrays.asList("city.jp")),
+                new PublicSuffixList(DomainType.PRIVATE, Arrays.asList("blogspot.com"), null)));
+        Assert.assertEquals("example.blogspot.com", typedMatcher.getDomainRoot("www.example.blogspot.com"));
+        Assert.assertEquals("example.blogspot.com", typedMatcher.getDomainRoot("www.example.blogspot.com", DomainType.PRIVATE));
+        Assert.assertEquals("blogspot.com", typedMatcher.getDomainRoot("www.example.blogspot.com", DomainType.ICANN));
+        Assert.assertEquals("example.tokyo.jp", typedMatcher.getDomainRoot("www.example.tokyo.jp", DomainType.ICANN));
+        Assert.assertEquals("tokyo.jp", typedMatcher.getDomainRoot("www.example.tokyo.jp", DomainType.PRIVATE));
+        Assert.assertEquals("city.jp", typedMatcher.getDomainRoot("www.city.jp"));
+        Assert.assertTrue(typedMatcher.matches("blogspot.com"));
+        Assert.assertFalse(typedMatcher.matches("blogspot.com", DomainType.ICANN));
+        Assert.assertTrue(typedMatcher.matches(".tokyo.jp"));
+        Assert.assertFalse(typedMatcher.matches("city.jp"));
+    }
+
+    @Test
+    public void testMatchesEdgeCases() throws Exception {
+        Assert.assertFalse(matcher.matches(null));
+        Assert.assertTrue(matcher.matches("."));
+        Assert.assertTrue(matcher.matches("..jp"));
+        Assert.assertTrue(matcher.matches("JP"));
+        Assert.assertFalse(matcher.matches("example.xx"));
+        Assert.assertTrue(matcher.matches("example"));
+    }
+
 }
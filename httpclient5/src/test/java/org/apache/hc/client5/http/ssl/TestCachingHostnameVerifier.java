@@ -0,0 +1,112 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.ssl;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestCachingHostnameVerifier {
+
+    private HttpClientHostnameVerifier delegate;
+    private X509Certificate cert;
+
+    @Before
+    public void setup() {
+        delegate = Mockito.mock(HttpClientHostnameVerifier.class);
+        cert = Mockito.mock(X509Certificate.class);
+        Mockito.when(cert.getNotAfter()).thenReturn(new Date(System.currentTimeMillis() + 86400000L));
+    }
+
+    @Test
+    public void testSuccessfulVerificationCached() throws Exception {
+        final CachingHostnameVerifier verifier = new CachingHostnameVerifier(delegate);
+        verifier.verify("somehost", cert);
+        verifier.verify("somehost", cert);
+        verifier.verify("somehost", cert);
+        Mockito.verify(delegate, Mockito.times(1)).verify("somehost", cert);
+        Assert.assertEquals(2, verifier.getHitCount());
+        Assert.assertEquals(1, verifier.getMissCount());
+
+        verifier.verify("otherhost", cert);
+        Mockito.verify(delegate, Mockito.times(1)).verify("otherhost", cert);
+        Assert.assertEquals(2, verifier.getMissCount());
+    }
+
+    @Test
+    public void testFailedVerificationNotCached() throws Exception {
+        Mockito.doThrow(new SSLException("Oppsie")).when(delegate).verify("somehost", cert);
+        final CachingHostnameVerifier verifier = new CachingHostnameVerifier(delegate);
+        for (int i = 0; i < 2; i++) {
+            try {
+                verifier.verify("somehost", cert);
+                Assert.fail("SSLException expected");
+            } catch (final SSLException expected) {
+            }
+        }
+        Mockito.verify(delegate, Mockito.times(2)).verify("somehost", cert);
+        Assert.assertEquals(0, verifier.getHitCount());
+    }
+
+    @Test
+    public void testExpiredCertificateNotCached() throws Exception {
+        Mockito.when(cert.getNotAfter()).thenReturn(new Date(System.currentTimeMillis() - 1000L));
+        final CachingHostnameVerifier verifier = new CachingHostnameVerifier(delegate);
+        verifier.verify("somehost", cert);
+        verifier.verify("somehost", cert);
+        Mockito.verify(delegate, Mockito.times(2)).verify("somehost", cert);
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        final CachingHostnameVerifier verifier = new CachingHostnameVerifier(delegate, 50, TimeUnit.MILLISECONDS, 10);
+        verifier.verify("somehost", cert);
+        verifier.verify("somehost", cert);
+        Mockito.verify(delegate, Mockito.times(1)).verify("somehost", cert);
+        Thread.sleep(100);
+        verifier.verify("somehost", cert);
+        Mockito.verify(delegate, Mockito.times(2)).verify("somehost", cert);
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        final CachingHostnameVerifier verifier = new CachingHostnameVerifier(delegate, 1, TimeUnit.HOURS, 1);
+        verifier.verify("host1", cert);
+        verifier.verify("host2", cert);
+        verifier.verify("host1", cert);
+        Mockito.verify(delegate, Mockito.times(2)).verify("host1", cert);
+        Assert.assertEquals(0, verifier.getHitCount());
+    }
+
+}
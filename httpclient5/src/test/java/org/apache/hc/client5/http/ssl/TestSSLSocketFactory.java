@@ -55,6 +55,7 @@ import org.apache.hc.core5.ssl.SSLContexts;
 import org.apache.hc.core5.ssl.TrustStrategy;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 /**
@@ -223,6 +224,47 @@ public class TestSSLSocketFactory {
         }
     }
 
+    private void connect(final SSLConnectionSocketFactory socketFactory) throws IOException {
+        final HttpContext context = new BasicHttpContext();
+        try (final Socket socket = socketFactory.createSocket(context)) {
+            final InetSocketAddress remoteAddress = new InetSocketAddress("localhost", this.server.getLocalPort());
+            final HttpHost target = new HttpHost("localhost", this.server.getLocalPort(), "https");
+            try (final SSLSocket sslSocket = (SSLSocket) socketFactory.connectSocket(0, socket, target, remoteAddress,
+                    null, context)) {
+                Assert.assertNotNull(sslSocket.getSession());
+            }
+        }
+    }
+
+    @Test
+    public void testSessionResumptionCounted() throws Exception {
+        // @formatter:off
+        this.server = ServerBootstrap.bootstrap()
+                .setSslContext(SSLTestContexts.createServerSSLContext())
+                .create();
+        // @formatter:on
+        this.server.start();
+
+        // TLS 1.3 resumption yields a new session object, which the factory cannot tell from a full handshake
+        final SSLConnectionSocketFactory socketFactory = new SSLConnectionSocketFactory(
+                SSLTestContexts.createClientSSLContext(), new String[] { "TLSv1.2" }, null,
+                NoopHostnameVerifier.INSTANCE);
+        try {
+            connect(socketFactory);
+        } catch (final SSLException ex) {
+            // Test key material may be rejected by the security policy of the JRE
+            Assume.assumeNoException(ex);
+        }
+        Assert.assertEquals(1, socketFactory.getFullHandshakeCount());
+        Assert.assertEquals(0, socketFactory.getResumedHandshakeCount());
+
+        // Make sure the second handshake starts after the session has been created
+        Thread.sleep(10);
+        connect(socketFactory);
+        Assert.assertEquals(1, socketFactory.getFullHandshakeCount());
+        Assert.assertEquals(1, socketFactory.getResumedHandshakeCount());
+    }
+
     @Test
     public void testSSLTrustVerificationOverrideWithCustsom() throws Exception {
         final TrustStrategy trustStrategy = new TrustStrategy() {
@@ -0,0 +1,124 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares parsing and formatting of HTTP dates by {@link DateUtils} with the use of
+ * {@link SimpleDateFormat} for all three standard formats. Run with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main DateUtilsBenchmark -prof gc}
+ * to see the difference in allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilsBenchmark {
+
+    private static final String[] PATTERNS = {
+            DateUtils.PATTERN_RFC1123,
+            DateUtils.PATTERN_RFC1036,
+            DateUtils.PATTERN_ASCTIME
+    };
+
+    private static final String[] VALUES = {
+            "Sun, 06 Nov 1994 08:49:37 GMT",
+            "Sunday, 06-Nov-94 08:49:37 GMT",
+            "Sun Nov  6 08:49:37 1994"
+    };
+
+    private final Date date = new Date(784111777000L);
+
+    private static Date parseSimpleDateFormat(final String value) {
+        for (final String pattern : PATTERNS) {
+            final SimpleDateFormat dateParser = DateUtils.DateFormatHolder.formatFor(pattern);
+            final ParsePosition pos = new ParsePosition(0);
+            final Date result = dateParser.parse(value, pos);
+            if (pos.getIndex() != 0) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public void parseSimpleDateFormat(final Blackhole blackhole) {
+        for (final String value : VALUES) {
+            blackhole.consume(parseSimpleDateFormat(value));
+        }
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) {
+        for (final String value : VALUES) {
+            blackhole.consume(DateUtils.parseDate(value));
+        }
+    }
+
+    @Benchmark
+    public void parseMillis(final Blackhole blackhole) {
+        for (final String value : VALUES) {
+            blackhole.consume(DateUtils.parseDateMillis(value));
+        }
+    }
+
+    @Benchmark
+    public String formatSimpleDateFormat() {
+        return DateUtils.DateFormatHolder.formatFor(DateUtils.PATTERN_RFC1123).format(date);
+    }
+
+    @Benchmark
+    public String format() {
+        return DateUtils.formatDate(date);
+    }
+
+    @Benchmark
+    public void formatEverySecond(final Blackhole blackhole) {
+        for (int i = 0; i < 3; i++) {
+            date.setTime(date.getTime() + 1000L);
+            blackhole.consume(DateUtils.formatDate(date));
+        }
+    }
+
+}
@@ -137,4 +137,80 @@ public class TestDateUtils {
         Assert.assertEquals("Fri, 14 Oct 2005 00:00:00 GMT", DateUtils.formatDate(date, DateUtils.PATTERN_RFC1123));
     }
 
+    @Test
+    public void testDefaultFormatsParse() throws Exception {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(DateUtils.GMT);
+        calendar.set(1994, Calendar.NOVEMBER, 6, 8, 49, 37);
+        calendar.set(Calendar.MILLISECOND, 0);
+        final Date date1 = calendar.getTime();
+
+        Assert.assertEquals(date1, DateUtils.parseDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+        Assert.assertEquals(date1, DateUtils.parseDate("Sunday, 06-Nov-1994 08:49:37 GMT"));
+        Assert.assertEquals(date1, DateUtils.parseDate("Sun Nov  6 08:49:37 1994"));
+        Assert.assertEquals(date1, DateUtils.parseDate("Sun Nov 6 08:49:37 1994"));
+        Assert.assertEquals(date1, DateUtils.parseDate("'Sun, 06 Nov 1994 08:49:37 GMT'"));
+        // Non-standard values handled by SimpleDateFormat
+        Assert.assertEquals(date1, DateUtils.parseDate("Sun, 06 Nov 1994 09:49:37 GMT+01:00"));
+        Assert.assertEquals(date1, DateUtils.parseDate("sun, 06 nov 1994 08:49:37 GMT"));
+        Assert.assertEquals(date1, DateUtils.parseDate("Sun, 06 Nov 1994 08:49:37 GMT; trailing"));
+        Assert.assertEquals(date1, DateUtils.parseDate("Sun, 05 Nov 1994 32:49:37 GMT"));
+        Assert.assertNull(DateUtils.parseDate("Sun, 06 Nov"));
+        Assert.assertNull(DateUtils.parseDate(""));
+    }
+
+    @Test
+    public void testTwoDigitYearDefaultFormatsParse() throws Exception {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(DateUtils.GMT);
+        calendar.set(1950, Calendar.JUNE, 15, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        final Date startDate = calendar.getTime();
+
+        final String[] formats = new String[] { DateUtils.PATTERN_RFC1036 };
+        for (final String value : new String[] {
+                "Friday, 14-Oct-05 00:00:00 GMT",
+                "Friday, 14-Oct-49 00:00:00 GMT",
+                "Friday, 14-Jun-50 00:00:00 GMT",
+                "Friday, 16-Jun-50 00:00:00 GMT",
+                "Friday, 14-Oct-99 00:00:00 GMT" }) {
+            Assert.assertEquals(value,
+                    DateUtils.parseDate(value, formats, startDate),
+                    DateUtils.parseDate(value, null, startDate));
+        }
+    }
+
+    @Test
+    public void testParseDateMillis() throws Exception {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(DateUtils.GMT);
+        calendar.set(2005, Calendar.OCTOBER, 14, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        final long time = calendar.getTimeInMillis();
+
+        final StringBuilder buffer = new StringBuilder("Fri, 14 Oct 2005 00:00:00 GMT");
+        Assert.assertEquals(time, DateUtils.parseDateMillis(buffer));
+        Assert.assertEquals(time, DateUtils.parseDateMillis("Fri, 14 Oct 2005 01:00:00 GMT+01:00"));
+        Assert.assertEquals(0L, DateUtils.parseDateMillis("Thu, 01-Jan-1970 00:00:00 GMT"));
+        Assert.assertEquals(Long.MIN_VALUE, DateUtils.parseDateMillis("garbage"));
+    }
+
+    @Test
+    public void testDateFormatRange() throws Exception {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(DateUtils.GMT);
+        calendar.set(1969, Calendar.DECEMBER, 31, 23, 59, 59);
+        calendar.set(Calendar.MILLISECOND, 999);
+        Assert.assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", DateUtils.formatDate(calendar.getTime()));
+        calendar.set(2000, Calendar.FEBRUARY, 29, 12, 0, 1);
+        Assert.assertEquals("Tue, 29 Feb 2000 12:00:01 GMT", DateUtils.formatDate(calendar.getTime()));
+        calendar.set(1500, Calendar.MARCH, 1, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Assert.assertEquals(
+                DateUtils.DateFormatHolder.formatFor(DateUtils.PATTERN_RFC1123).format(calendar.getTime()),
+                DateUtils.formatDate(calendar.getTime()));
+        Assert.assertEquals(calendar.getTime(),
+                DateUtils.parseDate(DateUtils.formatDate(calendar.getTime())));
+    }
+
 }